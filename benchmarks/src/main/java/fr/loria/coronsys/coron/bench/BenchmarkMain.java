@@ -0,0 +1,38 @@
+package fr.loria.coronsys.coron.bench;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks, like the main class of JMH, but the GC profiler
+ * (allocation rate) is always enabled. The JMH command-line options can
+ * be used, e.g. "TidsetBenchmark -p dataset=mushrooms -f 1".
+ */
+public class BenchmarkMain
+{
+   public static void main(String[] args) throws RunnerException, IOException
+   {
+      CommandLineOptions cmd = null;
+      try {
+         cmd = new CommandLineOptions(args);
+      }
+      catch (CommandLineOptionException e)
+      {
+         System.err.println("Error: " + e.getMessage());
+         System.exit(1);
+      }
+      if (cmd.shouldHelp())
+      {
+         cmd.showHelp();
+         return;
+      }
+      // else
+      new Runner(new OptionsBuilder().parent(cmd).addProfiler(GCProfiler.class).build()).run();
+   }
+}
@@ -0,0 +1,109 @@
+package fr.loria.coronsys.coron.bench;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import fr.loria.coronsys.coron.helper.ContextIndex;
+import fr.loria.coronsys.coron.helper.ContextOp;
+
+/**
+ * Image and closure queries: the scans of ContextOp against the index of the
+ * context (ContextIndex). The queries are the pairs of the most frequent
+ * attributes. One operation = all the queries.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ContextBenchmark
+{
+   /**
+    * The queries and the indexes.
+    */
+   @State(Scope.Benchmark)
+   public static class Queries
+   {
+      public BitSet[] itemsets;
+
+      public BitSet[] closures;
+
+      public int[] supps;
+
+      /**
+       * Index without cache.
+       */
+      public ContextIndex index;
+
+      /**
+       * Index whose cache holds all the queries.
+       */
+      public ContextIndex cached;
+
+      @Setup(Level.Trial)
+      public void setup(DatasetState ds)
+      {
+         int n = ds.frequent.length;
+         this.itemsets = new BitSet[n * (n - 1) / 2];
+         int k = 0;
+         for (int i = 0; i < n; ++i)
+         {
+            for (int j = i + 1; j < n; ++j)
+            {
+               BitSet itemset = new BitSet();
+               itemset.set(ds.frequentAttrs[i]);
+               itemset.set(ds.frequentAttrs[j]);
+               this.itemsets[k++] = itemset;
+            }
+         }
+         this.closures = new BitSet[this.itemsets.length];
+         this.supps    = new int[this.itemsets.length];
+         this.index    = ContextIndex.horizontal(ds.horizontal, null, 0);
+         this.cached   = ContextIndex.horizontal(ds.horizontal, null, this.itemsets.length);
+      }
+   }
+
+   @Benchmark
+   public void closureScan(DatasetState ds, Queries q, Blackhole bh)
+   {
+      for (BitSet itemset : q.itemsets) {
+         bh.consume(ContextOp.getClosure(ds.horizontal, itemset));
+      }
+   }
+
+   @Benchmark
+   public void closureIndex(Queries q, Blackhole bh)
+   {
+      q.index.getClosures(q.itemsets, q.itemsets.length, q.closures);
+      bh.consume(q.closures);
+   }
+
+   @Benchmark
+   public void closureIndexCached(Queries q, Blackhole bh)
+   {
+      q.cached.getClosures(q.itemsets, q.itemsets.length, q.closures);
+      bh.consume(q.closures);
+   }
+
+   @Benchmark
+   public void supportScan(DatasetState ds, Queries q, Blackhole bh)
+   {
+      for (BitSet itemset : q.itemsets) {
+         bh.consume(ContextOp.getImage(ds.horizontal, itemset).cardinality());
+      }
+   }
+
+   @Benchmark
+   public void supportIndex(Queries q, Blackhole bh)
+   {
+      q.index.getSupports(q.itemsets, q.itemsets.length, q.supps);
+      bh.consume(q.supps);
+   }
+}
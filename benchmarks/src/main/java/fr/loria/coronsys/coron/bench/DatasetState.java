@@ -0,0 +1,162 @@
+package fr.loria.coronsys.coron.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Vector;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import fr.loria.coronsys.coron.helper.C;
+import fr.loria.coronsys.coron.helper.Database;
+import fr.loria.coronsys.coron.helper.FileFormatHandler;
+
+/**
+ * A dataset of the datasets/ directory, loaded once per benchmark run.
+ *
+ * The zip files are looked up in the directory given by the system property
+ * talkyg.datasets, or else in datasets/ and ../datasets/.
+ */
+@State(Scope.Benchmark)
+public class DatasetState
+{
+   /**
+    * Number of the most frequent attributes whose tidsets are kept in frequent.
+    */
+   public final static int NB_FREQUENT = 64;
+
+   /**
+    * Name of the dataset (without .zip).
+    */
+   @Param({"mushrooms", "t25i10d10k"})
+   public String dataset;
+
+   /**
+    * Lines of the dataset (remarks and empty lines are skipped), trimmed.
+    */
+   public String[] lines;
+
+   /**
+    * The dataset in horizontal format (one bitset per object).
+    */
+   public Vector<BitSet> horizontal;
+
+   /**
+    * Tidsets of the most frequent attributes, in decreasing order of support.
+    */
+   public BitSet[] frequent;
+
+   /**
+    * The most frequent attributes (frequentAttrs[i] belongs to frequent[i]).
+    */
+   public int[] frequentAttrs;
+
+   /**
+    * Loads the dataset and registers it in the Database class.
+    *
+    * @throws IOException If the dataset cannot be read.
+    */
+   @Setup(Level.Trial)
+   public void load() throws IOException
+   {
+      this.lines = readLines(this.dataset);
+      this.horizontal = new Vector<BitSet>(this.lines.length);
+      for (int i = 0; i < this.lines.length; ++i) {
+         this.horizontal.add((BitSet) FileFormatHandler.parseBasenumLine(this.lines[i], i + 1));
+      }
+      Database.setNumberOfObjects(this.lines.length);
+      Database.setDatabase(this.horizontal, C.DBR_HORIZONTAL);
+
+      // vertical representation
+      final List<BitSet> vertical = new ArrayList<BitSet>();
+      BitSet set;
+      for (int row = 0; row < this.horizontal.size(); ++row)
+      {
+         set = this.horizontal.get(row);
+         for (int attr = set.nextSetBit(0); attr >= 0; attr = set.nextSetBit(attr+1))
+         {
+            while (vertical.size() <= attr) vertical.add(new BitSet());
+            vertical.get(attr).set(row + 1);
+         }
+      }
+
+      Integer[] attrs = new Integer[vertical.size()];
+      for (int i = 0; i < attrs.length; ++i) attrs[i] = i;
+      Arrays.sort(attrs, new Comparator<Integer>() {
+         public int compare(Integer a, Integer b) {
+            return vertical.get(b).cardinality() - vertical.get(a).cardinality();
+         }
+      });
+      int n = Math.min(NB_FREQUENT, attrs.length);
+      this.frequent = new BitSet[n];
+      this.frequentAttrs = new int[n];
+      for (int i = 0; i < n; ++i)
+      {
+         this.frequentAttrs[i] = attrs[i];
+         this.frequent[i] = vertical.get(attrs[i]);
+      }
+   }
+
+   /**
+    * @param name Name of a dataset.
+    * @return The zip file of the dataset.
+    * @throws IOException If it's not found.
+    */
+   public static File findZip(String name) throws IOException
+   {
+      String dir = System.getProperty("talkyg.datasets");
+      String[] dirs = (dir != null) ? new String[] { dir } : new String[] { "datasets", "../datasets" };
+      for (String d : dirs)
+      {
+         File f = new File(d, name + ".zip");
+         if (f.isFile()) return f;
+      }
+      throw new IOException("dataset not found: " + name + ".zip (set -Dtalkyg.datasets=<dir>)");
+   }
+
+   /**
+    * @param name Name of a dataset.
+    * @return The lines of the dataset, without remarks and empty lines.
+    * @throws IOException If the dataset cannot be read.
+    */
+   public static String[] readLines(String name) throws IOException
+   {
+      List<String> result = new ArrayList<String>();
+      ZipInputStream zip = new ZipInputStream(new FileInputStream(findZip(name)));
+      try
+      {
+         ZipEntry entry;
+         while ((entry = zip.getNextEntry()) != null)
+         {
+            if (entry.isDirectory()) continue;
+            // else: the first file of the archive
+            BufferedReader in = new BufferedReader(new InputStreamReader(zip, "US-ASCII"));
+            String line;
+            while ((line = in.readLine()) != null)
+            {
+               line = line.trim();
+               if (line.startsWith("#") || (line.length() == 0)) continue;
+               result.add(line);
+            }
+            break;
+         }
+      }
+      finally {
+         zip.close();
+      }
+      return result.toArray(new String[result.size()]);
+   }
+}
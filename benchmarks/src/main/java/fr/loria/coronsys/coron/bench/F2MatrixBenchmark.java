@@ -0,0 +1,45 @@
+package fr.loria.coronsys.coron.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import fr.loria.coronsys.coron.datastructure.charm.CharmExtra;
+import fr.loria.coronsys.coron.helper.Global;
+
+/**
+ * Counting of the 2-itemsets (F_2 matrix) on the horizontal dataset.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class F2MatrixBenchmark
+{
+   /**
+    * Number of threads (see -threads:N).
+    */
+   @Param({"1", "4"})
+   public int threads;
+
+   private CharmExtra charmExtra;
+
+   @Setup(Level.Trial)
+   public void setup(DatasetState ds)
+   {
+      Global.setThreads(this.threads);
+      this.charmExtra = new CharmExtra(ds.horizontal, 1);
+   }
+
+   @Benchmark
+   public int[][] getF2Matrix() {
+      return this.charmExtra.getF2Matrix();
+   }
+}
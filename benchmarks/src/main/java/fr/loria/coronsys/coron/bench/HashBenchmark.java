@@ -0,0 +1,112 @@
+package fr.loria.coronsys.coron.bench;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import fr.loria.coronsys.coron.datastructure.charm.FgStore;
+import fr.loria.coronsys.coron.datastructure.charm.FgTable;
+import fr.loria.coronsys.coron.datastructure.charm.ITnode;
+import fr.loria.coronsys.coron.datastructure.charm.ITtree;
+import fr.loria.coronsys.coron.datastructure.charm.MyHash;
+import fr.loria.coronsys.coron.datastructure.tidset.Tidset;
+import fr.loria.coronsys.coron.helper.C;
+
+/**
+ * Hashing of the IT-nodes and the hash table of the FGs.
+ *
+ * The nodes are the 1- and 2-itemsets of the most frequent attributes. One
+ * operation of the store benchmark fills an empty store the way Talky-G does:
+ * a node is added if the store has no proper superset of it with the same support.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class HashBenchmark
+{
+   /**
+    * IT-nodes of the most frequent attributes and of their pairs.
+    */
+   @State(Scope.Benchmark)
+   public static class Nodes
+   {
+      /**
+       * The store of the FGs: MyHash (the original one) or FgStore.
+       */
+      @Param({"myhash", "fgstore"})
+      public String store;
+
+      public ITnode[] nodes;
+
+      @Setup(Level.Trial)
+      public void setup(DatasetState ds)
+      {
+         ITtree tree = new ITtree(C.ALG_TALKY_G);
+         int n = ds.frequent.length;
+         this.nodes = new ITnode[n + n * (n - 1) / 2];
+         int k = 0;
+         BitSet extent, intent;
+
+         for (int i = 0; i < n; ++i)
+            this.nodes[k++] = new ITnode(tree, ds.frequentAttrs[i], ds.frequent[i]);
+         for (int i = 0; i < n; ++i)
+         {
+            for (int j = i + 1; j < n; ++j)
+            {
+               extent = (BitSet) ds.frequent[i].clone();
+               extent.and(ds.frequent[j]);
+               intent = new BitSet();
+               intent.set(ds.frequentAttrs[i]);
+               intent.set(ds.frequentAttrs[j]);
+               ITnode node = new ITnode(tree, ds.frequentAttrs[i], extent);
+               node.setIntent(intent);
+               this.nodes[k++] = node;
+            }
+         }
+         // the hash is computed once, like in the miners
+         for (ITnode node : this.nodes) node.getHash();
+      }
+
+      FgTable newStore() {
+         return this.store.equals("fgstore") ? new FgStore() : new MyHash();
+      }
+   }
+
+   @Benchmark
+   public void calculateHashBitSet(DatasetState ds, Blackhole bh)
+   {
+      for (BitSet extent : ds.frequent) {
+         bh.consume(ITnode.calculateHash(extent));
+      }
+   }
+
+   @Benchmark
+   public void calculateHashTidset(TidsetBenchmark.Tidsets_ s, Blackhole bh)
+   {
+      for (Tidset extent : s.tidsets) {
+         bh.consume(ITnode.calculateHash(extent));
+      }
+   }
+
+   @Benchmark
+   public FgTable addIfNoSuperset(Nodes s)
+   {
+      FgTable hash = s.newStore();
+      for (ITnode node : s.nodes)
+      {
+         if (hash.containsSupersetOrSubsetOf(node, FgTable.SUPERSET) == false) {
+            hash.add(node);
+         }
+      }
+      return hash;
+   }
+}
@@ -0,0 +1,421 @@
+package fr.loria.coronsys.coron.bench;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import fr.loria.coronsys.coron.Main;
+import fr.loria.coronsys.coron.algorithm.Algorithm;
+import fr.loria.coronsys.coron.helper.Database;
+import fr.loria.coronsys.coron.helper.PhaseTimer;
+import fr.loria.coronsys.coron.helper.Reset;
+
+/**
+ * End-to-end benchmark: runs the algorithms on the datasets of the datasets/
+ * directory over a grid of min_supp values, and writes a CSV or JSON report
+ * with the phase timings, the peak heap, the GC time and the number of
+ * FGs / FIs of each run.
+ *
+ * Usage: MacroBenchmark [options] [options of Talky-G]
+ *
+ * Options:
+ *   -datasets:mushrooms,c20d10k  (default: all the bundled datasets)
+ *   -alg:talkyg,eclat            (default: all the algorithms)
+ *   -minsupp:30%,20%             (default: a grid per dataset, see DEFAULT_GRID)
+ *   -warmup:N                    (runs that are not measured, default: 1)
+ *   -runs:N                      (measured runs, default: 3)
+ *   -out:FILE                    (.json or .csv, default: macro-report.csv)
+ *
+ * Other options (e.g. -threads:4, -tidset:roaring, -usef2) are passed to
+ * Talky-G. The runs are done in this JVM one after the other, the patterns
+ * are not written (-null), thus the search phase is the mining alone.
+ */
+public class MacroBenchmark
+{
+   /**
+    * The bundled datasets.
+    */
+   public final static String[] DATASETS = { "mushrooms", "c20d10k", "c73d10k", "t20i6d100k", "t25i10d10k" };
+
+   /**
+    * The algorithms.
+    */
+   public final static String[] ALGORITHMS = { "talkyg", "talkyg2", "dtalkyg", "eclat", "declat", "talky" };
+
+   /**
+    * Algorithms that find FGs (the others find FIs).
+    */
+   private final static List<String> FG_ALGORITHMS = Arrays.asList("talkyg", "talkyg2", "dtalkyg");
+
+   /**
+    * Default min_supp values of the datasets. Each run takes a few seconds at most.
+    */
+   public final static Map<String, String[]> DEFAULT_GRID = new LinkedHashMap<String, String[]>();
+   static
+   {
+      DEFAULT_GRID.put("mushrooms",  new String[] { "30%", "20%", "10%" });
+      DEFAULT_GRID.put("c20d10k",    new String[] { "30%", "20%", "10%" });
+      DEFAULT_GRID.put("c73d10k",    new String[] { "85%", "80%", "75%" });
+      DEFAULT_GRID.put("t20i6d100k", new String[] { "1%", "0.75%", "0.5%" });
+      DEFAULT_GRID.put("t25i10d10k", new String[] { "2%", "1%", "0.5%" });
+   }
+
+   /**
+    * Phases of a run, in the order of the report.
+    */
+   private final static String[] PHASES = { PhaseTimer.READ, PhaseTimer.RECODE, PhaseTimer.F2, PhaseTimer.VERTICAL, PhaseTimer.SEARCH };
+
+   /**
+    * Result of a measured run.
+    */
+   static class Measurement
+   {
+      String dataset;
+      String algorithm;
+      String minSupp;
+      int minSuppAbs;
+      int run;
+      Map<String, Long> phases;
+      long totalNs;
+      long peakHeap;
+      long gcMs;
+      long gcCount;
+      long fgs;
+      long fis;
+   }
+
+   private List<String> datasets   = Arrays.asList(DATASETS);
+   private List<String> algorithms = Arrays.asList(ALGORITHMS);
+   private List<String> minSupps   = null;
+   private int warmup = 1;
+   private int runs   = 3;
+   private File out   = new File("macro-report.csv");
+   private List<String> talkyOptions = new ArrayList<String>();
+
+   private final List<Measurement> measurements = new ArrayList<Measurement>();
+
+   public static void main(String[] args) throws IOException
+   {
+      MacroBenchmark bench = new MacroBenchmark();
+      bench.processArguments(args);
+      bench.start();
+   }
+
+   /**
+    * @param args Command-line arguments.
+    */
+   private void processArguments(String[] args)
+   {
+      for (String arg : args)
+      {
+         if      (arg.startsWith("-datasets:")) this.datasets   = split(arg);
+         else if (arg.startsWith("-alg:"))      this.algorithms = split(arg);
+         else if (arg.startsWith("-minsupp:"))  this.minSupps   = split(arg);
+         else if (arg.startsWith("-warmup:"))   this.warmup     = toInt(arg, 0);
+         else if (arg.startsWith("-runs:"))     this.runs       = toInt(arg, 1);
+         else if (arg.startsWith("-out:"))      this.out        = new File(value(arg));
+         else if (arg.startsWith("-"))          this.talkyOptions.add(arg);
+         else die("unknown argument: " + arg);
+      }
+      for (String alg : this.algorithms) {
+         if (Arrays.asList(ALGORITHMS).contains(alg) == false) die("unknown algorithm: " + alg);
+      }
+      for (String name : this.datasets) {
+         if ((this.minSupps == null) && (DEFAULT_GRID.containsKey(name) == false)) die("no default min_supp for " + name + ", use -minsupp:");
+      }
+   }
+
+   /**
+    * Runs the benchmark and writes the report.
+    *
+    * @throws IOException If a dataset cannot be read or the report cannot be written.
+    */
+   private void start() throws IOException
+   {
+      File dir = createTempDir();
+      try
+      {
+         for (String name : this.datasets)
+         {
+            File file = unzip(name, dir);
+            List<String> grid = (this.minSupps != null) ? this.minSupps : Arrays.asList(DEFAULT_GRID.get(name));
+            for (String alg : this.algorithms)
+            {
+               for (String minSupp : grid)
+               {
+                  for (int i = 0; i < this.warmup; ++i) runOnce(file, name, alg, minSupp, -1);
+                  for (int i = 1; i <= this.runs; ++i) this.measurements.add(runOnce(file, name, alg, minSupp, i));
+                  printSummary(name, alg, minSupp);
+               }
+            }
+            file.delete();
+         }
+      }
+      finally {
+         dir.delete();
+      }
+
+      if (this.out.getName().endsWith(".json")) writeJson();
+      else                                      writeCsv();
+      System.err.println("> Report: " + this.out.getPath());
+   }
+
+   /**
+    * Runs an algorithm once, like Main does.
+    *
+    * @param run Index of the measured run (negative for warmup).
+    * @return The measurement.
+    */
+   private Measurement runOnce(File file, String name, String alg, String minSupp, int run)
+   {
+      List<String> args = new ArrayList<String>();
+      args.add(file.getPath());
+      args.add(minSupp);
+      args.add("-alg:" + alg);
+      args.add("-null");
+      args.addAll(this.talkyOptions);
+
+      Reset.reset();
+      System.gc();
+      List<MemoryPoolMXBean> pools = heapPools();
+      for (MemoryPoolMXBean pool : pools) pool.resetPeakUsage();
+      long gcMs0 = gcTime(), gcCount0 = gcCount();
+
+      // the statistics of the dataset are not needed
+      PrintStream stdout = System.out;
+      System.setOut(new PrintStream(new OutputStream() {
+         public void write(int b) { }
+         public void write(byte[] b, int off, int len) { }
+      }));
+      Main main = new Main();
+      long startTime = System.nanoTime();
+      try {
+         main.start(args.toArray(new String[args.size()]));
+      }
+      finally {
+         System.setOut(stdout);
+      }
+      long totalNs = System.nanoTime() - startTime;
+
+      Measurement m = new Measurement();
+      m.dataset    = name;
+      m.algorithm  = alg;
+      m.minSupp    = minSupp;
+      m.minSuppAbs = Database.getMinSupp();
+      m.run        = run;
+      m.phases     = PhaseTimer.getTimes();
+      m.totalNs    = totalNs;
+      for (MemoryPoolMXBean pool : pools) m.peakHeap += pool.getPeakUsage().getUsed();
+      m.gcMs       = gcTime() - gcMs0;
+      m.gcCount    = gcCount() - gcCount0;
+      Algorithm algorithm = main.getAlgorithm();
+      m.fgs        = FG_ALGORITHMS.contains(alg) ? algorithm.getFgCnt() : -1;
+      m.fis        = FG_ALGORITHMS.contains(alg) ? -1 : algorithm.getFiCnt();
+      return m;
+   }
+
+   /**
+    * Prints the median runtime of the measured runs of a configuration.
+    */
+   private void printSummary(String name, String alg, String minSupp)
+   {
+      List<Long> totals = new ArrayList<Long>();
+      Measurement last = null;
+      for (Measurement m : this.measurements)
+      {
+         if (m.dataset.equals(name) && m.algorithm.equals(alg) && m.minSupp.equals(minSupp))
+         {
+            totals.add(m.totalNs);
+            last = m;
+         }
+      }
+      Collections.sort(totals);
+      long count = FG_ALGORITHMS.contains(alg) ? last.fgs : last.fis;
+      System.err.println(String.format("> %-10s %-8s %6s  %9.1f ms (median of %d)  %s: %d",
+            name, alg, minSupp, totals.get(totals.size() / 2) / 1e6, totals.size(),
+            FG_ALGORITHMS.contains(alg) ? "FGs" : "FIs", count));
+   }
+
+   private void writeCsv() throws IOException
+   {
+      PrintWriter pw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(this.out), "UTF-8"));
+      try
+      {
+         StringBuilder sb = new StringBuilder("dataset,algorithm,min_supp,min_supp_abs,run");
+         for (String phase : PHASES) sb.append(',').append(phase).append("_ms");
+         sb.append(",total_ms,peak_heap_bytes,gc_ms,gc_count,fgs,fis");
+         pw.println(sb);
+         for (Measurement m : this.measurements)
+         {
+            sb.setLength(0);
+            sb.append(m.dataset).append(',').append(m.algorithm).append(',').append(m.minSupp)
+              .append(',').append(m.minSuppAbs).append(',').append(m.run);
+            for (String phase : PHASES) sb.append(',').append(ms(m.phases.get(phase)));
+            sb.append(',').append(ms(m.totalNs)).append(',').append(m.peakHeap)
+              .append(',').append(m.gcMs).append(',').append(m.gcCount)
+              .append(',').append((m.fgs < 0) ? "" : String.valueOf(m.fgs))
+              .append(',').append((m.fis < 0) ? "" : String.valueOf(m.fis));
+            pw.println(sb);
+         }
+      }
+      finally {
+         pw.close();
+      }
+   }
+
+   private void writeJson() throws IOException
+   {
+      PrintWriter pw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(this.out), "UTF-8"));
+      try
+      {
+         pw.println("[");
+         for (int i = 0; i < this.measurements.size(); ++i)
+         {
+            Measurement m = this.measurements.get(i);
+            StringBuilder sb = new StringBuilder("  {");
+            sb.append("\"dataset\": \"").append(m.dataset).append("\", ");
+            sb.append("\"algorithm\": \"").append(m.algorithm).append("\", ");
+            sb.append("\"min_supp\": \"").append(m.minSupp).append("\", ");
+            sb.append("\"min_supp_abs\": ").append(m.minSuppAbs).append(", ");
+            sb.append("\"run\": ").append(m.run).append(", ");
+            sb.append("\"phases_ms\": {");
+            for (int p = 0; p < PHASES.length; ++p)
+            {
+               if (p > 0) sb.append(", ");
+               sb.append('"').append(PHASES[p]).append("\": ").append(ms(m.phases.get(PHASES[p])));
+            }
+            sb.append("}, ");
+            sb.append("\"total_ms\": ").append(ms(m.totalNs)).append(", ");
+            sb.append("\"peak_heap_bytes\": ").append(m.peakHeap).append(", ");
+            sb.append("\"gc_ms\": ").append(m.gcMs).append(", ");
+            sb.append("\"gc_count\": ").append(m.gcCount).append(", ");
+            sb.append("\"fgs\": ").append((m.fgs < 0) ? "null" : String.valueOf(m.fgs)).append(", ");
+            sb.append("\"fis\": ").append((m.fis < 0) ? "null" : String.valueOf(m.fis));
+            sb.append((i < this.measurements.size() - 1) ? "}," : "}");
+            pw.println(sb);
+         }
+         pw.println("]");
+      }
+      finally {
+         pw.close();
+      }
+   }
+
+   /**
+    * Extracts the first file of a dataset archive.
+    *
+    * @return The extracted .basenum file.
+    */
+   private static File unzip(String name, File dir) throws IOException
+   {
+      File file = new File(dir, name + ".basenum");
+      ZipInputStream zip = new ZipInputStream(new FileInputStream(DatasetState.findZip(name)));
+      try
+      {
+         ZipEntry entry;
+         while (((entry = zip.getNextEntry()) != null) && entry.isDirectory()) { }
+         if (entry == null) throw new IOException("empty archive: " + name + ".zip");
+         copy(zip, file);
+      }
+      finally {
+         zip.close();
+      }
+      return file;
+   }
+
+   private static void copy(InputStream in, File file) throws IOException
+   {
+      OutputStream os = new FileOutputStream(file);
+      try
+      {
+         byte[] buf = new byte[64 * 1024];
+         int n;
+         while ((n = in.read(buf)) > 0) os.write(buf, 0, n);
+      }
+      finally {
+         os.close();
+      }
+   }
+
+   private static File createTempDir() throws IOException
+   {
+      File dir = File.createTempFile("talkyg-bench", "");
+      if ((dir.delete() == false) || (dir.mkdir() == false)) throw new IOException("cannot create " + dir);
+      return dir;
+   }
+
+   private static List<MemoryPoolMXBean> heapPools()
+   {
+      List<MemoryPoolMXBean> result = new ArrayList<MemoryPoolMXBean>();
+      for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+         if (pool.getType() == MemoryType.HEAP) result.add(pool);
+      }
+      return result;
+   }
+
+   private static long gcTime()
+   {
+      long sum = 0;
+      for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) sum += Math.max(0, gc.getCollectionTime());
+      return sum;
+   }
+
+   private static long gcCount()
+   {
+      long sum = 0;
+      for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) sum += Math.max(0, gc.getCollectionCount());
+      return sum;
+   }
+
+   /**
+    * @param ns Nanosec. (may be null).
+    * @return Millisec. with 3 decimals.
+    */
+   private static String ms(Long ns) {
+      return (ns == null) ? "0.000" : String.format("%d.%03d", ns / 1000000, (ns / 1000) % 1000);
+   }
+
+   private static String value(String arg) {
+      return arg.substring(arg.indexOf(':') + 1);
+   }
+
+   private static List<String> split(String arg) {
+      return Arrays.asList(value(arg).split(","));
+   }
+
+   private static int toInt(String arg, int min)
+   {
+      try
+      {
+         int n = Integer.parseInt(value(arg));
+         if (n >= min) return n;
+      }
+      catch (NumberFormatException e) { }
+      die("invalid value: " + arg);
+      return 0;
+   }
+
+   private static void die(String msg)
+   {
+      System.err.println("Error: " + msg);
+      System.exit(1);
+   }
+}
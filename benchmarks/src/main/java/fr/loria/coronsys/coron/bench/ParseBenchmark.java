@@ -0,0 +1,80 @@
+package fr.loria.coronsys.coron.bench;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import fr.loria.coronsys.coron.helper.Database;
+import fr.loria.coronsys.coron.helper.FileFormatHandler;
+
+/**
+ * Reading of .basenum files. One operation = the whole dataset.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class ParseBenchmark
+{
+   /**
+    * The dataset, extracted in a temporary file.
+    */
+   private File file;
+
+   @Setup(Level.Trial)
+   public void setup(DatasetState ds) throws IOException
+   {
+      this.file = File.createTempFile(ds.dataset, ".basenum");
+      Writer out = new OutputStreamWriter(new FileOutputStream(this.file), "US-ASCII");
+      try
+      {
+         for (String line : ds.lines) {
+            out.write(line);
+            out.write('\n');
+         }
+      }
+      finally {
+         out.close();
+      }
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() {
+      this.file.delete();
+   }
+
+   /**
+    * The String-based line parser.
+    */
+   @Benchmark
+   public void parseBasenumLine(DatasetState ds, Blackhole bh)
+   {
+      String[] lines = ds.lines;
+      for (int i = 0; i < lines.length; ++i) {
+         bh.consume(FileFormatHandler.parseBasenumLine(lines[i], i + 1));
+      }
+   }
+
+   /**
+    * The whole file (memory-mapped reading).
+    */
+   @Benchmark
+   public Object readBasenumFile()
+   {
+      FileFormatHandler.readBasenumFile(this.file.getPath());
+      return Database.getDatabase();
+   }
+}
@@ -0,0 +1,57 @@
+package fr.loria.coronsys.coron.bench;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.infra.Blackhole;
+
+import fr.loria.coronsys.coron.helper.SetOp;
+
+/**
+ * SetOp on the transactions of a dataset: each transaction is compared
+ * with the next one. One operation = one pass over the dataset.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SetOpBenchmark
+{
+   @Benchmark
+   public void isProperSubset(DatasetState ds, Blackhole bh)
+   {
+      BitSet prev = ds.horizontal.get(0), curr;
+      for (int i = 1; i < ds.horizontal.size(); ++i)
+      {
+         curr = ds.horizontal.get(i);
+         bh.consume(SetOp.isProperSubset(prev, curr));
+         prev = curr;
+      }
+   }
+
+   @Benchmark
+   public void isSubset(DatasetState ds, Blackhole bh)
+   {
+      BitSet prev = ds.horizontal.get(0), curr;
+      for (int i = 1; i < ds.horizontal.size(); ++i)
+      {
+         curr = ds.horizontal.get(i);
+         bh.consume(SetOp.isSubset(prev, curr));
+         prev = curr;
+      }
+   }
+
+   @Benchmark
+   public void minus(DatasetState ds, Blackhole bh)
+   {
+      BitSet prev = ds.horizontal.get(0), curr;
+      for (int i = 1; i < ds.horizontal.size(); ++i)
+      {
+         curr = ds.horizontal.get(i);
+         bh.consume(SetOp.minus(prev, curr));
+         prev = curr;
+      }
+   }
+}
@@ -0,0 +1,115 @@
+package fr.loria.coronsys.coron.bench;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import fr.loria.coronsys.coron.datastructure.tidset.Tidset;
+import fr.loria.coronsys.coron.datastructure.tidset.Tidsets;
+import fr.loria.coronsys.coron.helper.C;
+import fr.loria.coronsys.coron.helper.Global;
+
+/**
+ * Candidate evaluation: intersections (and differences) of the tidsets of the
+ * most frequent attributes, all pairs. One operation = all the pairs.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TidsetBenchmark
+{
+   /**
+    * The tidsets in a representation.
+    */
+   @State(Scope.Benchmark)
+   public static class Tidsets_
+   {
+      /**
+       * Representation of the tidsets (see -tidset:).
+       */
+      @Param({"bitset", "roaring"})
+      public String repr;
+
+      /**
+       * Min. support: 5% of the objects.
+       */
+      public int minSupp;
+
+      public Tidset[] tidsets;
+
+      @Setup(Level.Trial)
+      public void setup(DatasetState ds)
+      {
+         Global.setTidsetRepresentation(this.repr.equals("roaring") ? C.TIDSET_ROARING : C.TIDSET_BITSET);
+         this.minSupp = Math.max(1, ds.lines.length / 20);
+         this.tidsets = new Tidset[ds.frequent.length];
+         for (int i = 0; i < ds.frequent.length; ++i) {
+            this.tidsets[i] = Tidsets.valueOf((BitSet) ds.frequent[i].clone());
+         }
+      }
+   }
+
+   /**
+    * The way before the tidset kernels: clone, and, cardinality.
+    */
+   @Benchmark
+   public void bitSetCloneAnd(DatasetState ds, Blackhole bh)
+   {
+      BitSet[] t = ds.frequent;
+      BitSet and;
+      for (int i = 0; i < t.length; ++i)
+      {
+         for (int j = i + 1; j < t.length; ++j)
+         {
+            and = (BitSet) t[i].clone();
+            and.and(t[j]);
+            bh.consume(and.cardinality());
+         }
+      }
+   }
+
+   @Benchmark
+   public void and(Tidsets_ s, Blackhole bh)
+   {
+      Tidset[] t = s.tidsets;
+      for (int i = 0; i < t.length; ++i)
+         for (int j = i + 1; j < t.length; ++j)
+            bh.consume(t[i].and(t[j]));
+   }
+
+   @Benchmark
+   public void andMinSupp(Tidsets_ s, Blackhole bh)
+   {
+      Tidset[] t = s.tidsets;
+      for (int i = 0; i < t.length; ++i)
+         for (int j = i + 1; j < t.length; ++j)
+            bh.consume(t[i].and(t[j], s.minSupp));
+   }
+
+   @Benchmark
+   public void andCardinality(Tidsets_ s, Blackhole bh)
+   {
+      Tidset[] t = s.tidsets;
+      for (int i = 0; i < t.length; ++i)
+         for (int j = i + 1; j < t.length; ++j)
+            bh.consume(t[i].andCardinality(t[j], s.minSupp));
+   }
+
+   @Benchmark
+   public void andNot(Tidsets_ s, Blackhole bh)
+   {
+      Tidset[] t = s.tidsets;
+      for (int i = 0; i < t.length; ++i)
+         for (int j = i + 1; j < t.length; ++j)
+            bh.consume(t[i].andNot(t[j], t[i].cardinality() - s.minSupp));
+   }
+}
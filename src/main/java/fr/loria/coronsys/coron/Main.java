@@ -4,6 +4,7 @@ import fr.loria.coronsys.coron.algorithm.Algorithm;
 import fr.loria.coronsys.coron.algorithm.DEclat;
 import fr.loria.coronsys.coron.algorithm.DTalkyG;
 import fr.loria.coronsys.coron.algorithm.Eclat1;
+import fr.loria.coronsys.coron.algorithm.IncrementalTalkyG;
 import fr.loria.coronsys.coron.algorithm.Talky;
 import fr.loria.coronsys.coron.algorithm.TalkyG;
 import fr.loria.coronsys.coron.algorithm.TalkyG2;
@@ -14,10 +15,15 @@ import fr.loria.coronsys.coron.helper.Convert;
 import fr.loria.coronsys.coron.helper.Database;
 import fr.loria.coronsys.coron.helper.DemoCoron;
 import fr.loria.coronsys.coron.helper.Error;
+import fr.loria.coronsys.coron.helper.FgState;
 import fr.loria.coronsys.coron.helper.FileFormatHandler;
 import fr.loria.coronsys.coron.helper.Global;
 import fr.loria.coronsys.coron.helper.Memory;
+import fr.loria.coronsys.coron.helper.Metrics;
+import fr.loria.coronsys.coron.helper.PhaseTimer;
+import fr.loria.coronsys.coron.helper.Recoding;
 import fr.loria.coronsys.coron.helper.Statistics;
+import fr.loria.coronsys.coron.helper.VerticalIndex;
 
 /* Abbreviations used:   FCI  -- frequent closed itemset
  *                       FI   -- frequent itemset
@@ -47,6 +53,11 @@ public class Main
     */
    private Algorithm algorithm;
    
+   /**
+    * State of the previous run in an incremental run (-incr), null otherwise.
+    */
+   private FgState fgState;
+   
    /**
     * main() function, entry point.
     * 
@@ -63,13 +74,17 @@ public class Main
 
    /**
     * Running of the program starts here. It controls the whole run of the program.
+    * If the miners are run several times in the same JVM, Reset.reset() must be
+    * called between two runs.
     * 
     * @param args Runtime arguments.
     */
-   private void start(String[] args)
+   public void start(String[] args)
    {
 	   // process arguments (parse, drop error message if malformed)
 	   (new Arguments()).processArguments(args);
+	   // the counters of the miners are collected from here
+	   if (Global.getMetricsFile() != null) Metrics.start();
 	   
 	   if (Global.getExtra().get(C.X_DONT_READ_DATABASE) == false)
 	   {
@@ -77,7 +92,20 @@ public class Main
 		   // let's see the initial memory usage
 		   if (Global.memInfo()) System.err.println("> Memory usage (at the beginning, without gc()): "+Convert.byteToPrettyString((new Memory()).testMemUsage()));
 		   // read input file and get the lines as a vector of bitsets
+		   PhaseTimer.begin(PhaseTimer.READ);
 		   FileFormatHandler.readFile();
+		   // the objects that were read are appended to the objects of the previous run
+		   if (Global.getIncrementalFile() != null)
+		   {
+			   this.fgState = FgState.load(Global.getIncrementalFile());
+			   this.fgState.appendDatabase();
+		   }
+		   PhaseTimer.end();
+		   if (Global.getBuildIndex())
+		   {
+			   VerticalIndex.write();
+			   System.exit(0);
+		   }
 		   // do a post-check on the min_supp
 		   verifyMinSupp();
 		   // do a post-check on the position of the first value in basenum files
@@ -91,6 +119,13 @@ public class Main
 		   // print a little statistics about the input file and minsupport
 		   // just to better imagine with what we are working with
 		   Statistics.printDatabaseStatistics();
+		   // drop the infrequent attributes and renumber the others
+		   if (Global.getRecoding() != C.RECODE_NONE)
+		   {
+			   PhaseTimer.begin(PhaseTimer.RECODE);
+			   Recoding.recode(Global.getRecoding());
+			   PhaseTimer.end();
+		   }
 
 		   startTime = System.currentTimeMillis();	// we'll measure time from here
 		   // start: main part
@@ -100,6 +135,8 @@ public class Main
 
 		   // print runtime if needed
 		   if (Global.getVerbosity().get(C.V_RUNTIME)) Statistics.printRuntime(endTime - startTime);
+		   // write the metrics if needed
+		   if (Global.getMetricsFile() != null) Metrics.writeReport(Global.getMetricsFile());
 	   }
 	   else		// if C.X_DONT_READ_DATABASE is on
 	   {
@@ -107,6 +144,13 @@ public class Main
 	   }
    }
 
+   /**
+    * @return The algorithm of the last run (null before the first run).
+    */
+   public Algorithm getAlgorithm() {
+      return this.algorithm;
+   }
+
    /**
     * This function will call the chosen miner algorithm.
     */
@@ -114,6 +158,15 @@ public class Main
    {
       int value = Global.getAlgorithm();
       
+      if ((Global.getIncrementalFile() != null) || (Global.getSaveFile() != null))
+      {
+         // the Talky-G engines in an incremental run, or if the state is saved
+         IncrementalTalkyG incremental = new IncrementalTalkyG(Database.getDatabase(), Database.getMinSupp(), this.fgState);
+         incremental.start();
+         this.algorithm = incremental;
+         return;
+      }
+      
       switch(value)
       {
 //         case C.ALG_A_CLOSE:
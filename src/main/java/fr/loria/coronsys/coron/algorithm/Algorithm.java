@@ -2,6 +2,7 @@ package fr.loria.coronsys.coron.algorithm;
 
 import fr.loria.coronsys.coron.datastructure.Result;
 import fr.loria.coronsys.coron.datastructure.Result2;
+import fr.loria.coronsys.coron.helper.ResultSink;
 
 /** 
  * All algorithms need to implement this interface to ensure
@@ -29,6 +30,13 @@ public interface Algorithm
     * Suppress stdout.
     */
    void setToNull();
+   
+   /**
+    * The patterns are given to this sink instead of stdout.
+    * 
+    * @param sink The sink of the caller. It's closed at the end.
+    */
+   void setSink(ResultSink sink);
 
    /**
     * How many FIs were found?
@@ -43,4 +51,11 @@ public interface Algorithm
     * @return Number of found FCIs.
     */
    long getFciCnt();
+
+   /**
+    * How many FGs were found?
+    * 
+    * @return Number of found FGs.
+    */
+   long getFgCnt();
 }
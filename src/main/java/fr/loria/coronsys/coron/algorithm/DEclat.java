@@ -8,9 +8,11 @@ import java.util.Vector;
 import fr.loria.coronsys.coron.datastructure.Result;
 import fr.loria.coronsys.coron.datastructure.Result2;
 import fr.loria.coronsys.coron.datastructure.Row;
+import fr.loria.coronsys.coron.datastructure.charm.AdaptiveExtent;
 import fr.loria.coronsys.coron.datastructure.charm.CharmExtra;
 import fr.loria.coronsys.coron.datastructure.charm.ITnode;
 import fr.loria.coronsys.coron.datastructure.charm.ITtree;
+import fr.loria.coronsys.coron.datastructure.tidset.Tidset;
 import fr.loria.coronsys.coron.datastructure.universal.Row_Universal_F;
 import fr.loria.coronsys.coron.helper.C;
 import fr.loria.coronsys.coron.helper.Convert;
@@ -18,7 +20,11 @@ import fr.loria.coronsys.coron.helper.Database;
 import fr.loria.coronsys.coron.helper.DemoCoron;
 import fr.loria.coronsys.coron.helper.Global;
 import fr.loria.coronsys.coron.helper.Memory;
+import fr.loria.coronsys.coron.helper.Metrics;
+import fr.loria.coronsys.coron.helper.PhaseTimer;
+import fr.loria.coronsys.coron.helper.ResultSink;
 import fr.loria.coronsys.coron.helper.Statistics;
+import fr.loria.coronsys.coron.helper.TextResultSink;
 
 /** 
  * Controller class.
@@ -124,6 +130,21 @@ implements Algorithm
     */
    private boolean toNull;
    
+   /**
+    * The patterns are written out through this (null if the -null option is set).
+    */
+   private ResultSink sink;
+   
+   /**
+    * The sink was given by the caller (see setSink()), nothing is printed on stdout.
+    */
+   private boolean embedded;
+   
+   /**
+    * Does each node choose between tidset and diffset (-adaptive)?
+    */
+   private boolean adaptive;
+   
    //private long treeMaxSize;
    
    /**
@@ -153,6 +174,8 @@ implements Algorithm
       this.rareCand    = 0;
       this.largestAttr = Database.getTotalNumberOfAttr();
       this.toNull      = Global.getExtra().get(C.X_CORON_NULL);
+      this.embedded    = false;
+      this.adaptive    = Global.getAdaptive();
    }
 
    /**
@@ -161,8 +184,11 @@ implements Algorithm
    public void start()
    {
       if (Global.memInfo()) System.err.println("> Memory usage (after reading the dataset horizontally, without gc()): "+Convert.byteToPrettyString(this.memory.testMemUsage()));
+      PhaseTimer.begin(PhaseTimer.VERTICAL);
       CharmExtra charmExtra = new CharmExtra(this.database, this.min_supp);
+      PhaseTimer.begin(PhaseTimer.F2);
       this.f2Matrix = charmExtra.getF2Matrix();
+      PhaseTimer.begin(PhaseTimer.VERTICAL);
       this.database = charmExtra.convertDBHorizontal2Vertical();
       charmExtra = null;	// not needed anymore
       if (Global.memInfo()) System.err.println("> Memory usage (after finding F_2 and converting vertically, with gc()): "+Convert.byteToPrettyString(this.memory.getGCMemUsage()));
@@ -173,6 +199,8 @@ implements Algorithm
       ITnode child;
       Vector rootChildren;
       
+      PhaseTimer.begin(PhaseTimer.SEARCH);
+      if ((this.toNull == false) && (this.embedded == false)) this.sink = new TextResultSink(this.text);
       initItTree();
       //debug();
       if (Global.followFunctions()) System.err.println("> Searching for frequent itemesets...");
@@ -196,10 +224,15 @@ implements Algorithm
       if (Global.memInfo()) System.err.println("> Memory usage (after finding all FCIs and deleting the IT-tree and the F_2 matrix, with gc()): "+Convert.byteToPrettyString(this.memory.getGCMemUsage()));      
       if (Global.memInfo()) System.err.println("> Memory usage (after deleting everything, with gc()): "+Convert.byteToPrettyString(this.memory.getGCMemUsage()));
       if (this.toNull==false) 
+      {
+         this.sink.close();
+      }
+      if ((this.toNull == false) && (this.embedded == false))
       {
          System.out.println();
          System.out.println("# FIs: "+Convert.byteToPrettyString(this.fiCnt));
       }
+      PhaseTimer.end();
       if (Global.followFunctions()) {
          System.err.println("> Skipped infrequent 2-itemsets: "+Convert.byteToPrettyString(this.skipCnt));
          System.err.println("> Deleted infrequent candidates: "+Convert.byteToPrettyString(this.rareCand));
@@ -256,6 +289,7 @@ implements Algorithm
    {
       BitSet intent1 = curr.getIntent(),
              intent2 = other.getIntent();
+      Metrics.count(Metrics.CANDIDATES, curr.getLevel() + 1);
       if ((intent1.cardinality()==1) && (intent2.cardinality()==1)) 		// if we are at level 1
       {
          int a = intent1.nextSetBit(0),
@@ -263,11 +297,28 @@ implements Algorithm
          //System.err.println(">>> "+min+", "+max);
          if (this.f2Matrix[Math.min(a,b)][this.largestAttr - Math.max(a,b)] < this.min_supp)
          {
+            Metrics.count(Metrics.PRUNED_F2, 2);
             ++this.skipCnt;
             return null;
          }
       }
       
+      if (this.adaptive)
+      {
+         // each node stores a tidset or a diffset, whichever is smaller
+         ITnode candidate = AdaptiveExtent.join(this.itTree, curr, other, this.min_supp);
+         if (candidate == null)
+         {
+            Metrics.count(Metrics.PRUNED_SUPPORT, curr.getLevel() + 1);
+            ++this.rareCand;
+            return null;
+         }
+         BitSet cand_intent = (BitSet) intent1.clone();
+            cand_intent.or(intent2);
+         candidate.setIntent(cand_intent);
+         return candidate;
+      }
+      
       /* 
        * we get here if:
        * 1) we are at level 1 AND the candidate (which will be at level 2) is surely frequent; or
@@ -282,28 +333,30 @@ implements Algorithm
        * diffset of the child (candidate) is: diffset of other minus diffset of curr
        */
       int supp;
-      BitSet cand_extent;           // cand_extent is actually the candidate's diffset
+      Tidset cand_extent;           // cand_extent is actually the candidate's diffset
+      // the diffset is created only if the candidate is frequent, i.e. if it has at most maxDiff tids
+      int maxDiff = curr.getSupp() - this.min_supp;
       if (curr.getLevel() == 1) 
       {  
-         cand_extent = (BitSet) curr.getExtent().clone();
-         cand_extent.andNot(other.getExtent());
+         cand_extent = curr.getExtent().andNot(other.getExtent(), maxDiff);
       }
       else // if (curr.getLevel() > 1)
       {
          // here curr and other have diffsets (not tidsets!)
-         cand_extent = (BitSet) other.getExtent().clone();
-         cand_extent.andNot(curr.getExtent());
+         cand_extent = other.getExtent().andNot(curr.getExtent(), maxDiff);
       }
       
       /*
        * the support of the candidate: supp(PXY) = supp(PX) - |d(PXY)|, i.e.
        * support of curr minus the cardinality of the candidate's diffset
        */
-      if ((supp = curr.getSupp() - cand_extent.cardinality()) < this.min_supp)
+      if (cand_extent == null)
       {
+         Metrics.count(Metrics.PRUNED_SUPPORT, curr.getLevel() + 1);
          ++this.rareCand;
          return null;
       }
+      supp = curr.getSupp() - cand_extent.cardinality();
       // else, if it's surely frequent 
       BitSet cand_intent = (BitSet) intent1.clone();     // make
       	cand_intent.or(intent2);                         // union
@@ -323,6 +376,7 @@ implements Algorithm
     */
    private void save(ITnode node)
    {
+      Metrics.count(Metrics.PATTERNS, node.getLevel());
       /*
        * Do we want to save FIs in the memory? AssRuleX may need it for instance.
        */
@@ -335,8 +389,7 @@ implements Algorithm
       // if printing the result is not suppressed
       if (this.toNull==false) 
       {
-         if (this.text) System.out.println(node.toStringName());
-         else           System.out.println(node);
+         this.sink.add(node.getIntent(), node.getSupp());
       }
       
       ++this.fiCnt;        // we found one more FI
@@ -350,13 +403,20 @@ implements Algorithm
    {
       BitSet set;
       ITnode root = this.itTree.getRoot();
+      ITnode node;
       Vector db = Database.getDatabase(); 
       int size = db.size();
+      int nbTids = Database.getNumberOfTids();
       
       for (int i = 0; i < size; ++i)
       {
          set = (BitSet) db.get(i);
-         if (set.cardinality() >= this.min_supp) root.addChild(new ITnode(this.itTree, i, set));
+         if (Database.getSupport(set) >= this.min_supp) 
+         {
+            node = new ITnode(this.itTree, i, set);
+            if (this.adaptive) AdaptiveExtent.initNode(node, set, nbTids);
+            root.addChild(node);
+         }
       }
       Database.freeDatabase();		// delete the vertical representation, not needed anymore
       root.sortChildren();
@@ -411,6 +471,16 @@ implements Algorithm
       return 0;
    }
 
+   /**
+    * Get the number of FGs.
+    * Since Eclat finds FIs, this function has no sense.
+    * 
+    * @return Number of FGs.
+    */
+   public long getFgCnt() {
+      return 0;
+   }
+
    /**
     * Get the Result2 object. Needed for AssRuleX.
     * 
@@ -428,6 +498,19 @@ implements Algorithm
       Global.getExtra().set(C.X_CORON_NULL);
       this.toNull = true;
    }
+
+   /**
+    * The patterns are given to the sink instead of being printed on stdout
+    * (see the Miner API). The sink is closed at the end of the search.
+    * 
+    * @param sink The sink of the caller.
+    */
+   public void setSink(ResultSink sink)
+   {
+      this.sink     = sink;
+      this.toNull   = false;
+      this.embedded = true;
+   }
    
    /**
     * It is called from AssRuleX. It sets to save F tables in memory.
@@ -0,0 +1,592 @@
+package fr.loria.coronsys.coron.algorithm;
+
+import java.util.BitSet;
+import java.util.Vector;
+
+import fr.loria.coronsys.coron.datastructure.Result;
+import fr.loria.coronsys.coron.datastructure.Result2;
+import fr.loria.coronsys.coron.datastructure.charm.CharmExtra;
+import fr.loria.coronsys.coron.datastructure.charm.HashElem;
+import fr.loria.coronsys.coron.datastructure.charm.ITnode;
+import fr.loria.coronsys.coron.datastructure.charm.ITtree;
+import fr.loria.coronsys.coron.datastructure.charm.ZobristFgMap;
+import fr.loria.coronsys.coron.datastructure.tidset.Tidset;
+import fr.loria.coronsys.coron.datastructure.tidset.Tidsets;
+import fr.loria.coronsys.coron.helper.C;
+import fr.loria.coronsys.coron.helper.Convert;
+import fr.loria.coronsys.coron.helper.Database;
+import fr.loria.coronsys.coron.helper.FgState;
+import fr.loria.coronsys.coron.helper.Global;
+import fr.loria.coronsys.coron.helper.Metrics;
+import fr.loria.coronsys.coron.helper.PhaseTimer;
+import fr.loria.coronsys.coron.helper.ResultSink;
+import fr.loria.coronsys.coron.helper.Statistics;
+import fr.loria.coronsys.coron.helper.TextResultSink;
+
+/**
+ * Incremental Talky-G (switches -incr and -save).
+ *
+ * The FGs of a previous run (see FgState) are updated after new objects were
+ * appended to the dataset. The IT-tree is the same as in Talky-G v2 and it is
+ * traversed in the same order, thus the output is the same as the output of
+ * a full run on all the objects. But a node stores only the tidset of its
+ * itemset among the new objects, and the support of a candidate (whose
+ * one-size smaller subsets are FGs) is its old support plus the number of
+ * its new tids. The old support is known:
+ *
+ * - if the candidate was an FG or a rare candidate in the previous run (they
+ *   are stored in the state with their supports);
+ * - else, if its one-size smaller subsets were FGs in the previous run, then
+ *   it was frequent and not a generator, thus its old support is the smallest
+ *   old support of these subsets.
+ *
+ * Only the other candidates (a subset of them became an FG with the new
+ * objects) are counted on all the objects.
+ *
+ * It needs that the min. support is not lower than in the previous run.
+ * Without -incr the previous run is empty, i.e. all the FGs are mined. With
+ * -save the new state is written for the next run.
+ */
+public class IncrementalTalkyG
+implements Algorithm
+{
+   /**
+    * The dataset (all the objects).
+    */
+   private Vector<BitSet> database;
+
+   /**
+    * Min. support as an integer number.
+    */
+   private int min_supp;
+
+   /**
+    * We'll access the final result (list of FGs) through this object.
+    */
+   private Result result;
+
+   /**
+    * Number of FGs.
+    */
+   private int fgCnt;
+
+   /**
+    * The IT-tree that we use for finding FGs.
+    */
+   private ITtree itTree;
+
+   /**
+    * Do you want to get the result in text?
+    * Default: attribute numbers (not attribute names).
+    */
+   private boolean text;
+
+   /**
+    * Number of deleted infrequent candidates.
+    */
+   private long rareCand;
+
+   /**
+    * Number of candidates whose support was counted on all the objects.
+    */
+   private long countCnt;
+
+   /**
+    * Is there a full column in the input dataset?
+    * If there is, the empty set is a useful FG.
+    */
+   private boolean fullColumn;
+
+   /**
+    * Number of objects (old and new ones).
+    */
+   private int databaseSize;
+
+   /**
+    * Number of objects in the previous run. The new objects come after them.
+    */
+   private int oldObjects;
+
+   /**
+    * Is the suppression of stdout on? I.e.: is the -null option set?
+    */
+   private boolean toNull;
+
+   /**
+    * The patterns are written out through this (null if the -null option is set).
+    */
+   private ResultSink sink;
+   
+   /**
+    * The sink was given by the caller (see setSink()), nothing is printed on stdout.
+    */
+   private boolean embedded;
+
+   /**
+    * The FGs of the previous run with their supports.
+    */
+   private ZobristFgMap oldFgs;
+
+   /**
+    * The FGs found in this run with their supports.
+    */
+   private ZobristFgMap fgs;
+
+   /**
+    * The rare candidates of the previous run with their supports.
+    */
+   private ZobristFgMap oldRare;
+
+   /**
+    * Position i: tidset of attribute i (all the objects), null if the attribute is rare.
+    */
+   private Tidset[] extents;
+
+   /**
+    * The FGs of this run, they are collected if the state is saved (-save). Null otherwise.
+    */
+   private Vector<HashElem> found;
+
+   /**
+    * The rare candidates of this run, they are collected if the state is saved (-save). Null otherwise.
+    */
+   private Vector<HashElem> rare;
+
+   /**
+    * Constructor.
+    *
+    * @param database The dataset (all the objects).
+    * @param min_supp Min. support as integer.
+    * @param state The state of the previous run (null, if there was no previous run).
+    */
+   public IncrementalTalkyG(Vector<BitSet> database, int min_supp, FgState state)
+   {
+      this.database           = database;
+      this.min_supp           = min_supp;
+      this.result             = new Result();
+      this.fgCnt              = 0;
+      this.itTree	            = new ITtree(C.ALG_TALKY_G);
+      this.text		         = Global.getExtra().get(C.X_LETTERS);
+      this.rareCand           = 0;
+      this.countCnt           = 0;
+      this.databaseSize       = Database.getNumberOfObjects();
+      this.oldObjects         = (state == null) ? 0 : state.getNumberOfObjects();
+      this.fullColumn         = false;
+      this.toNull             = Global.getExtra().get(C.X_CORON_NULL);
+      this.embedded           = false;
+      this.found              = (Global.getSaveFile() == null) ? null : new Vector<HashElem>();
+      this.rare               = (Global.getSaveFile() == null) ? null : new Vector<HashElem>();
+      //
+      this.oldFgs = new ZobristFgMap(Database.getTotalNumberOfAttr());
+      this.oldRare = new ZobristFgMap(Database.getTotalNumberOfAttr());
+      if (state != null)
+      {
+         for (HashElem fg : state.getFgs()) {
+            this.oldFgs.put(fg.getIntent(), fg.getSupp());
+         }
+         for (HashElem cand : state.getRare()) {
+            this.oldRare.put(cand.getIntent(), cand.getSupp());
+         }
+      }
+      // the empty set is an FG; by def. it's support is 100%
+      this.fgs = new ZobristFgMap(Database.getTotalNumberOfAttr());
+      this.fgs.put(new BitSet(), this.databaseSize);
+   }
+
+   /**
+    * Controller function.
+    */
+   public void start()
+   {
+      PhaseTimer.begin(PhaseTimer.VERTICAL);
+      CharmExtra charmExtra = new CharmExtra(this.database, this.min_supp);
+      this.database = charmExtra.convertDBHorizontal2Vertical();
+      charmExtra = null;	// not needed anymore
+
+      ITnode root = this.itTree.getRoot();
+      ITnode child;
+      Vector<ITnode> rootChildren;
+      int size, pos;
+
+      PhaseTimer.begin(PhaseTimer.SEARCH);
+      if ((this.toNull == false) && (this.embedded == false)) this.sink = new TextResultSink(this.text);
+      initItTree();
+      if (this.fullColumn)  // then the empty set is a useful frequent generator
+      {
+         saveFg(root);
+      }
+      if (Global.followFunctions()) System.err.println("> Updating the FGs ("+Convert.byteToPrettyString(this.oldObjects)+" old objects)...");
+      long startTime = System.currentTimeMillis();
+
+      rootChildren = root.getChildren();
+      size = rootChildren.size();
+      for (pos = size - 1; pos >= 0; --pos)          // traversal from right-to-left
+      {
+         child = rootChildren.get(pos);
+         saveFg(child);
+         extend(child, pos);
+      }
+
+      {
+         // free the IT-tree
+         root.deleteChildren();
+         this.itTree = null;
+      }
+
+      if (Global.followFunctions()) {
+         System.err.print("> Updating the FGs done. ");
+         System.err.println("Elapsed time: "+Statistics.getRuntime(System.currentTimeMillis() - startTime)+" sec.");
+      }
+
+      if (this.found != null) {
+         (new FgState(this.databaseSize, this.min_supp, this.database, this.found, this.rare)).save(Global.getSaveFile());
+      }
+      if (this.toNull==false)
+      {
+         this.sink.close();
+      }
+      if ((this.toNull == false) && (this.embedded == false))
+      {
+         System.out.println();
+         System.out.println("# FGs: "+Convert.byteToPrettyString(this.fgCnt));
+         if (this.fullColumn)
+            System.out.println("# There IS a full column in the input dataset.");
+         else
+            System.out.println("# There is NO full column in the input dataset.");
+      }
+      PhaseTimer.end();
+      if (Global.followFunctions()) {
+         System.err.println("> Deleted infrequent candidates: "+Convert.byteToPrettyString(this.rareCand));
+         System.err.println("> Candidates counted on all the objects: "+Convert.byteToPrettyString(this.countCnt));
+      }
+   }
+
+   /**
+    * Extends a node in the IT-tree.
+    *
+    * @param curr The node that we want to extend.
+    * @param currPos Index position of the current node. It is used
+    * to access its brothers on its right side.
+    */
+   private void extend(ITnode curr, final int currPos)
+   {
+      Vector<ITnode> currVector;
+      Vector<ITnode> childrenVector;
+      int sizeCurrV;
+      int sizeChildrenV;
+      ITnode other, generator, child;
+
+      currVector = curr.getContainer();
+      sizeCurrV = currVector.size();
+      for (int posOther = currPos + 1; posOther < sizeCurrV; ++posOther)
+      {
+         other = currVector.get(posOther);
+
+         generator = getNextGenerator(curr, other);
+         if (generator != null)
+            curr.addChild(generator);
+      }
+      curr.sortChildren();
+
+      childrenVector = curr.getChildren();
+      sizeChildrenV = childrenVector.size();
+      for (int posChild = sizeChildrenV - 1; posChild >= 0; --posChild)
+      {
+         child = childrenVector.get(posChild);
+         saveFg(child);
+         extend(child, posChild);
+      }
+      // free memory
+      curr.deleteChildren();
+   }
+
+   /**
+    * Creates a new frequent generator or returns null.
+    *
+    * @param curr Current node.
+    * @param other The other node.
+    * @return Null, if the candidate is not an FG. Otherwise it
+    * returns a frequent generator produced from the two nodes.
+    */
+   private ITnode getNextGenerator(ITnode curr, ITnode other)
+   {
+      Metrics.count(Metrics.CANDIDATES, curr.getLevel() + 1);
+      BitSet cand_intent = (BitSet) curr.getIntent().clone();
+      	cand_intent.or(other.getIntent());
+      if (candHasANonFgSubset(cand_intent)) {
+         Metrics.count(Metrics.PRUNED_GENERATOR, curr.getLevel() + 1);
+         return null;
+      }
+      // the tids of the candidate among the new objects
+      Tidset cand_extent = curr.getExtent().and(other.getExtent());
+      int supp = getOldSupport(cand_intent);
+
+      if (supp != ZobristFgMap.NOT_FOUND) {
+         supp += cand_extent.cardinality();
+      }
+      else {
+         supp = countSupport(cand_intent);
+      }
+      if (supp < this.min_supp)
+      {
+         Metrics.count(Metrics.PRUNED_SUPPORT, curr.getLevel() + 1);
+         ++this.rareCand;
+         if (this.rare != null) {
+            this.rare.add(new HashElem(cand_intent, supp));
+         }
+         return null;
+      }
+
+      // check if it's surely not generator
+      if ((supp == curr.getSupp()) || (supp == other.getSupp()))
+      {
+         // it's not a generator because it has
+         // a proper subset with the same support
+         Metrics.count(Metrics.PRUNED_GENERATOR, curr.getLevel() + 1);
+         return null;
+      }
+      if (candSubsumesAnFg(cand_intent, supp)) {
+         Metrics.count(Metrics.PRUNED_GENERATOR, curr.getLevel() + 1);
+         return null;
+      }
+
+      // else, if it's really a generator
+      ITnode cand = new ITnode(itTree);   // "cand" like candidate
+      cand.setIntent(cand_intent);
+      cand.setExtent(cand_extent);
+      cand.setSupp(supp);
+      return cand;
+   }
+
+   /**
+    * @param cand_intent Intent of an FG candidate.
+    * @return True if cand has a one-size smaller subset that is not an FG,
+    * i.e. cand is neither an FG nor a rare candidate. False, otherwise.
+    */
+   private boolean candHasANonFgSubset(BitSet cand_intent)
+   {
+      long key = this.fgs.keyOf(cand_intent);
+
+      for (int i = cand_intent.nextSetBit(0); i >= 0; i = cand_intent.nextSetBit(i+1))
+      {
+         if (this.fgs.getSubset(cand_intent, key, i) == ZobristFgMap.NOT_FOUND) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Support of a candidate in the previous run, if it's known without counting.
+    *
+    * @param cand_intent Intent of a candidate whose one-size smaller subsets are FGs.
+    * @return Support of the candidate among the old objects, or ZobristFgMap.NOT_FOUND
+    * if it must be counted.
+    */
+   private int getOldSupport(BitSet cand_intent)
+   {
+      int supp = this.oldFgs.get(cand_intent);
+      if (supp != ZobristFgMap.NOT_FOUND) return supp;
+      // else
+      supp = this.oldRare.get(cand_intent);
+      if (supp != ZobristFgMap.NOT_FOUND) return supp;
+      // else, if its subsets were FGs, then it was frequent and not a generator
+      long key = this.oldFgs.keyOf(cand_intent);
+      int stored;
+
+      supp = Integer.MAX_VALUE;
+      for (int i = cand_intent.nextSetBit(0); i >= 0; i = cand_intent.nextSetBit(i+1))
+      {
+         stored = this.oldFgs.getSubset(cand_intent, key, i);
+         if (stored == ZobristFgMap.NOT_FOUND) return ZobristFgMap.NOT_FOUND;
+         // else
+         supp = Math.min(supp, stored);
+      }
+      return supp;
+   }
+
+   /**
+    * Counts the support of an itemset on all the objects. If the state is
+    * saved, the support of a rare itemset is needed too.
+    *
+    * @param intent An itemset of frequent attributes.
+    * @return Support of the itemset, or -1 if it's rare (and the state is not saved).
+    */
+   private int countSupport(BitSet intent)
+   {
+      ++this.countCnt;
+      int attr = intent.nextSetBit(0);
+      int minCard = (this.rare == null) ? this.min_supp : 0;
+      Tidset tids = this.extents[attr];
+
+      for (attr = intent.nextSetBit(attr+1); attr >= 0; attr = intent.nextSetBit(attr+1))
+      {
+         tids = tids.and(this.extents[attr], minCard);
+         if (tids == null) return -1;
+      }
+      return tids.cardinality();
+   }
+
+   /**
+    * Checks the one-size smaller subsets of an FG candidate (see TalkyG2).
+    * They are all FGs (see candHasANonFgSubset()).
+    *
+    * @param cand_intent Intent of an FG candidate.
+    * @param cand_supp Support of the FG candidate.
+    * @return True if cand has a subset with the same support, i.e. cand is not
+    * an FG. False, otherwise.
+    */
+   private boolean candSubsumesAnFg(BitSet cand_intent, int cand_supp)
+   {
+      long key = this.fgs.keyOf(cand_intent);
+
+      for (int i = cand_intent.nextSetBit(0); i >= 0; i = cand_intent.nextSetBit(i+1))
+      {
+         if (this.fgs.getSubset(cand_intent, key, i) == cand_supp) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Save the node before deleting from memory. The node represents an FG.
+    *
+    * @param node The node (FG) that we want to save.
+    */
+   private void saveFg(ITnode node)
+   {
+      Metrics.count(Metrics.PATTERNS, node.getLevel());
+      this.fgs.put(node.getIntent(), node.getSupp());
+      if (this.found != null) {
+         this.found.add(new HashElem(node.getIntent(), node.getSupp()));
+      }
+      ++this.fgCnt;
+
+      // if printing the result is not suppressed
+      if (this.toNull==false)
+      {
+         this.sink.add(node.getIntent(), node.getSupp());
+      }
+   }
+
+   /**
+    * Initialization of the IT-tree.
+    * Create root node + add frequent one-size attributes to level 1.
+    * A node gets the tidset of its attribute among the new objects.
+    */
+   private void initItTree()
+   {
+      BitSet set;
+      ITnode root = this.itTree.getRoot();
+      ITnode node;
+      BitSet intent;
+      Vector<BitSet> db = Database.getDatabase();
+      int size = db.size();
+      int card;
+
+      this.extents = new Tidset[size];
+      // tids of the new objects, relative to the first new object
+      root.setExtent(this.newTids(this.getAllTids()));
+      for (int i = 1; i < size; ++i)
+      {
+         set = db.get(i);
+         card = set.cardinality();
+         if (card >= this.min_supp) this.extents[i] = Tidsets.valueOf(set);
+         // if it's frequent AND key (if card == this.databaseSize, then its key is the empty set)
+         if ((card >= this.min_supp) && (card < this.databaseSize))
+         {
+            intent = new BitSet();
+            intent.set(i);
+            node = new ITnode(this.itTree);
+            node.setIntent(intent);
+            node.setExtent(this.newTids(set));
+            node.setSupp(card);
+            root.addChild(node);
+         }
+         if (card == this.databaseSize) this.fullColumn = true;
+      }
+      root.sortChildren();
+   }
+
+   /**
+    * @return Tidset of all the objects.
+    */
+   private BitSet getAllTids()
+   {
+      BitSet all = new BitSet();
+      all.set(1, this.databaseSize + 1);
+      return all;
+   }
+
+   /**
+    * @param tids Tids of all the objects.
+    * @return The tids of the new objects (relative to the first new object).
+    */
+   private BitSet newTids(BitSet tids) {
+      return tids.get(this.oldObjects + 1, this.databaseSize + 1);
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.algorithm.Algorithm#getResult()
+    */
+   public Result getResult() {
+      return this.result;
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.algorithm.Algorithm#getResult2()
+    */
+   public Result2 getResult2() {
+      return null;
+   }
+
+   /**
+    * It sets to suppress output to >/dev/null, i.e. no output to stdout.
+    */
+   public void setToNull()
+   {
+      Global.getExtra().set(C.X_CORON_NULL);
+      this.toNull = true;
+   }
+
+   /**
+    * The patterns are given to the sink instead of being printed on stdout
+    * (see the Miner API). The sink is closed at the end of the search.
+    * 
+    * @param sink The sink of the caller.
+    */
+   public void setSink(ResultSink sink)
+   {
+      this.sink     = sink;
+      this.toNull   = false;
+      this.embedded = true;
+   }
+
+   /**
+    * Get the number of FIs. Not known, we only find FGs.
+    *
+    * @return Number of FIs. Not known, we only find FGs.
+    */
+   public long getFiCnt() {
+      return (-1);
+   }
+
+   /**
+    * Get the number of FCIs. Not known, we only find FGs.
+    *
+    * @return Number of FCIs.
+    */
+   public long getFciCnt() {
+      return 0;
+   }
+
+   /**
+    * Get the number of FGs.
+    *
+    * @return Number of FGs.
+    */
+   public long getFgCnt() {
+      return this.fgCnt;
+   }
+}
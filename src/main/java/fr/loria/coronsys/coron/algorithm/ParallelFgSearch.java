@@ -0,0 +1,267 @@
+package fr.loria.coronsys.coron.algorithm;
+
+import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import fr.loria.coronsys.coron.datastructure.charm.FgBranch;
+import fr.loria.coronsys.coron.datastructure.charm.FgElem;
+import fr.loria.coronsys.coron.datastructure.charm.ITnode;
+import fr.loria.coronsys.coron.helper.Context;
+import fr.loria.coronsys.coron.helper.ResultSink;
+
+/**
+ * Parallel search of FGs for Talky-G and its variants (switch -threads:N).
+ *
+ * The direct children of the root (prefix equivalence classes) are explored
+ * as fork-join tasks. Inside a task, the children of a node with at least
+ * FORK_THRESHOLD children (a large sub-equivalence class) are forked again,
+ * each child in its own task and sub-branch (see fork()), if the worker
+ * doesn't have enough queued tasks yet. Thus idle workers can steal the
+ * parts of a large branch.
+ *
+ * Talky-G relies on the reverse pre-order traversal: when a candidate is
+ * tested, all its subsets were already found. It remains true for subsets in
+ * the same branch, but a subset in another branch may not be ready yet. Thus
+ * the search is done in two passes:
+ *
+ * (1) Each branch is explored in parallel. A candidate is only dropped if the
+ *     FG store proves that it's not an FG. Potential FGs of a branch are collected
+ *     in an FgBranch object.
+ * (2) A potential FG is verified against the store when all the branches on
+ *     the right of its branch (in the order of the root's children) and its
+ *     own branch are finished: then all the FGs that come before it in the
+ *     single-threaded run are in the store.
+ *
+ * The verified branches are printed from right to left, i.e. in the same order
+ * as in the single-threaded run, and freed, while the branches on the left
+ * are still running.
+ *
+ * If the job is cancelled (see Context.cancel()), the branches stop at their
+ * next check, and run() throws a CancellationException.
+ */
+abstract class ParallelFgSearch
+{
+   /**
+    * The children of a node are forked if there are at least this many of them.
+    */
+   private final static int FORK_THRESHOLD = 8;
+
+   /**
+    * The children of a node are not forked if the worker has more queued
+    * tasks than this (they are enough for the idle workers).
+    */
+   private final static int MAX_SURPLUS = 2;
+
+   /**
+    * Number of worker threads.
+    */
+   private int threads;
+
+   /**
+    * Number of skipped infrequent 2-itemsets (sum over all branches).
+    */
+   private long skipCnt;
+
+   /**
+    * Number of deleted infrequent candidates (sum over all branches).
+    */
+   private long rareCand;
+
+   /**
+    * Constructor.
+    *
+    * @param threads Number of worker threads.
+    */
+   ParallelFgSearch(int threads)
+   {
+      this.threads  = threads;
+      this.skipCnt  = 0;
+      this.rareCand = 0;
+   }
+
+   /**
+    * Explores a node (save it, then extend it) in its branch: a direct child
+    * of the root, or a child of a forked node. Called from a worker thread.
+    *
+    * @param child The node.
+    * @param pos Position of the node among its brothers.
+    * @param branch The branch that collects the FGs of the node.
+    */
+   protected abstract void explore(ITnode child, int pos, FgBranch branch);
+
+   /**
+    * Verifies a potential FG against the FG store.
+    * Called from a worker thread.
+    *
+    * @param elem A potential FG.
+    * @return True, if elem is really an FG.
+    */
+   protected abstract boolean isGenerator(FgElem elem);
+
+   /**
+    * Should the children of a node be forked? Called by extend() in a worker thread.
+    *
+    * @param children Number of children of the node.
+    * @return True, if the children are worth forking (see fork()).
+    */
+   boolean shouldFork(int children) {
+      return (children >= FORK_THRESHOLD) && (ForkJoinTask.getSurplusQueuedTaskCount() <= MAX_SURPLUS);
+   }
+
+   /**
+    * Explores the children of a node, each in its own task and sub-branch
+    * (see explore()); the sub-branches are created from right to left, like
+    * the order of the single-threaded run. Returns when all of them are
+    * finished. Called by extend() instead of its loop on the children.
+    *
+    * @param children The children of a node.
+    * @param branch The branch of the node.
+    */
+   void fork(Vector<ITnode> children, FgBranch branch)
+   {
+      Vector<RecursiveAction> tasks = new Vector<RecursiveAction>();
+      for (int pos = children.size() - 1; pos >= 0; --pos)
+      {
+         final int p = pos;
+         final ITnode child = children.get(p);
+         final FgBranch sub = branch.fork(child.getIntent());
+         tasks.add(new RecursiveAction() {
+            protected void compute() {
+               explore(child, p, sub);
+            }
+         });
+      }
+      ForkJoinTask.invokeAll(tasks);
+   }
+
+   /**
+    * Searches for FGs in parallel.
+    *
+    * @param rootChildren The direct children of the root.
+    * @param sink The FGs are written out through this (null if printing the result is suppressed).
+    * @return Number of FGs found below the root.
+    */
+   public int run(final Vector<ITnode> rootChildren, ResultSink sink)
+   {
+      final int size = rootChildren.size();
+      final FgBranch[] branches = new FgBranch[size];
+      ForkJoinTask<?>[] explored = new ForkJoinTask<?>[size];
+      ForkJoinTask<?>[] verified = new ForkJoinTask<?>[size];
+      ForkJoinPool pool = Context.newPool(this.threads);
+      int next = size - 1;     // the next branch to print
+      int fgCnt = 0;
+
+      try
+      {
+         /*
+          * pass 1: explore the branches; the tasks are submitted from right to left,
+          * thus most of the time the branches on the right are finished first (as in
+          * the single-threaded run)
+          */
+         for (int pos = size - 1; pos >= 0; --pos)
+         {
+            final int p = pos;
+            final ITnode child = rootChildren.get(p);
+            branches[p] = new FgBranch(child.getIntent());
+            explored[p] = pool.submit(new RecursiveAction() {
+               protected void compute() {
+                  explore(child, p, branches[p]);
+               }
+            });
+         }
+
+         // pass 2: verify a branch when it's finished with the branches on its right
+         for (int pos = size - 1; pos >= 0; --pos)
+         {
+            explored[pos].join();
+            explored[pos] = null;
+            final FgBranch branch = branches[pos];
+            verified[pos] = pool.submit(new RecursiveAction() {
+               protected void compute() {
+                  verify(branch);
+               }
+            });
+            // print the verified branches (in order) while the others are running
+            for (; (next >= 0) && (verified[next] != null) && verified[next].isDone(); --next) {
+               fgCnt += this.write(branches, verified, next, sink);
+            }
+         }
+         for (; next >= 0; --next) {
+            fgCnt += this.write(branches, verified, next, sink);
+         }
+      }
+      finally {
+         pool.shutdown();
+      }
+
+      return fgCnt;
+   }
+
+   /**
+    * Prints a verified branch and frees it.
+    *
+    * @param branches The branches.
+    * @param verified The verification tasks of the branches.
+    * @param pos Position of the branch.
+    * @param sink The FGs are written out through this (null if printing the result is suppressed).
+    * @return Number of FGs of the branch.
+    */
+   private int write(FgBranch[] branches, ForkJoinTask<?>[] verified, int pos, ResultSink sink)
+   {
+      verified[pos].join();
+      FgBranch branch = branches[pos];
+      this.skipCnt  += branch.getSkipCnt();
+      this.rareCand += branch.getRareCand();
+      int fgCnt = branch.writeTo(sink);
+      branches[pos] = null;
+      verified[pos] = null;
+      return fgCnt;
+   }
+
+   /**
+    * Keeps the real FGs of a branch and of its sub-branches, in their original order.
+    *
+    * @param branch A branch whose exploration is finished.
+    */
+   private void verify(FgBranch branch)
+   {
+      Context.checkCancelled();
+      Vector<RecursiveAction> tasks = new Vector<RecursiveAction>();
+      for (final FgBranch sub : branch.getSubBranches())
+      {
+         RecursiveAction task = new RecursiveAction() {
+            protected void compute() {
+               verify(sub);
+            }
+         };
+         task.fork();
+         tasks.add(task);
+      }
+
+      Vector<FgElem> fgs = branch.getFgs();
+      boolean[] keep = new boolean[fgs.size()];
+      for (int i = 0; i < keep.length; ++i) {
+         keep[i] = isGenerator(fgs.get(i));
+      }
+      branch.retain(keep);
+      for (RecursiveAction task : tasks) {
+         task.join();
+      }
+   }
+
+   /**
+    * @return Number of skipped infrequent 2-itemsets (sum over all branches).
+    */
+   public long getSkipCnt() {
+      return this.skipCnt;
+   }
+
+   /**
+    * @return Number of deleted infrequent candidates (sum over all branches).
+    */
+   public long getRareCand() {
+      return this.rareCand;
+   }
+}
@@ -11,6 +11,7 @@ import fr.loria.coronsys.coron.datastructure.Row;
 import fr.loria.coronsys.coron.datastructure.charm.CharmExtra;
 import fr.loria.coronsys.coron.datastructure.charm.ITnode;
 import fr.loria.coronsys.coron.datastructure.charm.ITtree;
+import fr.loria.coronsys.coron.datastructure.tidset.Tidset;
 import fr.loria.coronsys.coron.datastructure.universal.Row_Universal_F;
 import fr.loria.coronsys.coron.helper.C;
 import fr.loria.coronsys.coron.helper.Convert;
@@ -18,7 +19,11 @@ import fr.loria.coronsys.coron.helper.Database;
 import fr.loria.coronsys.coron.helper.DemoCoron;
 import fr.loria.coronsys.coron.helper.Global;
 import fr.loria.coronsys.coron.helper.Memory;
+import fr.loria.coronsys.coron.helper.Metrics;
+import fr.loria.coronsys.coron.helper.PhaseTimer;
+import fr.loria.coronsys.coron.helper.ResultSink;
 import fr.loria.coronsys.coron.helper.Statistics;
+import fr.loria.coronsys.coron.helper.TextResultSink;
 
 /** 
  * Controller class.
@@ -124,6 +129,16 @@ implements Algorithm
     */
    private boolean toNull;
    
+   /**
+    * The patterns are written out through this (null if the -null option is set).
+    */
+   private ResultSink sink;
+   
+   /**
+    * The sink was given by the caller (see setSink()), nothing is printed on stdout.
+    */
+   private boolean embedded;
+   
    //private long treeMaxSize;
    
    /**
@@ -153,6 +168,7 @@ implements Algorithm
       this.rareCand    = 0;
       this.largestAttr = Database.getTotalNumberOfAttr();
       this.toNull      = Global.getExtra().get(C.X_CORON_NULL);
+      this.embedded    = false;
    }
 
    /**
@@ -161,8 +177,11 @@ implements Algorithm
    public void start()
    {
       if (Global.memInfo()) System.err.println("> Memory usage (after reading the dataset horizontally, without gc()): "+Convert.byteToPrettyString(this.memory.testMemUsage()));
+      PhaseTimer.begin(PhaseTimer.VERTICAL);
       CharmExtra charmExtra = new CharmExtra(this.database, this.min_supp);
+      PhaseTimer.begin(PhaseTimer.F2);
       this.f2Matrix = charmExtra.getF2Matrix();
+      PhaseTimer.begin(PhaseTimer.VERTICAL);
       this.database = charmExtra.convertDBHorizontal2Vertical();
       charmExtra = null;	// not needed anymore
       if (Global.memInfo()) System.err.println("> Memory usage (after finding F_2 and converting vertically, with gc()): "+Convert.byteToPrettyString(this.memory.getGCMemUsage()));
@@ -174,6 +193,8 @@ implements Algorithm
       Vector<ITnode> rootChildren;
       int size, pos;
       
+      PhaseTimer.begin(PhaseTimer.SEARCH);
+      if ((this.toNull == false) && (this.embedded == false)) this.sink = new TextResultSink(this.text);
       initItTree();
       //debug();
       if (Global.followFunctions()) System.err.println("> Searching for frequent itemesets...");
@@ -204,10 +225,15 @@ implements Algorithm
       if (Global.memInfo()) System.err.println("> Memory usage (after finding all FCIs and deleting the IT-tree and the F_2 matrix, with gc()): "+Convert.byteToPrettyString(this.memory.getGCMemUsage()));      
       if (Global.memInfo()) System.err.println("> Memory usage (after deleting everything, with gc()): "+Convert.byteToPrettyString(this.memory.getGCMemUsage()));
       if (this.toNull==false) 
+      {
+         this.sink.close();
+      }
+      if ((this.toNull == false) && (this.embedded == false))
       {
          System.out.println();
          System.out.println("# FIs: "+Convert.byteToPrettyString(this.fiCnt));
       }
+      PhaseTimer.end();
       if (Global.followFunctions()) {
          System.err.println("> Skipped infrequent 2-itemsets: "+Convert.byteToPrettyString(this.skipCnt));
          System.err.println("> Deleted infrequent candidates: "+Convert.byteToPrettyString(this.rareCand));
@@ -274,6 +300,7 @@ implements Algorithm
    {
       BitSet intent1 = curr.getIntent(),
              intent2 = other.getIntent();
+      Metrics.count(Metrics.CANDIDATES, curr.getLevel() + 1);
       if ((intent1.cardinality()==1) && (intent2.cardinality()==1)) 		// if we are at level 1
       {
          int a = intent1.nextSetBit(0),
@@ -281,19 +308,22 @@ implements Algorithm
          //System.err.println(">>> "+min+", "+max);
          if (this.f2Matrix[Math.min(a,b)][this.largestAttr - Math.max(a,b)] < this.min_supp)
          {
+            Metrics.count(Metrics.PRUNED_F2, 2);
             ++this.skipCnt;
             return null;
          }
       }
       // else, if we are below level 1
       int supp;
-      BitSet cand_extent = (BitSet) curr.getExtent().clone();
-         cand_extent.and(other.getExtent());
-      if ((supp = cand_extent.cardinality()) < this.min_supp)
+      // the intersection is created only if the candidate is frequent
+      Tidset cand_extent = curr.getExtent().and(other.getExtent(), this.min_supp);
+      if (cand_extent == null)
       {
+         Metrics.count(Metrics.PRUNED_SUPPORT, curr.getLevel() + 1);
          ++this.rareCand;
          return null;
       }
+      supp = cand_extent.cardinality();
       // else, if it's surely frequent 
       BitSet cand_intent = (BitSet) intent1.clone();
       	cand_intent.or(intent2);
@@ -313,6 +343,7 @@ implements Algorithm
     */
    private void save(ITnode node)
    {
+      Metrics.count(Metrics.PATTERNS, node.getLevel());
       /*
        * Do we want to save FIs in the memory? AssRuleX may need it for instance.
        */
@@ -325,8 +356,7 @@ implements Algorithm
       // if printing the result is not suppressed
       if (this.toNull==false) 
       {
-         if (this.text) System.out.println(node.toStringName());
-         else           System.out.println(node);
+         this.sink.add(node.getIntent(), node.getSupp());
       }
       
       ++this.fiCnt;        // we found one more FI
@@ -346,7 +376,7 @@ implements Algorithm
       for (int i = 0; i < size; ++i)
       {
          set = (BitSet) db.get(i);
-         if (set.cardinality() >= this.min_supp) root.addChild(new ITnode(this.itTree, i, set));
+         if (Database.getSupport(set) >= this.min_supp) root.addChild(new ITnode(this.itTree, i, set));
       }
       Database.freeDatabase();		// delete the vertical representation, not needed anymore
       root.sortChildren();
@@ -401,6 +431,16 @@ implements Algorithm
       return 0;
    }
 
+   /**
+    * Get the number of FGs.
+    * Since Talky finds FIs, this function has no sense.
+    * 
+    * @return Number of FGs.
+    */
+   public long getFgCnt() {
+      return 0;
+   }
+
    /**
     * Get the Result2 object. Needed for AssRuleX.
     * 
@@ -418,6 +458,19 @@ implements Algorithm
       Global.getExtra().set(C.X_CORON_NULL);
       this.toNull = true;
    }
+
+   /**
+    * The patterns are given to the sink instead of being printed on stdout
+    * (see the Miner API). The sink is closed at the end of the search.
+    * 
+    * @param sink The sink of the caller.
+    */
+   public void setSink(ResultSink sink)
+   {
+      this.sink     = sink;
+      this.toNull   = false;
+      this.embedded = true;
+   }
    
    /**
     * It is called from AssRuleX. It sets to save F tables in memory.
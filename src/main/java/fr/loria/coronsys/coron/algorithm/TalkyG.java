@@ -1,22 +1,38 @@
 package fr.loria.coronsys.coron.algorithm;
 
+import java.io.IOException;
 import java.util.BitSet;
 import java.util.Vector;
 
 import fr.loria.coronsys.coron.datastructure.Result;
 import fr.loria.coronsys.coron.datastructure.Result2;
 import fr.loria.coronsys.coron.datastructure.carpathiag.Table_CarpathiaG_F;
+import fr.loria.coronsys.coron.datastructure.charm.AdaptiveExtent;
 import fr.loria.coronsys.coron.datastructure.charm.CharmExtra;
+import fr.loria.coronsys.coron.datastructure.charm.FgBranch;
+import fr.loria.coronsys.coron.datastructure.charm.FgElem;
+import fr.loria.coronsys.coron.datastructure.charm.FgStore;
+import fr.loria.coronsys.coron.datastructure.charm.FgTable;
 import fr.loria.coronsys.coron.datastructure.charm.ITnode;
 import fr.loria.coronsys.coron.datastructure.charm.ITtree;
 import fr.loria.coronsys.coron.datastructure.charm.MyHash;
+import fr.loria.coronsys.coron.datastructure.charm.TopKFgs;
+import fr.loria.coronsys.coron.datastructure.tidset.Tidset;
 import fr.loria.coronsys.coron.helper.C;
+import fr.loria.coronsys.coron.helper.ClosureSink;
+import fr.loria.coronsys.coron.helper.Checkpoint;
+import fr.loria.coronsys.coron.helper.Context;
 import fr.loria.coronsys.coron.helper.Convert;
 import fr.loria.coronsys.coron.helper.Database;
 import fr.loria.coronsys.coron.helper.DemoCoron;
 import fr.loria.coronsys.coron.helper.Global;
 import fr.loria.coronsys.coron.helper.Memory;
+import fr.loria.coronsys.coron.helper.MemoryGuard;
+import fr.loria.coronsys.coron.helper.Metrics;
+import fr.loria.coronsys.coron.helper.PhaseTimer;
+import fr.loria.coronsys.coron.helper.ResultSink;
 import fr.loria.coronsys.coron.helper.Statistics;
+import fr.loria.coronsys.coron.helper.TextResultSink;
 import fr.loria.coronsys.coron.helper.Warning;
 
 /** 
@@ -131,10 +147,20 @@ implements Algorithm
     */
    private boolean toNull;
    
+   /**
+    * The patterns are written out through this (null if the -null option is set).
+    */
+   private ResultSink sink;
+   
+   /**
+    * The sink was given by the caller (see setSink()), nothing is printed on stdout.
+    */
+   private boolean embedded;
+   
    /**
     * Hashtable to store FGs.
     */
-   private MyHash myHash;
+   private FgTable myHash;
    
    /**
     * Delete database during the process? Default: yes.
@@ -171,6 +197,39 @@ implements Algorithm
     */
    private boolean processHash;
    
+   /**
+    * Number of threads. If it's more than 1, the direct children of the
+    * root are explored in parallel (see ParallelFgSearch).
+    */
+   private int threads;
+
+   /**
+    * The parallel search (null in a single-threaded run).
+    */
+   private ParallelFgSearch search;
+   
+   /**
+    * The best FGs found so far (-topk:K), null otherwise. With -topk the FGs
+    * are written at the end of the search, and min_supp is raised meanwhile.
+    */
+   private TopKFgs topK;
+   
+   /**
+    * Memory-pressure guard of a sequential search (-memguard), null otherwise.
+    */
+   private MemoryGuard guard;
+   
+   /**
+    * Set by the memory guard: new nodes store the smaller of their tidset
+    * and diffset (see AdaptiveExtent).
+    */
+   private boolean smallerExtents;
+   
+   /**
+    * Checkpoints of the search (-checkpoint:file), null otherwise.
+    */
+   private Checkpoint checkpoint;
+   
    //private long treeMaxSize;
    
    /**
@@ -202,16 +261,24 @@ implements Algorithm
       this.skipCnt	         = 0;
       this.rareCand           = 0;
       this.largestAttr        = Database.getTotalNumberOfAttr();
-      this.databaseSize       = Database.getDatabase().size();
+      this.databaseSize       = Database.getNumberOfObjects();
       this.fullColumn         = false;
       this.toNull             = Global.getExtra().get(C.X_CORON_NULL);
-      this.myHash             = new MyHash();
+      this.embedded           = false;
+      // the FG store is not synchronized, in a parallel search the locked MyHash is used
+      this.myHash             = ((Global.getThreads() > 1) && (Global.getTopK() == 0)) ? new MyHash(true) : new FgStore();
       this.deleteDatabase     = true;
       this.sort               = false;
       this.frequentGenerators = null;
       this.name               = Global.getExtra().get(C.X_LETTERS);
       this.destroyHash        = true;
       this.processHash        = false;
+      this.topK               = (Global.getTopK() > 0) ? new TopKFgs(Global.getTopK()) : null;
+      // with -topk min_supp changes during the search, thus the search is sequential
+      this.threads            = (this.topK == null) ? Global.getThreads() : 1;
+      this.guard              = null;
+      this.smallerExtents     = false;
+      this.checkpoint         = (Global.getCheckpointFile() == null) ? null : new Checkpoint(Global.getCheckpointFile(), Global.getCheckpointInterval());
    }
 
    /**
@@ -220,15 +287,18 @@ implements Algorithm
    public void start()
    {
       if (Global.memInfo()) System.err.println("> Memory usage (after reading the dataset horizontally, without gc()): "+Convert.byteToPrettyString(this.memory.testMemUsage()));
+      PhaseTimer.begin(PhaseTimer.VERTICAL);
       CharmExtra charmExtra = new CharmExtra(this.database, this.min_supp);
       /*
        * if the usage of the 2D matrix is enabled
        */
       if (Global.getUseF2()) {
+         PhaseTimer.begin(PhaseTimer.F2);
          this.f2Matrix = charmExtra.getF2Matrix();
       }
       //System.out.println(">talky-g: " + this.f2Matrix);
       
+      PhaseTimer.begin(PhaseTimer.VERTICAL);
       this.database = charmExtra.convertDBHorizontal2Vertical();
       charmExtra = null;	// not needed anymore
       if (Global.memInfo()) System.err.println("> Memory usage (after finding F_2 and converting vertically, with gc()): "+Convert.byteToPrettyString(this.memory.getGCMemUsage()));
@@ -240,22 +310,53 @@ implements Algorithm
       Vector<ITnode> rootChildren;
       int size, pos;
       
+      PhaseTimer.begin(PhaseTimer.SEARCH);
+      if ((this.toNull == false) && (this.embedded == false)) {
+         this.sink = Global.getClosures() ? new ClosureSink(this.text) : new TextResultSink(this.text);     // the closures need the vertical database
+      }
       initItTree();
-      if (this.fullColumn)  // then the empty set is a useful frequent generator
+      rootChildren = root.getChildren();
+      size = rootChildren.size();
+      int first = size - 1;      // the first direct child of the root to explore
+      if ((this.checkpoint != null) && this.checkpoint.exists())
       {
-         saveFg(this.itTree.getRoot());
+         // the FGs of the checkpoint (with the empty set) are written again
+         first = restoreCheckpoint(rootChildren);
+      }
+      else if (this.fullColumn)  // then the empty set is a useful frequent generator
+      {
+         saveFg(this.itTree.getRoot(), null);
       }
       //debug();
       if (Global.followFunctions()) System.err.println("> Searching for FGs...");
       long startTime = System.currentTimeMillis();
       
-      rootChildren = root.getChildren();
-      size = rootChildren.size();
-      for (pos = size - 1; pos >= 0; --pos)          // traversal from right-to-left
+      if (this.threads > 1) {
+         searchInParallel(rootChildren);
+      }
+      else
       {
-         child = (ITnode) rootChildren.get(pos);
-         saveFg(child);
-         extend(child, pos);
+         // the memory guard takes its steps at the safe points of a sequential search
+         this.guard = MemoryGuard.start();
+         try
+         {
+            for (pos = first; pos >= 0; --pos)          // traversal from right-to-left
+            {
+               child = (ITnode) rootChildren.get(pos);
+               if (child.getSupp() < this.min_supp) continue;     // min_supp was raised (-topk)
+               saveFg(child, null);
+               extend(child, pos, null);
+               if ((this.checkpoint != null) && this.checkpoint.isDue()) {
+                  this.checkpoint.save(this.min_supp, getRootAttrs(rootChildren), pos - 1, this.fgCnt, this.skipCnt, this.rareCand, (FgStore) this.myHash);
+               }
+            }
+         }
+         finally
+         {
+            if (this.guard != null) this.guard.stop();     // also if the search is aborted (see the Miner API)
+            this.myHash.close();                           // deletes the spill file of the FG store
+         }
+         if (this.checkpoint != null) this.checkpoint.delete();
       }
       
       {
@@ -274,9 +375,7 @@ implements Algorithm
       /*
        * OK, print the result
        */
-      // ON: debug, show the contents of the hash structure
-      //this.myHash.printInfo();
-      // OFF: debug
+      if (Global.followFunctions()) this.myHash.printInfo();
       
       /*if (this.processHash) {
          this.frequentGenerators = this.getFrequentGenerators();
@@ -290,15 +389,24 @@ implements Algorithm
       
       if (Global.memInfo()) System.err.println("> Memory usage (after finding all FGs and deleting the IT-tree and the F_2 matrix, with gc()): "+Convert.byteToPrettyString(this.memory.getGCMemUsage()));      
       if (Global.memInfo()) System.err.println("> Memory usage (after deleting everything, with gc()): "+Convert.byteToPrettyString(this.memory.getGCMemUsage()));
+      if (this.topK != null) writeTopK();
       if (this.toNull==false) 
+      {
+         this.sink.close();
+      }
+      if ((this.toNull == false) && (this.embedded == false))
       {
          System.out.println();
          System.out.println("# FGs: "+Convert.byteToPrettyString(this.fgCnt));
+         if (this.sink instanceof ClosureSink) {
+            System.out.println("# Equivalence classes: "+Convert.byteToPrettyString(((ClosureSink) this.sink).getClassCnt()));
+         }
          if (this.fullColumn) 
             System.out.println("# There IS a full column in the input dataset.");
          else
             System.out.println("# There is NO full column in the input dataset.");
       }
+      PhaseTimer.end();
       if (Global.followFunctions()) {
          System.err.println("> Skipped infrequent 2-itemsets: "+Convert.byteToPrettyString(this.skipCnt));
          System.err.println("> Deleted infrequent candidates: "+Convert.byteToPrettyString(this.rareCand));
@@ -311,8 +419,9 @@ implements Algorithm
     * @param curr The node that we want to extend.
     * @param currPos Index position of the current node. It is used
     * to access its brothers on its right side.
+    * @param branch The branch of the node in a parallel search (null otherwise).
     */
-   private void extend(ITnode curr, final int currPos)
+   private void extend(ITnode curr, final int currPos, FgBranch branch)
    {
       //if (this.itTree.size() > this.treeMaxSize) this.treeMaxSize = this.itTree.size();
       Vector<ITnode> currVector;
@@ -321,6 +430,8 @@ implements Algorithm
       int sizeChildrenV;
       ITnode other, generator, child;
       
+      Context.checkCancelled();     // the job can be stopped from another thread (see Miner.cancel())
+      
       /* 
        * At currPos there is the current element.
        * We want to make pairs with this and all its brothers that
@@ -332,7 +443,7 @@ implements Algorithm
       {                       
          other = (ITnode) currVector.get(posOther);
          
-         generator = getNextGenerator(curr, other);
+         generator = getNextGenerator(curr, other, branch);
          if (generator != null) 
             curr.addChild(generator);
       }
@@ -342,12 +453,21 @@ implements Algorithm
       
       childrenVector = curr.getChildren();
       sizeChildrenV = childrenVector.size();
-      for (int posChild = sizeChildrenV - 1; posChild >= 0; --posChild)
+      if ((branch != null) && this.search.shouldFork(sizeChildrenV))
       {
-         child = (ITnode) childrenVector.get(posChild);
-         saveFg(child);
-         extend(child, posChild);
-      }    
+         // parallel search: the large sub-equivalence classes are explored by their own tasks
+         this.search.fork(childrenVector, branch);
+      }
+      else
+      {
+         for (int posChild = sizeChildrenV - 1; posChild >= 0; --posChild)
+         {
+            child = (ITnode) childrenVector.get(posChild);
+            if (child.getSupp() < this.min_supp) continue;     // min_supp was raised (-topk)
+            saveFg(child, branch);
+            extend(child, posChild, branch);
+         }
+      }
       // free memory
       curr.deleteChildren();
    }
@@ -357,19 +477,21 @@ implements Algorithm
     * 
     * @param curr Current node.
     * @param other The other node.
+    * @param branch The branch of the nodes in a parallel search (null otherwise).
     * @return Null, if the candidate is not an FG. Otherwise it
     * returns a frequent generator produced from the two nodes.
     */
-   private ITnode getNextGenerator(ITnode curr, ITnode other)
+   private ITnode getNextGenerator(ITnode curr, ITnode other, FgBranch branch)
    {
       BitSet intent1 = curr.getIntent(),
              intent2 = other.getIntent();
+      Metrics.count(Metrics.CANDIDATES, curr.getLevel() + 1);
       
       /*
        * This part here uses the 2D matrix to determine the support
        * of 2-itemsets.
        */
-      if (Global.getUseF2())
+      if (this.f2Matrix != null)    // null, if it's not used or if it was dropped
       {
          /*
           * if the usage of the 2D matrix is enabled:
@@ -381,7 +503,9 @@ implements Algorithm
             //System.err.println(">>> "+min+", "+max);
             if (this.f2Matrix[Math.min(a,b)][this.largestAttr - Math.max(a,b)] < this.min_supp)
             {
-               ++this.skipCnt;
+               Metrics.count(Metrics.PRUNED_F2, 2);
+               if (branch == null) ++this.skipCnt;
+               else                branch.incSkipCnt();
                return null;
             }
          }
@@ -393,19 +517,35 @@ implements Algorithm
        *    - the usage of the 2D matrix is disabled  
        */
       int supp;
-      BitSet cand_extent = (BitSet) curr.getExtent().clone();
-         cand_extent.and(other.getExtent());
-      if ((supp = cand_extent.cardinality()) < this.min_supp)
+      Tidset cand_extent;
+      ITnode cand = null;           // "cand" like candidate
+      if (this.smallerExtents)
+      {
+         // (memory guard) the node stores a tidset or a diffset, whichever is smaller
+         cand = AdaptiveExtent.join(this.itTree, curr, other, this.min_supp);
+         cand_extent = (cand == null) ? null : cand.getExtent();
+      }
+      else
       {
-         ++this.rareCand;
+         // the intersection is created only if the candidate is frequent
+         cand_extent = curr.getExtent().and(other.getExtent(), this.min_supp);
+      }
+      if (cand_extent == null)
+      {
+         Metrics.count(Metrics.PRUNED_SUPPORT, curr.getLevel() + 1);
+         if (branch == null) ++this.rareCand;
+         else                branch.incRareCand();
          return null;
       }
+      supp = (cand != null) ? cand.getSupp() : cand_extent.cardinality();
       
       // check if it's surely not generator
-      if (cand_extent.equals(curr.getExtent()) || cand_extent.equals(other.getExtent())) 
+      // (the intersection is a subset of both extents, thus it's enough to compare the supports)
+      if ((supp == curr.getSupp()) || (supp == other.getSupp())) 
       {
          // it's not a generator because it has  
          // a proper subset with the same support
+         Metrics.count(Metrics.PRUNED_GENERATOR, curr.getLevel() + 1);
          return null;
       }
       
@@ -413,16 +553,24 @@ implements Algorithm
       BitSet cand_intent = (BitSet) intent1.clone();
       	cand_intent.or(intent2);
       
-      ITnode cand = new ITnode(itTree);   // "cand" like candidate
+      if (cand == null)
+      {
+         cand = new ITnode(itTree);
+         cand.setExtent(cand_extent);
+         cand.setSupp(supp);
+      }
       cand.setIntent(cand_intent);
-      cand.setExtent(cand_extent);
-      cand.setSupp(supp);
+      // the hash of a node with a diffset is derived from the hash of its parent
+      if (cand.isDiffset()) {
+         cand.calculateHashByDiffsets(curr.getHash());
+      }
       
       /* 
        * Check if it's really a generator, i.e.:
        * did we find before a proper subset of it with the same support?
        */
-      if (this.myHash.containsSupersetOrSubsetOf(cand, MyHash.SUBSET)) {
+      if (this.myHash.containsSupersetOrSubsetOf(cand, FgTable.SUBSET)) {
+         Metrics.count(Metrics.PRUNED_GENERATOR, curr.getLevel() + 1);
          return null;
       }
       	
@@ -434,17 +582,32 @@ implements Algorithm
     * Save the node before deleting from memory. The node represents an FG.
     * 
     * @param node The node (FG) that we want to save.
+    * @param branch The branch of the node in a parallel search (null otherwise).
     */
-   private void saveFg(ITnode node)
+   private void saveFg(ITnode node, FgBranch branch)
    {      
+      Metrics.count(Metrics.PATTERNS, node.getLevel());
+      if (this.guard != null) relieveMemory();
       this.myHash.add(node);
+      if (branch != null)
+      {
+         // parallel search: the FG will be printed after its verification
+         branch.add(node.getIntent(), node.getSupp(), node.getHash());
+         return;
+      }
+      if (this.topK != null)
+      {
+         // the FG is written at the end if it stays among the best ones
+         this.topK.add(node.getIntent(), node.getSupp());
+         this.min_supp = Math.max(this.min_supp, this.topK.getThreshold());
+         return;
+      }
       ++this.fgCnt;
       
       // if printing the result is not suppressed
       if (this.toNull==false) 
       {
-         if (this.text) System.out.println(node.toStringName());
-         else           System.out.println(node);
+         this.sink.add(node.getIntent(), node.getSupp());
       }
       
       //debug on
@@ -453,6 +616,115 @@ implements Algorithm
       //debug off
    }
 
+   /**
+    * Gives up some speed for memory if the memory guard asks for it (see MemoryGuard).
+    */
+   private void relieveMemory()
+   {
+      for (int step = this.guard.nextStep(); step != MemoryGuard.NONE; step = this.guard.skipStep())
+      {
+         switch (step)
+         {
+            case MemoryGuard.FLUSH_OUTPUT:
+               if (this.sink == null) break;
+               // else
+               this.sink.flush();
+               this.guard.log("the buffered output was flushed");
+               return;
+            case MemoryGuard.SPILL_FGS:
+               try
+               {
+                  long bytes = ((FgStore) this.myHash).spill();
+                  if (bytes == 0) break;     // nothing to spill, or the file would be too large
+                  // else
+                  this.guard.log(Convert.byteToPrettyString(bytes)+" bytes of FGs were spilled to disk, more will follow");
+               }
+               catch (IOException e) {
+                  this.guard.log("the FGs cannot be spilled to disk ("+e.getMessage()+")");
+               }
+               return;
+            case MemoryGuard.DROP_F2:
+               if (this.f2Matrix == null) break;
+               // else
+               this.f2Matrix = null;
+               this.guard.log("the F_2 matrix was dropped");
+               return;
+            case MemoryGuard.SMALLER_EXTENTS:
+               this.smallerExtents = true;
+               this.guard.log("new nodes store the smaller of their tidset and diffset");
+               return;
+         }
+      }
+   }
+
+   /**
+    * Writes the best FGs (-topk:K). They are known only at the end of the search.
+    */
+   private void writeTopK()
+   {
+      this.fgCnt = (this.toNull == false) ? this.topK.writeTo(this.sink) : this.topK.size();
+      if (Global.followFunctions()) {
+         System.err.println("> Top-"+Global.getTopK()+" FGs: min. support was raised to "+this.min_supp+".");
+      }
+   }
+
+   /**
+    * Continues the search from the checkpoint: the FGs found before are added
+    * to the hash and written again, and the counters are restored.
+    * 
+    * @param rootChildren The direct children of the root.
+    * @return Position of the next direct child of the root to explore.
+    */
+   private int restoreCheckpoint(Vector<ITnode> rootChildren)
+   {
+      int next = this.checkpoint.restore(this.min_supp, getRootAttrs(rootChildren), (FgStore) this.myHash, this.sink);
+      this.fgCnt    = this.checkpoint.getFgCnt();
+      this.skipCnt  = this.checkpoint.getSkipCnt();
+      this.rareCand = this.checkpoint.getRareCand();
+      return next;
+   }
+
+   /**
+    * @param rootChildren The direct children of the root.
+    * @return Their attributes, in the same order. A checkpoint can only be
+    * continued with the same IT-tree.
+    */
+   private int[] getRootAttrs(Vector<ITnode> rootChildren)
+   {
+      int[] attrs = new int[rootChildren.size()];
+      for (int i = 0; i < attrs.length; ++i) {
+         attrs[i] = rootChildren.get(i).getIntent().nextSetBit(0);
+      }
+      return attrs;
+   }
+
+   /**
+    * Explores the direct children of the root on several threads.
+    * An FG found in a branch is verified at the end: it has no proper subset
+    * with the same support in the (then complete) hash.
+    * 
+    * @param rootChildren The direct children of the root.
+    */
+   private void searchInParallel(Vector<ITnode> rootChildren)
+   {
+      ParallelFgSearch search = this.search = new ParallelFgSearch(this.threads)
+      {
+         protected void explore(ITnode child, int pos, FgBranch branch)
+         {
+            saveFg(child, branch);
+            extend(child, pos, branch);
+         }
+         
+         protected boolean isGenerator(FgElem elem) {
+            return (myHash.containsSupersetOrSubsetOf(elem.getHash(), elem.getIntent(), elem.getSupp(), FgTable.SUBSET) == false);
+         }
+      };
+      
+      this.fgCnt    += search.run(rootChildren, this.sink);
+      this.skipCnt  += search.getSkipCnt();
+      this.rareCand += search.getRareCand();
+   }
+
    /**
     * Initialization of the IT-tree.
     * Create root node + add frequent one-size attributes to level 1. 
@@ -470,7 +742,7 @@ implements Algorithm
       for (int i = 0; i < size; ++i)
       {
          set = (BitSet) db.get(i);
-         card = set.cardinality();
+         card = Database.getSupport(set);
          // if it's frequent AND key (if card == this.databaseSize, then its key is the empty set)
          if ((card >= this.min_supp) && (card < this.databaseSize)) 
             root.addChild(new ITnode(this.itTree, i, set));
@@ -535,6 +807,15 @@ implements Algorithm
    public long getFciCnt() {
       return 0;
    }
+
+   /**
+    * Get the number of FGs.
+    * 
+    * @return Number of FGs.
+    */
+   public long getFgCnt() {
+      return this.fgCnt;
+   }
    
    
    /** (non-Javadoc)
@@ -612,6 +893,19 @@ implements Algorithm
       this.toNull = true;
    }
 
+   /**
+    * The patterns are given to the sink instead of being printed on stdout
+    * (see the Miner API). The sink is closed at the end of the search.
+    * 
+    * @param sink The sink of the caller.
+    */
+   public void setSink(ResultSink sink)
+   {
+      this.sink     = sink;
+      this.toNull   = false;
+      this.embedded = true;
+   }
+
    /**
     * Should the database be deleted during the process?
     */
@@ -629,9 +923,10 @@ implements Algorithm
    }
 
    /**
-    * @return Hash table of FGs. Used by the TUS algorithm.
+    * @return Hash table of FGs. Used by the TUS algorithm. If the FG store was
+    * spilled to disk (-memguard), it cannot be read after the search.
     */
-   public MyHash getFgHash() {
+   public FgTable getFgHash() {
       return this.myHash;
    }
 
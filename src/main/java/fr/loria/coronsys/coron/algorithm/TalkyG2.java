@@ -2,24 +2,37 @@ package fr.loria.coronsys.coron.algorithm;
 
 import java.util.BitSet;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import fr.loria.coronsys.coron.datastructure.Result;
 import fr.loria.coronsys.coron.datastructure.Result2;
 import fr.loria.coronsys.coron.datastructure.carpathiag.Table_CarpathiaG_F;
+import fr.loria.coronsys.coron.datastructure.charm.AdaptiveExtent;
 import fr.loria.coronsys.coron.datastructure.charm.CharmExtra;
+import fr.loria.coronsys.coron.datastructure.charm.FgBranch;
+import fr.loria.coronsys.coron.datastructure.charm.FgElem;
 import fr.loria.coronsys.coron.datastructure.charm.ITnode;
 import fr.loria.coronsys.coron.datastructure.charm.ITtree;
+import fr.loria.coronsys.coron.datastructure.charm.TopKFgs;
+import fr.loria.coronsys.coron.datastructure.charm.ZobristFgMap;
+import fr.loria.coronsys.coron.datastructure.tidset.Tidset;
 import fr.loria.coronsys.coron.helper.C;
+import fr.loria.coronsys.coron.helper.ClosureSink;
+import fr.loria.coronsys.coron.helper.Context;
 import fr.loria.coronsys.coron.helper.Convert;
 import fr.loria.coronsys.coron.helper.Database;
 import fr.loria.coronsys.coron.helper.DemoCoron;
 import fr.loria.coronsys.coron.helper.Global;
 import fr.loria.coronsys.coron.helper.Memory;
+import fr.loria.coronsys.coron.helper.MemoryGuard;
+import fr.loria.coronsys.coron.helper.Metrics;
+import fr.loria.coronsys.coron.helper.PhaseTimer;
+import fr.loria.coronsys.coron.helper.ResultSink;
 import fr.loria.coronsys.coron.helper.SetOp;
 import fr.loria.coronsys.coron.helper.Statistics;
+import fr.loria.coronsys.coron.helper.TextResultSink;
 
 /** 
  * Talky-G v2
@@ -133,6 +146,16 @@ implements Algorithm
     */
    private boolean toNull;
    
+   /**
+    * The patterns are written out through this (null if the -null option is set).
+    */
+   private ResultSink sink;
+   
+   /**
+    * The sink was given by the caller (see setSink()), nothing is printed on stdout.
+    */
+   private boolean embedded;
+   
    /**
     * Hashtable to store FGs.
     */
@@ -173,6 +196,34 @@ implements Algorithm
     */
    private boolean processHash;
    
+   /**
+    * Number of threads. If it's more than 1, the direct children of the
+    * root are explored in parallel (see ParallelFgSearch).
+    */
+   private int threads;
+
+   /**
+    * The parallel search (null in a single-threaded run).
+    */
+   private ParallelFgSearch search;
+   
+   /**
+    * The best FGs found so far (-topk:K), null otherwise. With -topk the FGs
+    * are written at the end of the search, and min_supp is raised meanwhile.
+    */
+   private TopKFgs topK;
+   
+   /**
+    * Memory-pressure guard of a sequential search (-memguard), null otherwise.
+    */
+   private MemoryGuard guard;
+   
+   /**
+    * Set by the memory guard: new nodes store the smaller of their tidset
+    * and diffset (see AdaptiveExtent).
+    */
+   private boolean smallerExtents;
+   
    /**
     * Frequent generators are stored in this too. When we find a rare 
     * itemset, we want to check ig it's a minimal rare generator, thus
@@ -181,8 +232,17 @@ implements Algorithm
     * 
     * Add the empty set to it! The empty set is an FG and it's
     * necessary for rare attributes!
+    * 
+    * This map is used in a parallel search (it's thread-safe). In a sequential
+    * search fgZobrist is used instead.
+    */
+   private Map<BitSet, Integer> fgMap = null;
+   
+   /**
+    * The same as fgMap in a sequential search. Here the one-size smaller
+    * subsets of a candidate are looked up without creating them.
     */
-   private Map<BitSet, Integer> fgMap = new HashMap<BitSet, Integer>();
+   private ZobristFgMap fgZobrist = null;
    
    //private long treeMaxSize;
    
@@ -213,9 +273,10 @@ implements Algorithm
       this.skipCnt	         = 0;
       this.rareCand           = 0;
       this.largestAttr        = Database.getTotalNumberOfAttr();
-      this.databaseSize       = Database.getDatabase().size();
+      this.databaseSize       = Database.getNumberOfObjects();
       this.fullColumn         = false;
       this.toNull             = Global.getExtra().get(C.X_CORON_NULL);
+      this.embedded           = false;
       //this.myHash             = new MyHash();
       this.deleteDatabase     = true;
       this.sort               = false;
@@ -223,9 +284,23 @@ implements Algorithm
       this.name               = Global.getExtra().get(C.X_LETTERS);
       this.destroyHash        = true;
       this.processHash        = false;
+      this.topK               = (Global.getTopK() > 0) ? new TopKFgs(Global.getTopK()) : null;
+      // with -topk min_supp changes during the search, thus the search is sequential
+      this.threads            = (this.topK == null) ? Global.getThreads() : 1;
+      this.guard              = null;
+      this.smallerExtents     = false;
       //
       // the empty set is an FG; by def. it's support is 100%
-      fgMap.put(new BitSet(), Database.getNumberOfObjects());
+      if (this.threads > 1)
+      {
+         this.fgMap = new ConcurrentHashMap<BitSet, Integer>();
+         this.fgMap.put(new BitSet(), Database.getNumberOfObjects());
+      }
+      else
+      {
+         this.fgZobrist = new ZobristFgMap(Database.getTotalNumberOfAttr());
+         this.fgZobrist.put(new BitSet(), Database.getNumberOfObjects());
+      }
    }
 
    /**
@@ -234,15 +309,18 @@ implements Algorithm
    public void start()
    {
       if (Global.memInfo()) System.err.println("> Memory usage (after reading the dataset horizontally, without gc()): "+Convert.byteToPrettyString(this.memory.testMemUsage()));
+      PhaseTimer.begin(PhaseTimer.VERTICAL);
       CharmExtra charmExtra = new CharmExtra(this.database, this.min_supp);
       /*
        * if the usage of the 2D matrix is enabled
        */
       if (Global.getUseF2()) {
+         PhaseTimer.begin(PhaseTimer.F2);
          this.f2Matrix = charmExtra.getF2Matrix();
       }
       //System.out.println(">talky-g: " + this.f2Matrix);
       
+      PhaseTimer.begin(PhaseTimer.VERTICAL);
       this.database = charmExtra.convertDBHorizontal2Vertical();
       charmExtra = null;	// not needed anymore
       if (Global.memInfo()) System.err.println("> Memory usage (after finding F_2 and converting vertically, with gc()): "+Convert.byteToPrettyString(this.memory.getGCMemUsage()));
@@ -254,10 +332,14 @@ implements Algorithm
       Vector<ITnode> rootChildren;
       int size, pos;
       
+      PhaseTimer.begin(PhaseTimer.SEARCH);
+      if ((this.toNull == false) && (this.embedded == false)) {
+         this.sink = Global.getClosures() ? new ClosureSink(this.text) : new TextResultSink(this.text);     // the closures need the vertical database
+      }
       initItTree();
       if (this.fullColumn)  // then the empty set is a useful frequent generator
       {
-         saveFg(this.itTree.getRoot());
+         saveFg(this.itTree.getRoot(), null);
       }
       //debug();
       if (Global.followFunctions()) System.err.println("> Searching for FGs...");
@@ -265,11 +347,26 @@ implements Algorithm
       
       rootChildren = root.getChildren();
       size = rootChildren.size();
-      for (pos = size - 1; pos >= 0; --pos)          // traversal from right-to-left
+      if (this.threads > 1) {
+         searchInParallel(rootChildren);
+      }
+      else
       {
-         child = (ITnode) rootChildren.get(pos);
-         saveFg(child);
-         extend(child, pos);
+         // the memory guard takes its steps at the safe points of a sequential search
+         this.guard = MemoryGuard.start();
+         try
+         {
+            for (pos = size - 1; pos >= 0; --pos)          // traversal from right-to-left
+            {
+               child = (ITnode) rootChildren.get(pos);
+               if (child.getSupp() < this.min_supp) continue;     // min_supp was raised (-topk)
+               saveFg(child, null);
+               extend(child, pos, null);
+            }
+         }
+         finally {
+            if (this.guard != null) this.guard.stop();     // also if the search is aborted (see the Miner API)
+         }
       }
       
       {
@@ -307,15 +404,24 @@ implements Algorithm
       
       if (Global.memInfo()) System.err.println("> Memory usage (after finding all FGs and deleting the IT-tree and the F_2 matrix, with gc()): "+Convert.byteToPrettyString(this.memory.getGCMemUsage()));      
       if (Global.memInfo()) System.err.println("> Memory usage (after deleting everything, with gc()): "+Convert.byteToPrettyString(this.memory.getGCMemUsage()));
+      if (this.topK != null) writeTopK();
       if (this.toNull==false) 
+      {
+         this.sink.close();
+      }
+      if ((this.toNull == false) && (this.embedded == false))
       {
          System.out.println();
          System.out.println("# FGs: "+Convert.byteToPrettyString(this.fgCnt));
+         if (this.sink instanceof ClosureSink) {
+            System.out.println("# Equivalence classes: "+Convert.byteToPrettyString(((ClosureSink) this.sink).getClassCnt()));
+         }
          if (this.fullColumn) 
             System.out.println("# There IS a full column in the input dataset.");
          else
             System.out.println("# There is NO full column in the input dataset.");
       }
+      PhaseTimer.end();
       if (Global.followFunctions()) {
          System.err.println("> Skipped infrequent 2-itemsets: "+Convert.byteToPrettyString(this.skipCnt));
          System.err.println("> Deleted infrequent candidates: "+Convert.byteToPrettyString(this.rareCand));
@@ -328,8 +434,9 @@ implements Algorithm
     * @param curr The node that we want to extend.
     * @param currPos Index position of the current node. It is used
     * to access its brothers on its right side.
+    * @param branch The branch of the node in a parallel search (null otherwise).
     */
-   private void extend(ITnode curr, final int currPos)
+   private void extend(ITnode curr, final int currPos, FgBranch branch)
    {
       //if (this.itTree.size() > this.treeMaxSize) this.treeMaxSize = this.itTree.size();
       Vector<ITnode> currVector;
@@ -338,6 +445,8 @@ implements Algorithm
       int sizeChildrenV;
       ITnode other, generator, child;
       
+      Context.checkCancelled();     // the job can be stopped from another thread (see Miner.cancel())
+      
       /* 
        * At currPos there is the current element.
        * We want to make pairs with this and all its brothers that
@@ -349,7 +458,7 @@ implements Algorithm
       {                       
          other = (ITnode) currVector.get(posOther);
          
-         generator = getNextGenerator(curr, other);
+         generator = getNextGenerator(curr, other, branch);
          if (generator != null) 
             curr.addChild(generator);
       }
@@ -359,12 +468,21 @@ implements Algorithm
       
       childrenVector = curr.getChildren();
       sizeChildrenV = childrenVector.size();
-      for (int posChild = sizeChildrenV - 1; posChild >= 0; --posChild)
+      if ((branch != null) && this.search.shouldFork(sizeChildrenV))
       {
-         child = (ITnode) childrenVector.get(posChild);
-         saveFg(child);
-         extend(child, posChild);
-      }    
+         // parallel search: the large sub-equivalence classes are explored by their own tasks
+         this.search.fork(childrenVector, branch);
+      }
+      else
+      {
+         for (int posChild = sizeChildrenV - 1; posChild >= 0; --posChild)
+         {
+            child = (ITnode) childrenVector.get(posChild);
+            if (child.getSupp() < this.min_supp) continue;     // min_supp was raised (-topk)
+            saveFg(child, branch);
+            extend(child, posChild, branch);
+         }
+      }
       // free memory
       curr.deleteChildren();
    }
@@ -374,19 +492,21 @@ implements Algorithm
     * 
     * @param curr Current node.
     * @param other The other node.
+    * @param branch The branch of the nodes in a parallel search (null otherwise).
     * @return Null, if the candidate is not an FG. Otherwise it
     * returns a frequent generator produced from the two nodes.
     */
-   private ITnode getNextGenerator(ITnode curr, ITnode other)
+   private ITnode getNextGenerator(ITnode curr, ITnode other, FgBranch branch)
    {
       BitSet intent1 = curr.getIntent(),
              intent2 = other.getIntent();
+      Metrics.count(Metrics.CANDIDATES, curr.getLevel() + 1);
       
       /*
        * This part here uses the 2D matrix to determine the support
        * of 2-itemsets.
        */
-      if (Global.getUseF2())
+      if (this.f2Matrix != null)    // null, if it's not used or if it was dropped
       {
          /*
           * if the usage of the 2D matrix is enabled:
@@ -398,7 +518,9 @@ implements Algorithm
             //System.err.println(">>> "+min+", "+max);
             if (this.f2Matrix[Math.min(a,b)][this.largestAttr - Math.max(a,b)] < this.min_supp)
             {
-               ++this.skipCnt;
+               Metrics.count(Metrics.PRUNED_F2, 2);
+               if (branch == null) ++this.skipCnt;
+               else                branch.incSkipCnt();
                return null;
             }
          }
@@ -410,19 +532,33 @@ implements Algorithm
        *    - the usage of the 2D matrix is disabled  
        */
       int supp;
-      BitSet cand_extent = (BitSet) curr.getExtent().clone();
-         cand_extent.and(other.getExtent());
-      if ((supp = cand_extent.cardinality()) < this.min_supp)
+      ITnode cand = null;           // "cand" like candidate
+      if (this.smallerExtents)
       {
-         ++this.rareCand;
+         // (memory guard) the node stores a tidset or a diffset, whichever is smaller
+         cand = AdaptiveExtent.join(this.itTree, curr, other, this.min_supp);
+         supp = (cand == null) ? -1 : cand.getSupp();
+      }
+      else
+      {
+         // only the support is computed here, the intersection is created if cand is an FG
+         supp = curr.getExtent().andCardinality(other.getExtent(), this.min_supp);
+      }
+      if (supp < 0)
+      {
+         Metrics.count(Metrics.PRUNED_SUPPORT, curr.getLevel() + 1);
+         if (branch == null) ++this.rareCand;
+         else                branch.incRareCand();
          return null;
       }
       
       // check if it's surely not generator
-      if (cand_extent.equals(curr.getExtent()) || cand_extent.equals(other.getExtent())) 
+      // (the intersection is a subset of both extents, thus it's enough to compare the supports)
+      if ((supp == curr.getSupp()) || (supp == other.getSupp())) 
       {
          // it's not a generator because it has  
          // a proper subset with the same support
+         Metrics.count(Metrics.PRUNED_GENERATOR, curr.getLevel() + 1);
          return null;
       }
       
@@ -430,11 +566,6 @@ implements Algorithm
       BitSet cand_intent = (BitSet) intent1.clone();
       	cand_intent.or(intent2);
       
-      ITnode cand = new ITnode(itTree);   // "cand" like candidate
-      cand.setIntent(cand_intent);
-      cand.setExtent(cand_extent);
-      cand.setSupp(supp);
-      
       /* 
        * Check if it's really a generator, i.e.:
        * did we find before a proper subset of it with the same support?
@@ -442,13 +573,21 @@ implements Algorithm
       //if (this.myHash.containsSupersetOrSubsetOf(cand, MyHash.SUBSET)) {
       //   return null;
       //}
-      if (this.candSubsumesAnFgOrCandHasANonFgSubset(cand))
+      if (this.candSubsumesAnFgOrCandHasANonFgSubset(cand_intent, supp, branch))
       {
          //System.out.println(candidate.toStringName() + " [>has an FG subset<]");
+         Metrics.count(Metrics.PRUNED_GENERATOR, curr.getLevel() + 1);
          return null;
       }
-      	
-      // else, if it's really a generator
+      
+      // else, if it's really a generator (its tidset is created only now)
+      if (cand == null)
+      {
+         cand = new ITnode(itTree);
+         cand.setExtent(curr.getExtent().and(other.getExtent()));
+         cand.setSupp(supp);
+      }
+      cand.setIntent(cand_intent);
       return cand;
    }
    
@@ -467,13 +606,35 @@ implements Algorithm
     * So, if cand fails the FG test, we return true.
     * If cand is an FG, we return false.
     * 
-    * @param cand An FG candidate.
+    * In a parallel search a missing subset only counts if it belongs to the
+    * same branch as cand. Subsets in other branches may not be ready yet.
+    * 
+    * @param cand_intent Intent of an FG candidate.
+    * @param cand_supp Support of the FG candidate.
+    * @param branch The branch of the candidate in a parallel search (null otherwise,
+    * or when all the branches are finished).
     * @return True if cand fails the FG test. False, otherwise.
     */
-   private boolean candSubsumesAnFgOrCandHasANonFgSubset(ITnode cand)
+   private boolean candSubsumesAnFgOrCandHasANonFgSubset(BitSet cand_intent, int cand_supp, FgBranch branch)
    {
-      Vector<BitSet> subsets = SetOp.getOneSizeSmallerSubsetsOf(cand.getIntent());
-      int cand_supp = cand.getSupp();
+      if (this.fgZobrist != null)      // sequential search
+      {
+         long key = this.fgZobrist.keyOf(cand_intent);
+         int stored;
+         
+         for (int i = cand_intent.nextSetBit(0); i >= 0; i = cand_intent.nextSetBit(i+1))
+         {
+            // key of the subset without i: one XOR, the subset is not created
+            stored = this.fgZobrist.getSubset(cand_intent, key, i);
+            // cand subsumes an FG, or the subset is missing, i.e. it's not an FG (see below)
+            if ((stored == cand_supp) || (stored == ZobristFgMap.NOT_FOUND)) {
+               return true;
+            }
+         }
+         return false;
+      }
+      // else, in a parallel search
+      Vector<BitSet> subsets = SetOp.getOneSizeSmallerSubsetsOf(cand_intent);
       BitSet ss;    // subset
       Integer stored;
       
@@ -495,7 +656,9 @@ implements Algorithm
              * smaller subset of cand is not an FG, thus cand cannot be an FG either.
              */
             //System.out.println(">>> subset missing; cand: "+cand.getIntent()+", missing subset: "+ss);
-            return true;
+            if ((branch == null) || branch.owns(ss)) {
+               return true;
+            }
          }
       }
       
@@ -507,18 +670,35 @@ implements Algorithm
     * Save the node before deleting from memory. The node represents an FG.
     * 
     * @param node The node (FG) that we want to save.
+    * @param branch The branch of the node in a parallel search (null otherwise).
     */
-   private void saveFg(ITnode node)
+   private void saveFg(ITnode node, FgBranch branch)
    {      
+      Metrics.count(Metrics.PATTERNS, node.getLevel());
+      if (this.guard != null) relieveMemory();
       //this.myHash.add(node);
-      this.fgMap.put(node.getIntent(), node.getSupp());
+      if (this.fgZobrist != null) this.fgZobrist.put(node.getIntent(), node.getSupp());
+      else                        this.fgMap.put(node.getIntent(), node.getSupp());
+      if (branch != null)
+      {
+         // parallel search: the FG will be printed after its verification
+         // (the hash value is not needed, the FG map is keyed on the intent)
+         branch.add(node.getIntent(), node.getSupp(), 0);
+         return;
+      }
+      if (this.topK != null)
+      {
+         // the FG is written at the end if it stays among the best ones
+         this.topK.add(node.getIntent(), node.getSupp());
+         this.min_supp = Math.max(this.min_supp, this.topK.getThreshold());
+         return;
+      }
       ++this.fgCnt;
       
       // if printing the result is not suppressed
       if (this.toNull==false) 
       {
-         if (this.text) System.out.println(node.toStringName());
-         else           System.out.println(node);
+         this.sink.add(node.getIntent(), node.getSupp());
       }
       
       //debug on
@@ -527,6 +707,73 @@ implements Algorithm
       //debug off
    }
 
+   /**
+    * Gives up some speed for memory if the memory guard asks for it (see MemoryGuard).
+    */
+   private void relieveMemory()
+   {
+      for (int step = this.guard.nextStep(); step != MemoryGuard.NONE; step = this.guard.skipStep())
+      {
+         switch (step)
+         {
+            case MemoryGuard.FLUSH_OUTPUT:
+               if (this.sink == null) break;
+               // else
+               this.sink.flush();
+               this.guard.log("the buffered output was flushed");
+               return;
+            case MemoryGuard.DROP_F2:
+               if (this.f2Matrix == null) break;
+               // else
+               this.f2Matrix = null;
+               this.guard.log("the F_2 matrix was dropped");
+               return;
+            case MemoryGuard.SMALLER_EXTENTS:
+               this.smallerExtents = true;
+               this.guard.log("new nodes store the smaller of their tidset and diffset");
+               return;
+         }
+      }
+   }
+
+   /**
+    * Writes the best FGs (-topk:K). They are known only at the end of the search.
+    */
+   private void writeTopK()
+   {
+      this.fgCnt = (this.toNull == false) ? this.topK.writeTo(this.sink) : this.topK.size();
+      if (Global.followFunctions()) {
+         System.err.println("> Top-"+Global.getTopK()+" FGs: min. support was raised to "+this.min_supp+".");
+      }
+   }
+
+   /**
+    * Explores the direct children of the root on several threads.
+    * An FG found in a branch is verified at the end: all its one-size
+    * smaller subsets are in the (then complete) FG map with a different support.
+    * 
+    * @param rootChildren The direct children of the root.
+    */
+   private void searchInParallel(Vector<ITnode> rootChildren)
+   {
+      ParallelFgSearch search = this.search = new ParallelFgSearch(this.threads)
+      {
+         protected void explore(ITnode child, int pos, FgBranch branch)
+         {
+            saveFg(child, branch);
+            extend(child, pos, branch);
+         }
+         
+         protected boolean isGenerator(FgElem elem) {
+            return (candSubsumesAnFgOrCandHasANonFgSubset(elem.getIntent(), elem.getSupp(), null) == false);
+         }
+      };
+      
+      this.fgCnt    += search.run(rootChildren, this.sink);
+      this.skipCnt  += search.getSkipCnt();
+      this.rareCand += search.getRareCand();
+   }
+
    /**
     * Initialization of the IT-tree.
     * Create root node + add frequent one-size attributes to level 1. 
@@ -544,7 +791,7 @@ implements Algorithm
       for (int i = 1; i < size; ++i)
       {
          set = (BitSet) db.get(i);
-         card = set.cardinality();
+         card = Database.getSupport(set);
          // if it's frequent AND key (if card == this.databaseSize, then its key is the empty set)
          if ((card >= this.min_supp) && (card < this.databaseSize)) 
             root.addChild(new ITnode(this.itTree, i, set));
@@ -609,6 +856,15 @@ implements Algorithm
    public long getFciCnt() {
       return 0;
    }
+
+   /**
+    * Get the number of FGs.
+    * 
+    * @return Number of FGs.
+    */
+   public long getFgCnt() {
+      return this.fgCnt;
+   }
    
    
    /** (non-Javadoc)
@@ -686,6 +942,19 @@ implements Algorithm
       this.toNull = true;
    }
 
+   /**
+    * The patterns are given to the sink instead of being printed on stdout
+    * (see the Miner API). The sink is closed at the end of the search.
+    * 
+    * @param sink The sink of the caller.
+    */
+   public void setSink(ResultSink sink)
+   {
+      this.sink     = sink;
+      this.toNull   = false;
+      this.embedded = true;
+   }
+
    /**
     * Should the database be deleted during the process?
     */
@@ -0,0 +1,137 @@
+package fr.loria.coronsys.coron.api;
+
+import fr.loria.coronsys.coron.helper.C;
+import fr.loria.coronsys.coron.helper.Context;
+import fr.loria.coronsys.coron.helper.ContextIndex;
+import fr.loria.coronsys.coron.helper.Database;
+import fr.loria.coronsys.coron.helper.Error;
+import fr.loria.coronsys.coron.helper.Global;
+
+/**
+ * A dataset that is read once and mined several times (see Miner(Dataset)).
+ *
+ * The file is read in vertical representation (except .rcf files, which are
+ * read horizontally) and the supports of the 2-itemsets are counted during the
+ * reading, like in a run of a vertical miner. Each run gets a copy of the
+ * tidsets, because the miners free them during the search; the F_2 matrix is
+ * shared. The index of the dataset for the closure queries (see getIndex()) is
+ * built at its first use, and it's shared too.
+ */
+public class Dataset
+{
+   /**
+    * Number of images in the cache of the index.
+    */
+   public final static int INDEX_CACHE_SIZE = 1024;
+
+   /**
+    * The dataset file.
+    */
+   private final String file;
+
+   /**
+    * The context that holds the dataset (see Context).
+    */
+   private final Context context;
+
+   /**
+    * Number of objects.
+    */
+   private final int numberOfObjects;
+
+   /**
+    * The largest attribute.
+    */
+   private final int largestAttr;
+
+   /**
+    * The index of the dataset, or null if it was not built yet.
+    */
+   private volatile ContextIndex index;
+
+   /**
+    * Reads a dataset file.
+    *
+    * @param file The dataset (.basenum, .bool or .rcf).
+    */
+   public Dataset(String file)
+   {
+      Context previous = Context.current();
+      Context loaded = new Context();
+      Context.bind(loaded);
+      Error.setEmbedded(true);
+      try
+      {
+         Global.setAlgorithm(C.ALG_TALKY_G2);     // a vertical miner: the file is read vertically
+         Global.setUseF2();                       // with the F_2 matrix
+         Database.setMinSupp(1);
+         Miner.readFile(file);
+         this.numberOfObjects = Database.getNumberOfObjects();
+         this.largestAttr     = Database.getTotalNumberOfAttr();
+      }
+      finally {
+         Context.bind(previous);
+      }
+      this.file = file;
+      // a BitSet is trimmed when it's cloned for the first time, later the
+      // copies for the runs only read it (several runs can copy it at the same time)
+      this.context = new Context(loaded);
+   }
+
+   /**
+    * @return A new context with a copy of the dataset, for a run.
+    */
+   Context newContext() {
+      return new Context(this.context);
+   }
+
+   /**
+    * The index of the dataset for the image, support and closure queries. It's
+    * built at the first call; the runs started after it can use it through
+    * ContextOp too.
+    *
+    * @return The index.
+    */
+   public ContextIndex getIndex()
+   {
+      ContextIndex index = this.index;
+      if (index != null) return index;
+      // else
+      synchronized (this)
+      {
+         if (this.index == null)
+         {
+            Context previous = Context.current();
+            Context.bind(this.context);
+            try {
+               this.index = Database.buildIndex(INDEX_CACHE_SIZE);
+            }
+            finally {
+               Context.bind(previous);
+            }
+         }
+         return this.index;
+      }
+   }
+
+   /**
+    * @return The dataset file.
+    */
+   public String getFile() {
+      return this.file;
+   }
+
+   /**
+    * @return Number of objects.
+    */
+   public int getNumberOfObjects() {
+      return this.numberOfObjects;
+   }
+
+   /**
+    * @return The largest attribute.
+    */
+   public int getLargestAttr() {
+      return this.largestAttr;
+   }
+}
@@ -0,0 +1,472 @@
+package fr.loria.coronsys.coron.api;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Vector;
+
+import fr.loria.coronsys.coron.algorithm.DEclat;
+import fr.loria.coronsys.coron.algorithm.DTalkyG;
+import fr.loria.coronsys.coron.algorithm.Eclat1;
+import fr.loria.coronsys.coron.algorithm.Talky;
+import fr.loria.coronsys.coron.algorithm.TalkyG;
+import fr.loria.coronsys.coron.algorithm.TalkyG2;
+import fr.loria.coronsys.coron.helper.C;
+import fr.loria.coronsys.coron.helper.Context;
+import fr.loria.coronsys.coron.helper.Database;
+import fr.loria.coronsys.coron.helper.Error;
+import fr.loria.coronsys.coron.helper.FileFormatHandler;
+import fr.loria.coronsys.coron.helper.Global;
+import fr.loria.coronsys.coron.helper.ResultSink;
+
+/**
+ * Library API of the miners: the patterns of a dataset (a file or objects in
+ * memory) are given to a PatternListener, or they can be read through an
+ * iterator. Nothing is printed on stdout, and an error throws an exception
+ * instead of stopping the JVM.
+ *
+ * Usage:
+ *
+ * Miner miner = new Miner("mushrooms.basenum");
+ * miner.setMinSuppPercent(20.0);
+ * miner.setAlgorithm("talkyg2");
+ * miner.mine(listener);
+ *
+ * Each run has its own context (dataset, options, see Context), thus several
+ * miners can run at the same time in a JVM, on different threads.
+ */
+public class Miner
+{
+   /**
+    * The dataset file (.basenum, .bool or .rcf), or null.
+    */
+   private String file;
+
+   /**
+    * The objects of the dataset (each one is a list of attributes), or null.
+    */
+   private List<int[]> objects;
+
+   /**
+    * The dataset in memory (see Dataset), or null.
+    */
+   private Dataset dataset;
+
+   /**
+    * Min. support as an integer (-1 if it's given in percent).
+    */
+   private int minSupp;
+
+   /**
+    * Min. support in percent (null if it's given as an integer).
+    */
+   private Double minSuppPercent;
+
+   /**
+    * The algorithm (constant from the C class).
+    */
+   private int algorithm;
+
+   /**
+    * Number of threads.
+    */
+   private int threads;
+
+   /**
+    * Are the extents of the patterns computed?
+    */
+   private boolean extents;
+
+   /**
+    * The context of the running search (null if it's not running).
+    */
+   private volatile Context running;
+
+   /**
+    * Was the run cancelled (see cancel())?
+    */
+   private volatile boolean cancelled;
+
+   /**
+    * Constructor with a dataset file.
+    *
+    * @param file The dataset (.basenum, .bool or .rcf).
+    */
+   public Miner(String file)
+   {
+      this();
+      this.file = file;
+   }
+
+   /**
+    * Constructor with a dataset in memory. The list is read when the mining starts.
+    *
+    * @param objects The objects of the dataset, each one is a list of attributes
+    * (non-negative integers).
+    */
+   public Miner(List<int[]> objects)
+   {
+      this();
+      this.objects = objects;
+   }
+
+   /**
+    * Constructor with a dataset that was read before. Each run works on a copy of
+    * it, thus the dataset can be mined several times, also at the same time.
+    *
+    * @param dataset The dataset.
+    */
+   public Miner(Dataset dataset)
+   {
+      this();
+      this.dataset = dataset;
+   }
+
+   /**
+    * Default settings: Talky-G v2 on one thread, without extents.
+    */
+   private Miner()
+   {
+      this.file           = null;
+      this.objects        = null;
+      this.dataset        = null;
+      this.minSupp        = -1;
+      this.minSuppPercent = null;
+      this.algorithm      = C.ALG_TALKY_G2;
+      this.threads        = 1;
+      this.extents        = false;
+   }
+
+   /**
+    * @param minSupp Min. support as an integer (number of objects).
+    */
+   public void setMinSupp(int minSupp)
+   {
+      if (minSupp < 1) throw new IllegalArgumentException("the min. support should be a positive integer");
+      // else
+      this.minSupp        = minSupp;
+      this.minSuppPercent = null;
+   }
+
+   /**
+    * @param percent Min. support in percent (between 0 and 100).
+    */
+   public void setMinSuppPercent(double percent)
+   {
+      if ((percent <= 0.0) || (percent > 100.0)) throw new IllegalArgumentException("the min. support should be between 0 and 100 percent");
+      // else
+      this.minSupp        = -1;
+      this.minSuppPercent = percent;
+   }
+
+   /**
+    * @param name The algorithm, like the value of -alg: talkyg, talkyg2, dtalkyg
+    * (FGs), talky, eclat or declat (FIs).
+    */
+   public void setAlgorithm(String name)
+   {
+      String alg = name.toLowerCase();
+      if (alg.equals("talkyg"))                                 this.algorithm = C.ALG_TALKY_G;
+      else if (alg.equals("talkyg2"))                           this.algorithm = C.ALG_TALKY_G2;
+      else if (alg.equals("dtalkyg"))                           this.algorithm = C.ALG_DTALKY_G;
+      else if (alg.equals("talky"))                             this.algorithm = C.ALG_TALKY;
+      else if (alg.equals("eclat") || alg.equals("eclat1"))     this.algorithm = C.ALG_ECLAT_1;
+      else if (alg.equals("declat"))                            this.algorithm = C.ALG_DECLAT;
+      else throw new IllegalArgumentException("unknown algorithm: "+name);
+   }
+
+   /**
+    * @param threads Number of threads (Talky-G, Talky-G v2, dTalky-G).
+    */
+   public void setThreads(int threads)
+   {
+      if (threads < 1) throw new IllegalArgumentException("the number of threads should be a positive integer");
+      // else
+      this.threads = threads;
+   }
+
+   /**
+    * @param extents Should the extents of the patterns be computed? It needs a
+    * copy of the vertical representation of the dataset.
+    */
+   public void setExtents(boolean extents) {
+      this.extents = extents;
+   }
+
+   /**
+    * Stops the running search (or the next one). It can be called from any
+    * thread, e.g. by a timer; then mine() throws a CancellationException.
+    */
+   public void cancel()
+   {
+      this.cancelled = true;
+      Context context = this.running;
+      if (context != null) context.cancel();
+   }
+
+   /**
+    * Runs the miner. The patterns are given to the listener on the calling thread.
+    *
+    * @param listener Receives the patterns.
+    * @return Number of patterns.
+    * @throws java.util.concurrent.CancellationException If the run was cancelled (see cancel()).
+    */
+   public long mine(PatternListener listener)
+   {
+      if ((this.minSupp < 0) && (this.minSuppPercent == null)) {
+         throw new IllegalStateException("the min. support is not set");
+      }
+      // else
+      Context previous = Context.current();
+      Context context = (this.dataset != null) ? this.dataset.newContext() : new Context();
+      Context.bind(context);
+      Error.setEmbedded(true);
+      this.running = context;
+      try
+      {
+         if (this.cancelled) context.cancel();     // cancelled before the start
+         Context.checkCancelled();
+         Global.setAlgorithm(this.algorithm);
+         Global.setThreads(this.threads);
+         Database.setMinSupp(Math.max(this.minSupp, 0));
+         Database.setMinSuppPercent(this.minSuppPercent);
+         if (this.dataset != null)   Database.modifyMinSupp();
+         else if (this.file != null) readFile(this.file);
+         else                        registerObjects();
+         if (Database.getMinSupp() > Database.getNumberOfObjects()) {
+            throw new IllegalArgumentException("the min. support exceeds the number of objects ("+Database.getNumberOfObjects()+")");
+         }
+
+         Sink sink = new Sink(listener, this.extents ? getColumns() : null);
+         start(sink);
+         return sink.count;
+      }
+      finally
+      {
+         this.running = null;
+         Context.bind(previous);     // the context of the run (with the dataset) is freed
+      }
+   }
+
+   /**
+    * Runs the miner on a background thread.
+    *
+    * @return Iterator over the patterns. If it's not read to the end, it must be closed.
+    */
+   public PatternIterator iterator() {
+      return new PatternIterator(this);
+   }
+
+   /**
+    * Reads a dataset file in the current context.
+    *
+    * @param file The dataset (.basenum, .bool or .rcf).
+    */
+   static void readFile(String file)
+   {
+      Database.setDatabaseFileStr(file);
+      if (Database.getDatabaseFile().isFile() == false) {
+         throw new IllegalArgumentException("the dataset "+file+" was not found");
+      }
+      // else
+      if (FileFormatHandler.checkFileType(Database.getDatabaseFile()) == C.FT_UNKNOWN) {
+         throw new IllegalArgumentException("unknown file format: "+file);
+      }
+      // else
+      FileFormatHandler.readFile();
+      Database.postCheckPosBasenum();
+   }
+
+   /**
+    * Registers the objects in memory as a horizontal dataset.
+    */
+   private void registerObjects()
+   {
+      Vector<BitSet> database = new Vector<BitSet>(this.objects.size());
+      int longest = 0;
+      BitSet object;
+
+      for (int[] attrs : this.objects)
+      {
+         object = new BitSet();
+         for (int attr : attrs)
+         {
+            if (attr < 0) throw new IllegalArgumentException("negative attribute: "+attr);
+            object.set(attr);
+         }
+         longest = Math.max(longest, object.cardinality());
+         database.add(object);
+      }
+      Database.setDatabaseFileType(C.FT_BASENUM);
+      Database.setNumberOfObjects(database.size());
+      Database.setLongestItemset(longest);
+      Database.setDatabase(database, C.DBR_HORIZONTAL);
+   }
+
+   /**
+    * @return Copy of the vertical representation of the dataset (position i:
+    * the objects that contain attribute i). The miners free the dataset, thus
+    * it's copied before the search.
+    */
+   private static BitSet[] getColumns()
+   {
+      Vector<BitSet> database = Database.getDatabase();
+      BitSet[] columns;
+
+      if (Database.isDBRepresentationVertical())
+      {
+         columns = new BitSet[database.size()];
+         for (int attr = 0; attr < columns.length; ++attr) {
+            columns[attr] = (BitSet) database.get(attr).clone();
+         }
+      }
+      else
+      {
+         columns = new BitSet[Database.getTotalNumberOfAttr() + 1];
+         for (int attr = 0; attr < columns.length; ++attr) {
+            columns[attr] = new BitSet();
+         }
+         BitSet object;
+         for (int tid = 0; tid < database.size(); ++tid)
+         {
+            object = database.get(tid);
+            for (int attr = object.nextSetBit(0); attr >= 0; attr = object.nextSetBit(attr+1)) {
+               columns[attr].set(tid);
+            }
+         }
+      }
+      return columns;
+   }
+
+   /**
+    * Creates and starts the chosen algorithm.
+    *
+    * @param sink The patterns are given to this.
+    */
+   private void start(ResultSink sink)
+   {
+      Vector<BitSet> database = Database.getDatabase();
+      int minSupp = Database.getMinSupp();
+
+      switch (this.algorithm)
+      {
+         case C.ALG_TALKY_G:
+            TalkyG talkyg = new TalkyG(database, minSupp);
+            talkyg.setSink(sink);
+            talkyg.start();
+            break;
+         case C.ALG_TALKY_G2:
+            TalkyG2 talkyg2 = new TalkyG2(database, minSupp);
+            talkyg2.setSink(sink);
+            talkyg2.start();
+            break;
+         case C.ALG_DTALKY_G:
+            DTalkyG dtalkyg = new DTalkyG(database, minSupp);
+            dtalkyg.setSink(sink);
+            dtalkyg.start();
+            break;
+         case C.ALG_TALKY:
+            Talky talky = new Talky(database, minSupp);
+            talky.setSink(sink);
+            talky.start();
+            break;
+         case C.ALG_ECLAT_1:
+            Eclat1 eclat1 = new Eclat1(database, minSupp);
+            eclat1.setSink(sink);
+            eclat1.start();
+            break;
+         case C.ALG_DECLAT:
+            DEclat declat = new DEclat(database, minSupp);
+            declat.setSink(sink);
+            declat.start();
+            break;
+         default:
+            break;
+      }
+   }
+
+   /**
+    * Gives the patterns of a miner to a listener.
+    */
+   private static class Sink
+   implements ResultSink
+   {
+      /**
+       * The listener.
+       */
+      private final PatternListener listener;
+
+      /**
+       * Vertical representation of the dataset (null if the extents are not needed).
+       */
+      private final BitSet[] columns;
+
+      /**
+       * Number of patterns.
+       */
+      private long count;
+
+      /**
+       * Constructor.
+       *
+       * @param listener The listener.
+       * @param columns Vertical representation of the dataset (can be null).
+       */
+      Sink(PatternListener listener, BitSet[] columns)
+      {
+         this.listener = listener;
+         this.columns  = columns;
+         this.count    = 0;
+      }
+
+      /** (non-Javadoc)
+       * @see fr.loria.coronsys.coron.helper.ResultSink#add(java.util.BitSet, int)
+       */
+      public void add(BitSet intent, int supp)
+      {
+         int[] extent = null;
+         if (this.columns != null)
+         {
+            BitSet tids = null;
+            for (int attr = intent.nextSetBit(0); attr >= 0; attr = intent.nextSetBit(attr+1))
+            {
+               if (tids == null) tids = (BitSet) this.columns[attr].clone();
+               else              tids.and(this.columns[attr]);
+            }
+            if (tids == null)    // the empty set is in all the objects
+            {
+               tids = new BitSet();
+               tids.set(0, Database.getNumberOfObjects());
+            }
+            extent = toArray(tids);
+         }
+         ++this.count;
+         this.listener.pattern(toArray(intent), supp, extent);
+      }
+
+      /** (non-Javadoc)
+       * @see fr.loria.coronsys.coron.helper.ResultSink#flush()
+       */
+      public void flush() {
+      }
+
+      /** (non-Javadoc)
+       * @see fr.loria.coronsys.coron.helper.ResultSink#close()
+       */
+      public void close() {
+      }
+
+      /**
+       * @param bs A bitset.
+       * @return Its elements in ascending order.
+       */
+      private static int[] toArray(BitSet bs)
+      {
+         int[] array = new int[bs.cardinality()];
+         int i = 0;
+         for (int e = bs.nextSetBit(0); e >= 0; e = bs.nextSetBit(e+1)) {
+            array[i++] = e;
+         }
+         return array;
+      }
+   }
+}
@@ -0,0 +1,72 @@
+package fr.loria.coronsys.coron.api;
+
+/**
+ * A pattern of a Miner (an element of its iterator).
+ */
+public class Pattern
+{
+   /**
+    * The itemset.
+    */
+   private final int[] intent;
+
+   /**
+    * Its support.
+    */
+   private final int supp;
+
+   /**
+    * Its extent (null if it was not requested).
+    */
+   private final int[] extent;
+
+   /**
+    * Constructor.
+    *
+    * @param intent The itemset.
+    * @param supp Its support.
+    * @param extent Its extent (can be null).
+    */
+   public Pattern(int[] intent, int supp, int[] extent)
+   {
+      this.intent = intent;
+      this.supp   = supp;
+      this.extent = extent;
+   }
+
+   /**
+    * @return The itemset (its attributes in ascending order).
+    */
+   public int[] getIntent() {
+      return this.intent;
+   }
+
+   /**
+    * @return Support of the itemset.
+    */
+   public int getSupp() {
+      return this.supp;
+   }
+
+   /**
+    * @return The objects that contain the itemset (0-based, in ascending order),
+    * or null if the extents were not requested.
+    */
+   public int[] getExtent() {
+      return this.extent;
+   }
+
+   /**
+    * @return The pattern in the format of the output, e.g. "{1, 5, 8} (23)".
+    */
+   public String toString()
+   {
+      StringBuilder sb = new StringBuilder("{");
+      for (int i = 0; i < this.intent.length; ++i)
+      {
+         if (i > 0) sb.append(", ");
+         sb.append(this.intent[i]);
+      }
+      return sb.append("} (").append(this.supp).append(')').toString();
+   }
+}
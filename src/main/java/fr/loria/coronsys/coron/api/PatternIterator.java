@@ -0,0 +1,205 @@
+package fr.loria.coronsys.coron.api;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Iterator over the patterns of a Miner (see Miner.iterator()).
+ *
+ * The miner runs on a background thread and puts the patterns in a bounded
+ * queue; if the reader is slower than the miner, the miner waits. An error of
+ * the miner is thrown again by hasNext(). If the patterns are not read to the
+ * end, the iterator must be closed, then the search is cancelled (see Miner.cancel()).
+ */
+public class PatternIterator
+implements Iterator<Pattern>, Closeable
+{
+   /**
+    * Max. number of patterns waiting in the queue.
+    */
+   private final static int CAPACITY = 4096;
+
+   /**
+    * Put in the queue after the last pattern.
+    */
+   private final static Pattern END = new Pattern(new int[0], -1, null);
+
+   /**
+    * Thrown in the thread of the miner when the iterator was closed.
+    */
+   private static class Closed extends RuntimeException
+   {
+      private static final long serialVersionUID = 1L;
+   }
+
+   /**
+    * Patterns found by the miner, not read yet.
+    */
+   private final BlockingQueue<Pattern> queue;
+
+   /**
+    * The miner.
+    */
+   private final Miner miner;
+
+   /**
+    * The thread of the miner.
+    */
+   private final Thread thread;
+
+   /**
+    * Was the iterator closed?
+    */
+   private volatile boolean closed;
+
+   /**
+    * Error of the miner (null if none).
+    */
+   private volatile Throwable error;
+
+   /**
+    * The next pattern (null if it was not taken from the queue yet).
+    */
+   private Pattern next;
+
+   /**
+    * Was the last pattern read?
+    */
+   private boolean finished;
+
+   /**
+    * Constructor. Starts the miner.
+    *
+    * @param miner The miner.
+    */
+   PatternIterator(final Miner miner)
+   {
+      this.queue    = new ArrayBlockingQueue<Pattern>(CAPACITY);
+      this.miner    = miner;
+      this.closed   = false;
+      this.error    = null;
+      this.next     = null;
+      this.finished = false;
+
+      this.thread = new Thread("coron-miner") {
+         public void run()
+         {
+            try
+            {
+               miner.mine(new PatternListener() {
+                  public void pattern(int[] intent, int supp, int[] extent) {
+                     put(new Pattern(intent, supp, extent));
+                  }
+               });
+            }
+            catch (Closed e) {
+               // the reader doesn't need more patterns
+            }
+            catch (Throwable e) {
+               // after close() the cancellation is not an error
+               if (PatternIterator.this.closed == false) PatternIterator.this.error = e;
+            }
+            finally
+            {
+               try {
+                  put(END);
+               }
+               catch (Closed e) { }
+            }
+         }
+      };
+      this.thread.setDaemon(true);
+      this.thread.start();
+   }
+
+   /**
+    * @return The thread of the miner (used by the tests).
+    */
+   Thread getThread() {
+      return this.thread;
+   }
+
+   /**
+    * Puts a pattern in the queue. Waits while the queue is full.
+    *
+    * @param pattern The pattern.
+    */
+   private void put(Pattern pattern)
+   {
+      try
+      {
+         while (this.queue.offer(pattern, 100, TimeUnit.MILLISECONDS) == false)
+         {
+            if (this.closed) throw new Closed();
+         }
+      }
+      catch (InterruptedException e) {
+         throw new Closed();
+      }
+      if (this.closed) throw new Closed();
+   }
+
+   /** (non-Javadoc)
+    * @see java.util.Iterator#hasNext()
+    */
+   public boolean hasNext()
+   {
+      if (this.next != null) return true;
+      if (this.finished || this.closed) return false;
+      // else
+      try {
+         this.next = this.queue.take();
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new IllegalStateException("interrupted while waiting for the miner", e);
+      }
+      if (this.next == END)
+      {
+         this.next     = null;
+         this.finished = true;
+         Throwable e = this.error;
+         if (e instanceof RuntimeException) throw (RuntimeException) e;
+         if (e instanceof Error)            throw (Error) e;
+         return false;
+      }
+      // else
+      return true;
+   }
+
+   /** (non-Javadoc)
+    * @see java.util.Iterator#next()
+    */
+   public Pattern next()
+   {
+      if (this.hasNext() == false) throw new NoSuchElementException();
+      // else
+      Pattern pattern = this.next;
+      this.next = null;
+      return pattern;
+   }
+
+   /**
+    * Not supported.
+    */
+   public void remove() {
+      throw new UnsupportedOperationException();
+   }
+
+   /**
+    * Stops the miner and drops the patterns that were not read. The search is
+    * cancelled, thus it stops soon even if it finds no more patterns.
+    */
+   public void close()
+   {
+      this.closed = true;
+      this.miner.cancel();
+      this.next   = null;
+      this.queue.clear();
+   }
+}
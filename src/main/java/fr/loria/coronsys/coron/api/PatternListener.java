@@ -0,0 +1,17 @@
+package fr.loria.coronsys.coron.api;
+
+/**
+ * Receives the patterns of a Miner, in the order they are found.
+ */
+public interface PatternListener
+{
+   /**
+    * Called for each pattern, on the thread of the miner.
+    *
+    * @param intent The itemset (its attributes in ascending order).
+    * @param supp Its support.
+    * @param extent The objects that contain the itemset (0-based, in ascending
+    * order), or null if the extents were not requested (see Miner.setExtents()).
+    */
+   public void pattern(int[] intent, int supp, int[] extent);
+}
@@ -0,0 +1,702 @@
+package fr.loria.coronsys.coron.api;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import fr.loria.coronsys.coron.helper.ContextIndex;
+
+/**
+ * Mining server. It listens on localhost (HTTP), keeps the datasets in memory
+ * (see Dataset) and mines them on request, thus a repeated query doesn't pay
+ * for the start of the JVM and for the reading of the dataset.
+ *
+ * Start:
+ *
+ * java -cp coron.jar fr.loria.coronsys.coron.api.Server [-port:8765] [-workers:N] [-timeout:ms]
+ *    [-maxlimit:N] [-datadir:DIR] [dataset ...]
+ *
+ * Only the datasets given at the start and the files of the data directory
+ * can be requested (relative names are in the data directory), the others
+ * are refused (403).
+ *
+ * Requests (parameters in the query string, or in the body of a POST):
+ *
+ * /mine?data=FILE&minsupp=20%&alg=talkyg2&threads=1&limit=0&timeout=0
+ *    the patterns, one per line, like in the output of the command-line program;
+ *    they are sent while they are found. The last line is "# Patterns: N". If
+ *    the limit (number of patterns; 0: the maximum of the server) or the
+ *    timeout (ms; 0: the timeout of the server, a longer one is not allowed)
+ *    is reached, the search stops and a "# Stopped: ..." line is added. The
+ *    threads are between 1 and the number of processors. With a limit the
+ *    search runs on one thread (with several threads the patterns are given
+ *    later). The dataset is read at its first request.
+ * /closure?data=FILE&itemsets=1,3;2,5,7
+ *    the closure and the support of each itemset (one line per itemset, e.g.
+ *    "{1, 3} -> {1, 3, 4} (12)"; "none" if no object has the itemset). They are
+ *    computed with the index of the dataset (see Dataset.getIndex()).
+ * /load?data=FILE     reads a dataset (again, if it was modified); POST only
+ * /unload?data=FILE   forgets a dataset, a dataset given at the start cannot be
+ *                     requested any more (except from the data directory); POST only
+ * /datasets           the datasets in memory (file, objects, largest attribute)
+ *
+ * The requests are served by a pool of workers, each run has its own context.
+ * At the timeout the run is cancelled (see Miner.cancel()), the search stops
+ * at its next check, also when it runs on several threads.
+ */
+public class Server
+{
+   /**
+    * Default port.
+    */
+   public final static int DEFAULT_PORT = 8765;
+
+   /**
+    * Default maximum of the patterns sent for a request.
+    */
+   public final static long DEFAULT_MAX_LIMIT = 1000000;
+
+   /**
+    * The datasets in memory (key: canonical path of the file). A dataset is
+    * read by the first request that needs it; the others wait for its future.
+    */
+   private final ConcurrentMap<String, Future<Dataset>> datasets;
+
+   /**
+    * The datasets given at the start (canonical paths), they can be requested
+    * also outside the data directory.
+    */
+   private final Set<String> allowed;
+
+   /**
+    * Canonical path of the data directory (null: only the allowed datasets).
+    */
+   private final String dataDir;
+
+   /**
+    * Default timeout of a request in ms (0: no timeout).
+    */
+   private final long timeout;
+
+   /**
+    * Maximum of the patterns sent for a request (0: no maximum).
+    */
+   private final long maxLimit;
+
+   /**
+    * The HTTP server.
+    */
+   private final HttpServer http;
+
+   /**
+    * The workers of the HTTP server.
+    */
+   private final ExecutorService workers;
+
+   /**
+    * Cancels the runs at their timeout.
+    */
+   private final ScheduledExecutorService timer;
+
+   /**
+    * Thrown by the listener of a run to stop the search.
+    */
+   private static class Stop extends RuntimeException
+   {
+      private static final long serialVersionUID = 1L;
+   }
+
+   /**
+    * Constructor. The server is not started yet. Only the datasets given by
+    * load() can be requested, at most DEFAULT_MAX_LIMIT patterns.
+    *
+    * @param port Port on localhost (0: any free port).
+    * @param workers Number of requests served at the same time.
+    * @param timeout Default timeout of a request in ms (0: no timeout).
+    * @throws IOException If the port cannot be used.
+    */
+   public Server(int port, int workers, long timeout) throws IOException {
+      this(port, workers, timeout, DEFAULT_MAX_LIMIT, null);
+   }
+
+   /**
+    * Constructor. The server is not started yet.
+    *
+    * @param port Port on localhost (0: any free port).
+    * @param workers Number of requests served at the same time.
+    * @param timeout Default timeout of a request in ms (0: no timeout).
+    * @param maxLimit Maximum of the patterns sent for a request (0: no maximum).
+    * @param dataDir The files of this directory can be requested (null: only the datasets given by load()).
+    * @throws IOException If the port cannot be used, or the directory doesn't exist.
+    */
+   public Server(int port, int workers, long timeout, long maxLimit, String dataDir) throws IOException
+   {
+      if ((dataDir != null) && !new File(dataDir).isDirectory()) {
+         throw new IOException("not a directory: "+dataDir);
+      }
+      this.datasets = new ConcurrentHashMap<String, Future<Dataset>>();
+      this.allowed  = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+      this.dataDir  = (dataDir != null) ? new File(dataDir).getCanonicalPath() : null;
+      this.timeout  = timeout;
+      this.maxLimit = maxLimit;
+      this.workers  = Executors.newFixedThreadPool(workers);
+      this.timer    = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+         public Thread newThread(Runnable r)
+         {
+            Thread thread = new Thread(r, "server-timer");
+            thread.setDaemon(true);
+            return thread;
+         }
+      });
+      this.http     = HttpServer.create(new InetSocketAddress(InetAddress.getByName(null), port), 0);
+      this.http.setExecutor(this.workers);
+      this.http.createContext("/", new HttpHandler() {
+         public void handle(HttpExchange exchange) throws IOException {
+            serve(exchange);
+         }
+      });
+   }
+
+   /**
+    * Starts the server.
+    */
+   public void start() {
+      this.http.start();
+   }
+
+   /**
+    * Stops the server. The running requests are finished.
+    */
+   public void stop()
+   {
+      this.http.stop(0);
+      this.workers.shutdown();
+      this.timer.shutdownNow();
+   }
+
+   /**
+    * @return The port of the server.
+    */
+   public int getPort() {
+      return this.http.getAddress().getPort();
+   }
+
+   /**
+    * Reads a dataset and keeps it in memory. If it was read before, it's
+    * replaced. It can be requested then, even outside the data directory.
+    *
+    * @param file The dataset (.basenum, .bool or .rcf).
+    * @return The dataset.
+    */
+   public Dataset load(String file)
+   {
+      String key = key(new File(file));
+      this.allowed.add(key);
+      return this.reload(key);
+   }
+
+   /**
+    * Forgets a dataset. If it was given by load(), it cannot be requested any
+    * more, except from the data directory.
+    *
+    * @param key Canonical path of the dataset.
+    * @return False, if the dataset was not in memory.
+    */
+   private boolean unload(String key)
+   {
+      this.allowed.remove(key);
+      return (this.datasets.remove(key) != null);
+   }
+
+   /**
+    * Reads a dataset again. The old one is used by the other requests until
+    * the new one is ready; if the reading fails, the old one is kept.
+    *
+    * @param key Canonical path of the dataset.
+    * @return The dataset.
+    */
+   private Dataset reload(String key)
+   {
+      FutureTask<Dataset> task = reader(key);
+      task.run();
+      Dataset dataset = value(task);
+      this.datasets.put(key, task);
+      return dataset;
+   }
+
+   /**
+    * @param key Canonical path of a dataset.
+    * @return The dataset in memory; it's read if it's not in memory yet. A
+    * dataset is read once, even if several requests need it; the requests
+    * of the other datasets don't wait.
+    */
+   private Dataset get(String key)
+   {
+      Future<Dataset> future = this.datasets.get(key);
+      if (future == null)
+      {
+         FutureTask<Dataset> task = reader(key);
+         future = this.datasets.putIfAbsent(key, task);
+         if (future == null)
+         {
+            future = task;
+            task.run();
+         }
+      }
+      try {
+         return value(future);
+      }
+      catch (RuntimeException e)
+      {
+         this.datasets.remove(key, future);     // the next request tries again
+         throw e;
+      }
+   }
+
+   /**
+    * @param key Canonical path of a dataset.
+    * @return A task that reads the dataset.
+    */
+   private static FutureTask<Dataset> reader(final String key)
+   {
+      return new FutureTask<Dataset>(new Callable<Dataset>() {
+         public Dataset call() {
+            return new Dataset(key);
+         }
+      });
+   }
+
+   /**
+    * @param future A dataset being read.
+    * @return The dataset, when it's ready.
+    */
+   private static Dataset value(Future<Dataset> future)
+   {
+      try {
+         return future.get();
+      }
+      catch (ExecutionException e)
+      {
+         if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+         if (e.getCause() instanceof java.lang.Error)  throw (java.lang.Error) e.getCause();
+         // else
+         throw new IllegalStateException(e.getCause());
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new IllegalStateException("interrupted while the dataset was read");
+      }
+   }
+
+   /**
+    * @param file A dataset file of a request.
+    * @return Its canonical path; a relative name is in the data directory.
+    * @throws SecurityException If the dataset cannot be requested.
+    */
+   private String resolve(String file)
+   {
+      File f = new File(file);
+      if (!f.isAbsolute() && (this.dataDir != null)) f = new File(this.dataDir, file);
+      String key = key(f);
+      if (this.allowed.contains(key)) return key;
+      if ((this.dataDir != null) && key.startsWith(this.dataDir + File.separator)) return key;
+      // else
+      throw new SecurityException("the dataset is not available: "+file);
+   }
+
+   /**
+    * @param file A dataset file.
+    * @return Its canonical path.
+    */
+   private static String key(File file)
+   {
+      try {
+         return file.getCanonicalPath();
+      }
+      catch (IOException e) {
+         return file.getAbsolutePath();
+      }
+   }
+
+   /**
+    * Serves a request.
+    *
+    * @param exchange The request and its response.
+    * @throws IOException If the response cannot be sent.
+    */
+   private void serve(HttpExchange exchange) throws IOException
+   {
+      int code = 200;
+      String body;
+      try
+      {
+         Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+         String path = exchange.getRequestURI().getPath();
+         boolean post = exchange.getRequestMethod().equals("POST");
+         if (post) params.putAll(parseQuery(readBody(exchange)));
+
+         if (path.equals("/mine"))
+         {
+            this.mine(exchange, params);     // the response is streamed
+            return;
+         }
+         // else
+         if ((path.equals("/load") || path.equals("/unload")) && !post)
+         {
+            code = 405;
+            body = "Error: "+path+" needs a POST request\n";
+            exchange.getResponseHeaders().set("Allow", "POST");
+         }
+         else if (path.equals("/closure"))  body = this.closure(params);
+         else if (path.equals("/load"))     body = this.describe(this.reload(this.resolve(required(params, "data"))));
+         else if (path.equals("/unload"))   body = this.unload(this.resolve(required(params, "data"))) ? "ok\n" : "not loaded\n";
+         else if (path.equals("/datasets"))
+         {
+            StringBuilder sb = new StringBuilder();
+            for (Future<Dataset> future : this.datasets.values())
+            {
+               if (!future.isDone()) continue;     // being read
+               // else
+               try {
+                  sb.append(this.describe(value(future)));
+               }
+               catch (RuntimeException e) { }     // its reading failed
+            }
+            body = sb.toString();
+         }
+         else
+         {
+            code = 404;
+            body = "Error: unknown request: "+path+"\n";
+         }
+      }
+      catch (IllegalArgumentException e)
+      {
+         code = 400;
+         body = "Error: "+e.getMessage()+"\n";
+      }
+      catch (SecurityException e)
+      {
+         code = 403;
+         body = "Error: "+e.getMessage()+"\n";
+      }
+      catch (RuntimeException e)
+      {
+         code = 500;
+         body = "Error: "+e.getMessage()+"\n";
+      }
+
+      byte[] bytes = body.getBytes("UTF-8");
+      exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+      exchange.sendResponseHeaders(code, bytes.length);
+      OutputStream out = exchange.getResponseBody();
+      out.write(bytes);
+      out.close();
+   }
+
+   /**
+    * Mines a dataset. The patterns are written to the response while they are
+    * found. An invalid request is refused before the response is started (the
+    * exception is thrown); an error during the search is written as an
+    * "Error: ..." line.
+    *
+    * @param exchange The request and its response.
+    * @param params Parameters of the request.
+    * @throws IOException If the response cannot be sent.
+    */
+   private void mine(HttpExchange exchange, Map<String, String> params) throws IOException
+   {
+      final Dataset dataset = this.get(this.resolve(required(params, "data")));
+      final Miner miner = new Miner(dataset);
+
+      String minSupp = required(params, "minsupp");
+      try
+      {
+         if (minSupp.endsWith("%")) miner.setMinSuppPercent(Double.parseDouble(minSupp.substring(0, minSupp.length() - 1)));
+         else                       miner.setMinSupp(Integer.parseInt(minSupp));
+      }
+      catch (NumberFormatException e) {
+         throw new IllegalArgumentException("invalid min. support: "+minSupp);
+      }
+      if (params.containsKey("alg"))     miner.setAlgorithm(params.get("alg"));
+      if (params.containsKey("threads"))
+      {
+         int threads = number(params, "threads");
+         int max = Runtime.getRuntime().availableProcessors();
+         if ((threads < 1) || (threads > max)) {
+            throw new IllegalArgumentException("the threads must be between 1 and "+max);
+         }
+         miner.setThreads(threads);
+      }
+      long requested = params.containsKey("limit") ? number(params, "limit") : 0;
+      if ((this.maxLimit > 0) && (requested > this.maxLimit)) {
+         throw new IllegalArgumentException("the limit exceeds the maximum of the server ("+this.maxLimit+")");
+      }
+      if (requested > 0) miner.setThreads(1);     // with several threads the patterns are only given at the end
+      final long limit   = (requested > 0) ? requested : this.maxLimit;
+      // the timeout of the client can be shorter than the timeout of the server, not longer
+      long asked = params.containsKey("timeout") ? number(params, "timeout") : 0;
+      final long timeout = ((asked > 0) && ((this.timeout == 0) || (asked < this.timeout))) ? asked : this.timeout;
+
+      exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+      exchange.sendResponseHeaders(200, 0);     // chunked
+      final Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), "UTF-8"));
+      ScheduledFuture<?> alarm = null;
+      if (timeout > 0)
+      {
+         alarm = this.timer.schedule(new Runnable() {
+            public void run() {
+               miner.cancel();
+            }
+         }, timeout, TimeUnit.MILLISECONDS);
+      }
+
+      final long[] count = { 0 };
+      final boolean[] disconnected = { false };
+      String stopped = null;
+      try
+      {
+         miner.mine(new PatternListener() {
+            public void pattern(int[] intent, int supp, int[] extent)
+            {
+               if ((limit > 0) && (count[0] == limit)) throw new Stop();
+               // else
+               try {
+                  out.write(new Pattern(intent, supp, extent).toString());
+                  out.write('\n');
+               }
+               catch (IOException e)     // the client is gone
+               {
+                  disconnected[0] = true;
+                  throw new Stop();
+               }
+               ++count[0];
+            }
+         });
+      }
+      catch (Stop e) {
+         stopped = "the limit ("+limit+" patterns) was reached";
+      }
+      catch (CancellationException e) {
+         stopped = "the timeout ("+timeout+" ms) was reached";
+      }
+      catch (RuntimeException e) {
+         out.write("Error: "+e.getMessage()+"\n");
+      }
+      finally {
+         if (alarm != null) alarm.cancel(false);
+      }
+
+      if (disconnected[0])
+      {
+         exchange.close();
+         return;
+      }
+      // else
+      out.write("# Patterns: "+count[0]+"\n");
+      if (stopped != null) out.write("# Stopped: "+stopped+"\n");
+      out.close();
+   }
+
+   /**
+    * Computes the closures of itemsets.
+    *
+    * @param params Parameters of the request.
+    * @return The closures and the supports, one itemset per line.
+    */
+   private String closure(Map<String, String> params)
+   {
+      ContextIndex index = this.get(this.resolve(required(params, "data"))).getIndex();
+      String[] queries = required(params, "itemsets").split(";");
+      BitSet[] itemsets = new BitSet[queries.length];
+      for (int i = 0; i < queries.length; ++i)
+      {
+         itemsets[i] = new BitSet();
+         for (String attr : queries[i].split("[,\\s]+"))
+         {
+            if (attr.length() == 0) continue;
+            // else
+            try {
+               itemsets[i].set(Integer.parseInt(attr));
+            }
+            catch (RuntimeException e) {     // not a number, or negative
+               throw new IllegalArgumentException("invalid attribute: "+attr);
+            }
+         }
+      }
+
+      BitSet[] closures = index.getClosures(itemsets);
+      int[] supps = index.getSupports(itemsets);
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < itemsets.length; ++i)
+      {
+         sb.append(itemsets[i]).append(" -> ");
+         if (closures[i] == null) sb.append("none");
+         else                     sb.append(closures[i]);
+         sb.append(" (").append(supps[i]).append(")\n");
+      }
+      return sb.toString();
+   }
+
+   /**
+    * @param dataset A dataset in memory.
+    * @return Its file, number of objects and largest attribute in a line.
+    */
+   private String describe(Dataset dataset) {
+      return key(new File(dataset.getFile()))+"\t"+dataset.getNumberOfObjects()+"\t"+dataset.getLargestAttr()+"\n";
+   }
+
+   /**
+    * @param query The query string of a request (can be null).
+    * @return Its parameters.
+    */
+   private static Map<String, String> parseQuery(String query)
+   {
+      Map<String, String> params = new HashMap<String, String>();
+      if ((query == null) || (query.length() == 0)) return params;
+      // else
+      try
+      {
+         for (String pair : query.split("&"))
+         {
+            int pos = pair.indexOf('=');
+            if (pos < 0) params.put(URLDecoder.decode(pair, "UTF-8"), "");
+            else         params.put(URLDecoder.decode(pair.substring(0, pos), "UTF-8"), URLDecoder.decode(pair.substring(pos + 1), "UTF-8"));
+         }
+      }
+      catch (UnsupportedEncodingException e) {
+         throw new IllegalStateException(e);
+      }
+      return params;
+   }
+
+   /**
+    * @param exchange A request.
+    * @return Its body as text (form parameters, like a query string).
+    * @throws IOException If the body cannot be read.
+    */
+   private static String readBody(HttpExchange exchange) throws IOException
+   {
+      InputStream in = exchange.getRequestBody();
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buf = new byte[4096];
+      int n;
+      while ((n = in.read(buf)) > 0) bytes.write(buf, 0, n);
+      return bytes.toString("UTF-8").trim();
+   }
+
+   /**
+    * @param params Parameters of a request.
+    * @param name A parameter.
+    * @return Its value.
+    */
+   private static String required(Map<String, String> params, String name)
+   {
+      String value = params.get(name);
+      if ((value == null) || (value.length() == 0)) throw new IllegalArgumentException("the parameter '"+name+"' is missing");
+      // else
+      return value;
+   }
+
+   /**
+    * @param params Parameters of a request.
+    * @param name A parameter.
+    * @return Its value as a non-negative integer.
+    */
+   private static int number(Map<String, String> params, String name)
+   {
+      try
+      {
+         int value = Integer.parseInt(params.get(name));
+         if (value >= 0) return value;
+      }
+      catch (NumberFormatException e) { }
+      throw new IllegalArgumentException("invalid value of '"+name+"': "+params.get(name));
+   }
+
+   /**
+    * Starts a server.
+    *
+    * @param args [-port:N] [-workers:N] [-timeout:ms] [-maxlimit:N] [-datadir:DIR] [dataset ...]
+    * @throws IOException If the port cannot be used.
+    */
+   public static void main(String[] args) throws IOException
+   {
+      int port     = DEFAULT_PORT;
+      int workers  = Runtime.getRuntime().availableProcessors();
+      long timeout = 0;
+      long maxLimit  = DEFAULT_MAX_LIMIT;
+      String dataDir = null;
+      int i;
+
+      for (i = 0; (i < args.length) && args[i].startsWith("-"); ++i)
+      {
+         String arg = args[i];
+         try
+         {
+            if (arg.startsWith("-port:"))         port    = Integer.parseInt(arg.substring(6));
+            else if (arg.startsWith("-workers:")) workers = Math.max(1, Integer.parseInt(arg.substring(9)));
+            else if (arg.startsWith("-timeout:")) timeout = Long.parseLong(arg.substring(9));
+            else if (arg.startsWith("-maxlimit:")) maxLimit = Long.parseLong(arg.substring(10));
+            else if (arg.startsWith("-datadir:")) dataDir = arg.substring(9);
+            else
+            {
+               System.err.println("Error: unknown option: "+arg);
+               System.exit(-1);
+            }
+         }
+         catch (NumberFormatException e)
+         {
+            System.err.println("Error: invalid option: "+arg);
+            System.exit(-1);
+         }
+      }
+
+      Server server = new Server(port, workers, timeout, maxLimit, dataDir);
+      for (; i < args.length; ++i)
+      {
+         try {
+            System.err.print("> Dataset in memory: "+server.describe(server.load(args[i])));
+         }
+         catch (RuntimeException e)
+         {
+            System.err.println("Error: "+e.getMessage());
+            System.exit(-1);
+         }
+      }
+      server.start();
+      System.err.println("> Listening on http://localhost:"+server.getPort()+"/");
+   }
+}
@@ -0,0 +1,121 @@
+package fr.loria.coronsys.coron.datastructure.charm;
+
+import java.util.BitSet;
+
+import fr.loria.coronsys.coron.datastructure.tidset.Tidset;
+
+/**
+ * Extents of the IT-nodes when each node chooses its own representation
+ * (-adaptive): a tidset or a diffset, whichever is smaller. Diffsets are
+ * small on dense datasets, tidsets on sparse ones; since the choice is made
+ * node by node, the same search suits all densities.
+ *
+ * The diffset of a node PX is d(PX) = t(P) - t(PX), where P is the parent of PX.
+ * Let PX and PY be two brothers, and PXY the child of PX:
+ *
+ *    t(PX) and t(PY):  t(PXY) = t(PX) and t(PY), or d(PXY) = t(PX) - t(PY)
+ *    t(PX) and d(PY):  t(PXY) = t(PX) - d(PY)
+ *    d(PX) and t(PY):  t(PXY) = t(PY) - d(PX)
+ *    d(PX) and d(PY):  d(PXY) = d(PY) - d(PX)
+ *
+ * and supp(PXY) = |t(PXY)| = supp(PX) - |d(PXY)|. If PX has a tidset, the
+ * other representation of the child is t(PX) - t(PXY) or t(PX) - d(PXY),
+ * thus the child gets the smaller one. If PX has a diffset, the child keeps
+ * what could be computed (t(PX) is not known).
+ *
+ * The hash of a node is the sum of its tids modulo the hash size. If a node
+ * has a diffset, its hash is derived from the hash of its parent
+ * (see ITnode.calculateHashByDiffsets()), otherwise it's computed from the tidset.
+ */
+public class AdaptiveExtent
+{
+   /**
+    * Empty private constructor. The class cannot be instantiated.
+    */
+   private AdaptiveExtent() {
+   }
+
+   /**
+    * Chooses the representation of a direct child of the root. The parent is the
+    * root whose tidset contains all the objects, thus the diffset of the node is the
+    * set of objects that don't have the attribute. The hash of the node is computed
+    * before (from the tidset).
+    *
+    * @param node A direct child of the root with its tidset.
+    * @param tidset Tidset of the node.
+    * @param nbObjects Number of tids in the database (the tids are 1..nbObjects).
+    */
+   public static void initNode(ITnode node, BitSet tidset, int nbObjects)
+   {
+      int supp = tidset.cardinality();
+      if (nbObjects - supp < supp)
+      {
+         node.getHash();
+         BitSet diffset = new BitSet(nbObjects + 1);
+         diffset.set(1, nbObjects + 1);
+         diffset.andNot(tidset);
+         node.setExtent(diffset);
+         node.setDiffset(true);
+      }
+   }
+
+   /**
+    * Creates the child of curr with its brother other. The extent, the
+    * support and the representation of the child are set, but not the intent
+    * and the hash.
+    *
+    * @param itTree The IT-tree of the nodes.
+    * @param curr Current node (PX).
+    * @param other The brother of the current node (PY).
+    * @param minSupp Min. support.
+    * @return The child (PXY), or null if it's not frequent.
+    */
+   public static ITnode join(ITtree itTree, ITnode curr, ITnode other, int minSupp)
+   {
+      Tidset x = curr.getExtent(),
+             y = other.getExtent();
+      Tidset extent;
+      boolean diffset;
+      int supp;
+
+      if (curr.isDiffset() == false)
+      {
+         if (other.isDiffset() == false) {
+            extent = x.and(y, minSupp);
+         }
+         else
+         {
+            extent = x.andNot(y);
+            if (extent.cardinality() < minSupp) extent = null;
+         }
+         if (extent == null) return null;
+         // else
+         supp    = extent.cardinality();
+         diffset = (curr.getSupp() - supp < supp);
+         if (diffset) extent = x.andNot(extent);   // the diffset is smaller
+      }
+      else if (other.isDiffset())
+      {
+         // the diffset is created only if the child is frequent
+         extent = y.andNot(x, curr.getSupp() - minSupp);
+         if (extent == null) return null;
+         // else
+         supp    = curr.getSupp() - extent.cardinality();
+         diffset = true;
+      }
+      else
+      {
+         extent = y.andNot(x);
+         supp   = extent.cardinality();
+         if (supp < minSupp) return null;
+         // else
+         diffset = false;
+      }
+
+      ITnode child = new ITnode(itTree);
+      child.setExtent(extent);
+      child.setSupp(supp);
+      child.setDiffset(diffset);
+      return child;
+   }
+}
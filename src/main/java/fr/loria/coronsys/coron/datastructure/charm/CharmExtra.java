@@ -3,6 +3,9 @@ package fr.loria.coronsys.coron.datastructure.charm;
 import java.util.BitSet;
 import java.util.Enumeration;
 import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 import fr.loria.coronsys.coron.datastructure.Row;
 import fr.loria.coronsys.coron.datastructure.Row_predSupp;
@@ -13,6 +16,7 @@ import fr.loria.coronsys.coron.datastructure.pascal.Table_Pascal_F;
 import fr.loria.coronsys.coron.datastructure.pascal.Table_Pascal_FC;
 import fr.loria.coronsys.coron.datastructure.trie.Trie;
 import fr.loria.coronsys.coron.helper.C;
+import fr.loria.coronsys.coron.helper.Context;
 import fr.loria.coronsys.coron.helper.Database;
 import fr.loria.coronsys.coron.helper.Global;
 import fr.loria.coronsys.coron.helper.Statistics;
@@ -25,6 +29,25 @@ import fr.loria.coronsys.coron.helper.Statistics;
 */
 public class CharmExtra
 {
+   /**
+    * With less objects per thread the F_2 matrix and the vertical conversion
+    * are computed on one thread.
+    */
+   private final static int MIN_OBJECTS_PER_THREAD = 4096;
+   
+   /**
+    * A job on a range of objects (or attributes), run by runOnRanges().
+    */
+   private static abstract class RangeJob
+   {
+      /**
+       * @param part Index of the range.
+       * @param from First element of the range.
+       * @param to End of the range (exclusive).
+       */
+      abstract void run(int part, int from, int to);
+   }
+   
    /**
     * The dataset in horizontal format.
     */
@@ -35,6 +58,11 @@ public class CharmExtra
     */
    private int min_supp;
    
+   /**
+    * Number of threads, if it's fixed (used by the tests). If 0, see getPartitions().
+    */
+   int partitions = 0;
+   
    /**
     * It'll contain all the attributes.
     */
@@ -50,7 +78,8 @@ public class CharmExtra
    {
       this.database     = database;
       this.attributes   = new BitSet();
-      init_attributes(database);
+      // a vertical database (read directly in vertical representation) has no lines
+      if (Database.isDBRepresentationHorizontal()) init_attributes(database);
       this.min_supp     = min_supp;
    }
 
@@ -97,29 +126,181 @@ public class CharmExtra
     */
    public int[][] getF2Matrix()
    {
+      int[][] counted = Database.getF2Matrix();
+      if (counted != null)
+      {
+         // it was counted while the database was read
+         Database.freeF2Matrix();
+         return counted;
+      }
+      // else
+      if (Database.isDBRepresentationVertical()) return getF2MatrixVertical();
+      // else
       if (Global.followFunctions()) System.err.println("> Calculating frequent 2-itemesets...");
       long startTime = System.currentTimeMillis();
-      int max = Database.getTotalNumberOfAttr();
+      final int max = Database.getTotalNumberOfAttr();
+      final int[][] matrix = newF2Matrix(max);
+      
+      // each thread needs its own matrix, don't use more threads than the memory allows
+      long matrixBytes = 2L * max * (max + 1);
+      Runtime rt = Runtime.getRuntime();
+      long available = rt.maxMemory() - (rt.totalMemory() - rt.freeMemory());
+      int parts = (int) Math.min(this.getPartitions(), 1 + available / (2 * Math.max(matrixBytes, 1)));
+      
+      // an array: the threads don't synchronize on the vector
+      final BitSet[] rows = this.database.toArray(new BitSet[0]);
+      if (parts <= 1) {
+         countPairs(matrix, rows, max, 0, rows.length);
+      }
+      else
+      {
+         // the threads count the 2-itemsets of different objects, then the matrices are summed
+         final int[][][] partial = new int[parts][][];
+         partial[0] = matrix;
+         runOnRanges(parts, rows.length, 1, new RangeJob() {
+            void run(int part, int from, int to) {
+               if (part > 0) partial[part] = newF2Matrix(max);
+               countPairs(partial[part], rows, max, from, to);
+            }
+         });
+         for (int p = 1; p < parts; ++p)
+         {
+            for (int i = 0; i < matrix.length; ++i)
+               for (int j = 0; j < matrix[i].length; ++j)
+                  matrix[i][j] += partial[p][i][j];
+            partial[p] = null;
+         }
+      }
+      
+      //printMatrix(matrix);
+      //System.err.println("DB: "+this.database);
+      //System.err.println("Largest attribute: "+Database.getLargestAttr());
+      if (Global.followFunctions()) {
+         System.err.print("> Calculating frequent 2-itemesets: done. ");
+         System.err.println("Elapsed time: "+Statistics.getRuntime(System.currentTimeMillis() - startTime)+" sec.");
+      }
+      return matrix;
+   }
+   
+   /**
+    * @param max The largest attribute.
+    * @return An empty triangular matrix for the 2-patterns.
+    */
+   private static int[][] newF2Matrix(int max)
+   {
       int[][] matrix = new int[max][];
       
       for (int i = 0; i < matrix.length; ++i)
          matrix[i] = new int[max-i];
-      
+      return matrix;
+   }
+   
+   /**
+    * Counts the 2-patterns of some objects.
+    * 
+    * @param matrix The triangular matrix.
+    * @param rows The objects.
+    * @param max The largest attribute.
+    * @param from First object.
+    * @param to End of the objects (exclusive).
+    */
+   private static void countPairs(int[][] matrix, BitSet[] rows, int max, int from, int to)
+   {
       BitSet set;
       int first, second;
-      for (Enumeration<BitSet> e = this.database.elements(); e.hasMoreElements(); )
+      // if identical objects were folded, an object is counted as many times as its weight
+      int[] weights = Database.getWeights();
+      int w = 1;
+      for (int row = from; row < to; ++row)
       {
-         set = e.nextElement();
+         set = rows[row];
          if (set.cardinality() < 2) continue;
+         if (weights != null) w = weights[row+1];
          
          for (first=set.nextSetBit(0); first>=0; first=set.nextSetBit(first+1)) 
             for (second = set.nextSetBit(first+1); second>=0; second=set.nextSetBit(second+1))
-               ++matrix[first][max-second];
+               matrix[first][max-second] += w;
+      }
+   }
+   
+   /**
+    * @return Number of threads for the F_2 matrix and the vertical conversion (-threads:N,
+    * but not more than the number of processors).
+    */
+   private int getPartitions()
+   {
+      if (this.partitions > 0) return this.partitions;
+      // else
+      int threads = Math.min(Global.getThreads(), Runtime.getRuntime().availableProcessors());
+      return Math.max(1, Math.min(threads, this.database.size() / MIN_OBJECTS_PER_THREAD));
+   }
+   
+   /**
+    * Splits [0, size) into parts consecutive ranges and runs the job on each range
+    * in a separate thread. Returns when all the jobs are done.
+    * 
+    * @param parts Number of ranges (and threads).
+    * @param size Number of elements.
+    * @param align Each range, except the last one, ends at a multiple of this.
+    * @param job The job.
+    */
+   private static void runOnRanges(int parts, int size, int align, final RangeJob job)
+   {
+      Vector<ForkJoinTask<?>> tasks = new Vector<ForkJoinTask<?>>();
+      ForkJoinPool pool = Context.newPool(parts);
+      
+      try
+      {
+         int from = 0, to;
+         for (int p = 0; p < parts; ++p)
+         {
+            to = (p == parts - 1) ? size : (int) (((long) size * (p + 1) / parts) / align * align);
+            final int part = p, f = from, t = Math.max(from, to);
+            tasks.add(pool.submit(new RecursiveAction() {
+               protected void compute() {
+                  job.run(part, f, t);
+               }
+            }));
+            from = t;
+         }
+         for (ForkJoinTask<?> task : tasks) {
+            task.join();
+         }
+      }
+      finally {
+         pool.shutdown();
+      }
+   }
+   
+   /**
+    * Calculates frequent 2-patterns from a vertical database, by intersecting the tidsets.
+    * Used if the database was read in vertical representation without counting the 2-patterns.
+    * 
+    * @return Frequent 2-patterns stored in a triangular matrix.
+    */
+   private int[][] getF2MatrixVertical()
+   {
+      if (Global.followFunctions()) System.err.println("> Calculating frequent 2-itemesets...");
+      long startTime = System.currentTimeMillis();
+      int max = Database.getTotalNumberOfAttr();
+      int[][] matrix = new int[max][];
+      BitSet tidset, and;
+      int first, second;
+      
+      for (first = 0; first < matrix.length; ++first)
+      {
+         matrix[first] = new int[max-first];
+         tidset = this.database.get(first);
+         if (tidset.isEmpty()) continue;
+         // else
+         for (second = first+1; second <= max; ++second)
+         {
+            and = (BitSet) tidset.clone();
+            and.and(this.database.get(second));
+            matrix[first][max-second] = Database.getSupport(and);
+         }
       }
       
-      //printMatrix(matrix);
-      //System.err.println("DB: "+this.database);
-      //System.err.println("Largest attribute: "+Database.getLargestAttr());
       if (Global.followFunctions()) {
          System.err.print("> Calculating frequent 2-itemesets: done. ");
          System.err.println("Elapsed time: "+Statistics.getRuntime(System.currentTimeMillis() - startTime)+" sec.");
@@ -317,7 +498,6 @@ public class CharmExtra
     * 
     * @return Returns the vertical database.
     */
-   @SuppressWarnings("unchecked")
    public Vector<BitSet> convertDBHorizontal2Vertical()
    {
       // if the DB is already in vertical format, then return it
@@ -327,26 +507,33 @@ public class CharmExtra
       if (Global.followFunctions()) System.err.println("> Converting DB from horizontal to vertical...");
       int sizeH = this.database.size();      // size of horizontal DB
       int sizeV;                             // size of vertical DB
-      Vector vertV = new Vector();           // vertical vector, to be built
+      Vector<BitSet> vertV = new Vector<BitSet>();   // vertical vector, to be built
       BitSet set;                            // a line in the horizontal DB
       int attr, j, row;
       
       long startTime = System.currentTimeMillis();
-      for (row=0; row < sizeH; ++row)        // loop over the rows of the horizontal DB
+      int parts = this.getPartitions();
+      if (parts > 1) {
+         vertV = convertParallel(parts);
+      }
+      else
       {
-         set = (BitSet) this.database.get(row);
-         // loop over the attributes of a line
-         for (attr = set.nextSetBit(0); attr >= 0; attr = set.nextSetBit(attr+1))
+         for (row=0; row < sizeH; ++row)        // loop over the rows of the horizontal DB
          {
-            // dynamic expansion of the vector
-            if ((sizeV = vertV.size()) < (attr+1)) {
-               for (j=0; j<(attr+1-sizeV); ++j) vertV.add(new BitSet());
+            set = this.database.get(row);
+            // loop over the attributes of a line
+            for (attr = set.nextSetBit(0); attr >= 0; attr = set.nextSetBit(attr+1))
+            {
+               // dynamic expansion of the vector
+               if ((sizeV = vertV.size()) < (attr+1)) {
+                  for (j=0; j<(attr+1-sizeV); ++j) vertV.add(new BitSet());
+               }
+               vertV.get(attr).set(row+1);
             }
-            ((BitSet) vertV.get(attr)).set(row+1);
+            // when a line was processed in the horizontal DB, delete it
+            // we don't need it anymore, so destroy it parallely to save memory
+            this.database.set(row, null);
          }
-         // when a line was processed in the horizontal DB, delete it
-         // we don't need it anymore, so destroy it parallely to save memory
-         this.database.set(row, null);
       }
       if (Global.followFunctions()) {
          System.err.print("> Converting DB from horizontal to vertical: done. ");
@@ -359,6 +546,87 @@ public class CharmExtra
       return Database.getDatabase();
    }
 
+   /**
+    * Converts the database from horizontal to vertical representation on several threads.
+    * 
+    * Each thread builds the tidsets of a range of objects. A range starts at a
+    * multiple of 64, and the tids in a block are stored relative to the start
+    * of the range, thus a block is as long as its range. Then the blocks of each
+    * attribute are joined (on several threads too) by OR-ing their words at
+    * the right offset. The result is the same as with one thread.
+    * 
+    * @param parts Number of threads.
+    * @return The vertical database.
+    */
+   private Vector<BitSet> convertParallel(final int parts)
+   {
+      final BitSet[] rows = this.database.toArray(new BitSet[0]);
+      final int[] offsets = new int[parts];         // first object of each range
+      @SuppressWarnings("unchecked")
+      final Vector<BitSet>[] blocks = new Vector[parts];
+      
+      // the horizontal DB is not needed anymore, the rows are released by the threads
+      for (int row = 0; row < rows.length; ++row) this.database.set(row, null);
+      
+      runOnRanges(parts, rows.length, 64, new RangeJob() {
+         void run(int part, int from, int to) {
+            Vector<BitSet> block = new Vector<BitSet>();
+            BitSet set;
+            int attr, sizeV;
+            
+            offsets[part] = from;
+            for (int row = from; row < to; ++row)
+            {
+               set = rows[row];
+               for (attr = set.nextSetBit(0); attr >= 0; attr = set.nextSetBit(attr+1))
+               {
+                  if ((sizeV = block.size()) < (attr+1)) {
+                     for (int j = 0; j < (attr+1-sizeV); ++j) block.add(new BitSet());
+                  }
+                  block.get(attr).set(row+1 - from);      // tid relative to the range
+               }
+               rows[row] = null;
+            }
+            blocks[part] = block;
+         }
+      });
+      
+      int nbAttr = 0;
+      for (int p = 0; p < parts; ++p) nbAttr = Math.max(nbAttr, blocks[p].size());
+      final BitSet[] tidsets = new BitSet[nbAttr];
+      
+      // joining the blocks of each attribute
+      runOnRanges(Math.min(parts, Math.max(nbAttr, 1)), nbAttr, 1, new RangeJob() {
+         void run(int part, int from, int to) {
+            long[][] words = new long[parts][];
+            int length, p, k, offset;
+            
+            for (int attr = from; attr < to; ++attr)
+            {
+               length = 0;
+               for (p = 0; p < parts; ++p)
+               {
+                  words[p] = (attr < blocks[p].size()) ? blocks[p].get(attr).toLongArray() : new long[0];
+                  if (words[p].length > 0) length = Math.max(length, offsets[p] / 64 + words[p].length);
+               }
+               long[] result = new long[length];
+               for (p = 0; p < parts; ++p)
+               {
+                  offset = offsets[p] / 64;
+                  for (k = 0; k < words[p].length; ++k) result[offset + k] |= words[p][k];
+                  words[p] = null;
+                  if (attr < blocks[p].size()) blocks[p].set(attr, null);
+               }
+               tidsets[attr] = BitSet.valueOf(result);
+            }
+         }
+      });
+      
+      Vector<BitSet> vertV = new Vector<BitSet>(nbAttr);
+      for (int attr = 0; attr < nbAttr; ++attr) vertV.add(tidsets[attr]);
+      return vertV;
+   }
+   
    /**
     * Converts the database from vertical to horizontal representation.
     * Registers it too.
@@ -0,0 +1,212 @@
+package fr.loria.coronsys.coron.datastructure.charm;
+
+import java.util.BitSet;
+import java.util.Vector;
+
+import fr.loria.coronsys.coron.helper.ResultSink;
+
+/**
+ * A part of the IT-tree that is explored by one task when Talky-G (or one of
+ * its variants) runs with several threads: a direct child of the root, or a
+ * node of a large sub-equivalence class (see ParallelFgSearch), with all its
+ * descendants. A task can fork the children of a node into sub-branches
+ * (see fork()); their FGs come at the position of the fork.
+ *
+ * FGs of a branch are not printed immediately, they are collected here in
+ * the order they were found. Since another branch may still be running,
+ * a subset of a candidate can be missing from the FG store. Thus an FG
+ * of a branch is only a potential FG until the branches before it are
+ * finished and it is verified against the store.
+ */
+public class FgBranch
+{
+   /**
+    * The itemset of the node at the top of the branch (its prefix).
+    */
+   private BitSet prefix;
+
+   /**
+    * Potential FGs of this branch in the order they were found (without the
+    * FGs of the sub-branches).
+    */
+   private Vector<FgElem> fgs;
+
+   /**
+    * The sub-branches, in the order they were forked.
+    */
+   private Vector<FgBranch> subBranches;
+
+   /**
+    * Position of each sub-branch among the FGs (the number of FGs of this
+    * branch before the sub-branch).
+    */
+   private Vector<Integer> subPositions;
+
+   /**
+    * Number of skipped infrequent 2-itemsets in this branch.
+    */
+   private long skipCnt;
+
+   /**
+    * Number of deleted infrequent candidates in this branch.
+    */
+   private long rareCand;
+
+   /**
+    * Constructor.
+    *
+    * @param prefix The itemset of the node at the top of the branch.
+    */
+   public FgBranch(BitSet prefix)
+   {
+      this.prefix       = prefix;
+      this.fgs          = new Vector<FgElem>();
+      this.subBranches  = new Vector<FgBranch>();
+      this.subPositions = new Vector<Integer>();
+      this.skipCnt      = 0;
+      this.rareCand     = 0;
+   }
+
+   /**
+    * Is the given itemset part of this branch? An itemset belongs to the
+    * branch if it contains the prefix of the branch. In this case it is
+    * explored by the task of the branch (or by one of its sub-branches, that
+    * are joined before the task goes on) before any of its supersets.
+    *
+    * @param itemset An itemset.
+    * @return True, if the itemset contains the prefix of the branch.
+    */
+   public boolean owns(BitSet itemset)
+   {
+      for (int attr = this.prefix.nextSetBit(0); attr >= 0; attr = this.prefix.nextSetBit(attr+1)) {
+         if (itemset.get(attr) == false) return false;
+      }
+      return true;
+   }
+
+   /**
+    * Creates a sub-branch at the current position. Only the task of this
+    * branch calls it.
+    *
+    * @param prefix The itemset of the node at the top of the sub-branch.
+    * @return The sub-branch.
+    */
+   public FgBranch fork(BitSet prefix)
+   {
+      FgBranch sub = new FgBranch(prefix);
+      this.subBranches.add(sub);
+      this.subPositions.add(this.fgs.size());
+      return sub;
+   }
+
+   /**
+    * @return The sub-branches, in the order they were forked.
+    */
+   public Vector<FgBranch> getSubBranches() {
+      return this.subBranches;
+   }
+
+   /**
+    * Registers a potential FG.
+    *
+    * @param intent Intent of the FG.
+    * @param supp Support of the FG.
+    * @param hash Hash value of the node (if the FG store needs it).
+    */
+   public void add(BitSet intent, int supp, int hash) {
+      this.fgs.add(new FgElem(intent, supp, hash));
+   }
+
+   /**
+    * @return The potential FGs of this branch in the order they were found
+    * (without the FGs of the sub-branches).
+    */
+   public Vector<FgElem> getFgs() {
+      return this.fgs;
+   }
+
+   /**
+    * Replace the list of potential FGs by the verified ones. The sub-branches
+    * keep their positions.
+    *
+    * @param keep keep[i]: is the i-th FG kept?
+    */
+   public void retain(boolean[] keep)
+   {
+      Vector<FgElem> kept = new Vector<FgElem>();
+      int sub = 0;
+      for (int i = 0; i < keep.length; ++i)
+      {
+         while ((sub < this.subPositions.size()) && (this.subPositions.get(sub) == i)) {
+            this.subPositions.set(sub++, kept.size());
+         }
+         if (keep[i]) kept.add(this.fgs.get(i));
+      }
+      while (sub < this.subPositions.size()) {
+         this.subPositions.set(sub++, kept.size());
+      }
+      this.fgs = kept;
+   }
+
+   /**
+    * Writes the FGs of the branch and of its sub-branches, in the order
+    * they were found.
+    *
+    * @param sink The FGs are written here (null: they are only counted).
+    * @return Number of FGs.
+    */
+   public int writeTo(ResultSink sink)
+   {
+      int cnt = 0;
+      int i = 0;
+      for (int sub = 0; sub <= this.subBranches.size(); ++sub)
+      {
+         int end = (sub < this.subBranches.size()) ? this.subPositions.get(sub) : this.fgs.size();
+         for (; i < end; ++i)
+         {
+            ++cnt;
+            if (sink != null) sink.add(this.fgs.get(i).getIntent(), this.fgs.get(i).getSupp());
+         }
+         if (sub < this.subBranches.size()) cnt += this.subBranches.get(sub).writeTo(sink);
+      }
+      return cnt;
+   }
+
+   /**
+    * Increase the number of skipped infrequent 2-itemsets by 1.
+    */
+   public void incSkipCnt() {
+      ++this.skipCnt;
+   }
+
+   /**
+    * @return Number of skipped infrequent 2-itemsets in this branch and in its sub-branches.
+    */
+   public long getSkipCnt()
+   {
+      long cnt = this.skipCnt;
+      for (FgBranch sub : this.subBranches) {
+         cnt += sub.getSkipCnt();
+      }
+      return cnt;
+   }
+
+   /**
+    * Increase the number of deleted infrequent candidates by 1.
+    */
+   public void incRareCand() {
+      ++this.rareCand;
+   }
+
+   /**
+    * @return Number of deleted infrequent candidates in this branch and in its sub-branches.
+    */
+   public long getRareCand()
+   {
+      long cnt = this.rareCand;
+      for (FgBranch sub : this.subBranches) {
+         cnt += sub.getRareCand();
+      }
+      return cnt;
+   }
+}
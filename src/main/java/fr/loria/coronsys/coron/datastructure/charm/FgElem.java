@@ -0,0 +1,65 @@
+package fr.loria.coronsys.coron.datastructure.charm;
+
+import java.util.BitSet;
+
+import fr.loria.coronsys.coron.helper.Database;
+
+/**
+ * An FG that was found in a branch of the IT-tree during a parallel search.
+ * Besides the intent and the support it remembers the hash value of the
+ * node, thus the node (and its tidset) can be freed while the FG is still
+ * waiting to be verified.
+ */
+public class FgElem extends HashElem
+{
+   /**
+    * Hash value of the node (see ITnode.getHash()).
+    */
+   private int hash;
+
+   /**
+    * Constructor.
+    *
+    * @param intent Intent of the FG.
+    * @param supp Support of the FG.
+    * @param hash Hash value of the node that represented the FG.
+    */
+   public FgElem(BitSet intent, int supp, int hash)
+   {
+      super(intent, supp);
+      this.hash = hash;
+   }
+
+   /**
+    * @return Returns the hash value.
+    */
+   public int getHash() {
+      return this.hash;
+   }
+
+   /**
+    * String representation of an element. It must be the same
+    * as ITnode.toString() in the case of Talky-G.
+    *
+    * @return String representation of an element.
+    */
+   public String toString() {
+      return this.intent+" ("+this.supp+")";
+   }
+
+   /**
+    * This must always be the same as the function toString(). The only
+    * difference is that numbers are replaced here by their names.
+    *
+    * @return String representation of the FG, where numbers are replaced by their names.
+    */
+   public String toStringName()
+   {
+      StringBuilder sb = new StringBuilder();
+
+      sb.append(Database.toNamesAttr(this.intent))
+        .append(" (").append(this.supp).append(")");
+
+      return sb.toString();
+   }
+}
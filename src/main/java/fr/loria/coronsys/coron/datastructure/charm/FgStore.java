@@ -0,0 +1,595 @@
+package fr.loria.coronsys.coron.datastructure.charm;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.text.NumberFormat;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Vector;
+
+import fr.loria.coronsys.coron.helper.Convert;
+import fr.loria.coronsys.coron.helper.Metrics;
+import fr.loria.coronsys.coron.helper.ResultSink;
+
+/**
+ * Hash table of FGs with open addressing. It can be used instead of MyHash
+ * by Talky-G and DTalky-G (it gives the same answers, see FgTable).
+ *
+ * A subset with the same support has the same extent, thus the same hash
+ * value. So itemsets are grouped by their (hash value, support) key, and
+ * a lookup only visits the itemsets of one group. The key is taken from
+ * the node, thus it works with the hash of tidsets and of diffsets
+ * (ITnode.calculateHashByDiffsets()) too.
+ *
+ * The groups are stored in primitive arrays with linear probing. The table
+ * doubles its size when it's half full. The itemsets of a group form
+ * a linked list, and the intents are packed one after the other in a long
+ * array (like the words of a BitSet). Lookups allocate nothing.
+ *
+ * When the memory is low (see MemoryGuard), the words of the itemsets can be
+ * spilled to a memory-mapped temporary file (see spill()). Then the first words
+ * are read from the file, the words of the itemsets added later from the array.
+ * From then on the array is spilled whenever it's full at SPILL_WORDS words.
+ * The file is deleted by close(). A mapping cannot be larger than 2 GB: when
+ * the spilled words would reach it, a warning is printed and the words stay
+ * on the heap.
+ *
+ * It's not synchronized. In a parallel search MyHash(true) is used.
+ */
+public class FgStore
+implements FgTable
+{
+   /**
+    * Initial number of slots (power of 2).
+    */
+   private final static int INITIAL_CAPACITY = 1 << 12;
+
+   /**
+    * Marks an empty slot / the end of a list.
+    */
+   private final static int NONE = -1;
+
+   /**
+    * Once the store was spilled, the pool is spilled again when it's full
+    * at this size (number of words) instead of growing.
+    */
+   private final static int SPILL_WORDS = 1 << 20;
+
+   /**
+    * Hash value of the group in each slot.
+    */
+   private int[] slotHash;
+
+   /**
+    * Support of the group in each slot.
+    */
+   private int[] slotSupp;
+
+   /**
+    * First itemset of the group in each slot (NONE if the slot is empty).
+    */
+   private int[] slotHead;
+
+   /**
+    * Number of slots minus 1 (the number of slots is a power of 2).
+    */
+   private int mask;
+
+   /**
+    * Number of used slots (groups).
+    */
+   private int groups;
+
+   /**
+    * Next itemset in the same group.
+    */
+   private int[] entryNext;
+
+   /**
+    * Index of the first word of each itemset in the word pool.
+    * The words of itemset e are between entryOffset[e] and entryOffset[e+1].
+    */
+   private int[] entryOffset;
+
+   /**
+    * Size (number of attributes) of each itemset.
+    */
+   private int[] entryCard;
+
+   /**
+    * Number of stored itemsets.
+    */
+   private int entries;
+
+   /**
+    * Intents of the itemsets, one after the other.
+    */
+   private long[] pool;
+
+   /**
+    * Words that were spilled to disk (see spill()), null if nothing was spilled.
+    * The words of the pool come after them.
+    */
+   private LongBuffer spilled;
+
+   /**
+    * Number of the spilled words.
+    */
+   private int spilledWords;
+
+   /**
+    * Temporary file of the spilled words.
+    */
+   private File spillFile;
+
+   /**
+    * Spilling failed (e.g. the 2 GB limit was reached), it's not tried again.
+    */
+   private boolean spillFailed;
+
+   /**
+    * Number of lookups (statistics).
+    */
+   private long lookups;
+
+   /**
+    * Number of slots visited by the lookups (statistics).
+    */
+   private long probes;
+
+   /**
+    * Longest probe sequence (statistics).
+    */
+   private int maxProbe;
+
+   /**
+    * Constructor.
+    */
+   public FgStore()
+   {
+      this.allocSlots(INITIAL_CAPACITY);
+      this.entryNext   = new int[1024];
+      this.entryOffset = new int[1024 + 1];
+      this.entryCard   = new int[1024];
+      this.pool        = new long[1024];
+      this.entries     = 0;
+      this.lookups     = 0;
+      this.probes      = 0;
+      this.maxProbe    = 0;
+   }
+
+   /**
+    * Allocates empty slots.
+    *
+    * @param capacity Number of slots (power of 2).
+    */
+   private void allocSlots(int capacity)
+   {
+      this.slotHash = new int[capacity];
+      this.slotSupp = new int[capacity];
+      this.slotHead = new int[capacity];
+      Arrays.fill(this.slotHead, NONE);
+      this.mask     = capacity - 1;
+      this.groups   = 0;
+   }
+
+   /**
+    * Mixes the key into a slot index.
+    *
+    * @param hash Hash value of the itemset.
+    * @param supp Support of the itemset.
+    * @return Index of the first slot to probe.
+    */
+   private int slotOf(int hash, int supp)
+   {
+      int h = (hash * 0x9E3779B9) ^ (supp * 0x85EBCA6B);
+      h ^= (h >>> 16);
+      return h & this.mask;
+   }
+
+   /**
+    * Finds the slot of a group.
+    *
+    * @param hash Hash value of the group.
+    * @param supp Support of the group.
+    * @return Index of the slot of the group, or of the empty slot where it should be.
+    */
+   private int findSlot(int hash, int supp)
+   {
+      int i = this.slotOf(hash, supp);
+      int probe = 1;
+
+      while ((this.slotHead[i] != NONE) && ((this.slotHash[i] != hash) || (this.slotSupp[i] != supp)))
+      {
+         i = (i + 1) & this.mask;
+         ++probe;
+      }
+      ++this.lookups;
+      this.probes += probe;
+      if (probe > this.maxProbe) this.maxProbe = probe;
+      Metrics.storeProbe(probe);
+
+      return i;
+   }
+
+   /**
+    * Doubles the number of slots.
+    */
+   private void grow()
+   {
+      int[] oldHash = this.slotHash, oldSupp = this.slotSupp, oldHead = this.slotHead;
+      int i, groups = this.groups;
+
+      this.allocSlots(2 * oldHead.length);
+      for (int j = 0; j < oldHead.length; ++j)
+      {
+         if (oldHead[j] == NONE) continue;
+         // else
+         i = this.slotOf(oldHash[j], oldSupp[j]);
+         while (this.slotHead[i] != NONE) i = (i + 1) & this.mask;
+         this.slotHash[i] = oldHash[j];
+         this.slotSupp[i] = oldSupp[j];
+         this.slotHead[i] = oldHead[j];
+      }
+      this.groups = groups;
+   }
+
+   /**
+    * Registers a node in the table.
+    *
+    * @param node The node (an FG) that we want to register.
+    */
+   public void add(ITnode node) {
+      this.add(node.getHash(), node.getIntent(), node.getSupp());
+   }
+
+   /**
+    * Registers an itemset in the table.
+    *
+    * @param hash Hash value of the itemset.
+    * @param intent The itemset.
+    * @param supp Support of the itemset.
+    */
+   public void add(int hash, BitSet intent, int supp)
+   {
+      if (2 * (this.groups + 1) > this.slotHead.length) {
+         this.grow();
+      }
+      int i = this.findSlot(hash, supp);
+      if (this.slotHead[i] == NONE)
+      {
+         this.slotHash[i] = hash;
+         this.slotSupp[i] = supp;
+         ++this.groups;
+      }
+
+      // the new itemset
+      int e = this.entries;
+      int words = (intent.length() + 63) >>> 6;
+      if (e == this.entryNext.length)
+      {
+         this.entryNext   = Arrays.copyOf(this.entryNext, 2 * e);
+         this.entryCard   = Arrays.copyOf(this.entryCard, 2 * e);
+         this.entryOffset = Arrays.copyOf(this.entryOffset, 2 * e + 1);
+      }
+      int offset = this.entryOffset[e] - this.spilledWords;   // in the pool
+      if ((offset + words > this.pool.length) && (this.spilled != null) && (this.spillFailed == false) && (this.pool.length >= SPILL_WORDS))
+      {
+         try {
+            if (this.spill() > 0) offset = 0;
+         }
+         catch (IOException ex)
+         {
+            // then the pool grows
+            this.spillFailed = true;
+            System.err.println("> Warning: the FG store cannot be spilled to disk anymore ("+ex.getMessage()+"), new FGs are kept on the heap.");
+         }
+      }
+      if (offset + words > this.pool.length) {
+         this.pool = Arrays.copyOf(this.pool, Math.max(2 * this.pool.length, offset + words));
+      }
+      for (int attr = intent.nextSetBit(0); attr >= 0; attr = intent.nextSetBit(attr+1)) {
+         this.pool[offset + (attr >>> 6)] |= (1L << attr);
+      }
+      this.entryOffset[e + 1] = this.entryOffset[e] + words;
+      this.entryCard[e] = intent.cardinality();
+      this.entryNext[e] = this.slotHead[i];
+      this.slotHead[i] = e;
+      ++this.entries;
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.charm.FgTable#containsSupersetOrSubsetOf(fr.loria.coronsys.coron.datastructure.charm.ITnode, int)
+    */
+   public boolean containsSupersetOrSubsetOf(ITnode node, final int supersetOrSubset) {
+      return this.containsSupersetOrSubsetOf(node.getHash(), node.getIntent(), node.getSupp(), supersetOrSubset);
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.charm.FgTable#containsSupersetOrSubsetOf(int, java.util.BitSet, int, int)
+    */
+   public boolean containsSupersetOrSubsetOf(final int index, BitSet intent, int supp, final int supersetOrSubset)
+   {
+      int i = this.findSlot(index, supp);
+      int card = intent.cardinality();
+      int scanned = 0;
+
+      for (int e = this.slotHead[i]; e != NONE; e = this.entryNext[e])
+      {
+         ++scanned;
+         if (supersetOrSubset == FgTable.SUPERSET)
+         {
+            if ((this.entryCard[e] > card) && this.entryContains(e, intent)) {
+               Metrics.storeScan(scanned);
+               return true;
+            }
+         }
+         else // if (supersetOrSubset == FgTable.SUBSET)
+         {
+            if ((this.entryCard[e] < card) && this.entryIsContainedIn(e, intent)) {
+               Metrics.storeScan(scanned);
+               return true;
+            }
+         }
+      }
+      Metrics.storeScan(scanned);
+      return false;
+   }
+
+   /**
+    * @param e A stored itemset.
+    * @param intent An itemset.
+    * @return True, if each attribute of the intent is in the stored itemset.
+    */
+   private boolean entryContains(int e, BitSet intent)
+   {
+      int offset = this.entryOffset[e], words = this.entryOffset[e + 1] - offset;
+      int w;
+
+      for (int attr = intent.nextSetBit(0); attr >= 0; attr = intent.nextSetBit(attr+1))
+      {
+         w = attr >>> 6;
+         if ((w >= words) || ((this.word(offset + w) & (1L << attr)) == 0)) return false;
+      }
+      return true;
+   }
+
+   /**
+    * @param e A stored itemset.
+    * @param intent An itemset.
+    * @return True, if each attribute of the stored itemset is in the intent.
+    */
+   private boolean entryIsContainedIn(int e, BitSet intent)
+   {
+      int offset = this.entryOffset[e], end = this.entryOffset[e + 1];
+      long word;
+
+      for (int k = offset; k < end; ++k)
+      {
+         word = this.word(k);
+         while (word != 0)
+         {
+            if (intent.get(((k - offset) << 6) + Long.numberOfTrailingZeros(word)) == false) return false;
+            word &= (word - 1);
+         }
+      }
+      return true;
+   }
+
+   /**
+    * @param e A stored itemset.
+    * @return The itemset as a (new) BitSet.
+    */
+   private BitSet intentOf(int e)
+   {
+      long[] words = new long[this.entryOffset[e + 1] - this.entryOffset[e]];
+      for (int k = 0; k < words.length; ++k) {
+         words[k] = this.word(this.entryOffset[e] + k);
+      }
+      return BitSet.valueOf(words);
+   }
+
+   /**
+    * @param k Index of a word.
+    * @return The word (from the spilled words or from the pool).
+    */
+   private long word(int k) {
+      return (k < this.spilledWords) ? this.spilled.get(k) : this.pool[k - this.spilledWords];
+   }
+
+   /**
+    * Moves the words of the pool to the end of a temporary file, and maps the
+    * file (read-only). The heap only keeps the words of the itemsets added later.
+    *
+    * @return Number of the bytes that were moved out of the heap.
+    * @throws IOException If the file cannot be written, or if it would be larger
+    * than 2 GB (the limit of a mapping).
+    */
+   public long spill()
+   throws IOException
+   {
+      int end = this.entryOffset[this.entries];
+      int words = end - this.spilledWords;
+      if (words == 0) return 0;
+      // else
+      if (8L * end > Integer.MAX_VALUE) {
+         throw new IOException("the spill file would be larger than 2 GB");
+      }
+      // else
+      if (this.spillFile == null) {
+         this.spillFile = File.createTempFile("fgstore", ".bin");
+      }
+      RandomAccessFile raf = new RandomAccessFile(this.spillFile, "rw");
+      try
+      {
+         FileChannel channel = raf.getChannel();
+         channel.map(FileChannel.MapMode.READ_WRITE, 8L * this.spilledWords, 8L * words).asLongBuffer().put(this.pool, 0, words);
+         this.spilled = channel.map(FileChannel.MapMode.READ_ONLY, 0, 8L * end).asLongBuffer();
+      }
+      finally {
+         raf.close();
+      }
+      long bytes = 8L * this.pool.length;
+      this.spilledWords = end;
+      this.pool = new long[1024];
+      return bytes;
+   }
+
+   /**
+    * The FGs in the same format as in MyHash: elements with the same
+    * hash value are in the same list, at the position of the hash value.
+    * The vectors are created at each call.
+    *
+    * @return The FGs in a vector of lists.
+    */
+   public Vector<Vector<HashElem>> getHashtable()
+   {
+      Vector<Vector<HashElem>> table = new Vector<Vector<HashElem>>();
+      Vector<HashElem> list;
+      int index;
+
+      for (int i = 0; i < this.slotHead.length; ++i)
+      {
+         if (this.slotHead[i] == NONE) continue;
+         // else
+         index = this.slotHash[i];
+         if (table.size() < index + 1) table.setSize(index + 1);
+         if ((list = table.get(index)) == null) {
+            table.set(index, list = new Vector<HashElem>());
+         }
+         for (int e = this.slotHead[i]; e != NONE; e = this.entryNext[e]) {
+            list.add(new HashElem(this.intentOf(e), this.slotSupp[i]));
+         }
+      }
+      return table;
+   }
+
+   /**
+    * Writes the itemsets in the order they were added: their number, then
+    * for each itemset its hash value, its support and the words of its intent.
+    *
+    * @param out Output stream.
+    * @throws IOException
+    */
+   public void writeTo(DataOutputStream out)
+   throws IOException
+   {
+      // the group of each itemset
+      int[] group = new int[this.entries];
+      for (int i = 0; i < this.slotHead.length; ++i)
+      {
+         for (int e = this.slotHead[i]; e != NONE; e = this.entryNext[e]) {
+            group[e] = i;
+         }
+      }
+
+      out.writeInt(this.entries);
+      for (int e = 0; e < this.entries; ++e)
+      {
+         out.writeInt(this.slotHash[group[e]]);
+         out.writeInt(this.slotSupp[group[e]]);
+         out.writeInt(this.entryOffset[e + 1] - this.entryOffset[e]);
+         for (int k = this.entryOffset[e]; k < this.entryOffset[e + 1]; ++k) {
+            out.writeLong(this.word(k));
+         }
+      }
+   }
+
+   /**
+    * Adds the itemsets written by writeTo(), in the same order.
+    *
+    * @param in Input stream.
+    * @param sink The itemsets are written here too (can be null).
+    * @return Number of the added itemsets.
+    * @throws IOException
+    */
+   public int readFrom(DataInputStream in, ResultSink sink)
+   throws IOException
+   {
+      int n = in.readInt();
+      int hash, supp;
+      long[] words;
+      BitSet intent;
+
+      for (int i = 0; i < n; ++i)
+      {
+         hash = in.readInt();
+         supp = in.readInt();
+         words = new long[in.readInt()];
+         for (int k = 0; k < words.length; ++k) {
+            words[k] = in.readLong();
+         }
+         intent = BitSet.valueOf(words);
+         this.add(hash, intent, supp);
+         if (sink != null) sink.add(intent, supp);
+      }
+      return n;
+   }
+
+   /**
+    * Deletes the spill file (if the store was spilled). The store cannot be
+    * used after this.
+    */
+   public void close()
+   {
+      this.spilled = null;
+      if (this.spillFile != null)
+      {
+         if (this.spillFile.delete() == false) this.spillFile.deleteOnExit();     // e.g. it's still mapped on Windows
+         this.spillFile = null;
+      }
+   }
+
+   /**
+    * @return Number of slots.
+    */
+   public long size() {
+      return this.slotHead.length;
+   }
+
+   /**
+    * Prints some additional information about the table.
+    */
+   public void printInfo()
+   {
+      NumberFormat avg = NumberFormat.getInstance();
+      avg.setMinimumFractionDigits(2); avg.setMaximumFractionDigits(2);
+      System.err.println("  FG store: slots = "+Convert.byteToPrettyString(this.size()));
+      System.err.println("  FG store: groups (hash, support) = "+Convert.byteToPrettyString(this.groups));
+      System.err.println("  FG store: itemsets = "+Convert.byteToPrettyString(this.entries));
+      System.err.println("  FG store: load factor = "+avg.format((double)this.groups/(double)this.size()));
+      System.err.println("  FG store: avg. probe length = "+avg.format((this.lookups == 0) ? 0.0 : (double)this.probes/(double)this.lookups)
+                        +", max. probe length = "+this.maxProbe);
+      System.err.println("  FG store: avg. itemsets per group = "+avg.format((this.groups == 0) ? 0.0 : (double)this.entries/(double)this.groups));
+      if (this.spilledWords > 0) {
+         System.err.println("  FG store: words spilled to disk = "+Convert.byteToPrettyString(this.spilledWords));
+      }
+   }
+
+   /**
+    * @return String representation of the table.
+    */
+   public String toString()
+   {
+      StringBuilder sb = new StringBuilder();
+
+      for (int i = 0; i < this.slotHead.length; ++i)
+      {
+         if (this.slotHead[i] == NONE) continue;
+         // else
+         sb.append(this.slotHash[i]).append(") [");
+         for (int e = this.slotHead[i]; e != NONE; e = this.entryNext[e])
+         {
+            sb.append(this.intentOf(e)).append(" (").append(this.slotSupp[i]).append(")");
+            if (this.entryNext[e] != NONE) sb.append(", ");
+         }
+         sb.append("]\n");
+      }
+      return sb.toString();
+   }
+}
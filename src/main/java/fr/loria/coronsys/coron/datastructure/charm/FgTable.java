@@ -0,0 +1,74 @@
+package fr.loria.coronsys.coron.datastructure.charm;
+
+import java.util.BitSet;
+import java.util.Vector;
+
+/**
+ * The FGs found by Talky-G and DTalky-G, with the lookups of their search:
+ * is there a proper subset (or superset) of an itemset with the same support?
+ * Implemented by MyHash (the original hash table, it can be shared between
+ * threads) and by FgStore (open addressing, one thread).
+ */
+public interface FgTable
+{
+   /**
+    * Constant for 'find superset'.
+    */
+   public final static int SUPERSET = 1;
+
+   /**
+    * Constant for 'find subset'.
+    */
+   public final static int SUBSET = 2;
+
+   /**
+    * Registers an FG.
+    *
+    * @param node The node of the FG.
+    */
+   public void add(ITnode node);
+
+   /**
+    * @param node A node.
+    * @param supersetOrSubset SUPERSET or SUBSET.
+    * @return True, if the table contains a proper superset (or subset) of the
+    * itemset of the node with the same support. False, otherwise.
+    */
+   public boolean containsSupersetOrSubsetOf(ITnode node, final int supersetOrSubset);
+
+   /**
+    * Same as above, but the itemset is given by its hash value, intent and support.
+    *
+    * @param index Hash value of the itemset.
+    * @param intent The itemset.
+    * @param supp Support of the itemset.
+    * @param supersetOrSubset SUPERSET or SUBSET.
+    * @return True, if the table contains a proper superset (or subset) of the
+    * itemset with the same support. False, otherwise.
+    */
+   public boolean containsSupersetOrSubsetOf(final int index, BitSet intent, int supp, final int supersetOrSubset);
+
+   /**
+    * The FGs: elements with the same hash value are in the same list, at the
+    * position of the hash value (null if there is none).
+    *
+    * @return The FGs in a vector of lists.
+    */
+   public Vector<Vector<HashElem>> getHashtable();
+
+   /**
+    * @return Number of slots of the table.
+    */
+   public long size();
+
+   /**
+    * Prints some additional information about the table.
+    */
+   public void printInfo();
+
+   /**
+    * Releases the resources of the table (e.g. a temporary file). The table
+    * cannot be used after this.
+    */
+   public void close();
+}
@@ -5,6 +5,8 @@ import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Vector;
 
+import fr.loria.coronsys.coron.datastructure.tidset.Tidset;
+import fr.loria.coronsys.coron.datastructure.tidset.Tidsets;
 import fr.loria.coronsys.coron.helper.C;
 import fr.loria.coronsys.coron.helper.Database;
 
@@ -29,8 +31,9 @@ implements Comparable<Object>
    
    /**
     * Extent (tidset) of a concept. Ex.: in CWAx1345 "1345" is the extent.
+    * Its representation (BitSet or compressed) is chosen by the -tidset switch.
     */
-   private BitSet extent;
+   private Tidset extent;
    
    /**
     * Support of the itemset (support of the intent). 
@@ -78,6 +81,13 @@ implements Comparable<Object>
     */
    private int level;
    
+   /**
+    * Is the extent a diffset? If so, it contains the tids of the parent that are
+    * not in this node. Only used when each node chooses its own representation
+    * (-adaptive); otherwise the level of the node tells it.
+    */
+   private boolean diffset;
+   
    /**
     * Closure of the itemset. Used by Flake.
     * newInCoron1
@@ -132,7 +142,7 @@ implements Comparable<Object>
       this(itTree);
       this.setIntent(attr);
       this.setExtent(extent);
-      this.setSupp(extent.cardinality());
+      this.setSupp(this.extent.cardinality());     // weighted, if identical objects were folded
       //this.setLevel(1);
    }
       
@@ -186,17 +196,25 @@ implements Comparable<Object>
    /**
     * @return Returns the extent.
     */
-   public BitSet getExtent() {
+   public Tidset getExtent() {
       return extent;
    }
    
    /**
     * @param extent The extent to set.
     */
-   public void setExtent(BitSet extent) {
+   public void setExtent(Tidset extent) {
       this.extent = extent;
    }
    
+   /**
+    * @param extent The extent to set. It's converted to the chosen tidset
+    * representation; in the case of BitSets it's not copied.
+    */
+   public void setExtent(BitSet extent) {
+      this.extent = Tidsets.valueOf(extent);
+   }
+   
    /**
     * Deletes the extent part. Used by Eclat-S and Sabre. 
     */
@@ -215,7 +233,7 @@ implements Comparable<Object>
     */
    public static int calculateHash(BitSet extent)
    {
-      int sum = 0;
+      long sum = 0;
       
       for (int attr = extent.nextSetBit(0); attr >= 0; attr = extent.nextSetBit(attr+1))
       {
@@ -223,7 +241,18 @@ implements Comparable<Object>
          sum += attr;   // original one
       }
         
-      return (Math.abs(sum) % C.HASH_SIZE);
+      // the sum cannot overflow, thus hash(t - d) = hash(t) - hash(d) modulo the hash size
+      return (int) (sum % C.HASH_SIZE);
+   }
+   
+   /**
+    * Same as above, but for a tidset in any representation.
+    * 
+    * @param extent The extent of the IT-node.
+    * @return Hash value of the IT-nodes.
+    */
+   public static int calculateHash(Tidset extent) {
+      return (int) (extent.sumOfTids() % C.HASH_SIZE);
    }
    
    /**
@@ -301,6 +330,8 @@ implements Comparable<Object>
    
    /**
     * Sorts the children vector of a node in increasing order of their support.
+    * The Talky-G miners traverse the children from right to left, thus the
+    * branches with a high support are explored first (-topk relies on it).
     */
    public void sortChildren() {
       Collections.sort(children);
@@ -513,6 +544,20 @@ implements Comparable<Object>
       return this.level;
    }
    
+   /**
+    * @return True, if the extent is a diffset (with respect to the parent).
+    */
+   public boolean isDiffset() {
+      return this.diffset;
+   }
+   
+   /**
+    * @param diffset Is the extent a diffset (with respect to the parent)?
+    */
+   public void setDiffset(boolean diffset) {
+      this.diffset = diffset;
+   }
+   
    /**
     * @return Closure of the itemset. Used by Flake.
     * newInCoron1
@@ -6,6 +6,7 @@ import java.util.Vector;
 
 import fr.loria.coronsys.coron.helper.C;
 import fr.loria.coronsys.coron.helper.Database;
+import fr.loria.coronsys.coron.helper.Metrics;
 
 /**
  * Class for the IT-tree in the CHARM algorithm.
@@ -170,6 +171,7 @@ public class ITtree
     */
    public void incNodeCnt() {
       ++this.nodeCnt;
+      Metrics.nodes(1);
    }
    
    /**
@@ -177,6 +179,7 @@ public class ITtree
     */
    public void decNodeCnt() {
       --this.nodeCnt;
+      Metrics.nodes(-1);
    }
    
    /**
@@ -186,6 +189,7 @@ public class ITtree
     */
    public void decNodeCnt(int value) {
       this.nodeCnt -= value;
+      Metrics.nodes(-value);
    }
 
    /**
@@ -7,6 +7,7 @@ import java.util.Vector;
 
 import fr.loria.coronsys.coron.helper.C;
 import fr.loria.coronsys.coron.helper.Convert;
+import fr.loria.coronsys.coron.helper.Metrics;
 import fr.loria.coronsys.coron.helper.SetOp;
 
 /** 
@@ -19,17 +20,8 @@ import fr.loria.coronsys.coron.helper.SetOp;
  * @author Laszlo Szathmary (<a href="Szathmary.L@gmail.com">Szathmary.L@gmail.com</a>)
  */
 public class MyHash
+implements FgTable
 {
-   /**
-    * Constant for 'find superset'.
-    */
-   public final static int SUPERSET = 1;
-   
-   /**
-    * Constant for 'find subset'.
-    */
-   public final static int SUBSET = 2;
-   
    /**
     * FCIs are stored in this hash table. An element of the hash table
     * is a list (vector), so if two objects have the same hash value, they are 
@@ -48,6 +40,18 @@ public class MyHash
     */
    private int slots;
    
+   /**
+    * Number of locks when the hash table is shared between threads.
+    */
+   private final static int LOCK_STRIPES = 1024;
+   
+   /**
+    * Locks for the slots when the hash table is shared between threads
+    * (slot i is guarded by locks[i % LOCK_STRIPES]). It's null if the hash
+    * table is used by one thread only.
+    */
+   private Object[] locks;
+   
    /**
     * Constructor.
     */
@@ -56,6 +60,26 @@ public class MyHash
       this.slots = C.HASH_SIZE;
    }
    
+   /**
+    * Constructor.
+    * 
+    * @param concurrent If true, the hash table can be shared between threads.
+    * In this case all the slots are allocated in advance, thus the table never
+    * grows, and the slots are guarded by a set of locks.
+    */
+   public MyHash(boolean concurrent)
+   {
+      this();
+      if (concurrent)
+      {
+         this.hashTable.setSize(this.slots);
+         this.locks = new Object[LOCK_STRIPES];
+         for (int i = 0; i < LOCK_STRIPES; ++i) {
+            this.locks[i] = new Object();
+         }
+      }
+   }
+   
    /**
     * Gets the hash table.
     * 
@@ -103,6 +127,23 @@ public class MyHash
     * @param node The node (an FCI) that we want to register.
     */
    public void add(ITnode node)
+   {
+      if (this.locks == null) {
+         this.addElem(node);
+         return;
+      }
+      // else
+      synchronized (this.locks[node.getHash() % LOCK_STRIPES]) {
+         this.addElem(node);
+      }
+   }
+   
+   /**
+    * Registers a node in the hash table, without locking.
+    * 
+    * @param node The node (an FCI) that we want to register.
+    */
+   private void addElem(ITnode node)
    {
       int sizeV, j;
       int index = node.getHash();
@@ -175,11 +216,46 @@ public class MyHash
     * @param supersetOrSubset
     * @return
     */
-   public boolean containsSupersetOrSubsetOf(ITnode node, final int supersetOrSubset)
+   public boolean containsSupersetOrSubsetOf(ITnode node, final int supersetOrSubset) {
+      return this.containsSupersetOrSubsetOf(node.getHash(), node.getIntent(), node.getSupp(), supersetOrSubset);
+   }
+   
+   /**
+    * Same as above, but the itemset is given by its hash value, intent and support.
+    * 
+    * @param index Hash value of the itemset.
+    * @param intent The itemset.
+    * @param supp Support of the itemset.
+    * @param supersetOrSubset MyHash.SUPERSET or MyHash.SUBSET.
+    * @return True, if the hash table contains a proper superset (or subset) of the
+    * itemset with the same support. False, otherwise.
+    */
+   public boolean containsSupersetOrSubsetOf(final int index, BitSet intent, int supp, final int supersetOrSubset)
+   {
+      if (this.locks == null) {
+         return this.lookup(index, intent, supp, supersetOrSubset);
+      }
+      // else
+      synchronized (this.locks[index % LOCK_STRIPES]) {
+         return this.lookup(index, intent, supp, supersetOrSubset);
+      }
+   }
+   
+   /**
+    * Looks up a proper superset (or subset) of an itemset, without locking.
+    * 
+    * @param index Hash value of the itemset.
+    * @param intent The itemset.
+    * @param supp Support of the itemset.
+    * @param supersetOrSubset MyHash.SUPERSET or MyHash.SUBSET.
+    * @return True, if the hash table contains a proper superset (or subset) of the
+    * itemset with the same support. False, otherwise.
+    */
+   private boolean lookup(final int index, BitSet intent, int supp, final int supersetOrSubset)
    {
-      final int index = node.getHash();
       int sizeV, j;
       
+      Metrics.storeProbe(1);   // one bucket
       // increase the size of the hash table dynamically
       if ((sizeV = this.hashTable.size()) < (index+1)) 
       {
@@ -195,30 +271,33 @@ public class MyHash
       }
       // else
       HashElem elem;
-      int supp = node.getSupp();
-      BitSet intent = node.getIntent();
+      int scanned = 0;
       
       for (Enumeration<HashElem> e = pos.elements(); e.hasMoreElements(); )
       {
          elem = e.nextElement();
+         ++scanned;
          
          if (elem.supp == supp)
          {
             // looking for a proper superset in the list
             if (supersetOrSubset == MyHash.SUPERSET) {
                if (SetOp.isProperSubset(intent, elem.intent)) {
+                  Metrics.storeScan(scanned);
                   return true;
                }
             }
             else // if (supersetOrSubset == MyHash.SUBSET), i.e. looking for a proper subset in the list
             {
                if (SetOp.isProperSuperset(intent, elem.intent)) {
+                  Metrics.storeScan(scanned);
                   return true;
                }
             }
          }
       }
       
+      Metrics.storeScan(scanned);
       return false;
    }
    
@@ -305,6 +384,13 @@ public class MyHash
       return (0 - toDelete.size() + 1);
    }
    
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.charm.FgTable#close()
+    */
+   public void close() {
+      // nothing to release
+   }
+
    /**
     * @return String representation of the hash.
     */
@@ -0,0 +1,114 @@
+package fr.loria.coronsys.coron.datastructure.charm;
+
+import java.util.BitSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.Vector;
+
+import fr.loria.coronsys.coron.helper.ResultSink;
+
+/**
+ * The best FGs by support found so far (-topk:K). It works like a bounded
+ * min-heap: when an FG is added, the FGs that are not among the K best ones
+ * anymore are dropped. FGs with the same support as the K-th best one are
+ * kept, thus the result can have more than K elements.
+ *
+ * When K FGs are stored, getThreshold() is the support of the K-th best one.
+ * An itemset below it cannot get in the result, thus the miner can use it
+ * as min. support. The threshold never decreases, and every subset of an FG
+ * that is above it is above it too, so the FG test of the miners still sees
+ * all the subsets it needs.
+ */
+public class TopKFgs
+{
+   /**
+    * Number of FGs that we want to find.
+    */
+   private final int k;
+
+   /**
+    * The stored FGs, grouped by their support (smallest support first).
+    */
+   private TreeMap<Integer, Vector<HashElem>> buckets;
+
+   /**
+    * Number of stored FGs.
+    */
+   private int size;
+
+   /**
+    * Constructor.
+    *
+    * @param k Number of FGs that we want to find.
+    */
+   public TopKFgs(int k)
+   {
+      this.k = k;
+      this.buckets = new TreeMap<Integer, Vector<HashElem>>();
+      this.size = 0;
+   }
+
+   /**
+    * Adds an FG. It's ignored if it's below the threshold.
+    *
+    * @param intent Intent of the FG.
+    * @param supp Support of the FG.
+    */
+   public void add(BitSet intent, int supp)
+   {
+      if (supp < this.getThreshold()) return;
+      // else
+      Vector<HashElem> bucket = this.buckets.get(supp);
+      if (bucket == null)
+      {
+         bucket = new Vector<HashElem>();
+         this.buckets.put(supp, bucket);
+      }
+      bucket.add(new HashElem(intent, supp));
+      ++this.size;
+
+      // drop the smallest support while at least K FGs remain without it
+      Map.Entry<Integer, Vector<HashElem>> first = this.buckets.firstEntry();
+      while (this.size - first.getValue().size() >= this.k)
+      {
+         this.size -= first.getValue().size();
+         this.buckets.pollFirstEntry();
+         first = this.buckets.firstEntry();
+      }
+   }
+
+   /**
+    * @return Min. support of an FG that can still get in the result
+    * (0 while less than K FGs are stored).
+    */
+   public int getThreshold()
+   {
+      if (this.size < this.k) return 0;
+      // else
+      return this.buckets.firstKey();
+   }
+
+   /**
+    * @return Number of stored FGs.
+    */
+   public int size() {
+      return this.size;
+   }
+
+   /**
+    * Writes the stored FGs by descending support.
+    *
+    * @param sink The FGs are written here.
+    * @return Number of FGs written.
+    */
+   public int writeTo(ResultSink sink)
+   {
+      for (Vector<HashElem> bucket : this.buckets.descendingMap().values())
+      {
+         for (HashElem elem : bucket) {
+            sink.add(elem.getIntent(), elem.getSupp());
+         }
+      }
+      return this.size;
+   }
+}
@@ -0,0 +1,276 @@
+package fr.loria.coronsys.coron.datastructure.charm;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+import fr.loria.coronsys.coron.helper.Metrics;
+
+/**
+ * Map from itemsets (FGs) to their supports, with Zobrist hashing.
+ *
+ * Each attribute gets a random 64-bit key, and the key of an itemset is
+ * the XOR of the keys of its attributes. Thus the key of a subset that
+ * misses one attribute is just (key of the itemset) XOR (key of the attribute),
+ * and the one-size smaller subsets of a candidate can be looked up without
+ * creating them.
+ *
+ * The keys and the supports are stored in primitive arrays with linear
+ * probing. Two itemsets may have the same key, thus a lookup always
+ * verifies the stored itemset too.
+ *
+ * It's not synchronized.
+ */
+public class ZobristFgMap
+{
+   /**
+    * Returned by the lookups if the itemset is not in the map.
+    */
+   public final static int NOT_FOUND = -1;
+
+   /**
+    * Seed of the random keys. The keys are the same in each run.
+    */
+   private final static long SEED = 0x5DEECE66DL;
+
+   /**
+    * Initial number of slots (power of 2).
+    */
+   private final static int INITIAL_CAPACITY = 1 << 12;
+
+   /**
+    * Random key of each attribute.
+    */
+   private long[] attrKeys;
+
+   /**
+    * Generator of the random keys.
+    */
+   private Random random;
+
+   /**
+    * Key of the itemset in each slot.
+    */
+   private long[] keys;
+
+   /**
+    * Support of the itemset in each slot.
+    */
+   private int[] supps;
+
+   /**
+    * The itemset in each slot (null if the slot is empty).
+    */
+   private BitSet[] intents;
+
+   /**
+    * Number of slots minus 1 (the number of slots is a power of 2).
+    */
+   private int mask;
+
+   /**
+    * Number of itemsets in the map.
+    */
+   private int size;
+
+   /**
+    * Constructor.
+    *
+    * @param nbAttr The largest attribute (it's only a hint, larger attributes can be used too).
+    */
+   public ZobristFgMap(int nbAttr)
+   {
+      this.random = new Random(SEED);
+      this.attrKeys = new long[0];
+      this.ensureAttr(nbAttr);
+      this.alloc(INITIAL_CAPACITY);
+   }
+
+   /**
+    * Creates random keys for the attributes up to attr.
+    *
+    * @param attr An attribute.
+    */
+   private void ensureAttr(int attr)
+   {
+      int old = this.attrKeys.length;
+      if (attr < old) return;
+      // else
+      this.attrKeys = Arrays.copyOf(this.attrKeys, Math.max(attr + 1, 2 * old));
+      for (int i = old; i < this.attrKeys.length; ++i) {
+         this.attrKeys[i] = this.random.nextLong();
+      }
+   }
+
+   /**
+    * Allocates empty slots.
+    *
+    * @param capacity Number of slots (power of 2).
+    */
+   private void alloc(int capacity)
+   {
+      this.keys    = new long[capacity];
+      this.supps   = new int[capacity];
+      this.intents = new BitSet[capacity];
+      this.mask    = capacity - 1;
+      this.size    = 0;
+   }
+
+   /**
+    * @param intent An itemset.
+    * @return Key of the itemset (XOR of the keys of its attributes).
+    */
+   public long keyOf(BitSet intent)
+   {
+      long key = 0;
+      for (int attr = intent.nextSetBit(0); attr >= 0; attr = intent.nextSetBit(attr+1))
+      {
+         if (attr >= this.attrKeys.length) this.ensureAttr(attr);
+         key ^= this.attrKeys[attr];
+      }
+      return key;
+   }
+
+   /**
+    * @param key Key of an itemset.
+    * @return Index of the first slot to probe.
+    */
+   private int slotOf(long key)
+   {
+      long h = key ^ (key >>> 32);
+      return ((int) h ^ ((int) h >>> 16)) & this.mask;
+   }
+
+   /**
+    * Adds an itemset. The itemset is not copied, it must not be modified later.
+    *
+    * @param intent The itemset.
+    * @param supp Its support.
+    */
+   public void put(BitSet intent, int supp)
+   {
+      if (2 * (this.size + 1) > this.keys.length) {
+         this.grow();
+      }
+      long key = this.keyOf(intent);
+      int i = this.slotOf(key);
+      int probe = 1;
+
+      while (this.intents[i] != null)
+      {
+         if ((this.keys[i] == key) && this.intents[i].equals(intent))
+         {
+            this.supps[i] = supp;
+            Metrics.storeProbe(probe);
+            return;
+         }
+         i = (i + 1) & this.mask;
+         ++probe;
+      }
+      Metrics.storeProbe(probe);
+      this.keys[i] = key;
+      this.supps[i] = supp;
+      this.intents[i] = intent;
+      ++this.size;
+   }
+
+   /**
+    * @param intent An itemset.
+    * @return Support of the itemset, or NOT_FOUND if it's not in the map.
+    */
+   public int get(BitSet intent)
+   {
+      long key = this.keyOf(intent);
+      int i = this.slotOf(key);
+      int probe = 1;
+
+      while (this.intents[i] != null)
+      {
+         if ((this.keys[i] == key) && this.intents[i].equals(intent)) {
+            Metrics.storeProbe(probe);
+            return this.supps[i];
+         }
+         i = (i + 1) & this.mask;
+         ++probe;
+      }
+      Metrics.storeProbe(probe);
+      return NOT_FOUND;
+   }
+
+   /**
+    * Looks up a one-size smaller subset of an itemset, without creating the subset.
+    *
+    * @param intent An itemset.
+    * @param key Key of the itemset (see keyOf()).
+    * @param attr An attribute of the itemset.
+    * @return Support of (intent minus attr), or NOT_FOUND if it's not in the map.
+    */
+   public int getSubset(BitSet intent, long key, int attr)
+   {
+      long subKey = key ^ this.attrKeys[attr];
+      int card = intent.cardinality() - 1;
+      int i = this.slotOf(subKey);
+      int probe = 1;
+
+      while (this.intents[i] != null)
+      {
+         if ((this.keys[i] == subKey) && isSubsetWithout(this.intents[i], card, intent, attr)) {
+            Metrics.storeProbe(probe);
+            return this.supps[i];
+         }
+         i = (i + 1) & this.mask;
+         ++probe;
+      }
+      Metrics.storeProbe(probe);
+      return NOT_FOUND;
+   }
+
+   /**
+    * @param stored A stored itemset.
+    * @param card Size of intent minus attr.
+    * @param intent An itemset.
+    * @param attr An attribute of the itemset.
+    * @return True, if stored is equal to (intent minus attr).
+    */
+   private static boolean isSubsetWithout(BitSet stored, int card, BitSet intent, int attr)
+   {
+      if (stored.cardinality() != card) return false;
+      // else
+      for (int i = stored.nextSetBit(0); i >= 0; i = stored.nextSetBit(i+1))
+      {
+         if ((i == attr) || (intent.get(i) == false)) return false;
+      }
+      return true;
+   }
+
+   /**
+    * Doubles the number of slots.
+    */
+   private void grow()
+   {
+      long[] oldKeys = this.keys;
+      int[] oldSupps = this.supps;
+      BitSet[] oldIntents = this.intents;
+      int i, size = this.size;
+
+      this.alloc(2 * oldKeys.length);
+      for (int j = 0; j < oldKeys.length; ++j)
+      {
+         if (oldIntents[j] == null) continue;
+         // else
+         i = this.slotOf(oldKeys[j]);
+         while (this.intents[i] != null) i = (i + 1) & this.mask;
+         this.keys[i] = oldKeys[j];
+         this.supps[i] = oldSupps[j];
+         this.intents[i] = oldIntents[j];
+      }
+      this.size = size;
+   }
+
+   /**
+    * @return Number of itemsets in the map.
+    */
+   public int size() {
+      return this.size;
+   }
+}
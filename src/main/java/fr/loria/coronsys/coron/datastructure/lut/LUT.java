@@ -19,9 +19,10 @@ public class LUT
    private static int defaultSize = 300;
 	
    /**
-    * An Integer array containing references to Integer objects.
+    * An Integer array containing references to Integer objects. It's shared by
+    * the jobs of the JVM, thus it's replaced (never modified) when it grows.
     */
-   private static Integer lut[];             
+   private static volatile Integer lut[];             
    
    /**
     * Constructor. Creates a lookup table from which the maximal element ('max')
@@ -43,8 +44,9 @@ public class LUT
     * @return An Integer reference that has the value of 'i'.
     */
    public static Integer getInteger(int i) {
-      if (i >= LUT.lut.length) resize(i);
-      return lut[i];
+      Integer[] table = LUT.lut;
+      if (i >= table.length) table = resize(i);
+      return table[i];
    }
    
    /**
@@ -62,15 +64,19 @@ public class LUT
     * references. New references are added to the end of the lookup table.
     * 
     * @param new_max The new maximal element.
+    * @return The lookup table (another thread may have already resized it).
     */
-   private static void resize(int new_max) 
+   private static synchronized Integer[] resize(int new_max) 
    {
+      if (new_max < lut.length) return lut;
+      // else
       Integer[] new_lut = new Integer[new_max+1];
       System.arraycopy(lut,0, new_lut,0, lut.length);
       for (int i = lut.length; i<new_lut.length; ++i)
          new_lut[i] = new Integer(i);
 
       LUT.lut = new_lut;	// the lookup table will be this new array
+      return new_lut;
    }
 
 // TODO: resize and trimToSize should be merged, i.e. depending on the new size
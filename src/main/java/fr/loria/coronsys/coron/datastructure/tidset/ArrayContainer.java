@@ -0,0 +1,280 @@
+package fr.loria.coronsys.coron.datastructure.tidset;
+
+import java.util.Arrays;
+
+/**
+ * Container that stores its values in a sorted array (2 bytes per value).
+ * Used for at most 4096 values.
+ */
+class ArrayContainer extends Container
+{
+   /**
+    * Working buffer of each thread for the results of the operations.
+    * The final result is copied from it, thus only the surviving values are allocated
+    * (and not an array as large as the input).
+    */
+   private static final ThreadLocal<char[]> BUFFER = new ThreadLocal<char[]>() {
+      protected char[] initialValue() {
+         return new char[MAX_ARRAY_SIZE];
+      }
+   };
+
+   /**
+    * Sorted values (unsigned 16-bit).
+    */
+   final char[] values;
+
+   /**
+    * Number of values. The array may be longer.
+    */
+   final int card;
+
+   /**
+    * Constructor.
+    *
+    * @param values Sorted values.
+    * @param card Number of values in the array.
+    */
+   ArrayContainer(char[] values, int card)
+   {
+      this.values = values;
+      this.card = card;
+   }
+
+   /**
+    * @return The array trimmed to its cardinality.
+    */
+   private ArrayContainer trim()
+   {
+      if (this.values.length == this.card) return this;
+      // else
+      return new ArrayContainer(Arrays.copyOf(this.values, this.card), this.card);
+   }
+
+   int cardinality() {
+      return this.card;
+   }
+
+   Container and(Container other)
+   {
+      char[] result = BUFFER.get();
+      int k = 0;
+
+      if (other instanceof ArrayContainer)
+      {
+         ArrayContainer o = (ArrayContainer) other;
+         if (this.card * 64 < o.card)      k = ArrayContainer.gallopingAnd(this, o, result);
+         else if (o.card * 64 < this.card) k = ArrayContainer.gallopingAnd(o, this, result);
+         else
+         {
+            char[] a = this.values, b = o.values;
+            int i = 0, j = 0, n = this.card, m = o.card;
+            char x, y;
+            // merge; the indexes are advanced without branches (cmov), which is
+            // faster on random data than the usual if-else chain
+            while ((i < n) && (j < m))
+            {
+               x = a[i];
+               y = b[j];
+               result[k] = x;
+               k += (x == y) ? 1 : 0;
+               i += (x <= y) ? 1 : 0;
+               j += (x >= y) ? 1 : 0;
+            }
+         }
+      }
+      else if (other instanceof BitmapContainer)
+      {
+         long[] words = ((BitmapContainer) other).words;
+         char v;
+         for (int i = 0; i < this.card; ++i)
+         {
+            v = this.values[i];
+            if ((words[v >>> 6] & (1L << v)) != 0) result[k++] = v;
+         }
+      }
+      else // RunContainer
+      {
+         RunContainer o = (RunContainer) other;
+         int r = 0, start, end;
+         char v;
+         for (int i = 0; (i < this.card) && (r < o.nbRuns); ++i)
+         {
+            v = this.values[i];
+            while ((r < o.nbRuns) && (o.end(r) < v)) ++r;
+            if (r == o.nbRuns) break;
+            start = o.start(r);
+            end = o.end(r);
+            if ((v >= start) && (v <= end)) result[k++] = v;
+         }
+      }
+
+      if (k == 0) return null;
+      // else
+      return Container.optimize(new ArrayContainer(Arrays.copyOf(result, k), k));
+   }
+
+   /**
+    * Intersection of a small and a much larger array. For each value of the
+    * small array we look up its position in the large one with exponential
+    * and binary search.
+    *
+    * @param small The smaller container.
+    * @param large The larger container.
+    * @param result The common values are written here.
+    * @return Number of common values.
+    */
+   private static int gallopingAnd(ArrayContainer small, ArrayContainer large, char[] result)
+   {
+      char[] b = large.values;
+      int k = 0, j = 0, step, lo, hi, mid;
+      char v;
+
+      for (int i = 0; (i < small.card) && (j < large.card); ++i)
+      {
+         v = small.values[i];
+         // find a range [lo, hi] that contains the first value >= v
+         step = 1;
+         lo = j;
+         hi = j;
+         while ((hi < large.card) && (b[hi] < v))
+         {
+            lo = hi + 1;
+            hi = j + step;
+            step <<= 1;
+         }
+         if (hi >= large.card) hi = large.card - 1;
+         while (lo < hi)
+         {
+            mid = (lo + hi) >>> 1;
+            if (b[mid] < v) lo = mid + 1;
+            else            hi = mid;
+         }
+         j = lo;
+         if ((j < large.card) && (b[j] == v)) result[k++] = v;
+      }
+      return k;
+   }
+
+   Container andNot(Container other)
+   {
+      char[] result = BUFFER.get();
+      int k = 0;
+
+      if (other instanceof ArrayContainer)
+      {
+         ArrayContainer o = (ArrayContainer) other;
+         int i = 0, j = 0;
+         while (i < this.card)
+         {
+            if ((j == o.card) || (this.values[i] < o.values[j])) {
+               result[k++] = this.values[i++];
+            }
+            else if (this.values[i] > o.values[j]) ++j;
+            else {
+               ++i; ++j;
+            }
+         }
+      }
+      else if (other instanceof BitmapContainer)
+      {
+         long[] words = ((BitmapContainer) other).words;
+         char v;
+         for (int i = 0; i < this.card; ++i)
+         {
+            v = this.values[i];
+            if ((words[v >>> 6] & (1L << v)) == 0) result[k++] = v;
+         }
+      }
+      else // RunContainer
+      {
+         RunContainer o = (RunContainer) other;
+         int r = 0;
+         char v;
+         for (int i = 0; i < this.card; ++i)
+         {
+            v = this.values[i];
+            while ((r < o.nbRuns) && (o.end(r) < v)) ++r;
+            if ((r == o.nbRuns) || (v < o.start(r))) result[k++] = v;
+         }
+      }
+
+      if (k == 0) return null;
+      if (k == this.card) return this;
+      // else
+      return Container.optimize(new ArrayContainer(Arrays.copyOf(result, k), k));
+   }
+
+   long sumOfValues()
+   {
+      long sum = 0;
+      for (int i = 0; i < this.card; ++i) {
+         sum += this.values[i];
+      }
+      return sum;
+   }
+
+   int next(int from)
+   {
+      int lo = 0, hi = this.card - 1, mid;
+      // binary search for the first value >= from
+      while (lo <= hi)
+      {
+         mid = (lo + hi) >>> 1;
+         if (this.values[mid] < from) lo = mid + 1;
+         else                         hi = mid - 1;
+      }
+      return (lo < this.card) ? this.values[lo] : -1;
+   }
+
+   long sizeInBytes() {
+      return 16 + 8 + 16 + (2L * this.values.length);
+   }
+
+   int numberOfRuns()
+   {
+      if (this.card == 0) return 0;
+      int runs = 1;
+      for (int i = 1; i < this.card; ++i) {
+         if (this.values[i] != this.values[i-1] + 1) ++runs;
+      }
+      return runs;
+   }
+
+   void fill(long[] words, int offset)
+   {
+      char v;
+      for (int i = 0; i < this.card; ++i)
+      {
+         v = this.values[i];
+         words[offset + (v >>> 6)] |= (1L << v);
+      }
+   }
+
+   ArrayContainer toArrayContainer() {
+      return this.trim();
+   }
+
+   BitmapContainer toBitmapContainer()
+   {
+      long[] words = new long[WORDS];
+      this.fill(words, 0);
+      return new BitmapContainer(words, this.card);
+   }
+
+   RunContainer toRunContainer()
+   {
+      int nbRuns = this.numberOfRuns();
+      char[] runs = new char[2 * nbRuns];
+      int r = -1;
+      for (int i = 0; i < this.card; ++i)
+      {
+         if ((i == 0) || (this.values[i] != this.values[i-1] + 1)) {
+            ++r;
+            runs[2*r] = this.values[i];
+         }
+         runs[2*r + 1] = (char) (this.values[i] - runs[2*r]);
+      }
+      return new RunContainer(runs, nbRuns, this.card);
+   }
+}
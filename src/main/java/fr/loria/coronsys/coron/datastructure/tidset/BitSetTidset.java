@@ -0,0 +1,206 @@
+package fr.loria.coronsys.coron.datastructure.tidset;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Tidset stored like in a java.util.BitSet (array of 64-bit words). This is the
+ * default representation. The operations are done by the TidsetKernel.
+ * Fast on dense datasets, but the size of the bitset depends on the largest
+ * tid, thus on sparse datasets most of it is empty.
+ */
+public class BitSetTidset
+implements Tidset
+{
+   /**
+    * The tids, as the words of a BitSet (without trailing zero words).
+    * The words are used directly by the TidsetKernel.
+    */
+   private long[] words;
+
+   /**
+    * Number of tids.
+    */
+   private int card;
+
+   /**
+    * Sum of the tids.
+    */
+   private long sum;
+
+   /**
+    * Is the sum of the tids computed?
+    */
+   private boolean isSumSet;
+
+   /**
+    * Constructor.
+    *
+    * @param bits The tids.
+    */
+   public BitSetTidset(BitSet bits)
+   {
+      this.words = bits.toLongArray();
+      this.card = bits.cardinality();
+      this.isSumSet = false;
+   }
+
+   /**
+    * Constructor. Used by the TidsetKernel that computes everything in one pass.
+    *
+    * @param words The tids (without trailing zero words). Not copied.
+    * @param card Number of tids.
+    * @param sum Sum of the tids.
+    */
+   BitSetTidset(long[] words, int card, long sum)
+   {
+      this.words = words;
+      this.card = card;
+      this.sum = sum;
+      this.isSumSet = true;
+   }
+
+   /**
+    * Converts another kind of tidset if necessary.
+    *
+    * @param other A tidset.
+    * @return The tidset as a BitSetTidset.
+    */
+   private static BitSetTidset bitsOf(Tidset other)
+   {
+      if (other instanceof BitSetTidset) return (BitSetTidset) other;
+      // else
+      return new BitSetTidset(other.toBitSet());
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#and(fr.loria.coronsys.coron.datastructure.tidset.Tidset)
+    */
+   public Tidset and(Tidset other) {
+      return this.and(other, 0);
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#andNot(fr.loria.coronsys.coron.datastructure.tidset.Tidset)
+    */
+   public Tidset andNot(Tidset other) {
+      return this.andNot(other, this.card);
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#and(fr.loria.coronsys.coron.datastructure.tidset.Tidset, int)
+    */
+   public Tidset and(Tidset other, int minCard)
+   {
+      BitSetTidset o = bitsOf(other);
+      return TidsetKernel.and(this.words, this.card, o.words, o.card, minCard);
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#andCardinality(fr.loria.coronsys.coron.datastructure.tidset.Tidset, int)
+    */
+   public int andCardinality(Tidset other, int minCard)
+   {
+      BitSetTidset o = bitsOf(other);
+      return TidsetKernel.andCardinality(this.words, this.card, o.words, o.card, minCard);
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#andNot(fr.loria.coronsys.coron.datastructure.tidset.Tidset, int)
+    */
+   public Tidset andNot(Tidset other, int maxCard)
+   {
+      BitSetTidset o = bitsOf(other);
+      return TidsetKernel.andNot(this.words, this.card, o.words, maxCard);
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#cardinality()
+    */
+   public int cardinality() {
+      return this.card;
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#isEmpty()
+    */
+   public boolean isEmpty() {
+      return (this.card == 0);
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#sumOfTids()
+    */
+   public long sumOfTids()
+   {
+      if (this.isSumSet == false)
+      {
+         this.sum = TidsetKernel.sumOfTids(this.words);
+         this.isSumSet = true;
+      }
+      return this.sum;
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#nextTid(int)
+    */
+   public int nextTid(int fromTid)
+   {
+      int i = fromTid >>> 6;
+      if (i >= this.words.length) return -1;
+      // else
+      long w = this.words[i] & (-1L << fromTid);
+      while (true)
+      {
+         if (w != 0) return (i << 6) + Long.numberOfTrailingZeros(w);
+         if (++i == this.words.length) return -1;
+         w = this.words[i];
+      }
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#sizeInBytes()
+    */
+   public long sizeInBytes() {
+      // object header + fields + the array of words
+      return 16 + 16 + 16 + (8L * this.words.length);
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#toBitSet()
+    */
+   public BitSet toBitSet() {
+      return BitSet.valueOf(this.words);
+   }
+
+   /**
+    * @return True, if the other object is a tidset with the same tids.
+    */
+   public boolean equals(Object o)
+   {
+      if (o instanceof BitSetTidset) return Arrays.equals(this.words, ((BitSetTidset) o).words);
+      if (o instanceof Tidset)       return this.toBitSet().equals(((Tidset) o).toBitSet());
+      // else
+      return false;
+   }
+
+   /**
+    * @return Hash code of the tids (same as the hash code of the equal BitSet).
+    */
+   public int hashCode()
+   {
+      // same formula as in BitSet
+      long h = 1234;
+      for (int i = this.words.length; --i >= 0; ) {
+         h ^= this.words[i] * (i + 1);
+      }
+      return (int) ((h >> 32) ^ h);
+   }
+
+   /**
+    * @return String representation of the tidset, like a BitSet's.
+    */
+   public String toString() {
+      return this.toBitSet().toString();
+   }
+}
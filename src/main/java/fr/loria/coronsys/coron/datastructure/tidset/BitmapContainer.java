@@ -0,0 +1,263 @@
+package fr.loria.coronsys.coron.datastructure.tidset;
+
+/**
+ * Container that stores its values in a bitmap of 65536 bits (8 KB).
+ * Used for more than 4096 values.
+ */
+class BitmapContainer extends Container
+{
+   /**
+    * The bitmap (1024 words).
+    */
+   final long[] words;
+
+   /**
+    * Number of values.
+    */
+   final int card;
+
+   /**
+    * Constructor.
+    *
+    * @param words The bitmap (1024 words).
+    * @param card Number of set bits in the bitmap.
+    */
+   BitmapContainer(long[] words, int card)
+   {
+      this.words = words;
+      this.card = card;
+   }
+
+   int cardinality() {
+      return this.card;
+   }
+
+   Container and(Container other)
+   {
+      if (other instanceof ArrayContainer) {
+         return other.and(this);
+      }
+      // else
+      long[] result = new long[WORDS];
+      int card = 0;
+
+      if (other instanceof BitmapContainer)
+      {
+         long[] o = ((BitmapContainer) other).words;
+         for (int i = 0; i < WORDS; ++i)
+         {
+            result[i] = this.words[i] & o[i];
+            card += Long.bitCount(result[i]);
+         }
+      }
+      else // RunContainer
+      {
+         RunContainer o = (RunContainer) other;
+         for (int r = 0; r < o.nbRuns; ++r) {
+            BitmapContainer.copyRange(this.words, result, o.start(r), o.end(r));
+         }
+         for (int i = 0; i < WORDS; ++i) {
+            card += Long.bitCount(result[i]);
+         }
+      }
+
+      return Container.optimize(new BitmapContainer(result, card));
+   }
+
+   Container andNot(Container other)
+   {
+      long[] result = this.words.clone();
+      int card = this.card;
+
+      if (other instanceof ArrayContainer)
+      {
+         ArrayContainer o = (ArrayContainer) other;
+         char v;
+         long bit;
+         for (int i = 0; i < o.card; ++i)
+         {
+            v = o.values[i];
+            bit = 1L << v;
+            if ((result[v >>> 6] & bit) != 0) {
+               result[v >>> 6] &= ~bit;
+               --card;
+            }
+         }
+      }
+      else
+      {
+         if (other instanceof BitmapContainer)
+         {
+            long[] o = ((BitmapContainer) other).words;
+            for (int i = 0; i < WORDS; ++i) {
+               result[i] &= ~o[i];
+            }
+         }
+         else // RunContainer
+         {
+            RunContainer o = (RunContainer) other;
+            for (int r = 0; r < o.nbRuns; ++r) {
+               BitmapContainer.clearRange(result, o.start(r), o.end(r));
+            }
+         }
+         card = 0;
+         for (int i = 0; i < WORDS; ++i) {
+            card += Long.bitCount(result[i]);
+         }
+      }
+
+      if (card == this.card) return this;
+      // else
+      return Container.optimize(new BitmapContainer(result, card));
+   }
+
+   /**
+    * Copies the bits between start and end (inclusive) from one bitmap to another.
+    */
+   private static void copyRange(long[] from, long[] to, int start, int end)
+   {
+      int first = start >>> 6, last = end >>> 6;
+      for (int i = first; i <= last; ++i)
+      {
+         long mask = -1L;
+         if (i == first) mask &= (-1L << start);
+         if (i == last)  mask &= (-1L >>> (63 - (end & 63)));
+         to[i] |= from[i] & mask;
+      }
+   }
+
+   /**
+    * Clears the bits between start and end (inclusive).
+    */
+   static void clearRange(long[] words, int start, int end)
+   {
+      int first = start >>> 6, last = end >>> 6;
+      for (int i = first; i <= last; ++i)
+      {
+         long mask = -1L;
+         if (i == first) mask &= (-1L << start);
+         if (i == last)  mask &= (-1L >>> (63 - (end & 63)));
+         words[i] &= ~mask;
+      }
+   }
+
+   /**
+    * Sets the bits between start and end (inclusive).
+    */
+   static void setRange(long[] words, int start, int end)
+   {
+      int first = start >>> 6, last = end >>> 6;
+      for (int i = first; i <= last; ++i)
+      {
+         long mask = -1L;
+         if (i == first) mask &= (-1L << start);
+         if (i == last)  mask &= (-1L >>> (63 - (end & 63)));
+         words[i] |= mask;
+      }
+   }
+
+   long sumOfValues()
+   {
+      long sum = 0;
+      long w;
+      for (int i = 0; i < WORDS; ++i)
+      {
+         w = this.words[i];
+         while (w != 0)
+         {
+            sum += (i << 6) + Long.numberOfTrailingZeros(w);
+            w &= (w - 1);
+         }
+      }
+      return sum;
+   }
+
+   int next(int from)
+   {
+      int i = from >>> 6;
+      long w = this.words[i] & (-1L << from);
+      while (true)
+      {
+         if (w != 0) return (i << 6) + Long.numberOfTrailingZeros(w);
+         if (++i == WORDS) return -1;
+         w = this.words[i];
+      }
+   }
+
+   long sizeInBytes() {
+      return 16 + 8 + 16 + (8L * WORDS);
+   }
+
+   int numberOfRuns()
+   {
+      int runs = 0;
+      long prev = 0, w;
+      for (int i = 0; i < WORDS; ++i)
+      {
+         w = this.words[i];
+         // a run starts where a bit is set and the previous one is not
+         runs += Long.bitCount(w & ~((w << 1) | (prev >>> 63)));
+         prev = w;
+      }
+      return runs;
+   }
+
+   void fill(long[] words, int offset) {
+      System.arraycopy(this.words, 0, words, offset, WORDS);
+   }
+
+   ArrayContainer toArrayContainer()
+   {
+      char[] values = new char[this.card];
+      int k = 0;
+      long w;
+      for (int i = 0; i < WORDS; ++i)
+      {
+         w = this.words[i];
+         while (w != 0)
+         {
+            values[k++] = (char) ((i << 6) + Long.numberOfTrailingZeros(w));
+            w &= (w - 1);
+         }
+      }
+      return new ArrayContainer(values, this.card);
+   }
+
+   BitmapContainer toBitmapContainer() {
+      return this;
+   }
+
+   RunContainer toRunContainer()
+   {
+      int nbRuns = this.numberOfRuns();
+      char[] runs = new char[2 * nbRuns];
+      int r = 0, start = this.next(0), end;
+
+      while (start >= 0)
+      {
+         // end of the run: first unset bit after start, minus 1
+         end = this.nextUnset(start) - 1;
+         runs[2*r] = (char) start;
+         runs[2*r + 1] = (char) (end - start);
+         ++r;
+         start = (end + 1 < WORDS * 64) ? this.next(end + 1) : -1;
+      }
+      return new RunContainer(runs, nbRuns, this.card);
+   }
+
+   /**
+    * @param from A value between 0 and 65535.
+    * @return The smallest unset position that is greater than or equal to from (65536 if there's none).
+    */
+   private int nextUnset(int from)
+   {
+      int i = from >>> 6;
+      long w = ~this.words[i] & (-1L << from);
+      while (true)
+      {
+         if (w != 0) return (i << 6) + Long.numberOfTrailingZeros(w);
+         if (++i == WORDS) return WORDS * 64;
+         w = ~this.words[i];
+      }
+   }
+}
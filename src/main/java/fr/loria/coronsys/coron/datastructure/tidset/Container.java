@@ -0,0 +1,113 @@
+package fr.loria.coronsys.coron.datastructure.tidset;
+
+/**
+ * A container of a RoaringTidset. It stores the lower 16 bits of the tids
+ * that share the same upper 16 bits (the key of the container).
+ *
+ * Three kinds of containers exist:
+ *    - ArrayContainer: sorted array of values, for at most 4096 values
+ *    - BitmapContainer: 65536 bits, for more than 4096 values
+ *    - RunContainer: list of intervals, if the values form long runs
+ *
+ * Containers are never modified after their construction. An operation
+ * returns a new container, or null if the result is empty.
+ */
+abstract class Container
+{
+   /**
+    * Max. number of values in an array container.
+    */
+   static final int MAX_ARRAY_SIZE = 4096;
+
+   /**
+    * Number of 64-bit words in a bitmap container.
+    */
+   static final int WORDS = 1024;
+
+   /**
+    * @return Number of values in the container.
+    */
+   abstract int cardinality();
+
+   /**
+    * @param other Another container (with the same key).
+    * @return Intersection of the two containers, or null if it's empty.
+    */
+   abstract Container and(Container other);
+
+   /**
+    * @param other Another container (with the same key).
+    * @return This container minus the other one, or null if it's empty.
+    */
+   abstract Container andNot(Container other);
+
+   /**
+    * @return Sum of the values.
+    */
+   abstract long sumOfValues();
+
+   /**
+    * @param from A value between 0 and 65535.
+    * @return The smallest value that is greater than or equal to from, or -1.
+    */
+   abstract int next(int from);
+
+   /**
+    * @return Approximate memory usage in bytes.
+    */
+   abstract long sizeInBytes();
+
+   /**
+    * @return Number of runs (maximal intervals of consecutive values).
+    */
+   abstract int numberOfRuns();
+
+   /**
+    * Sets the bits of the values in an array of words.
+    *
+    * @param words An array of words (like in a BitSet).
+    * @param offset Index of the first word of this container.
+    */
+   abstract void fill(long[] words, int offset);
+
+   /**
+    * @return The values in a new array container (only if cardinality() <= MAX_ARRAY_SIZE).
+    */
+   abstract ArrayContainer toArrayContainer();
+
+   /**
+    * @return The values in a new bitmap container.
+    */
+   abstract BitmapContainer toBitmapContainer();
+
+   /**
+    * @return The values in a new run container.
+    */
+   abstract RunContainer toRunContainer();
+
+   /**
+    * Chooses the smallest representation for a container.
+    *
+    * @param c A container (or null).
+    * @return The same values in the smallest kind of container, or null if c is null or empty.
+    */
+   static Container optimize(Container c)
+   {
+      if (c == null) return null;
+      int card = c.cardinality();
+      if (card == 0) return null;
+      // else
+      long arraySize = (card <= MAX_ARRAY_SIZE) ? (2L * card) : Long.MAX_VALUE;
+      long bitmapSize = 8L * WORDS;
+      long runSize = 4L * c.numberOfRuns();
+
+      if ((runSize < arraySize) && (runSize < bitmapSize)) {
+         return (c instanceof RunContainer) ? c : c.toRunContainer();
+      }
+      if (arraySize <= bitmapSize) {
+         return (c instanceof ArrayContainer) ? c : c.toArrayContainer();
+      }
+      // else
+      return (c instanceof BitmapContainer) ? c : c.toBitmapContainer();
+   }
+}
@@ -0,0 +1,334 @@
+package fr.loria.coronsys.coron.datastructure.tidset;
+
+import java.util.BitSet;
+
+/**
+ * Compressed tidset in the style of Roaring bitmaps.
+ *
+ * Tids are partitioned by their upper 16 bits (the key). The lower 16 bits of
+ * the tids with the same key are stored in a container, which is a sorted array,
+ * a bitmap or a list of runs, whichever is the smallest. Keys without tids
+ * are not stored at all. Thus, on a sparse dataset, the size of a tidset depends
+ * on the number of its tids and not on the largest tid.
+ */
+public class RoaringTidset
+implements Tidset
+{
+   /**
+    * The empty tidset.
+    */
+   private static final RoaringTidset EMPTY = new RoaringTidset(new char[0], new Container[0], 0);
+
+   /**
+    * Keys (upper 16 bits of the tids) in increasing order.
+    */
+   private char[] keys;
+
+   /**
+    * The containers that belong to the keys.
+    */
+   private Container[] containers;
+
+   /**
+    * Number of used keys/containers (the arrays may be longer).
+    */
+   private int size;
+
+   /**
+    * Number of tids.
+    */
+   private int card;
+
+   /**
+    * Sum of the tids.
+    */
+   private long sum;
+
+   /**
+    * Is the sum of the tids computed?
+    */
+   private boolean isSumSet = false;
+
+   /**
+    * Constructor.
+    *
+    * @param keys Keys in increasing order.
+    * @param containers Non-empty containers that belong to the keys.
+    * @param size Number of used keys.
+    */
+   private RoaringTidset(char[] keys, Container[] containers, int size)
+   {
+      this.keys = keys;
+      this.containers = containers;
+      this.size = size;
+      this.card = 0;
+      for (int i = 0; i < size; ++i) {
+         this.card += containers[i].cardinality();
+      }
+   }
+
+   /**
+    * @return The empty tidset.
+    */
+   public static RoaringTidset empty() {
+      return EMPTY;
+   }
+
+   /**
+    * Creates a compressed tidset from a bitset.
+    *
+    * @param bits A bitset of tids.
+    * @return The same tids in a compressed tidset.
+    */
+   public static RoaringTidset valueOf(BitSet bits)
+   {
+      long[] words = bits.toLongArray();
+      int nbKeys = (words.length + Container.WORDS - 1) / Container.WORDS;
+      char[] keys = new char[nbKeys];
+      Container[] containers = new Container[nbKeys];
+      int size = 0, from, to, card;
+      long[] chunk;
+      Container c;
+
+      for (int key = 0; key < nbKeys; ++key)
+      {
+         from = key * Container.WORDS;
+         to = Math.min(from + Container.WORDS, words.length);
+         card = 0;
+         for (int i = from; i < to; ++i) {
+            card += Long.bitCount(words[i]);
+         }
+         if (card == 0) continue;
+         // else
+         chunk = new long[Container.WORDS];
+         System.arraycopy(words, from, chunk, 0, to - from);
+         c = Container.optimize(new BitmapContainer(chunk, card));
+         keys[size] = (char) key;
+         containers[size] = c;
+         ++size;
+      }
+      return new RoaringTidset(keys, containers, size);
+   }
+
+   /**
+    * Converts another kind of tidset if necessary.
+    *
+    * @param other A tidset.
+    * @return The tidset as a RoaringTidset.
+    */
+   private static RoaringTidset roaringOf(Tidset other)
+   {
+      if (other instanceof RoaringTidset) return (RoaringTidset) other;
+      // else
+      return RoaringTidset.valueOf(other.toBitSet());
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#and(fr.loria.coronsys.coron.datastructure.tidset.Tidset)
+    */
+   public Tidset and(Tidset other) {
+      return this.and(other, 0);
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#and(fr.loria.coronsys.coron.datastructure.tidset.Tidset, int)
+    */
+   public Tidset and(Tidset other, int minCard)
+   {
+      RoaringTidset o = roaringOf(other);
+      if (Math.min(this.card, o.card) < minCard) return null;
+      // else
+      int n = Math.min(this.size, o.size);
+      char[] keys = new char[n];
+      Container[] containers = new Container[n];
+      int i = 0, j = 0, k = 0, card = 0;
+      int restA = this.card, restB = o.card;      // tids that were not seen yet
+      Container c;
+
+      while ((i < this.size) && (j < o.size))
+      {
+         if (this.keys[i] < o.keys[j]) {
+            restA -= this.containers[i++].cardinality();
+         }
+         else if (this.keys[i] > o.keys[j]) {
+            restB -= o.containers[j++].cardinality();
+         }
+         else
+         {
+            c = this.containers[i].and(o.containers[j]);
+            if (c != null) {
+               keys[k] = this.keys[i];
+               containers[k] = c;
+               card += c.cardinality();
+               ++k;
+            }
+            restA -= this.containers[i++].cardinality();
+            restB -= o.containers[j++].cardinality();
+         }
+         // min. support cannot be reached anymore
+         if (card + Math.min(restA, restB) < minCard) return null;
+      }
+      if (card < minCard) return null;
+      // else
+      return (k == 0) ? EMPTY : new RoaringTidset(keys, containers, k);
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#andCardinality(fr.loria.coronsys.coron.datastructure.tidset.Tidset, int)
+    */
+   public int andCardinality(Tidset other, int minCard)
+   {
+      // the containers create their results anyway
+      Tidset result = this.and(other, minCard);
+      return (result == null) ? -1 : result.cardinality();
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#andNot(fr.loria.coronsys.coron.datastructure.tidset.Tidset)
+    */
+   public Tidset andNot(Tidset other) {
+      return this.andNot(other, this.card);
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#andNot(fr.loria.coronsys.coron.datastructure.tidset.Tidset, int)
+    */
+   public Tidset andNot(Tidset other, int maxCard)
+   {
+      if (maxCard < 0) return null;
+      // else
+      RoaringTidset o = roaringOf(other);
+      char[] keys = new char[this.size];
+      Container[] containers = new Container[this.size];
+      int j = 0, k = 0, card = 0;
+      Container c;
+
+      for (int i = 0; i < this.size; ++i)
+      {
+         while ((j < o.size) && (o.keys[j] < this.keys[i])) ++j;
+         if ((j < o.size) && (o.keys[j] == this.keys[i])) {
+            c = this.containers[i].andNot(o.containers[j]);
+         }
+         else {
+            c = this.containers[i];    // containers are immutable, they can be shared
+         }
+         if (c != null)
+         {
+            keys[k] = this.keys[i];
+            containers[k] = c;
+            card += c.cardinality();
+            if (card > maxCard) return null;
+            ++k;
+         }
+      }
+      return (k == 0) ? EMPTY : new RoaringTidset(keys, containers, k);
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#cardinality()
+    */
+   public int cardinality() {
+      return this.card;
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#isEmpty()
+    */
+   public boolean isEmpty() {
+      return (this.card == 0);
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#sumOfTids()
+    */
+   public long sumOfTids()
+   {
+      if (this.isSumSet == false)
+      {
+         long sum = 0;
+         for (int i = 0; i < this.size; ++i)
+         {
+            sum += ((long) this.keys[i] << 16) * this.containers[i].cardinality();
+            sum += this.containers[i].sumOfValues();
+         }
+         this.sum = sum;
+         this.isSumSet = true;
+      }
+      return this.sum;
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#nextTid(int)
+    */
+   public int nextTid(int fromTid)
+   {
+      int key = fromTid >>> 16, low = fromTid & 0xFFFF, v;
+
+      for (int i = 0; i < this.size; ++i)
+      {
+         if (this.keys[i] < key) continue;
+         v = this.containers[i].next((this.keys[i] == key) ? low : 0);
+         if (v >= 0) return (this.keys[i] << 16) | v;
+      }
+      return -1;
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#sizeInBytes()
+    */
+   public long sizeInBytes()
+   {
+      long bytes = 16 + 24 + (16 + 2L * this.keys.length) + (16 + 4L * this.containers.length);
+      for (int i = 0; i < this.size; ++i) {
+         bytes += this.containers[i].sizeInBytes();
+      }
+      return bytes;
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#toBitSet()
+    */
+   public BitSet toBitSet()
+   {
+      if (this.size == 0) return new BitSet();
+      // else
+      long[] words = new long[(this.keys[this.size - 1] + 1) * Container.WORDS];
+      for (int i = 0; i < this.size; ++i) {
+         this.containers[i].fill(words, this.keys[i] * Container.WORDS);
+      }
+      return BitSet.valueOf(words);
+   }
+
+   /**
+    * @return True, if the other object is a tidset with the same tids.
+    */
+   public boolean equals(Object o)
+   {
+      if (!(o instanceof Tidset)) return false;
+      // else
+      Tidset other = (Tidset) o;
+      if (other.cardinality() != this.card) return false;
+      // else
+      int a = this.nextTid(0), b = other.nextTid(0);
+      while ((a >= 0) && (a == b))
+      {
+         a = this.nextTid(a + 1);
+         b = other.nextTid(b + 1);
+      }
+      return (a == b);
+   }
+
+   /**
+    * @return Hash code of the tids (same as the hash code of the equal BitSet).
+    */
+   public int hashCode() {
+      return this.toBitSet().hashCode();
+   }
+
+   /**
+    * @return String representation of the tidset, like a BitSet's.
+    */
+   public String toString() {
+      return this.toBitSet().toString();
+   }
+}
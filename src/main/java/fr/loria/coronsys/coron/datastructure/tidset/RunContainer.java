@@ -0,0 +1,207 @@
+package fr.loria.coronsys.coron.datastructure.tidset;
+
+import java.util.Arrays;
+
+/**
+ * Container that stores its values as a list of runs (intervals of consecutive
+ * values). A run is stored as a (start, length - 1) pair, i.e. on 4 bytes.
+ * Used if the values form long runs, e.g. in a column of a dense dataset.
+ */
+class RunContainer extends Container
+{
+   /**
+    * Runs: runs[2*i] is the start of the i-th run, runs[2*i+1] is its length minus 1.
+    */
+   final char[] runs;
+
+   /**
+    * Number of runs.
+    */
+   final int nbRuns;
+
+   /**
+    * Number of values.
+    */
+   final int card;
+
+   /**
+    * Constructor.
+    *
+    * @param runs The runs as (start, length - 1) pairs, in increasing order, not touching each other.
+    * @param nbRuns Number of runs.
+    * @param card Number of values.
+    */
+   RunContainer(char[] runs, int nbRuns, int card)
+   {
+      this.runs = runs;
+      this.nbRuns = nbRuns;
+      this.card = card;
+   }
+
+   /**
+    * @param r Index of a run.
+    * @return First value of the run.
+    */
+   int start(int r) {
+      return this.runs[2*r];
+   }
+
+   /**
+    * @param r Index of a run.
+    * @return Last value of the run.
+    */
+   int end(int r) {
+      return this.runs[2*r] + this.runs[2*r + 1];
+   }
+
+   int cardinality() {
+      return this.card;
+   }
+
+   Container and(Container other)
+   {
+      if (!(other instanceof RunContainer)) {
+         return other.and(this);
+      }
+      // else: intersection of two lists of intervals
+      RunContainer o = (RunContainer) other;
+      RunBuilder b = new RunBuilder(this.nbRuns + o.nbRuns);
+      int i = 0, j = 0, start, end;
+
+      while ((i < this.nbRuns) && (j < o.nbRuns))
+      {
+         start = Math.max(this.start(i), o.start(j));
+         end = Math.min(this.end(i), o.end(j));
+         if (start <= end) b.add(start, end);
+         if (this.end(i) < o.end(j)) ++i;
+         else                        ++j;
+      }
+      return Container.optimize(b.build());
+   }
+
+   Container andNot(Container other)
+   {
+      if (!(other instanceof RunContainer))
+      {
+         Container c = (this.card <= MAX_ARRAY_SIZE) ? this.toArrayContainer() : this.toBitmapContainer();
+         return c.andNot(other);
+      }
+      // else: difference of two lists of intervals
+      RunContainer o = (RunContainer) other;
+      RunBuilder b = new RunBuilder(this.nbRuns + o.nbRuns);
+      int j = 0, start, end;
+
+      for (int i = 0; i < this.nbRuns; ++i)
+      {
+         start = this.start(i);
+         end = this.end(i);
+         while ((j < o.nbRuns) && (o.end(j) < start)) ++j;
+         // cut out the runs of the other container that overlap [start, end]
+         while ((j < o.nbRuns) && (o.start(j) <= end) && (start <= end))
+         {
+            if (o.start(j) > start) b.add(start, o.start(j) - 1);
+            start = o.end(j) + 1;
+            if (o.end(j) > end) break;      // it may overlap the next run too
+            ++j;
+         }
+         if (start <= end) b.add(start, end);
+      }
+      Container c = b.build();
+      if ((c != null) && (c.cardinality() == this.card)) return this;
+      // else
+      return Container.optimize(c);
+   }
+
+   long sumOfValues()
+   {
+      long sum = 0;
+      long start, end;
+      for (int r = 0; r < this.nbRuns; ++r)
+      {
+         start = this.start(r);
+         end = this.end(r);
+         sum += (start + end) * (end - start + 1) / 2;
+      }
+      return sum;
+   }
+
+   int next(int from)
+   {
+      for (int r = 0; r < this.nbRuns; ++r)
+      {
+         if (this.end(r) >= from) return Math.max(from, this.start(r));
+      }
+      return -1;
+   }
+
+   long sizeInBytes() {
+      return 16 + 12 + 16 + (2L * this.runs.length);
+   }
+
+   int numberOfRuns() {
+      return this.nbRuns;
+   }
+
+   void fill(long[] words, int offset)
+   {
+      for (int r = 0; r < this.nbRuns; ++r) {
+         BitmapContainer.setRange(words, (offset << 6) + this.start(r), (offset << 6) + this.end(r));
+      }
+   }
+
+   ArrayContainer toArrayContainer()
+   {
+      char[] values = new char[this.card];
+      int k = 0;
+      for (int r = 0; r < this.nbRuns; ++r)
+      {
+         for (int v = this.start(r); v <= this.end(r); ++v) {
+            values[k++] = (char) v;
+         }
+      }
+      return new ArrayContainer(values, this.card);
+   }
+
+   BitmapContainer toBitmapContainer()
+   {
+      long[] words = new long[WORDS];
+      this.fill(words, 0);
+      return new BitmapContainer(words, this.card);
+   }
+
+   RunContainer toRunContainer() {
+      return this;
+   }
+
+   /**
+    * Collects runs in increasing order.
+    */
+   private static class RunBuilder
+   {
+      private char[] runs;
+      private int nbRuns = 0;
+      private int card = 0;
+
+      RunBuilder(int capacity) {
+         this.runs = new char[2 * Math.max(capacity, 1)];
+      }
+
+      void add(int start, int end)
+      {
+         if (2 * this.nbRuns == this.runs.length) {
+            this.runs = Arrays.copyOf(this.runs, 2 * this.runs.length);
+         }
+         this.runs[2*this.nbRuns] = (char) start;
+         this.runs[2*this.nbRuns + 1] = (char) (end - start);
+         ++this.nbRuns;
+         this.card += end - start + 1;
+      }
+
+      RunContainer build()
+      {
+         if (this.nbRuns == 0) return null;
+         // else
+         return new RunContainer(Arrays.copyOf(this.runs, 2 * this.nbRuns), this.nbRuns, this.card);
+      }
+   }
+}
@@ -0,0 +1,97 @@
+package fr.loria.coronsys.coron.datastructure.tidset;
+
+import java.util.BitSet;
+
+/**
+ * A set of transaction identifiers (tids), i.e. the extent of an itemset.
+ * Tids start at 1 (as in the vertical database).
+ *
+ * A tidset is never modified after its construction. Set operations
+ * create a new tidset, thus a tidset can be shared freely (between
+ * nodes of the IT-tree or between threads).
+ */
+public interface Tidset
+{
+   /**
+    * @param other Another tidset.
+    * @return Intersection of this tidset and the other one.
+    */
+   public Tidset and(Tidset other);
+
+   /**
+    * @param other Another tidset.
+    * @return Difference of this tidset and the other one (this minus other).
+    */
+   public Tidset andNot(Tidset other);
+
+   /**
+    * Intersection for the evaluation of a candidate. The intersection is
+    * only created if it has at least minCard tids, thus nothing is allocated
+    * for infrequent candidates. The computation may stop as soon as it is
+    * sure that minCard cannot be reached.
+    *
+    * @param other Another tidset.
+    * @param minCard Min. number of tids in the result (e.g. min_supp).
+    * @return Intersection of this tidset and the other one, or null if it has less than minCard tids.
+    */
+   public Tidset and(Tidset other, int minCard);
+
+   /**
+    * Difference for the evaluation of a candidate with diffsets. The difference
+    * is only created if it has at most maxCard tids. The computation may stop
+    * as soon as maxCard is exceeded.
+    *
+    * @param other Another tidset.
+    * @param maxCard Max. number of tids in the result (e.g. support of the parent minus min_supp).
+    * @return This tidset minus the other one, or null if it has more than maxCard tids.
+    */
+   public Tidset andNot(Tidset other, int maxCard);
+
+   /**
+    * Size of the intersection, without creating the intersection. Used when
+    * a candidate can be rejected by its support alone.
+    *
+    * @param other Another tidset.
+    * @param minCard Min. number of tids in the intersection (e.g. min_supp).
+    * @return Number of tids in the intersection, or -1 if it's less than minCard.
+    */
+   public int andCardinality(Tidset other, int minCard);
+
+   /**
+    * @return Number of tids in the tidset.
+    */
+   public int cardinality();
+
+   /**
+    * @return True, if the tidset contains no tids.
+    */
+   public boolean isEmpty();
+
+   /**
+    * Sum of the tids. It's computed on a long (it cannot overflow), thus the
+    * hash of a node can also be derived from the hash of its parent and the
+    * sum of its diffset. It's computed only once, the hash of an IT-node can
+    * be asked any number of times.
+    *
+    * @return Sum of the tids.
+    */
+   public long sumOfTids();
+
+   /**
+    * Same as BitSet.nextSetBit().
+    *
+    * @param fromTid The tid to start checking from (inclusive).
+    * @return The first tid that is greater than or equal to fromTid, or -1 if there is no such tid.
+    */
+   public int nextTid(int fromTid);
+
+   /**
+    * @return Approximate memory usage of the tidset in bytes.
+    */
+   public long sizeInBytes();
+
+   /**
+    * @return The tidset as a (new) BitSet.
+    */
+   public BitSet toBitSet();
+}
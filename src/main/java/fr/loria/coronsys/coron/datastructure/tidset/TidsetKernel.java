@@ -0,0 +1,221 @@
+package fr.loria.coronsys.coron.datastructure.tidset;
+
+import java.util.Arrays;
+
+/**
+ * Kernel of the candidate evaluation on word arrays (like in a BitSet).
+ *
+ * The operation, the support and the sum of the tids (that gives the hash
+ * of the IT-node) are computed in one pass over the words. The result is
+ * written into a working buffer of the thread and it's copied only if the
+ * candidate is kept, i.e. nothing is allocated for a rejected candidate.
+ */
+final class TidsetKernel
+{
+   /**
+    * The support bound is checked after each block of this many words.
+    */
+   private static final int BLOCK = 32;
+
+   /**
+    * Working buffer of each thread. It grows if necessary.
+    */
+   private static final ThreadLocal<long[]> BUFFER = new ThreadLocal<long[]>() {
+      protected long[] initialValue() {
+         return new long[1024];
+      }
+   };
+
+   /**
+    * Masks for the sum of the bit positions in a word: MASKS[k] selects
+    * the positions whose k-th bit is 1.
+    */
+   private static final long[] MASKS = {
+      0xAAAAAAAAAAAAAAAAL,
+      0xCCCCCCCCCCCCCCCCL,
+      0xF0F0F0F0F0F0F0F0L,
+      0xFF00FF00FF00FF00L,
+      0xFFFF0000FFFF0000L,
+      0xFFFFFFFF00000000L
+   };
+
+   /**
+    * Empty private constructor. The class cannot be instantiated.
+    */
+   private TidsetKernel() { }
+
+   /**
+    * Intersection with support threshold.
+    *
+    * @param a Words of the first tidset.
+    * @param cardA Number of tids in the first tidset.
+    * @param b Words of the second tidset.
+    * @param cardB Number of tids in the second tidset.
+    * @param minCard Min. number of tids in the result.
+    * @return The intersection, or null if it has less than minCard tids.
+    */
+   static BitSetTidset and(long[] a, int cardA, long[] b, int cardB, int minCard)
+   {
+      if (Math.min(cardA, cardB) < minCard) return null;
+      // else
+      if (cardA > cardB)
+      {
+         // the bound is computed on the smaller tidset, it's tighter
+         long[] t = a; a = b; b = t;
+         int c = cardA; cardA = cardB; cardB = c;
+      }
+      int n = Math.min(a.length, b.length);
+      long[] result = buffer(n);
+      int card = 0, last = -1;
+      long sum = 0;
+      int restA = cardA;      // tids of a that were not seen yet
+      int end, bc;
+      long w;
+
+      for (int from = 0; from < n; from = end)
+      {
+         end = Math.min(from + BLOCK, n);
+         for (int i = from; i < end; ++i)
+         {
+            restA -= Long.bitCount(a[i]);
+            w = a[i] & b[i];
+            result[i] = w;
+            if (w != 0)
+            {
+               bc = Long.bitCount(w);
+               card += bc;
+               sum += ((long) (i << 6) * bc) + positionSum(w);
+               last = i;
+            }
+         }
+         // even if all the remaining tids of a are in b, min. support cannot be reached
+         if (card + restA < minCard) return null;
+      }
+
+      if (card < minCard) return null;
+      // else
+      return new BitSetTidset(Arrays.copyOf(result, last + 1), card, sum);
+   }
+
+   /**
+    * Size of the intersection, nothing is written.
+    *
+    * @param a Words of the first tidset.
+    * @param cardA Number of tids in the first tidset.
+    * @param b Words of the second tidset.
+    * @param cardB Number of tids in the second tidset.
+    * @param minCard Min. number of tids in the intersection.
+    * @return Number of tids in the intersection, or -1 if it's less than minCard.
+    */
+   static int andCardinality(long[] a, int cardA, long[] b, int cardB, int minCard)
+   {
+      if (Math.min(cardA, cardB) < minCard) return -1;
+      // else
+      if (cardA > cardB)
+      {
+         long[] t = a; a = b; b = t;
+         int c = cardA; cardA = cardB; cardB = c;
+      }
+      int n = Math.min(a.length, b.length);
+      int card = 0, restA = cardA, end;
+
+      for (int from = 0; from < n; from = end)
+      {
+         end = Math.min(from + BLOCK, n);
+         for (int i = from; i < end; ++i)
+         {
+            restA -= Long.bitCount(a[i]);
+            card += Long.bitCount(a[i] & b[i]);
+         }
+         if (card + restA < minCard) return -1;
+      }
+      return (card < minCard) ? -1 : card;
+   }
+
+   /**
+    * Difference with an upper bound on the size of the result.
+    *
+    * @param a Words of the first tidset.
+    * @param cardA Number of tids in the first tidset.
+    * @param b Words of the second tidset.
+    * @param maxCard Max. number of tids in the result.
+    * @return a minus b, or null if it has more than maxCard tids.
+    */
+   static BitSetTidset andNot(long[] a, int cardA, long[] b, int maxCard)
+   {
+      if (maxCard < 0) return null;
+      // else
+      int n = a.length;
+      long[] result = buffer(n);
+      int card = 0, last = -1;
+      long sum = 0;
+      int end, bc;
+      long w;
+
+      for (int from = 0; from < n; from = end)
+      {
+         end = Math.min(from + BLOCK, n);
+         for (int i = from; i < end; ++i)
+         {
+            w = (i < b.length) ? (a[i] & ~b[i]) : a[i];
+            result[i] = w;
+            if (w != 0)
+            {
+               bc = Long.bitCount(w);
+               card += bc;
+               sum += ((long) (i << 6) * bc) + positionSum(w);
+               last = i;
+            }
+         }
+         if (card > maxCard) return null;
+      }
+
+      return new BitSetTidset(Arrays.copyOf(result, last + 1), card, sum);
+   }
+
+   /**
+    * Sum of the words of the tidset (without operation).
+    *
+    * @param words Words of a tidset.
+    * @return Sum of the tids.
+    */
+   static long sumOfTids(long[] words)
+   {
+      long sum = 0;
+      long w;
+      for (int i = 0; i < words.length; ++i)
+      {
+         w = words[i];
+         if (w != 0) sum += ((long) (i << 6) * Long.bitCount(w)) + positionSum(w);
+      }
+      return sum;
+   }
+
+   /**
+    * @param w A word.
+    * @return Sum of the positions of the set bits (between 0 and 63) in the word.
+    */
+   private static int positionSum(long w)
+   {
+      int sum = 0;
+      for (int k = 0; k < MASKS.length; ++k) {
+         sum += Long.bitCount(w & MASKS[k]) << k;
+      }
+      return sum;
+   }
+
+   /**
+    * @param n Number of words needed.
+    * @return The working buffer of the thread, with at least n words.
+    */
+   private static long[] buffer(int n)
+   {
+      long[] buf = BUFFER.get();
+      if (buf.length < n)
+      {
+         buf = new long[Math.max(n, 2 * buf.length)];
+         BUFFER.set(buf);
+      }
+      return buf;
+   }
+}
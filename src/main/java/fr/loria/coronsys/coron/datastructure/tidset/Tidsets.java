@@ -0,0 +1,78 @@
+package fr.loria.coronsys.coron.datastructure.tidset;
+
+import java.util.BitSet;
+
+import fr.loria.coronsys.coron.helper.C;
+import fr.loria.coronsys.coron.helper.Database;
+import fr.loria.coronsys.coron.helper.Global;
+
+/**
+ * Creates tidsets in the representation that was chosen for the run
+ * (switch -tidset:bitset|roaring). If identical objects were folded
+ * (switch -fold), the tidsets are weighted.
+ */
+public class Tidsets
+{
+   /**
+    * Empty private constructor. The class cannot be instantiated.
+    */
+   private Tidsets() { }
+
+   /**
+    * Creates a tidset from a bitset.
+    *
+    * @param bits A bitset of tids. In the case of BitSet representation it is not copied,
+    * thus it must not be modified later.
+    * @return The tids in the chosen representation.
+    */
+   public static Tidset valueOf(BitSet bits)
+   {
+      Tidset tids;
+      if (Global.getTidsetRepresentation() == C.TIDSET_ROARING) {
+         tids = RoaringTidset.valueOf(bits);
+      }
+      else {
+         tids = new BitSetTidset(bits);
+      }
+      return weighted(tids);
+   }
+
+   /**
+    * @return An empty tidset in the chosen representation.
+    */
+   public static Tidset empty()
+   {
+      if (Global.getTidsetRepresentation() == C.TIDSET_ROARING) {
+         return weighted(RoaringTidset.empty());
+      }
+      // else
+      return weighted(new BitSetTidset(new BitSet()));
+   }
+
+   /**
+    * @param tids Some tids.
+    * @return The tids with the weights of the folded objects, or the tids
+    * themselves if the objects were not folded.
+    */
+   private static Tidset weighted(Tidset tids)
+   {
+      int[] weights = Database.getWeights();
+      if (weights == null) return tids;
+      // else
+      return new WeightedTidset(tids, weights, Database.getMaxWeight());
+   }
+
+   /**
+    * @param repr A tidset representation (C.TIDSET_BITSET or C.TIDSET_ROARING).
+    * @return Name of the representation.
+    */
+   public static String getName(int repr)
+   {
+      switch (repr)
+      {
+         case C.TIDSET_BITSET:  return "bitset";
+         case C.TIDSET_ROARING: return "roaring";
+         default:               return "unknown";
+      }
+   }
+}
@@ -0,0 +1,198 @@
+package fr.loria.coronsys.coron.datastructure.tidset;
+
+import java.util.BitSet;
+
+/**
+ * Tidset of a database in which identical objects were folded (switch -fold).
+ * A tid stands for several identical objects, its weight is their number.
+ * The tids are stored in another tidset (in the chosen representation), and
+ * cardinality() is the sum of the weights, i.e. the support in the original
+ * database. Thus the miners work the same way as on the unfolded database.
+ *
+ * The set operations are done on the underlying tidsets. With a min./max.
+ * cardinality they first filter with the number of tids (a weight is between 1
+ * and maxWeight), then the sum of the weights is checked.
+ */
+public class WeightedTidset
+implements Tidset
+{
+   /**
+    * The tids.
+    */
+   private final Tidset tids;
+
+   /**
+    * Weight of each tid (position 0 is not used). Shared by all the tidsets.
+    */
+   private final int[] weights;
+
+   /**
+    * The largest weight.
+    */
+   private final int maxWeight;
+
+   /**
+    * Sum of the weights of the tids.
+    */
+   private final int card;
+
+   /**
+    * Constructor.
+    *
+    * @param tids The tids.
+    * @param weights Weight of each tid (position 0 is not used).
+    * @param maxWeight The largest weight.
+    */
+   public WeightedTidset(Tidset tids, int[] weights, int maxWeight)
+   {
+      this.tids = tids;
+      this.weights = weights;
+      this.maxWeight = maxWeight;
+      this.card = weightOf(tids, weights);
+   }
+
+   /**
+    * @param tids Some tids.
+    * @param weights Weight of each tid.
+    * @return Sum of the weights of the tids.
+    */
+   private static int weightOf(Tidset tids, int[] weights)
+   {
+      int sum = 0;
+      for (int tid = tids.nextTid(0); tid >= 0; tid = tids.nextTid(tid+1)) {
+         sum += weights[tid];
+      }
+      return sum;
+   }
+
+   /**
+    * @param other A tidset.
+    * @return The tids of the other tidset.
+    */
+   private static Tidset tidsOf(Tidset other) {
+      return (other instanceof WeightedTidset) ? ((WeightedTidset) other).tids : other;
+   }
+
+   /**
+    * @param tids Some tids (can be null).
+    * @return The tids with the weights of this tidset (null if tids is null).
+    */
+   private WeightedTidset wrap(Tidset tids) {
+      return (tids == null) ? null : new WeightedTidset(tids, this.weights, this.maxWeight);
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#and(fr.loria.coronsys.coron.datastructure.tidset.Tidset)
+    */
+   public Tidset and(Tidset other) {
+      return this.wrap(this.tids.and(tidsOf(other)));
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#andNot(fr.loria.coronsys.coron.datastructure.tidset.Tidset)
+    */
+   public Tidset andNot(Tidset other) {
+      return this.wrap(this.tids.andNot(tidsOf(other)));
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#and(fr.loria.coronsys.coron.datastructure.tidset.Tidset, int)
+    */
+   public Tidset and(Tidset other, int minCard)
+   {
+      // at least this many tids are needed to reach minCard
+      int minTids = (minCard + this.maxWeight - 1) / this.maxWeight;
+      WeightedTidset result = this.wrap(this.tids.and(tidsOf(other), minTids));
+      if ((result == null) || (result.card < minCard)) return null;
+      // else
+      return result;
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#andNot(fr.loria.coronsys.coron.datastructure.tidset.Tidset, int)
+    */
+   public Tidset andNot(Tidset other, int maxCard)
+   {
+      // each weight is at least 1, thus there are at most maxCard tids
+      WeightedTidset result = this.wrap(this.tids.andNot(tidsOf(other), maxCard));
+      if ((result == null) || (result.card > maxCard)) return null;
+      // else
+      return result;
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#andCardinality(fr.loria.coronsys.coron.datastructure.tidset.Tidset, int)
+    */
+   public int andCardinality(Tidset other, int minCard)
+   {
+      WeightedTidset result = (WeightedTidset) this.and(other, minCard);
+      return (result == null) ? -1 : result.card;
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#cardinality()
+    */
+   public int cardinality() {
+      return this.card;
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#isEmpty()
+    */
+   public boolean isEmpty() {
+      return this.tids.isEmpty();
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#sumOfTids()
+    */
+   public long sumOfTids() {
+      return this.tids.sumOfTids();
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#nextTid(int)
+    */
+   public int nextTid(int fromTid) {
+      return this.tids.nextTid(fromTid);
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#sizeInBytes()
+    */
+   public long sizeInBytes() {
+      // object header + fields (the weights are shared) + the tids
+      return 16 + 24 + this.tids.sizeInBytes();
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.datastructure.tidset.Tidset#toBitSet()
+    */
+   public BitSet toBitSet() {
+      return this.tids.toBitSet();
+   }
+
+   /**
+    * @return True, if the other object is a tidset with the same tids.
+    */
+   public boolean equals(Object o)
+   {
+      if (o instanceof Tidset) return this.tids.equals(tidsOf((Tidset) o));
+      // else
+      return false;
+   }
+
+   /**
+    * @return Hash code of the tids.
+    */
+   public int hashCode() {
+      return this.tids.hashCode();
+   }
+
+   /**
+    * @return String representation of the tids.
+    */
+   public String toString() {
+      return this.tids.toString();
+   }
+}
@@ -51,6 +51,11 @@ public class Arguments
 	 */
 	private boolean forceDel;
 
+	/**
+	 * Was -memguard given? (It's on by default.)
+	 */
+	private boolean memGuardGiven;
+
 	/**
 	 * Constructor.
 	 */
@@ -63,6 +68,7 @@ public class Arguments
 		this.min_supp_percent  = null;
 		this.algorithms        = new BitSet();
 		this.forceDel          = false;
+		this.memGuardGiven     = false;
 	}
 
 	/** 
@@ -231,7 +237,15 @@ public class Arguments
 		if (option.startsWith("of:")  || 
 				option.startsWith("of=")  || 
 				option.startsWith("out:") ||
-				option.startsWith("out=")) modifiable = false;    // the output filename cannot be changed!
+				option.startsWith("out=") ||
+				option.startsWith("incr:") ||
+				option.startsWith("incr=") ||
+				option.startsWith("save:") ||
+				option.startsWith("save=") ||
+				option.startsWith("checkpoint:") ||
+				option.startsWith("checkpoint=") ||
+				option.startsWith("metrics:") ||
+				option.startsWith("metrics=")) modifiable = false;    // the file names cannot be changed!
 		/*
 		 * anything can be modified, except the output filename
 		 */
@@ -303,6 +317,99 @@ public class Arguments
 				redirectOutput(o);
 				Global.isRedirected = true;
 			}
+			else if (items[0].equals("incr"))
+			{
+				Global.setIncrementalFile(o);
+			}
+			else if (items[0].equals("save"))
+			{
+				Global.setSaveFile(o);
+			}
+			else if (items[0].equals("threads"))
+			{
+				int threads = 0;
+				try {
+					threads = Integer.parseInt(o);
+				}
+				catch (NumberFormatException e) { }
+				if (threads < 1) {
+					System.err.println("Error: the number of threads should be a positive integer!");
+					Error.die(C.ERR_JUST_EXIT);
+				}
+				Global.setThreads(threads);
+			}
+			else if (items[0].equals("topk"))
+			{
+				int k = 0;
+				try {
+					k = Integer.parseInt(o);
+				}
+				catch (NumberFormatException e) { }
+				if (k < 1) {
+					System.err.println("Error: the value of -topk should be a positive integer!");
+					Error.die(C.ERR_JUST_EXIT);
+				}
+				Global.setTopK(k);
+			}
+			else if (items[0].equals("checkpoint"))
+			{
+				Global.setCheckpointFile(o);
+			}
+			else if (items[0].equals("checkpointevery"))
+			{
+				int seconds = -1;
+				try {
+					seconds = Integer.parseInt(o);
+				}
+				catch (NumberFormatException e) { }
+				if (seconds < 0) {
+					System.err.println("Error: the value of -checkpoint-every should be a non-negative integer (seconds)!");
+					Error.die(C.ERR_JUST_EXIT);
+				}
+				Global.setCheckpointInterval(seconds);
+			}
+			else if (items[0].equals("memguard"))
+			{
+				int percent = -1;
+				if (o.equals("off")) percent = 0;
+				else
+				{
+					try {
+						percent = Integer.parseInt(o);
+					}
+					catch (NumberFormatException e) { }
+					if ((percent < 1) || (percent > 100)) percent = -1;
+				}
+				if (percent < 0) {
+					System.err.println("Error: the value of -memguard should be an integer between 1 and 100 (percent), or off!");
+					Error.die(C.ERR_JUST_EXIT);
+				}
+				Global.setMemGuard(percent);
+				this.memGuardGiven = true;
+			}
+			else if (items[0].equals("metrics"))
+			{
+				Global.setMetricsFile(o);
+			}
+			else if (items[0].equals("tidset"))
+			{
+				if      (o.equals("bitset"))                             Global.setTidsetRepresentation(C.TIDSET_BITSET);
+				else if (o.equals("roaring") || o.equals("compressed"))  Global.setTidsetRepresentation(C.TIDSET_ROARING);
+				else {
+					System.err.println("Error: unknown tidset representation: "+o);
+					Error.die(C.ERR_JUST_EXIT);
+				}
+			}
+			else if (items[0].equals("recode"))
+			{
+				if      (o.equals("given"))  Global.setRecoding(C.RECODE_GIVEN);
+				else if (o.equals("asc"))    Global.setRecoding(C.RECODE_ASC);
+				else if (o.equals("desc"))   Global.setRecoding(C.RECODE_DESC);
+				else {
+					System.err.println("Error: unknown attribute order in -recode: "+o);
+					Error.die(C.ERR_JUST_EXIT);
+				}
+			}
 			else if (items[0].equals("alg"))
 			{
 				if      (o.equals("apriori"))                             this.algorithms.set(C.ALG_APRIORI);
@@ -489,6 +596,61 @@ public class Arguments
 			}
 		}
 
+		if (Global.getTopK() > 0)
+		{
+			if ((algo != C.ALG_TALKY_G) && (algo != C.ALG_TALKY_G2) && (algo != C.ALG_DTALKY_G)) {
+				System.err.println("Error: -topk can only be used with Talky-G, Talky-G v2 and dTalky-G.");
+				Error.die(C.ERR_JUST_EXIT);
+			}
+		}
+
+		if ((Global.getIncrementalFile() != null) || (Global.getSaveFile() != null))
+		{
+			if ((algo != C.ALG_TALKY_G) && (algo != C.ALG_TALKY_G2) && (algo != C.ALG_DTALKY_G)) {
+				System.err.println("Error: -incr and -save can only be used with Talky-G, Talky-G v2 and dTalky-G.");
+				Error.die(C.ERR_JUST_EXIT);
+			}
+			if (Global.getFold() || (Global.getRecoding() != C.RECODE_NONE) || (Global.getTopK() > 0)) {
+				System.err.println("Error: -incr and -save cannot be used with -fold, -recode and -topk.");
+				Error.die(C.ERR_JUST_EXIT);
+			}
+		}
+
+		if (Global.getCheckpointFile() != null)
+		{
+			if (algo != C.ALG_TALKY_G) {
+				System.err.println("Error: -checkpoint can only be used with Talky-G.");
+				Error.die(C.ERR_JUST_EXIT);
+			}
+			if ((Global.getThreads() > 1) || (Global.getTopK() > 0) || (Global.getIncrementalFile() != null) || (Global.getSaveFile() != null)) {
+				System.err.println("Error: -checkpoint cannot be used with -threads, -topk, -incr and -save.");
+				Error.die(C.ERR_JUST_EXIT);
+			}
+		}
+
+		if (Global.getClosures())
+		{
+			if ((algo != C.ALG_TALKY_G) && (algo != C.ALG_TALKY_G2) && (algo != C.ALG_DTALKY_G)) {
+				System.err.println("Error: -closures can only be used with Talky-G, Talky-G v2 and dTalky-G.");
+				Error.die(C.ERR_JUST_EXIT);
+			}
+			if ((Global.getCheckpointFile() != null) || (Global.getIncrementalFile() != null)) {
+				System.err.println("Error: -closures cannot be used with -checkpoint and -incr.");
+				Error.die(C.ERR_JUST_EXIT);
+			}
+			// the classes are kept in memory until the end, the guard cannot free them
+			if (this.memGuardGiven && (Global.getMemGuard() > 0)) {
+				System.err.println("Error: -closures cannot be used with -memguard (the equivalence classes are kept in memory).");
+				Error.die(C.ERR_JUST_EXIT);
+			}
+			Global.setMemGuard(0);
+		}
+
+		if (Global.getBuildIndex() && Global.getFold()) {
+			System.err.println("Error: -index cannot be used with -fold (the index has the objects unfolded).");
+			Error.die(C.ERR_JUST_EXIT);
+		}
+
 		DemoCoron.checkAlg(algo);
 	}
 
@@ -533,6 +695,10 @@ public class Arguments
 		else if (option.equals("saveMemZ".toLowerCase())) this.extra.set(C.MEM_SAVE_Z);
 		//else if (option.equals("nof2".toLowerCase()))     Global.setNoF2();
 		else if (option.equals("usef2".toLowerCase()))     Global.setUseF2();
+		else if (option.equals("adaptive"))               Global.setAdaptive();
+		else if (option.equals("fold"))                   Global.setFold();
+		else if (option.equals("closures"))               Global.setClosures();
+		else if (option.equals("index"))                  Global.setBuildIndex();
 		else if (option.equals("all".toLowerCase()))      this.extra.set(C.X_RARE_ALL);
 		else if (option.equals("nonzero".toLowerCase()))  this.extra.set(C.X_RARE_NONZERO);
 		// let's deactivate the treeset option. It'll rather be treated at the algorithm section.  
@@ -705,6 +871,31 @@ public class Arguments
 		sb.append("   -text, -name, -names            numbers in itemsets are replaced by their names.\n");
 		sb.append("                                   Only relevant with .rcf input files!\n");
 		sb.append("   -usef2                          use an upper-triangular matrix for calculating the support of 2-itemsets\n");
+		sb.append("   -threads:<n>                    search FGs on <n> threads (Talky-G, Talky-G v2, dTalky-G)\n");
+		sb.append("                                   (and count F_2 / convert to vertical on <n> threads)\n");
+		sb.append("   -tidset:<repr>                  how to store tidsets: bitset (default) or roaring (compressed)\n");
+		sb.append("   -adaptive                       (dTalky-G, dEclat) each node stores a tidset or a diffset, whichever is smaller\n");
+		sb.append("   -recode:<order>                 drop the infrequent attributes and renumber the others before mining;\n");
+		sb.append("                                   <order>: given (input order), asc or desc (by support)\n");
+		sb.append("   -fold                           fold identical objects into one weighted object\n");
+		sb.append("   -closures                       (Talky-G, Talky-G v2, dTalky-G) write the equivalence classes: the closure,\n");
+		sb.append("                                   the support and the FGs of each class (like Zart); they are kept in\n");
+		sb.append("                                   memory until the end, thus -memguard is off\n");
+		sb.append("   -checkpoint:<file>              (Talky-G) write checkpoints of the search in <file>; if <file> exists,\n");
+		sb.append("                                   the search continues from it (the output is the same)\n");
+		sb.append("   -checkpoint-every:<sec>         min. time between two checkpoints (default: 60 sec.)\n");
+		sb.append("   -memguard:<percent>|off         (Talky-G, Talky-G v2, dTalky-G) if the heap is more than <percent> full,\n");
+		sb.append("                                   save memory step by step at the expense of speed (default: 90)\n");
+		sb.append("   -metrics:<file>                 count candidates, prunings and patterns per level, lookups in the FG store,\n");
+		sb.append("                                   etc.; they can be watched via JMX and are written in <file> in JSON\n");
+		sb.append("   -index                          write the index of the dataset (<dataset>.idx) and stop; later runs of the\n");
+		sb.append("                                   vertical miners read the index instead of the dataset\n");
+		sb.append("   -topk:<k>                       (Talky-G, Talky-G v2, dTalky-G) find the <k> FGs with the highest support;\n");
+		sb.append("                                   min. support is raised during the search (ties are kept)\n");
+		sb.append("   -save:<file>                    (Talky-G, Talky-G v2, dTalky-G) save the FGs and the extents of the attributes\n");
+		sb.append("                                   for a later incremental run\n");
+		sb.append("   -incr:<file>                    the input file contains new objects only; update the FGs saved in <file>\n");
+		sb.append("                                   with them (the output is the same as with all the objects)\n");
 		sb.append("   -of:<output_file>               redirect the output to the given file\n");
 		sb.append("\n");
 		/*sb.append("Conversions:\n");
@@ -76,6 +76,36 @@ public class C
     */
    public static final int REPR_VECTOR = 3;
    
+   /**
+    * Store tidsets (extents) as BitSets.
+    */
+   public static final int TIDSET_BITSET = 1;
+   
+   /**
+    * Store tidsets (extents) in compressed, Roaring-style containers.
+    */
+   public static final int TIDSET_ROARING = 2;
+   
+   /**
+    * Don't recode the attributes.
+    */
+   public static final int RECODE_NONE = 0;
+   
+   /**
+    * Recode the frequent attributes in the order of the input.
+    */
+   public static final int RECODE_GIVEN = 1;
+   
+   /**
+    * Recode the frequent attributes by ascending support.
+    */
+   public static final int RECODE_ASC = 2;
+   
+   /**
+    * Recode the frequent attributes by descending support.
+    */
+   public static final int RECODE_DESC = 3;
+   
    /**
     * Shows that the version string belongs to
     * the new version on the server.
@@ -0,0 +1,258 @@
+package fr.loria.coronsys.coron.helper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import fr.loria.coronsys.coron.datastructure.charm.FgStore;
+
+/**
+ * Checkpoint of a long Talky-G run (switches -checkpoint and -checkpoint-every).
+ *
+ * A checkpoint is written after a direct child of the root was explored: it
+ * holds the FG store (the FGs found so far, in the order they were found), the
+ * position of the next direct child of the root and the counters. A restarted
+ * run with the same checkpoint file continues from there: the FGs of the
+ * checkpoint are written again, thus the final output is the same as the
+ * output of an uninterrupted run. The file is deleted when the run is finished.
+ *
+ * A checkpoint is written if the given interval elapsed since the previous one,
+ * but at most 10% of the time is spent on writing checkpoints: the interval is
+ * raised to 9 times the time of the last writing. The file is written in a
+ * temporary file first, then it's renamed, thus a crash during the writing
+ * keeps the previous checkpoint.
+ *
+ * File format (binary, big-endian): magic number, version, number of objects,
+ * min. support, the attributes of the direct children of the root (their number
+ * and the attributes), position of the next direct child of the root, number
+ * of FGs, skipped infrequent 2-itemsets, deleted infrequent candidates, then the
+ * FG store (see FgStore.writeTo()).
+ */
+public class Checkpoint
+{
+   /**
+    * First bytes of a checkpoint file ("TKCP").
+    */
+   private final static int MAGIC = 0x544B4350;
+
+   /**
+    * Version of the file format.
+    */
+   private final static int VERSION = 1;
+
+   /**
+    * Name of the checkpoint file.
+    */
+   private String path;
+
+   /**
+    * Min. time between two checkpoints (in milliseconds).
+    */
+   private long interval;
+
+   /**
+    * Time of the next checkpoint.
+    */
+   private long due;
+
+   /**
+    * Number of FGs (read by restore()).
+    */
+   private int fgCnt;
+
+   /**
+    * Skipped infrequent 2-itemsets (read by restore()).
+    */
+   private long skipCnt;
+
+   /**
+    * Deleted infrequent candidates (read by restore()).
+    */
+   private long rareCand;
+
+   /**
+    * Constructor.
+    *
+    * @param path Name of the checkpoint file.
+    * @param seconds Min. time between two checkpoints (in seconds).
+    */
+   public Checkpoint(String path, int seconds)
+   {
+      this.path     = path;
+      this.interval = 1000L * seconds;
+      this.due      = System.currentTimeMillis() + this.interval;
+   }
+
+   /**
+    * @return True, if there is a checkpoint to continue from.
+    */
+   public boolean exists() {
+      return (new File(this.path)).isFile();
+   }
+
+   /**
+    * @return True, if it's time to write a checkpoint.
+    */
+   public boolean isDue() {
+      return (System.currentTimeMillis() >= this.due);
+   }
+
+   /**
+    * Writes a checkpoint. Exits with an error message if the file cannot be written.
+    *
+    * @param minSupp Min. support.
+    * @param rootAttrs Attributes of the direct children of the root (in their order).
+    * @param next Position of the next direct child of the root (-1 if there is no more).
+    * @param fgCnt Number of FGs.
+    * @param skipCnt Skipped infrequent 2-itemsets.
+    * @param rareCand Deleted infrequent candidates.
+    * @param store The FGs found so far.
+    */
+   public void save(int minSupp, int[] rootAttrs, int next, int fgCnt, long skipCnt, long rareCand, FgStore store)
+   {
+      long startTime = System.currentTimeMillis();
+      File tmp = new File(this.path + ".tmp");
+      DataOutputStream out = null;
+      try
+      {
+         out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16));
+         out.writeInt(MAGIC);
+         out.writeInt(VERSION);
+         out.writeInt(Database.getNumberOfObjects());
+         out.writeInt(minSupp);
+         out.writeInt(rootAttrs.length);
+         for (int attr : rootAttrs) {
+            out.writeInt(attr);
+         }
+         out.writeInt(next);
+         out.writeInt(fgCnt);
+         out.writeLong(skipCnt);
+         out.writeLong(rareCand);
+         store.writeTo(out);
+         out.close();
+         out = null;
+         File target = new File(this.path);
+         if (tmp.renameTo(target) == false)
+         {
+            // on some systems the target of a rename must not exist
+            target.delete();
+            if (tmp.renameTo(target) == false) throw new IOException("cannot rename "+tmp);
+         }
+      }
+      catch (IOException e)
+      {
+         System.err.println("Error: cannot write the checkpoint "+this.path+": "+e.getMessage());
+         Error.die(C.ERR_JUST_EXIT);
+      }
+      finally
+      {
+         if (out != null)
+         {
+            try {
+               out.close();
+            }
+            catch (IOException e) { }
+            tmp.delete();
+         }
+      }
+
+      long now = System.currentTimeMillis();
+      this.due = now + Math.max(this.interval, 9 * (now - startTime));
+      if (Global.followFunctions()) {
+         System.err.println("> Checkpoint written ("+Convert.byteToPrettyString(fgCnt)+" FGs, "+(next + 1)+" direct children of the root left) in "
+                            +Statistics.getRuntime(now - startTime)+" sec.");
+      }
+   }
+
+   /**
+    * Reads the checkpoint: the FGs are added to the store and written to the sink.
+    * Exits with an error message if the file cannot be read, or if it was written
+    * by a run with a different dataset, min. support or IT-tree.
+    *
+    * @param minSupp Min. support.
+    * @param rootAttrs Attributes of the direct children of the root (in their order).
+    * @param store The FGs of the checkpoint are added to this.
+    * @param sink The FGs of the checkpoint are written here (can be null).
+    * @return Position of the next direct child of the root.
+    */
+   public int restore(int minSupp, int[] rootAttrs, FgStore store, ResultSink sink)
+   {
+      DataInputStream in = null;
+      int next = -1;
+      try
+      {
+         in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.path), 1 << 16));
+         if ((in.readInt() != MAGIC) || (in.readInt() != VERSION)) {
+            throw new IOException("not a checkpoint file of this version");
+         }
+         boolean same = (in.readInt() == Database.getNumberOfObjects()) && (in.readInt() == minSupp);
+         same = same && (in.readInt() == rootAttrs.length);
+         for (int i = 0; same && (i < rootAttrs.length); ++i) {
+            same = (in.readInt() == rootAttrs[i]);
+         }
+         if (same == false)
+         {
+            System.err.println("Error: the checkpoint "+this.path+" was written by a run with another dataset or min. support!");
+            Error.die(C.ERR_JUST_EXIT);
+         }
+         next = in.readInt();
+         this.fgCnt    = in.readInt();
+         this.skipCnt  = in.readLong();
+         this.rareCand = in.readLong();
+         store.readFrom(in, sink);
+      }
+      catch (IOException e)
+      {
+         System.err.println("Error: cannot read the checkpoint "+this.path+": "+e.getMessage());
+         Error.die(C.ERR_JUST_EXIT);
+      }
+      finally
+      {
+         if (in != null)
+         {
+            try {
+               in.close();
+            }
+            catch (IOException e) { }
+         }
+      }
+
+      if (Global.followFunctions()) {
+         System.err.println("> Resuming from the checkpoint "+this.path+" ("+Convert.byteToPrettyString(this.fgCnt)+" FGs, "+(next + 1)+" direct children of the root left).");
+      }
+      return next;
+   }
+
+   /**
+    * Deletes the checkpoint file (the run is finished).
+    */
+   public void delete() {
+      (new File(this.path)).delete();
+   }
+
+   /**
+    * @return Number of FGs (read by restore()).
+    */
+   public int getFgCnt() {
+      return this.fgCnt;
+   }
+
+   /**
+    * @return Skipped infrequent 2-itemsets (read by restore()).
+    */
+   public long getSkipCnt() {
+      return this.skipCnt;
+   }
+
+   /**
+    * @return Deleted infrequent candidates (read by restore()).
+    */
+   public long getRareCand() {
+      return this.rareCand;
+   }
+}
@@ -0,0 +1,216 @@
+package fr.loria.coronsys.coron.helper;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import fr.loria.coronsys.coron.datastructure.zart.Row_Zart_Z;
+
+/**
+ * Computes the closure of each FG and groups the FGs into equivalence classes
+ * (switch -closures). The classes are written like the rows of Zart (see
+ * Row_Zart_Z), e.g. "{1, 3, 4} (12) +; [{1, 3}, {4}]": the closure, the support
+ * and the FGs of the class.
+ *
+ * The closures are computed by an index of the vertical database (see
+ * ContextIndex), built when the sink is created (before the miner frees the
+ * database), or the index of the database if it has one. The index only has
+ * the frequent attributes, the others cannot be in the closure of an FG. The
+ * FGs are collected in batches, and the closures of a batch are computed on a
+ * pool (-threads:<n>) while the search goes on; a batch is freed as soon as
+ * its FGs are put in their classes. The classes are written in close(), in
+ * the order of their first FG, through a TextResultSink.
+ *
+ * Memory: besides the index, all the FGs and their closures are kept until
+ * close(), since a class is complete only at the end. Thus -closures cannot
+ * be used with -memguard (see Arguments).
+ */
+public class ClosureSink
+implements ResultSink
+{
+   /**
+    * Number of FGs in a batch.
+    */
+   private final static int BATCH_SIZE = 4096;
+
+   /**
+    * FGs waiting for their closures.
+    */
+   private static class Batch
+   {
+      BitSet[] intents = new BitSet[BATCH_SIZE];
+      int[] supps = new int[BATCH_SIZE];
+      int size = 0;
+   }
+
+   /**
+    * Computes the closures.
+    */
+   private final ContextIndex index;
+
+   /**
+    * The classes are written here.
+    */
+   private final TextResultSink out;
+
+   /**
+    * The batches are processed here.
+    */
+   private final ForkJoinPool pool;
+
+   /**
+    * The batch that is being filled by the miner.
+    */
+   private Batch batch = new Batch();
+
+   /**
+    * The batches that were given to the pool, and are not in the classes yet
+    * (in the order of the FGs).
+    */
+   private final LinkedList<Batch> batches = new LinkedList<Batch>();
+
+   /**
+    * The tasks of the batches (same order).
+    */
+   private final LinkedList<ForkJoinTask<BitSet[]>> tasks = new LinkedList<ForkJoinTask<BitSet[]>>();
+
+   /**
+    * The equivalence classes (key: the closure), in the order of their first FG.
+    */
+   private final Map<BitSet, Row_Zart_Z> classes = new LinkedHashMap<BitSet, Row_Zart_Z>();
+
+   /**
+    * Number of equivalence classes (known after close()).
+    */
+   private int classCnt = 0;
+
+   /**
+    * Constructor. The database must be in vertical representation.
+    *
+    * @param names Print attribute names instead of numbers?
+    */
+   public ClosureSink(boolean names)
+   {
+      Vector<BitSet> db = Database.getDatabase();
+      ContextIndex index = Database.getIndex();
+      if ((index == null) || (index.isOf(db) == false))
+      {
+         // the tidset of an attribute of the closure contains the image of the FG
+         int minSupp = Database.getMinSupp();
+         Vector<BitSet> frequent = new Vector<BitSet>(db.size());
+         for (BitSet tidset : db) {
+            frequent.add(((tidset != null) && (Database.getSupport(tidset) >= minSupp)) ? tidset : null);
+         }
+         // the closures of the FGs don't need the cache: each FG is asked once
+         index = ContextIndex.vertical(frequent, Database.getNumberOfTids(), null, 0);
+      }
+      this.index = index;
+      this.out = new TextResultSink(names);
+      this.pool = Context.newPool(Math.max(1, Global.getThreads()));
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.helper.ResultSink#add(java.util.BitSet, int)
+    */
+   public void add(BitSet intent, int supp)
+   {
+      Batch b = this.batch;
+      b.intents[b.size] = intent;
+      b.supps[b.size] = supp;
+      if (++b.size == BATCH_SIZE) this.flush();
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.helper.ResultSink#flush()
+    */
+   public void flush()
+   {
+      this.group(false);
+      if (this.batch.size == 0) return;
+      // else
+      final Batch b = this.batch;
+      this.batches.add(b);
+      this.tasks.add(this.pool.submit(new Callable<BitSet[]>() {
+         public BitSet[] call() {
+            return closures(b);
+         }
+      }));
+      this.batch = new Batch();
+   }
+
+   /**
+    * Puts the FGs of the processed batches in their classes, and frees the
+    * batches. The batches are taken in order, thus it stops at the first one
+    * that is not ready.
+    *
+    * @param wait Wait for all the batches?
+    */
+   private void group(boolean wait)
+   {
+      while (this.tasks.isEmpty() == false)
+      {
+         if ((wait == false) && (this.tasks.getFirst().isDone() == false)) return;
+         // else
+         BitSet[] closures = this.tasks.removeFirst().join();
+         Batch b = this.batches.removeFirst();
+         for (int j = 0; j < b.size; ++j)
+         {
+            Row_Zart_Z row = this.classes.get(closures[j]);
+            if (row == null)
+            {
+               row = new Row_Zart_Z(closures[j], b.supps[j]);
+               this.classes.put(closures[j], row);
+            }
+            row.addMinGen(b.intents[j]);
+         }
+      }
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.helper.ResultSink#close()
+    */
+   public void close()
+   {
+      try
+      {
+         this.flush();
+         this.group(true);
+      }
+      finally {
+         this.pool.shutdown();
+      }
+      this.classCnt = this.classes.size();
+
+      for (Iterator<Row_Zart_Z> it = this.classes.values().iterator(); it.hasNext(); )
+      {
+         Row_Zart_Z row = it.next();
+         this.out.add(row.getItemset(), row.getSupp(), row.getMinGens());
+         it.remove();     // the writer has it
+      }
+      this.out.close();
+   }
+
+   /**
+    * @return Number of equivalence classes (after close()).
+    */
+   public int getClassCnt() {
+      return this.classCnt;
+   }
+
+   /**
+    * @param b A batch.
+    * @return The closures of its FGs.
+    */
+   private BitSet[] closures(Batch b)
+   {
+      BitSet[] closures = new BitSet[b.size];
+      this.index.getClosures(b.intents, b.size, closures);
+      return closures;
+   }
+}
@@ -0,0 +1,177 @@
+package fr.loria.coronsys.coron.helper;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * State of a mining job: the dataset and its statistics (Database), the
+ * options (Global), the phases (PhaseTimer), the recoding of the attributes
+ * (Recoding) and the state of the reader (FileFormatHandler).
+ *
+ * These classes have static methods, and they work on the context of the
+ * current thread. A thread without a context uses the default one, thus the
+ * command-line program works as before. A job that runs next to other jobs
+ * in the same JVM (e.g. through the Miner API) binds a new context to its
+ * thread; the threads it starts inherit the context, and the pools of the
+ * parallel parts are created by newPool(). Then the jobs don't see each
+ * other's state.
+ *
+ * A job can be cancelled from another thread (see cancel()). The FG miners
+ * check it while they extend the nodes (checkCancelled()), also on the
+ * threads of a parallel search, and throw a CancellationException.
+ *
+ * The metrics (see Metrics) are not part of the context, they are shared by
+ * the JVM.
+ */
+public class Context
+{
+   /**
+    * Context of the threads that have no context of their own.
+    */
+   private final static Context DEFAULT = new Context();
+
+   /**
+    * Context of the current thread. A new thread inherits the context of its parent.
+    */
+   private final static InheritableThreadLocal<Context> CURRENT = new InheritableThreadLocal<Context>() {
+      protected Context initialValue() {
+         return DEFAULT;
+      }
+   };
+
+   /**
+    * The dataset and its statistics.
+    */
+   final Database database;
+
+   /**
+    * The options.
+    */
+   final Global global;
+
+   /**
+    * The phases of the run.
+    */
+   final PhaseTimer phaseTimer;
+
+   /**
+    * The recoding of the attributes.
+    */
+   final Recoding recoding;
+
+   /**
+    * State of the reader of the dataset.
+    */
+   final FileFormatHandler reader;
+
+   /**
+    * Is it an embedded job (see the Miner API)? Then an error doesn't stop the JVM.
+    */
+   volatile boolean embedded;
+
+   /**
+    * Was the job cancelled (see cancel())?
+    */
+   private volatile boolean cancelled;
+
+   /**
+    * Constructor. Creates an empty context (like after Reset.reset()).
+    */
+   public Context()
+   {
+      this.database   = new Database();
+      this.global     = new Global();
+      this.phaseTimer = new PhaseTimer();
+      this.recoding   = new Recoding();
+      this.reader     = new FileFormatHandler();
+      this.embedded   = false;
+   }
+
+   /**
+    * Constructor. Creates a context with a copy of the dataset of another
+    * context; the options are the default ones. Thus a dataset is read once
+    * and mined several times (see Dataset in the Miner API).
+    *
+    * @param dataset The context that holds the dataset.
+    */
+   public Context(Context dataset)
+   {
+      this.database   = new Database(dataset.database);
+      this.global     = new Global();
+      this.phaseTimer = new PhaseTimer();
+      this.recoding   = new Recoding();
+      this.reader     = new FileFormatHandler();
+      this.embedded   = false;
+   }
+
+   /**
+    * @return The context of the current thread.
+    */
+   public static Context current() {
+      return CURRENT.get();
+   }
+
+   /**
+    * Binds a context to the current thread. The threads started later by this
+    * thread inherit it.
+    *
+    * @param context The context.
+    */
+   public static void bind(Context context) {
+      CURRENT.set(context);
+   }
+
+   /**
+    * The current thread goes back to the default context.
+    */
+   public static void unbind() {
+      CURRENT.remove();
+   }
+
+   /**
+    * Cancels the job of this context: its search stops at the next check
+    * (see checkCancelled()). It can be called from any thread.
+    */
+   public void cancel() {
+      this.cancelled = true;
+   }
+
+   /**
+    * @return True, if the job of this context was cancelled.
+    */
+   public boolean isCancelled() {
+      return this.cancelled;
+   }
+
+   /**
+    * Called by a search at its safe points.
+    *
+    * @throws CancellationException If the job of the current thread was cancelled.
+    */
+   public static void checkCancelled()
+   {
+      if (current().cancelled) throw new CancellationException("the search was cancelled");
+   }
+
+   /**
+    * @param parallelism Number of threads.
+    * @return A pool whose threads work in the context of the current thread.
+    */
+   public static ForkJoinPool newPool(int parallelism)
+   {
+      final Context context = current();
+      return new ForkJoinPool(parallelism, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+         public ForkJoinWorkerThread newThread(ForkJoinPool pool)
+         {
+            return new ForkJoinWorkerThread(pool) {
+               protected void onStart()
+               {
+                  super.onStart();
+                  CURRENT.set(context);
+               }
+            };
+         }
+      }, null, false);
+   }
+}
@@ -0,0 +1,451 @@
+package fr.loria.coronsys.coron.helper;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Vector;
+
+/**
+ * Index of a context for the image, support and closure queries (see
+ * ContextOp). It's built once from the database, in memory: the tidset of
+ * each attribute (as 64-bit words) and the attributes of each object.
+ *
+ * The image of an itemset is the intersection of the tidsets of its
+ * attributes, thus a query doesn't traverse the objects. For the closure only
+ * the attributes of the first object of the image are tried (each attribute of
+ * the closure is in that object), and only if their tidset is not smaller than
+ * the image; the test compares the non-empty words of the image only.
+ *
+ * The images of the recent queries are kept in an LRU cache (its size is
+ * given when the index is built, 0: no cache). Each thread has its own work
+ * arrays, they are reused by its queries (also by all the itemsets of a batch,
+ * e.g. getClosures(BitSet[], int, BitSet[])). An index is only read after it's
+ * built, thus it can be used by several threads.
+ *
+ * The objects are numbered like in ContextOp: the object at position i of a
+ * horizontal database is object i+1. The tidsets of a vertical database are
+ * used as they are.
+ */
+public class ContextIndex
+{
+   /**
+    * Work arrays of a query (or of a batch of queries).
+    */
+   private static class Scratch
+   {
+      long[] image;
+      int[] nonEmpty;
+      int cnt;
+
+      Scratch(int words)
+      {
+         this.image    = new long[words];
+         this.nonEmpty = new int[words];
+      }
+   }
+
+   /**
+    * The database the index was built from (see isOf()). It's not kept alive by the index.
+    */
+   private final WeakReference<Vector<BitSet>> source;
+
+   /**
+    * words[attr]: the tidset of an attribute, null if the attribute is in no object.
+    */
+   private final long[][] words;
+
+   /**
+    * counts[attr]: number of objects of an attribute.
+    */
+   private final int[] counts;
+
+   /**
+    * rows[tid]: the attributes of an object (position 0 is not used).
+    */
+   private final int[][] rows;
+
+   /**
+    * The image of the empty set: all the objects.
+    */
+   private final long[] all;
+
+   /**
+    * The work arrays of the threads.
+    */
+   private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+      protected Scratch initialValue() {
+         return new Scratch(ContextIndex.this.all.length);
+      }
+   };
+
+   /**
+    * Weight of each object (position 0 is not used), or null (see Database.getWeights()).
+    */
+   private final int[] weights;
+
+   /**
+    * Recent images (least recently used first), or null if there is no cache.
+    */
+   private final LinkedHashMap<BitSet, long[]> cache;
+
+   /**
+    * Constructor.
+    *
+    * @param source The database.
+    * @param words The tidsets of the attributes.
+    * @param numberOfTids Number of objects.
+    * @param weights Weight of each object, or null.
+    * @param cacheSize Number of images in the cache (0: no cache).
+    */
+   private ContextIndex(Vector<BitSet> source, long[][] words, int numberOfTids, int[] weights, final int cacheSize)
+   {
+      this.source  = new WeakReference<Vector<BitSet>>(source);
+      this.words   = words;
+      this.weights = weights;
+      this.counts  = new int[words.length];
+
+      // the rows: count their lengths, then fill them
+      int[] lengths = new int[numberOfTids + 1];
+      for (int attr = 0; attr < words.length; ++attr)
+      {
+         if (words[attr] == null) continue;
+         // else
+         for (int w = 0; w < words[attr].length; ++w)
+         {
+            for (long word = words[attr][w]; word != 0; word &= word - 1) {
+               ++lengths[64 * w + Long.numberOfTrailingZeros(word)];
+            }
+            this.counts[attr] += Long.bitCount(words[attr][w]);
+         }
+      }
+      this.rows = new int[numberOfTids + 1][];
+      for (int tid = 0; tid <= numberOfTids; ++tid) {
+         this.rows[tid] = new int[lengths[tid]];
+      }
+      Arrays.fill(lengths, 0);
+      for (int attr = 0; attr < words.length; ++attr)
+      {
+         if (words[attr] == null) continue;
+         // else
+         for (int w = 0; w < words[attr].length; ++w)
+         {
+            for (long word = words[attr][w]; word != 0; word &= word - 1)
+            {
+               int tid = 64 * w + Long.numberOfTrailingZeros(word);
+               this.rows[tid][lengths[tid]++] = attr;
+            }
+         }
+      }
+
+      BitSet all = new BitSet();
+      if (numberOfTids > 0) all.set(1, numberOfTids + 1);
+      this.all = all.toLongArray();
+
+      if (cacheSize <= 0) this.cache = null;
+      else
+      {
+         this.cache = new LinkedHashMap<BitSet, long[]>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            protected boolean removeEldestEntry(Map.Entry<BitSet, long[]> eldest) {
+               return size() > cacheSize;
+            }
+         };
+      }
+   }
+
+   /**
+    * Builds the index of a horizontal database.
+    *
+    * @param database The objects (position i: object i+1; a null is skipped).
+    * @param weights Weight of each object (position 0 is not used), or null.
+    * @param cacheSize Number of images in the cache (0: no cache).
+    * @return The index.
+    */
+   public static ContextIndex horizontal(Vector<BitSet> database, int[] weights, int cacheSize)
+   {
+      int largestAttr = -1;
+      for (BitSet set : database) {
+         if (set != null) largestAttr = Math.max(largestAttr, set.length() - 1);
+      }
+      BitSet[] tidsets = new BitSet[largestAttr + 1];
+      for (int i = 0; i < database.size(); ++i)
+      {
+         BitSet set = database.get(i);
+         if (set == null) continue;
+         // else
+         for (int attr = set.nextSetBit(0); attr >= 0; attr = set.nextSetBit(attr+1))
+         {
+            if (tidsets[attr] == null) tidsets[attr] = new BitSet();
+            tidsets[attr].set(i+1);
+         }
+      }
+      long[][] words = new long[tidsets.length][];
+      for (int attr = 0; attr < tidsets.length; ++attr) {
+         if (tidsets[attr] != null) words[attr] = tidsets[attr].toLongArray();
+      }
+      return new ContextIndex(database, words, database.size(), weights, cacheSize);
+   }
+
+   /**
+    * Builds the index of a vertical database. The tidsets must be complete: an
+    * index read with -index has empty tidsets for the infrequent attributes.
+    *
+    * @param database The tidsets (position i: tidset of attribute i; a null is an empty tidset).
+    * @param numberOfTids Number of objects (tids 1..numberOfTids).
+    * @param weights Weight of each object (position 0 is not used), or null.
+    * @param cacheSize Number of images in the cache (0: no cache).
+    * @return The index.
+    */
+   public static ContextIndex vertical(Vector<BitSet> database, int numberOfTids, int[] weights, int cacheSize)
+   {
+      long[][] words = new long[database.size()][];
+      for (int attr = 0; attr < database.size(); ++attr)
+      {
+         BitSet tidset = database.get(attr);
+         if ((tidset != null) && (tidset.isEmpty() == false))
+         {
+            words[attr] = tidset.toLongArray();
+            numberOfTids = Math.max(numberOfTids, tidset.length() - 1);
+         }
+      }
+      return new ContextIndex(database, words, numberOfTids, weights, cacheSize);
+   }
+
+   /**
+    * @param database A database.
+    * @return True, if the index was built from this database.
+    */
+   public boolean isOf(Vector<BitSet> database) {
+      return (database != null) && (this.source.get() == database);
+   }
+
+   /**
+    * @param itemset An itemset.
+    * @return Its image: the objects that have all its attributes.
+    */
+   public BitSet getImage(BitSet itemset)
+   {
+      return BitSet.valueOf(this.image(itemset, this.getScratch()));
+   }
+
+   /**
+    * @param itemset An itemset.
+    * @return Its support (the sum of the weights of its objects if there are weights).
+    */
+   public int getSupport(BitSet itemset)
+   {
+      Scratch s = this.getScratch();
+      long[] image = this.image(itemset, s);
+      this.nonEmpty(image, s);
+      return this.support(image, s);
+   }
+
+   /**
+    * @param itemset An itemset.
+    * @return Its closure: the attributes that are in all the objects of its
+    * image; null if its image is empty (like ContextOp.getClosure()).
+    */
+   public BitSet getClosure(BitSet itemset) {
+      return this.closure(itemset, this.getScratch());
+   }
+
+   /**
+    * @param itemsets Itemsets.
+    * @return Their supports.
+    */
+   public int[] getSupports(BitSet[] itemsets)
+   {
+      int[] supps = new int[itemsets.length];
+      this.getSupports(itemsets, itemsets.length, supps);
+      return supps;
+   }
+
+   /**
+    * @param itemsets Itemsets.
+    * @param n Number of itemsets (the first n are used).
+    * @param supps Their supports are put here.
+    */
+   public void getSupports(BitSet[] itemsets, int n, int[] supps)
+   {
+      Scratch s = this.getScratch();
+      for (int i = 0; i < n; ++i)
+      {
+         long[] image = this.image(itemsets[i], s);
+         this.nonEmpty(image, s);
+         supps[i] = this.support(image, s);
+      }
+   }
+
+   /**
+    * @param itemsets Itemsets.
+    * @return Their closures (see getClosure()).
+    */
+   public BitSet[] getClosures(BitSet[] itemsets)
+   {
+      BitSet[] closures = new BitSet[itemsets.length];
+      this.getClosures(itemsets, itemsets.length, closures);
+      return closures;
+   }
+
+   /**
+    * @param itemsets Itemsets.
+    * @param n Number of itemsets (the first n are used).
+    * @param closures Their closures are put here (see getClosure()).
+    */
+   public void getClosures(BitSet[] itemsets, int n, BitSet[] closures)
+   {
+      Scratch s = this.getScratch();
+      for (int i = 0; i < n; ++i) {
+         closures[i] = this.closure(itemsets[i], s);
+      }
+   }
+
+   /**
+    * @return Work arrays for the queries of the current thread.
+    */
+   private Scratch getScratch() {
+      return this.scratch.get();
+   }
+
+   /**
+    * @param itemset An itemset.
+    * @param s Work arrays.
+    * @return Its closure, or null if its image is empty.
+    */
+   private BitSet closure(BitSet itemset, Scratch s)
+   {
+      long[] image = this.image(itemset, s);
+      int cnt = this.nonEmpty(image, s);
+      if (cnt == 0) return null;
+      // else
+      int card = 0;
+      for (int i = 0; i < cnt; ++i) {
+         card += Long.bitCount(image[s.nonEmpty[i]]);
+      }
+      int firstTid = 64 * s.nonEmpty[0] + Long.numberOfTrailingZeros(image[s.nonEmpty[0]]);
+
+      BitSet closure = new BitSet();
+      closure.or(itemset);     // clone() would trim the itemset, it can be read by another thread
+      for (int attr : this.rows[firstTid])
+      {
+         if ((this.counts[attr] < card) || closure.get(attr)) continue;
+         // else
+         if (contains(this.words[attr], image, s.nonEmpty, cnt)) closure.set(attr);
+      }
+      return closure;
+   }
+
+   /**
+    * @param itemset An itemset.
+    * @param s Work arrays.
+    * @return Its image (words), from the cache or in s.image. Not to be modified.
+    */
+   private long[] image(BitSet itemset, Scratch s)
+   {
+      if (this.cache != null)
+      {
+         long[] image;
+         synchronized (this.cache) {
+            image = this.cache.get(itemset);
+         }
+         if (image != null) return image;
+      }
+      // else
+      long[] image = s.image;
+      int len = -1;     // -1: no attribute yet
+      for (int attr = itemset.nextSetBit(0); attr >= 0; attr = itemset.nextSetBit(attr+1))
+      {
+         long[] tidset = (attr < this.words.length) ? this.words[attr] : null;
+         if (tidset == null)
+         {
+            len = 0;
+            break;
+         }
+         // else
+         if (len < 0)
+         {
+            len = Math.min(tidset.length, image.length);
+            System.arraycopy(tidset, 0, image, 0, len);
+         }
+         else
+         {
+            len = Math.min(len, tidset.length);
+            for (int w = 0; w < len; ++w) image[w] &= tidset[w];
+         }
+      }
+      if (len < 0)
+      {
+         len = this.all.length;
+         System.arraycopy(this.all, 0, image, 0, len);
+      }
+      Arrays.fill(image, len, image.length, 0L);
+
+      if (this.cache != null)
+      {
+         long[] copy = Arrays.copyOf(image, len);
+         synchronized (this.cache) {
+            this.cache.put((BitSet) itemset.clone(), copy);
+         }
+      }
+      return image;
+   }
+
+   /**
+    * Collects the non-empty words of an image in s.nonEmpty.
+    *
+    * @param image An image.
+    * @param s Work arrays.
+    * @return Number of the non-empty words.
+    */
+   private int nonEmpty(long[] image, Scratch s)
+   {
+      int cnt = 0;     // a cached image can be shorter than s.image
+      for (int w = 0; w < image.length; ++w) {
+         if (image[w] != 0) s.nonEmpty[cnt++] = w;
+      }
+      s.cnt = cnt;
+      return cnt;
+   }
+
+   /**
+    * @param image An image.
+    * @param s Work arrays, after nonEmpty().
+    * @return Support of the image.
+    */
+   private int support(long[] image, Scratch s)
+   {
+      int supp = 0;
+      for (int i = 0; i < s.cnt; ++i)
+      {
+         int w = s.nonEmpty[i];
+         if (this.weights == null) supp += Long.bitCount(image[w]);
+         else
+         {
+            for (long word = image[w]; word != 0; word &= word - 1) {
+               supp += this.weights[64 * w + Long.numberOfTrailingZeros(word)];
+            }
+         }
+      }
+      return supp;
+   }
+
+   /**
+    * @param tidset A tidset.
+    * @param image An image.
+    * @param nonEmpty The non-empty words of the image.
+    * @param cnt Number of the non-empty words.
+    * @return True, if the image is a subset of the tidset.
+    */
+   private static boolean contains(long[] tidset, long[] image, int[] nonEmpty, int cnt)
+   {
+      for (int i = 0; i < cnt; ++i)
+      {
+         int w = nonEmpty[i];
+         if ((w >= tidset.length) || ((image[w] & ~tidset[w]) != 0)) return false;
+      }
+      return true;
+   }
+}
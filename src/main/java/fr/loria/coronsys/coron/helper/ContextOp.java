@@ -7,6 +7,10 @@ import java.util.Vector;
  * Class for commonly used context operations.
  *                         ==================
  * 
+ * The image, support and closure queries traverse the objects of the database.
+ * If the database has an index (see Database.buildIndex()), they are answered
+ * by the index instead.
+ * 
  * @author Laszlo Szathmary (<a href="Szathmary.L@gmail.com">Szathmary.L@gmail.com</a>)
  * @author Mehdi
  */
@@ -60,16 +64,25 @@ public class ContextOp
     * @param itemset The given itemset
     * @return the bitset with true at the i th position if the itemset is possessed by the i th object of the database
     */
-   public static BitSet getImage (BitSet itemset) {
+   public static BitSet getImage (BitSet itemset)
+   {
+      ContextIndex index = Database.getIndex();
+      if (index != null) return index.getImage(itemset);
+      // else
       return ContextOp.getImage(Database.getDatabase(), itemset);
    }
    
    /**
     * @param itemset An itemset.
-    * @return Support of the itemset (by Laszlo).
+    * @return Support of the itemset (by Laszlo): the sum of the weights of its
+    * objects if the objects were folded, with or without the index.
     */
-   public static int getSupportOf(BitSet itemset) {
-      return ContextOp.getImage(itemset).cardinality();
+   public static int getSupportOf(BitSet itemset)
+   {
+      ContextIndex index = Database.getIndex();
+      if (index != null) return index.getSupport(itemset);
+      // else
+      return Database.getSupport(ContextOp.getImage(itemset));
    }
 
    /**
@@ -85,6 +98,9 @@ public class ContextOp
     */
    public static BitSet getImage (Vector<BitSet> database, BitSet itemset)
    {
+      ContextIndex index = Database.getIndex();
+      if ((index != null) && index.isOf(database)) return index.getImage(itemset);
+      // else
       BitSet image = new BitSet();
 
       BitSet currCopy;
@@ -106,7 +122,11 @@ public class ContextOp
     * @param itemset The itemset whose closure wa want.
     * @return Closure of the itemset.
     */
-   public static BitSet getClosure(BitSet itemset) {
+   public static BitSet getClosure(BitSet itemset)
+   {
+      ContextIndex index = Database.getIndex();
+      if (index != null) return index.getClosure(itemset);
+      // else
       return ContextOp.getClosure(Database.getDatabase(), itemset);
    }
 
@@ -118,6 +138,9 @@ public class ContextOp
     */
    public static BitSet getClosure(Vector<BitSet> database, BitSet itemset)
    {
+      ContextIndex index = Database.getIndex();
+      if ((index != null) && index.isOf(database)) return index.getClosure(itemset);
+      // else
       BitSet closure = null;
       BitSet curr;
       
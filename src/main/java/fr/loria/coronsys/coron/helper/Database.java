@@ -1,7 +1,9 @@
 package fr.loria.coronsys.coron.helper;
 
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.TreeSet;
 import java.util.Vector;
@@ -17,118 +19,170 @@ import fr.loria.coronsys.coron.helper.C;
 public class Database
 {
 	/**
-	 * Empty private constructor. The class cannot be instantiated.
+	 * Constructor. The dataset of a new context (see Context).
 	 */
-	private Database() { }
+	Database() {
+		this.init();
+	}
+
+	/**
+	 * Copy constructor. The tidsets (or the objects) are copied, because the
+	 * miners modify and free the database; the F_2 matrix, the names and the
+	 * weights are only read, they are shared.
+	 * 
+	 * @param other The dataset to copy.
+	 */
+	Database(Database other)
+	{
+		this.database_file_str		= other.database_file_str;
+		this.database_file			= other.database_file;
+		this.database_file_type		= other.database_file_type;
+		this.convert_file_type		= other.convert_file_type;
+		this.min_supp				= other.min_supp;
+		this.min_conf				= other.min_conf;
+		this.min_supp_percent		= other.min_supp_percent;
+		this.totalNumberOfAttr		= other.totalNumberOfAttr;
+		this.totalNbOfNonEmptyAttr	= other.totalNbOfNonEmptyAttr;
+		this.numberOfAttrInAvg		= other.numberOfAttrInAvg;
+		this.objectNames			= other.objectNames;
+		this.attributeNames			= other.attributeNames;
+		this.attr_number			= other.attr_number;
+		this.obj_number				= other.obj_number;
+		this.numberOfObjects		= other.numberOfObjects;
+		this.db_representation		= other.db_representation;
+		this.fullColumn				= other.fullColumn;
+		this.longestItemset			= other.longestItemset;
+		this.attributes				= (other.attributes == null) ? null : (BitSet) other.attributes.clone();
+		this.inverted				= other.inverted;
+		this.f2Matrix				= other.f2Matrix;
+		this.weights				= other.weights;
+		this.maxWeight				= other.maxWeight;
+		this.index					= other.index;
+
+		if (other.database != null)
+		{
+			this.database = new Vector<BitSet>(other.database.size());
+			for (BitSet set : other.database) {
+				this.database.add((set == null) ? null : (BitSet) set.clone());
+			}
+		}
+	}
+
+	/**
+	 * @return The dataset of the current context.
+	 */
+	private static Database state() {
+		return Context.current().database;
+	}
 
 	/**
 	 * Name of the database file as a string.
 	 */
-	private static String database_file_str;
+	private String database_file_str;
 
 	/**
 	 * The database file as a File object.
 	 */
-	private static File database_file;
+	private File database_file;
 
 	/**
 	 * Type of the input database (.basenum, .bool, .rcf, etc.).
 	 */
-	private static int database_file_type;
+	private int database_file_type;
 
 	/**
 	 * Convert the input file into this format.
 	 */
-	private static int convert_file_type;
+	private int convert_file_type;
 
 	/**
 	 * The input database. An element of the vector contains one line of the database.
 	 */
-	private static Vector<BitSet> database;
+	private Vector<BitSet> database;
 
 	/**
 	 * The minimum support.
 	 */
-	private static int min_supp;
+	private int min_supp;
 
 	/**
 	 * Minimum confidence. Used in AssRuleX.
 	 */
-	private static Double min_conf;
+	private Double min_conf;
 
 	/**
 	 * Minimum support as a double value (percentage).
 	 */
-	private static Double min_supp_percent;
+	private Double min_supp_percent;
 
 	/**
 	 * Total Number Of Attributes of the database, empty or not. (previously "Largest attribute").
 	 */
-	private static int totalNumberOfAttr;
+	private int totalNumberOfAttr;
 
 	/**
 	 * Total number of NON EMPTY attributes. (previously "totalNbOfNonEmptyAttr").
 	 */
-	private static int totalNbOfNonEmptyAttr;
+	private int totalNbOfNonEmptyAttr;
 
 	/**
 	 * Number of attributes per object in average.
 	 */
-	private static double numberOfAttrInAvg;
+	private double numberOfAttrInAvg;
 
 	/**
 	 * An array of object names. Thus we can find out the name of an object 
 	 * by its number.
 	 */
-	private static Vector<String> objectNames = new Vector<String>();
+	private Vector<String> objectNames = new Vector<String>();
 
 	/**
 	 * An array of attribute names. Thus we can find out the name of an attribute 
 	 * by its number.
 	 */   
-	private static Vector<String> attributeNames;
+	private Vector<String> attributeNames;
 
 	/**
 	 * In an .rcf file we know the number of attributes before reading
 	 * the boolean table. We register this value here, and while reading
 	 * the database we check if each object has the correct number of attributes.
 	 */
-	private static int attr_number;
+	private int attr_number;
 
 	/**
 	 * In an .rcf file we know the number of objects before reading
 	 * the boolean table. We register this value here, and while reading
 	 * the database we check if the number of objects is correct.
 	 */
-	private static int obj_number;
+	private int obj_number;
 
 	/**
 	 * It is needed when we use vertical representation of the dataset to register
 	 * the number of objects. In horizontal case it is easy to find it out, but in
 	 * vertical case it is better to store it in a variable.
 	 */
-	private static int numberOfObjects;
+	private int numberOfObjects;
 
 	/**
 	 * Is the database representation horizontal (default) or vertical?
 	 */
-	private static int db_representation;
+	private int db_representation;
 
 	/**
 	 * Is there a full column in the input dataset?
 	 */
-	private static boolean fullColumn;
+	private boolean fullColumn;
 
 	/**
 	 * Length of the longest possible itemset. It is determined while reading
 	 * the dataset. 
 	 */
-	private static int longestItemset;
+	private int longestItemset;
 
 	/**
 	 * It'll contain all the attributes.
 	 */
-	private static BitSet attributes;
+	private BitSet attributes;
 
 	/**
 	 * Is the database inverted?
@@ -136,31 +190,54 @@ public class Database
 	 * Inverted database: 0s and 1s are inverted.
 	 * Normally, a DB is not inverted.
 	 */
-	private static boolean inverted;
+	private boolean inverted;
 
-	// ***********************************************************************
+	/**
+	 * The F_2 matrix counted while the database was read in vertical
+	 * representation (see CharmExtra.getF2Matrix()). Null, if it was not counted.
+	 */
+	private int[][] f2Matrix;
 
-	/*
-	 * "constructor"
-	 * 
-	 *  reset() must do the same thing as this one
-	 */ 
-	static {
-		Database.reset();
-	}
+	/**
+	 * If identical objects were folded (-fold), the weight of each tid, i.e. the
+	 * number of objects that it stands for (position 0 is not used). Null otherwise.
+	 */
+	private int[] weights;
 
 	/**
-	 * Re-initialise the state.
+	 * The largest weight (1 if the objects were not folded).
+	 */
+	private int maxWeight;
+
+	/**
+	 * Index of the database for the image and closure queries (see ContextIndex),
+	 * or null. It's dropped when another database is registered.
+	 */
+	private ContextIndex index;
+
+	// ***********************************************************************
+
+	/**
+	 * Re-initialise the state (of the current job, see Context).
 	 * 
 	 * If you want to run Coron's algorithms in a loop, this function must
 	 * be called. This function will re-initialise the necessary things.
 	 */
-	public static void reset()
+	public static void reset() {
+		state().init();
+	}
+
+	/**
+	 * Initialises the state. reset() does the same.
+	 */
+	private void init()
 	{
-		Database.convert_file_type = C.FT_NOTHING;
+		this.convert_file_type = C.FT_NOTHING;
 		// Horizontal repr. is the default. Exception for instance: Charm
-		//Database.db_representation = C.DBR_HORIZONTAL;
-		Database.inverted = false;
+		//this.db_representation = C.DBR_HORIZONTAL;
+		this.inverted = false;
+		this.weights = null;
+		this.maxWeight = 1;
 	}
 
 	// ***********************************************************************
@@ -171,7 +248,7 @@ public class Database
 	 * @return Returns the database as a vector of bitsets.
 	 */
 	public static Vector<BitSet> getDatabase() {
-		return database;
+		return state().database;
 	}
 
 	/**
@@ -194,7 +271,7 @@ public class Database
 	 * @return Database file as a File object.
 	 */
 	public static File getDatabaseFile() {
-		return Database.database_file;
+		return state().database_file;
 	}
 
 	/**
@@ -212,7 +289,8 @@ public class Database
 	 */
 	public static void setDatabase(Vector<BitSet> database, final int db_representation) 
 	{
-		Database.database = database;
+		state().database = database;
+		state().index = null;
 		//System.err.println("!!! DB size: "+Database.getNumberOfObjects());
 
 		modifyMinSupp();
@@ -233,17 +311,115 @@ public class Database
 	 */
 	public static void registerDatabase(Vector<BitSet> database, final int db_representation) 
 	{
-		Database.database = database;
+		state().database = database;
+		state().index = null;
 		Database.setDbRepresentation(db_representation);
 	}
 
+	/**
+	 * Sets a database that was read directly in vertical representation. It does
+	 * the same post-modifications as setDatabase(), but the information about the
+	 * attributes was collected during the reading, the database is not traversed again.
+	 * The number of objects must be set before.
+	 * 
+	 * @param database The vertical database (position i: tidset of attribute i).
+	 * @param largestAttr The largest attribute.
+	 * @param nonEmptyAttr Number of attributes that are present in at least one object.
+	 * @param allAttr Sum of the sizes of the objects.
+	 * @param f2Matrix The F_2 matrix, or null if it was not counted.
+	 */
+	public static void setVerticalDatabase(Vector<BitSet> database, int largestAttr, int nonEmptyAttr, long allAttr, int[][] f2Matrix) 
+	{
+		state().database = database;
+		state().index = null;
+
+		modifyMinSupp();
+		state().totalNumberOfAttr		= largestAttr;
+		state().totalNbOfNonEmptyAttr	= nonEmptyAttr;
+		state().numberOfAttrInAvg = (double)allAttr / (double)Database.getNumberOfObjects();
+		state().f2Matrix = f2Matrix;
+
+		Database.setDbRepresentation(C.DBR_VERTICAL);
+	}
+
+	/**
+	 * Registers the database after its attributes were recoded (see Recoding).
+	 * The min. support and the number of objects don't change.
+	 * 
+	 * @param database The recoded database.
+	 * @param db_representation Database representation (horizontal or vertical?)
+	 * @param nbOfAttr Number of the (recoded) attributes, they are all non-empty.
+	 * @param allAttr Sum of the sizes of the objects.
+	 * @param f2Matrix The recoded F_2 matrix, or null if it was not counted.
+	 */
+	public static void setRecodedDatabase(Vector<BitSet> database, final int db_representation, int nbOfAttr, long allAttr, int[][] f2Matrix) 
+	{
+		state().database = database;
+		state().index = null;
+		state().totalNumberOfAttr		= nbOfAttr;
+		state().totalNbOfNonEmptyAttr	= nbOfAttr;
+		state().numberOfAttrInAvg = (double)allAttr / (double)Database.getNumberOfObjects();
+		state().f2Matrix = f2Matrix;
+
+		Database.setDbRepresentation(db_representation);
+	}
+
+	/**
+	 * @return The F_2 matrix counted during the reading, or null.
+	 */
+	public static int[][] getF2Matrix() {
+		return state().f2Matrix;
+	}
+
+	/**
+	 * Delete the F_2 matrix (the miner keeps its own reference).
+	 */
+	public static void freeF2Matrix() {
+		state().f2Matrix = null;
+	}
+
+	/**
+	 * Builds the index of the database (see ContextIndex). Then ContextOp answers
+	 * the image, support and closure queries with the index, even after the
+	 * database was freed. Call it when the database is complete (e.g. not after
+	 * reading a -index file with a min. support, its infrequent tidsets are empty).
+	 * 
+	 * @param cacheSize Number of images in the cache of the index (0: no cache).
+	 * @return The index.
+	 */
+	public static ContextIndex buildIndex(int cacheSize)
+	{
+		Database db = state();
+		if (Database.isDBRepresentationVertical()) {
+			db.index = ContextIndex.vertical(db.database, Database.getNumberOfTids(), db.weights, cacheSize);
+		}
+		else {
+			db.index = ContextIndex.horizontal(db.database, db.weights, cacheSize);
+		}
+		return db.index;
+	}
+
+	/**
+	 * @return The index of the database, or null if it was not built (see buildIndex()).
+	 */
+	public static ContextIndex getIndex() {
+		return state().index;
+	}
+
+	/**
+	 * Deletes the index of the database.
+	 */
+	public static void freeIndex() {
+		state().index = null;
+	}
+
 	/**
 	 * Used for the CHARM algorithm. When level 1 is initialized in the IT-tree and 
 	 * thus frequent attrbutes are copied, then the vertical representation of the
 	 * dataset is not needed anymore in the memory, it can be freed.
 	 */
 	public static void freeDatabase() {
-		Database.database = null;
+		state().database = null;
 	}
 
 	/**
@@ -252,18 +428,21 @@ public class Database
 	 * and min. supp. is set to 2,6%. Thus the min_supp should be 2.6 , but it is
 	 * impossible since the min_supp must be an integer. So we round it, it will be 3,
 	 * which is 3%. So we modify 2,6% up to 3%, and min_supp will be 3.
+	 * 
+	 * It's called when the database is registered. If the min. support is changed
+	 * later (e.g. a dataset kept in memory is mined again), call it again.
 	 */
-	private static void modifyMinSupp()
+	public static void modifyMinSupp()
 	{
-		if (Database.min_supp_percent != null)		// then modification of Database.min_supp (the int) is needed
+		if (state().min_supp_percent != null)		// then modification of Database.min_supp (the int) is needed
 		{
-			//int lines = Database.database.size();
+			//int lines = state().database.size();
 			int lines = Database.getNumberOfObjects();
-			Database.min_supp = (int)Math.round((double)lines * (min_supp_percent.doubleValue() / 100));
+			state().min_supp = (int)Math.round((double)lines * (state().min_supp_percent.doubleValue() / 100));
 		}
 		// a minsupport value < 1 makes no sense, so if some dummy value was set
 		// like -1 or 0, correct it back to 1. This is an automatic error correction.
-		if (Database.min_supp < 1) Database.min_supp = 1;
+		if (state().min_supp < 1) state().min_supp = 1;
 	}
 
 	/**
@@ -280,47 +459,47 @@ public class Database
 		{
 			BitSet bs = new BitSet(), curr;
 
-			for (Enumeration e = Database.database.elements(); e.hasMoreElements(); )
+			for (Enumeration e = state().database.elements(); e.hasMoreElements(); )
 			{
 				curr = (BitSet)e.nextElement();
 				bs.or(curr);
 				all_attr += curr.cardinality();
 			}
 
-			Database.totalNumberOfAttr			= bs.length()-1;
-			Database.totalNbOfNonEmptyAttr 		= bs.cardinality();
-			Database.numberOfAttrInAvg = (double)all_attr / (double)Database.database.size();
+			state().totalNumberOfAttr			= bs.length()-1;
+			state().totalNbOfNonEmptyAttr 		= bs.cardinality();
+			state().numberOfAttrInAvg = (double)all_attr / (double)state().database.size();
 		}
 		else if (Global.getItemsetRepresentation() == C.REPR_TREESET)
 		{
 			TreeSet ts = new TreeSet(), curr;
 
-			for (Enumeration e = Database.database.elements(); e.hasMoreElements(); )
+			for (Enumeration e = state().database.elements(); e.hasMoreElements(); )
 			{
 				curr = (TreeSet) e.nextElement();
 				ts.addAll(curr);
 				all_attr += curr.size();
 			}
 
-			Database.totalNumberOfAttr       = ((Integer)ts.last()).intValue();
-			Database.totalNbOfNonEmptyAttr      = ts.size();
-			Database.numberOfAttrInAvg = (double)all_attr / (double)Database.database.size();
+			state().totalNumberOfAttr       = ((Integer)ts.last()).intValue();
+			state().totalNbOfNonEmptyAttr      = ts.size();
+			state().numberOfAttrInAvg = (double)all_attr / (double)state().database.size();
 		}
 		else // if representation is Vector
 		{
 			TreeSet ts = new TreeSet();
 			Vector curr;
 
-			for (Enumeration e = Database.database.elements(); e.hasMoreElements(); )
+			for (Enumeration e = state().database.elements(); e.hasMoreElements(); )
 			{
 				curr = (Vector) e.nextElement();
 				ts.addAll(curr);
 				all_attr += curr.size();
 			}
 
-			Database.totalNumberOfAttr       = ((Integer)ts.last()).intValue();
-			Database.totalNbOfNonEmptyAttr      = ts.size();
-			Database.numberOfAttrInAvg = (double)all_attr / (double)Database.database.size();
+			state().totalNumberOfAttr       = ((Integer)ts.last()).intValue();
+			state().totalNbOfNonEmptyAttr      = ts.size();
+			state().numberOfAttrInAvg = (double)all_attr / (double)state().database.size();
 		}
 	}
 
@@ -330,7 +509,7 @@ public class Database
 	 * @return Returns the minimum support.
 	 */
 	public static int getMinSupp() {
-		return min_supp;
+		return state().min_supp;
 	}
 
 	/**
@@ -339,7 +518,7 @@ public class Database
 	 * @param min_supp The minimum support to set.
 	 */
 	public static void setMinSupp(int min_supp) {
-		Database.min_supp = min_supp;
+		state().min_supp = min_supp;
 	}
 
 	/**
@@ -348,7 +527,7 @@ public class Database
 	 * @return Returns the filename of the input file.
 	 */
 	public static String getDatabaseFileStr() {
-		return database_file_str;
+		return state().database_file_str;
 	}
 
 	/**
@@ -358,8 +537,8 @@ public class Database
 	 * @param database_file The name of the database file.
 	 */
 	public static void setDatabaseFileStr(String database_file) {
-		Database.database_file_str = database_file;
-		Database.database_file		= new File(database_file);
+		state().database_file_str = database_file;
+		state().database_file		= new File(database_file);
 	}
 
 	/**
@@ -368,7 +547,7 @@ public class Database
 	 * @return Returns the minimum support in percentage (Double).
 	 */
 	public static Double getMinSuppPercent() {
-		return min_supp_percent;
+		return state().min_supp_percent;
 	}
 
 	/**
@@ -377,7 +556,7 @@ public class Database
 	 * @param min_supp_percent The min_supp_percent to set.
 	 */
 	public static void setMinSuppPercent(Double min_supp_percent) {
-		Database.min_supp_percent = min_supp_percent;
+		state().min_supp_percent = min_supp_percent;
 	}
 
 	/**
@@ -386,7 +565,7 @@ public class Database
 	 * @return Path of the input file.
 	 */
 	public static String getDatabaseFilePath() {
-		return Database.database_file.getPath().replaceAll("\\\\", "/");
+		return state().database_file.getPath().replaceAll("\\\\", "/");
 	}
 
 	/**
@@ -395,7 +574,7 @@ public class Database
 	 * @return Path of the input file.
 	 */
 	public static String getDatabaseAbsoluteFilePath() {
-		return Database.database_file.getAbsolutePath().replaceAll("\\\\", "/");
+		return state().database_file.getAbsolutePath().replaceAll("\\\\", "/");
 	}
 
 	/**
@@ -404,7 +583,7 @@ public class Database
 	 * @return Size of the input file in bytes.
 	 */
 	public static long getDatabaseFileSize() {
-		return Database.database_file.length();
+		return state().database_file.length();
 	}
 	/**
 	 * Returns the total number of attributes (previously the largest attribute).
@@ -412,7 +591,7 @@ public class Database
 	 * @return Returns the largest attribute.
 	 */
 	public static int getTotalNumberOfAttr() {
-		return totalNumberOfAttr;
+		return state().totalNumberOfAttr;
 	}
 	/**
 	 * Total number of non empty attributes. 
@@ -420,7 +599,7 @@ public class Database
 	 * @return Returns the total number of all attributes.
 	 */
 	public static int getTotalNbOfNonEmptyAttr() {
-		return totalNbOfNonEmptyAttr;
+		return state().totalNbOfNonEmptyAttr;
 	}
 	/**
 	 * Returns how many attributes an object has in average.
@@ -428,7 +607,7 @@ public class Database
 	 * @return Returns how many attributes an object has in average.
 	 */
 	public static double getNumberOfAttrInAvg() {
-		return numberOfAttrInAvg;
+		return state().numberOfAttrInAvg;
 	}
 
 	/**
@@ -437,7 +616,7 @@ public class Database
 	 * @return Returns the objectNames.
 	 */
 	public static Vector<String> getObjectNames() {
-		return objectNames;
+		return state().objectNames;
 	}
 
 	/**
@@ -451,8 +630,8 @@ public class Database
 	 * @param objectsV String array of object names.
 	 */
 	public static void setObjectNames(Vector<String> objectsV) {
-		Database.objectNames = objectsV;
-		Database.obj_number  = objectsV.size()-1;
+		state().objectNames = objectsV;
+		state().obj_number  = objectsV.size()-1;
 	}
 
 	/**
@@ -468,8 +647,8 @@ public class Database
 	 */
 	public static String getObj(int i) 
 	{
-		if (Database.database_file_type == C.FT_RCF) 
-			return (String) Database.objectNames.get(i);
+		if (state().database_file_type == C.FT_RCF) 
+			return (String) state().objectNames.get(i);
 		else
 			return "o_"+i;
 	}
@@ -480,14 +659,14 @@ public class Database
 	 * @return Returns the attributeNames.
 	 */
 	public static Vector<String> getAttributeNames() {
-		return attributeNames;
+		return state().attributeNames;
 	}
 
 	/**
 	 * @return Number of attribute names.
 	 */
 	public static int getAttributeNamesSize() {
-		return attributeNames.size();
+		return state().attributeNames.size();
 	}
 	
 	/**
@@ -495,7 +674,7 @@ public class Database
 	 * For ex., in laszlo.rcf, given "c" it returns 3.
 	 */
 	public static int getAttributeNumberByName(String attrName) {
-	   return attributeNames.indexOf(attrName);
+	   return state().attributeNames.indexOf(attrName);
 	}
 
 	/**
@@ -506,8 +685,8 @@ public class Database
 	 * @param attributes String array with attribute names.
 	 */
 	public static void setAttributeNames(Vector<String> attributes) {
-		Database.attributeNames = attributes;
-		Database.attr_number = attributes.size() -1;
+		state().attributeNames = attributes;
+		state().attr_number = attributes.size() -1;
 	}
 
 	/**
@@ -518,12 +697,12 @@ public class Database
 	public static void addPrefixToAttributeNames(char prefix)
 	{
 		String oldName, newName;
-		int size = Database.attributeNames.size();
+		int size = state().attributeNames.size();
 		for (int i = 1; i < size; ++i)               // index 0 is not used
 		{
-			oldName = Database.attributeNames.get(i);
+			oldName = state().attributeNames.get(i);
 			newName = prefix + oldName; 
-			Database.attributeNames.set(i, newName);
+			state().attributeNames.set(i, newName);
 		}
 	}
 
@@ -536,12 +715,12 @@ public class Database
 	public static void removeDoubleNegationsFromAttributeNames(char prefix)
 	{
 		String oldName, newName;
-		int size = Database.attributeNames.size();
+		int size = state().attributeNames.size();
 		for (int i = 1; i < size; ++i)               // index 0 is not used
 		{
-			oldName = Database.attributeNames.get(i);
+			oldName = state().attributeNames.get(i);
 			newName = oldName.replaceFirst("^"+prefix+prefix, ""); 
-			Database.attributeNames.set(i, newName);
+			state().attributeNames.set(i, newName);
 		}  
 	}
 
@@ -555,8 +734,8 @@ public class Database
 	 */
 	public static String getAttr(int i) 
 	{
-		if (Database.database_file_type == C.FT_RCF) 
-			return (String) Database.attributeNames.get(i);
+		if (state().database_file_type == C.FT_RCF) 
+			return (String) state().attributeNames.get(i);
 		else
 			return "a_"+i;
 	}
@@ -569,7 +748,7 @@ public class Database
 	 * according to the attribute name list in the .rcf file.
 	 */
 	public static int getAttrNumber() {
-		return attr_number;
+		return state().attr_number;
 	}
 
 	/**
@@ -579,7 +758,7 @@ public class Database
 	 * @param attr_number The attribute number that each object must have.
 	 */
 	public static void setAttrNumber(int attr_number) {
-		Database.attr_number = attr_number;
+		state().attr_number = attr_number;
 	}
 
 	/**
@@ -587,7 +766,7 @@ public class Database
 	 * according to the object name list in the .rcf file.
 	 */
 	public static int getObjNumber() {
-		return obj_number;
+		return state().obj_number;
 	}
 
 	/**
@@ -596,7 +775,7 @@ public class Database
 	 * @return Returns the minimum confidence.
 	 */
 	public static Double getMinConf() {
-		return min_conf;
+		return state().min_conf;
 	}
 
 	/**
@@ -605,7 +784,7 @@ public class Database
 	 * @param min_conf The minimum confidence to set.
 	 */
 	public static void setMinConf(Double min_conf) {
-		Database.min_conf = min_conf;
+		state().min_conf = min_conf;
 	}
 
 	/**
@@ -614,7 +793,7 @@ public class Database
 	 * @return Returns the database_file_type.
 	 */
 	public static int getDatabaseFileType() {
-		return Database.database_file_type;
+		return state().database_file_type;
 	}
 
 	/**
@@ -623,7 +802,7 @@ public class Database
 	 * @param database_file_type The database_file_type to set.
 	 */
 	public static void setDatabaseFileType(int database_file_type) {
-		Database.database_file_type = database_file_type;
+		state().database_file_type = database_file_type;
 	}
 
 	/**
@@ -632,7 +811,7 @@ public class Database
 	 * @return Returns the convert_file_type.
 	 */
 	public static int getConvertFileType() {
-		return convert_file_type;
+		return state().convert_file_type;
 	}
 
 	/**
@@ -641,7 +820,7 @@ public class Database
 	 * @param convert_file_type The convert_file_type to set.
 	 */
 	public static void setConvertFileType(int convert_file_type) {
-		Database.convert_file_type = convert_file_type;
+		state().convert_file_type = convert_file_type;
 	}
 
 	/**
@@ -674,6 +853,7 @@ public class Database
 
 		database.removeAll(toDeleteLines);
 		objNames.removeAll(toDeleteObjNames);
+		state().index = null;
 
 		// on
 		//System.err.println("db: "+database);
@@ -687,7 +867,7 @@ public class Database
 	 * @return Returns the numberOfObjects.
 	 */
 	public static int getNumberOfObjects() {
-		return numberOfObjects;
+		return state().numberOfObjects;
 	}
 	
 	/**
@@ -700,19 +880,104 @@ public class Database
 	public static BitSet getLargestTidset()
 	{
 		BitSet bs = new BitSet();
-		for (int i=0; i<numberOfObjects; ++i) {
+		for (int i=0; i<Database.getNumberOfTids(); ++i) {
 			bs.set(i+1);
 		}
 		return bs;
 	}
 
+	/**
+	 * The number of tids. It's the number of objects, except if identical
+	 * objects were folded: then it's the number of different objects.
+	 * 
+	 * @return Number of tids (the tids are 1..number of tids).
+	 */
+	public static int getNumberOfTids() {
+		return (state().weights == null) ? state().numberOfObjects : state().weights.length - 1;
+	}
+
+	/**
+	 * @return Weight of each tid (position 0 is not used), or null if identical objects were not folded.
+	 */
+	public static int[] getWeights() {
+		return state().weights;
+	}
+
+	/**
+	 * @return The largest weight of a tid (1 if identical objects were not folded).
+	 */
+	public static int getMaxWeight() {
+		return state().maxWeight;
+	}
+
+	/**
+	 * Registers the weights of the tids after identical objects were folded.
+	 * 
+	 * @param weights Weight of each tid (position 0 is not used).
+	 */
+	public static void setWeights(int[] weights)
+	{
+		state().weights = weights;
+		state().maxWeight = 1;
+		for (int i = 1; i < weights.length; ++i) {
+			if (weights[i] > state().maxWeight) state().maxWeight = weights[i];
+		}
+	}
+
+	/**
+	 * Support of a tidset of the vertical database: the number of its tids, or
+	 * the sum of their weights if identical objects were folded.
+	 * 
+	 * @param tidset A tidset.
+	 * @return Support of the tidset in the original database.
+	 */
+	public static int getSupport(BitSet tidset)
+	{
+		if (state().weights == null) return tidset.cardinality();
+		// else
+		int supp = 0;
+		for (int tid = tidset.nextSetBit(1); tid >= 0; tid = tidset.nextSetBit(tid+1)) {
+			supp += state().weights[tid];
+		}
+		return supp;
+	}
+
+	/**
+	 * Folds the identical objects of a horizontal database (-fold). An object is
+	 * kept at its first occurrence, its weight is the number of its occurrences.
+	 * The number of objects doesn't change, it's the sum of the weights.
+	 */
+	public static void foldObjects()
+	{
+		HashMap<BitSet, Integer> seen = new HashMap<BitSet, Integer>();
+		Vector<BitSet> folded = new Vector<BitSet>();
+		int[] w = new int[state().database.size() + 1];
+		Integer tid;
+
+		for (BitSet set : state().database)
+		{
+			tid = seen.get(set);
+			if (tid == null)
+			{
+				folded.add(set);
+				tid = folded.size();
+				seen.put(set, tid);
+			}
+			++w[tid];
+		}
+		folded.trimToSize();
+		state().database = folded;
+		state().index = null;
+		Database.setWeights(Arrays.copyOf(w, folded.size() + 1));
+	}
+
 	/**
 	 * Used when the database is stored in vertical format.
 	 * 
 	 * @param numberOfObjects The numberOfObjects to set.
 	 */
 	public static void setNumberOfObjects(int numberOfObjects) {
-		Database.numberOfObjects = numberOfObjects;
+		state().numberOfObjects = numberOfObjects;
 	}
 
 	/**
@@ -726,6 +991,8 @@ public class Database
 		StringBuilder sb = new StringBuilder();
 		int cnt = 0;
 
+		bs = Recoding.decode(bs);		// the names belong to the original attributes
+
 		sb.append("{");
 		for (int i = bs.nextSetBit(0); i >= 0; i = bs.nextSetBit(i+1)) 
 		{ 
@@ -831,10 +1098,10 @@ public class Database
 	public static void printInfo()
 	{
 		System.err.println("==============================================================================");
-		System.err.println("DB file: "+Database.database_file_str);
-		System.err.println("min_supp (int): "+Database.min_supp);
-		System.err.println("min_supp (double): "+Database.min_supp_percent);
-		System.err.println("# objects: "+Database.numberOfObjects);
+		System.err.println("DB file: "+state().database_file_str);
+		System.err.println("min_supp (int): "+state().min_supp);
+		System.err.println("min_supp (double): "+state().min_supp_percent);
+		System.err.println("# objects: "+state().numberOfObjects);
 		System.err.println("Attributes: "+Database.getAttributeNames());
 		System.err.println("Objects: "+Database.getObjectNames());
 		System.err.println("==============================================================================");
@@ -844,7 +1111,7 @@ public class Database
 	 * @return Returns the db_representation.
 	 */
 	public static int getDBRepresentation() {
-		return db_representation;
+		return state().db_representation;
 	}
 
 	/**
@@ -852,56 +1119,56 @@ public class Database
 	 */
 
 	public static void setDbRepresentation(final int db_representation) {
-		Database.db_representation = db_representation;
+		state().db_representation = db_representation;
 	}
 
 	/**
 	 * @return Returns true if there was a full column in the input database.
 	 */
 	public static boolean hasFullColumn() {
-		return Database.fullColumn;
+		return state().fullColumn;
 	}
 
 	/**
 	 * @param fullColumn Does the database have a full column?
 	 */
 	public static void setFullColumn(boolean fullColumn) {
-		Database.fullColumn = fullColumn;
+		state().fullColumn = fullColumn;
 	}
 
 	/**
 	 * @return Returns the longestItemset.
 	 */
 	public static int getLongestItemset() {
-		return longestItemset;
+		return state().longestItemset;
 	}
 
 	/**
 	 * @param longestItemset The longestItemset to set.
 	 */
 	public static void setLongestItemset(int longestItemset) {
-		Database.longestItemset = longestItemset;
+		state().longestItemset = longestItemset;
 	}
 
 	/**
 	 * @param attributes All the attributes collected in a bitset.
 	 */
 	public static void registerAttributes(BitSet attributes) {
-		Database.attributes = attributes;
+		state().attributes = attributes;
 	}
 
 	/**
 	 * @return All the attributes collected in a bitset.
 	 */
 	public static BitSet getAttributes() {
-		return Database.attributes;
+		return state().attributes;
 	}
 
 	/**
 	 * Delete attribute list to save some memory.
 	 */
 	public static void freeAttributes() {
-		Database.attributes = null;
+		state().attributes = null;
 	}
 
 	/**
@@ -912,7 +1179,7 @@ public class Database
 	 * @return True, if the element at position 0 is null. False, otherwise.
 	 */
 	public static boolean isZeroElementNull() {
-		return (Database.database.get(0) == null);
+		return (state().database.get(0) == null);
 	}
 
 	/**
@@ -925,7 +1192,8 @@ public class Database
 		if (Database.isZeroElementNull() == false) 
 		{     
 			// let's check it here too, just to be sure
-			Database.database.insertElementAt(null, 0);
+			state().database.insertElementAt(null, 0);
+			state().index = null;		// the objects are shifted
 		}
 	}
 
@@ -935,7 +1203,8 @@ public class Database
 	public static void removeZeroElementNull()
 	{
 		if (Database.isZeroElementNull()) {
-			Database.database.remove(0);
+			state().database.remove(0);
+			state().index = null;
 		}
 	}
 
@@ -948,7 +1217,7 @@ public class Database
 	 */
 	public static int getNumberOfObjectsInDatabase()
 	{
-		int size = Database.database.size();
+		int size = state().database.size();
 		if (Database.isZeroElementNull()) size -= 1;    // the null element is not included
 
 		return size;
@@ -958,7 +1227,7 @@ public class Database
 	 * @return True, if the DB is inverted; false, otherwise.
 	 */
 	public static boolean isDbInverted() {
-		return Database.inverted;
+		return state().inverted;
 	}
 
 	/**
@@ -966,7 +1235,7 @@ public class Database
 	 * this function.
 	 */
 	public static void setDbInverted() {
-		Database.inverted = (Database.inverted ? false : true);
+		state().inverted = (state().inverted ? false : true);
 	}
 
 	/**
@@ -976,17 +1245,26 @@ public class Database
 	public static void postCheckPosBasenum() {
 		if (Database.getDatabaseFileType() == C.FT_BASENUM) {
 			BitSet set;
+			boolean zero = false;
 
-			for (Enumeration<BitSet> e = Database.getDatabase().elements(); e.hasMoreElements();) {
-				set = e.nextElement();
+			if (Database.isDBRepresentationVertical()) {
+				// attribute 0 is present in an object, if its tidset is not empty
+				Vector<BitSet> db = Database.getDatabase();
+				zero = (db.size() > 0) && (db.get(0).isEmpty() == false);
+			}
+			else {
+				for (Enumeration<BitSet> e = Database.getDatabase().elements(); e.hasMoreElements() && (zero == false);) {
+					set = e.nextElement();
+					zero = (set.nextSetBit(0) == 0);
+				}
+			}
 
-				if (set.nextSetBit(0) == 0) {
-					System.err.println("WARNING: your database doesn't fit with the system!");
-					System.err.println("         Its first position should be 1, not 0.");
-					System.err.println("TIP: To make it start at 1, use ../tools/tool06_shiftContext.pl");
+			if (zero) {
+				System.err.println("WARNING: your database doesn't fit with the system!");
+				System.err.println("         Its first position should be 1, not 0.");
+				System.err.println("TIP: To make it start at 1, use ../tools/tool06_shiftContext.pl");
 
-					Error.die(C.ERR_JUST_EXIT);
-				}
+				Error.die(C.ERR_JUST_EXIT);
 			}
 		}
 	}
@@ -1002,12 +1280,12 @@ public class Database
 	 */
 	public static int init_attributes()    
 	{
-		attributes = new BitSet();
-		for (Enumeration<BitSet> e = database.elements(); e.hasMoreElements(); )
-			attributes .or(e.nextElement());
+		state().attributes = new BitSet();
+		for (Enumeration<BitSet> e = state().database.elements(); e.hasMoreElements(); )
+			state().attributes .or(e.nextElement());
 
-		Database.registerAttributes(attributes);     // needed for LeCo
+		Database.registerAttributes(state().attributes);     // needed for LeCo
 
-		return (attributes.length());
+		return (state().attributes.length());
 	}
 }
@@ -15,6 +15,25 @@ public class Error
     */
    private Error() { }
    
+   /**
+    * @param embedded In an embedded run (see the Miner API) an error throws an
+    * IllegalStateException instead of stopping the JVM of the caller. It's set
+    * in the context of the current thread (see Context).
+    */
+   public static void setEmbedded(boolean embedded) {
+      Context.current().embedded = embedded;
+   }
+   
+   /**
+    * Exits after an error message, or throws an exception in an embedded run.
+    */
+   private static void exit()
+   {
+      if (Context.current().embedded) throw new IllegalStateException("Coron: the mining was aborted (see the error message on stderr)");
+      // else
+      System.exit(-1);
+   }
+   
    /** 
     * Drops an error message and exits.
     * 
@@ -76,7 +95,7 @@ public class Error
          System.out.println("Error: "+e);
       }
       
-      System.exit(-1);  // exit in all cases
+      exit();  // exit in all cases
    }
    
    /**
@@ -97,7 +116,7 @@ public class Error
          System.out.println("Error: "+e);
       }
       
-      System.exit(-1);  // exit
+      exit();  // exit
    }
    
    /**
@@ -119,7 +138,7 @@ public class Error
          System.out.println("Error: "+e);
       }
       
-      System.exit(-1);  // exit
+      exit();  // exit
    }
    
    /**
@@ -144,7 +163,7 @@ public class Error
          System.out.println("Error: "+e);
       }
       
-      System.exit(-1);  // exit
+      exit();  // exit
    }
    
    /**
@@ -189,7 +208,7 @@ public class Error
          System.out.println("Error: "+e);
       }
       
-      System.exit(-1);
+      exit();
    }
    
    /**
@@ -225,7 +244,7 @@ public class Error
          System.out.println("Error: "+e);
       }
       
-      System.exit(-1);
+      exit();
    }
    
    /**
@@ -307,7 +326,7 @@ public class Error
          System.out.println("Error: "+e);
       }
       
-	   System.exit(-1);
+	   exit();
    }
    
    /**
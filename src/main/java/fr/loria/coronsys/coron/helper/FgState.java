@@ -0,0 +1,316 @@
+package fr.loria.coronsys.coron.helper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Vector;
+
+import fr.loria.coronsys.coron.datastructure.charm.CharmExtra;
+import fr.loria.coronsys.coron.datastructure.charm.HashElem;
+
+/**
+ * The result of a run that is kept for the next, incremental run (switches
+ * -save and -incr, see IncrementalTalkyG): the number of objects, the min.
+ * support, the extent (tidset) of each attribute, the FGs with their supports,
+ * and the rare candidates with their supports. A rare candidate is a rare
+ * itemset whose one-size smaller subsets are all FGs. The extent of an
+ * itemset is the intersection of the extents of its attributes, thus it's
+ * not stored separately.
+ *
+ * File format (binary, big-endian): magic number, version, number of objects,
+ * min. support, number of attributes + 1, the extents, number of FGs, the FGs,
+ * number of rare candidates, the rare candidates. An itemset is stored as its
+ * support and its intent, a bitset as the number of its 64-bit words followed
+ * by the words.
+ */
+public class FgState
+{
+   /**
+    * First bytes of a state file ("TKFG").
+    */
+   private final static int MAGIC = 0x544B4647;
+
+   /**
+    * Version of the file format.
+    */
+   private final static int VERSION = 1;
+
+   /**
+    * Number of objects.
+    */
+   private int numberOfObjects;
+
+   /**
+    * Min. support (as an integer) of the run.
+    */
+   private int minSupp;
+
+   /**
+    * Position i: tidset of attribute i.
+    */
+   private Vector<BitSet> extents;
+
+   /**
+    * The FGs with their supports.
+    */
+   private Vector<HashElem> fgs;
+
+   /**
+    * The rare candidates with their supports.
+    */
+   private Vector<HashElem> rare;
+
+   /**
+    * Constructor.
+    *
+    * @param numberOfObjects Number of objects.
+    * @param minSupp Min. support (as an integer) of the run.
+    * @param extents Position i: tidset of attribute i.
+    * @param fgs The FGs with their supports.
+    * @param rare The rare candidates with their supports.
+    */
+   public FgState(int numberOfObjects, int minSupp, Vector<BitSet> extents, Vector<HashElem> fgs, Vector<HashElem> rare)
+   {
+      this.numberOfObjects = numberOfObjects;
+      this.minSupp = minSupp;
+      this.extents = extents;
+      this.fgs = fgs;
+      this.rare = rare;
+   }
+
+   /**
+    * Reads a state file. Exits with an error message if the file cannot be read.
+    *
+    * @param path Name of the state file.
+    * @return The state.
+    */
+   public static FgState load(String path)
+   {
+      DataInputStream in = null;
+      try
+      {
+         in = new DataInputStream(new BufferedInputStream(new FileInputStream(path), 1 << 16));
+         if ((in.readInt() != MAGIC) || (in.readInt() != VERSION)) {
+            throw new IOException("not a state file of this version");
+         }
+         int numberOfObjects = in.readInt();
+         int minSupp = in.readInt();
+
+         int size = in.readInt();
+         Vector<BitSet> extents = new Vector<BitSet>(size);
+         for (int i = 0; i < size; ++i) {
+            extents.add(readBitSet(in));
+         }
+
+         Vector<HashElem> fgs = readItemsets(in);
+         Vector<HashElem> rare = readItemsets(in);
+         return new FgState(numberOfObjects, minSupp, extents, fgs, rare);
+      }
+      catch (IOException e)
+      {
+         System.err.println("Error: cannot read the state file "+path+": "+e.getMessage());
+         Error.die(C.ERR_JUST_EXIT);
+         return null;
+      }
+      finally {
+         close(in);
+      }
+   }
+
+   /**
+    * Writes the state in a file. Exits with an error message if the file cannot be written.
+    *
+    * @param path Name of the state file.
+    */
+   public void save(String path)
+   {
+      if (Global.followFunctions()) System.err.println("> Saving the state in "+path+"...");
+      DataOutputStream out = null;
+      try
+      {
+         out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16));
+         out.writeInt(MAGIC);
+         out.writeInt(VERSION);
+         out.writeInt(this.numberOfObjects);
+         out.writeInt(this.minSupp);
+
+         out.writeInt(this.extents.size());
+         for (BitSet tids : this.extents) {
+            writeBitSet(out, tids);
+         }
+
+         writeItemsets(out, this.fgs);
+         writeItemsets(out, this.rare);
+         out.close();
+         out = null;
+      }
+      catch (IOException e)
+      {
+         System.err.println("Error: cannot write the state file "+path+": "+e.getMessage());
+         Error.die(C.ERR_JUST_EXIT);
+      }
+      finally {
+         close(out);
+      }
+   }
+
+   /**
+    * Appends the objects of the database that was read (the new objects) to
+    * the objects of the state: the new database is the vertical database of
+    * all the objects, and the min. support is computed for all the objects.
+    * Exits with an error message if the min. support is lower than in the
+    * previous run.
+    */
+   public void appendDatabase()
+   {
+      Vector<BitSet> delta = new CharmExtra(Database.getDatabase(), Database.getMinSupp()).convertDBHorizontal2Vertical();
+      int offset = this.numberOfObjects;
+      int size = Math.max(this.extents.size(), delta.size());
+      Vector<BitSet> db = new Vector<BitSet>(size);
+      BitSet tids, newTids;
+      int largestAttr = 0, nonEmptyAttr = 0;
+      long allAttr = 0;
+
+      for (int attr = 0; attr < size; ++attr)
+      {
+         tids = (attr < this.extents.size()) ? this.extents.get(attr) : new BitSet();
+         if (attr < delta.size())
+         {
+            newTids = delta.get(attr);
+            for (int tid = newTids.nextSetBit(0); tid >= 0; tid = newTids.nextSetBit(tid+1)) {
+               tids.set(offset + tid);
+            }
+         }
+         db.add(tids);
+         if ((attr > 0) && (tids.isEmpty() == false))
+         {
+            largestAttr = attr;
+            ++nonEmptyAttr;
+            allAttr += tids.cardinality();
+         }
+      }
+      this.extents = null;    // they are in the new database
+
+      Database.setNumberOfObjects(offset + Database.getNumberOfObjects());
+      Database.setVerticalDatabase(db, largestAttr, nonEmptyAttr, allAttr, null);
+      if (Database.getMinSupp() < this.minSupp)
+      {
+         System.err.println("Error: the min. support ("+Database.getMinSupp()+") is lower than in the previous run ("+this.minSupp+")!");
+         Error.die(C.ERR_JUST_EXIT);
+      }
+   }
+
+   /**
+    * @return Number of objects.
+    */
+   public int getNumberOfObjects() {
+      return this.numberOfObjects;
+   }
+
+   /**
+    * @return Min. support (as an integer) of the run.
+    */
+   public int getMinSupp() {
+      return this.minSupp;
+   }
+
+   /**
+    * @return The FGs with their supports.
+    */
+   public Vector<HashElem> getFgs() {
+      return this.fgs;
+   }
+
+   /**
+    * @return The rare candidates with their supports.
+    */
+   public Vector<HashElem> getRare() {
+      return this.rare;
+   }
+
+   /**
+    * @param in Input stream.
+    * @return The next itemsets with their supports.
+    * @throws IOException
+    */
+   private static Vector<HashElem> readItemsets(DataInputStream in)
+   throws IOException
+   {
+      int size = in.readInt();
+      Vector<HashElem> itemsets = new Vector<HashElem>(size);
+      int supp;
+      for (int i = 0; i < size; ++i)
+      {
+         supp = in.readInt();
+         itemsets.add(new HashElem(readBitSet(in), supp));
+      }
+      return itemsets;
+   }
+
+   /**
+    * @param out Output stream.
+    * @param itemsets Itemsets with their supports.
+    * @throws IOException
+    */
+   private static void writeItemsets(DataOutputStream out, Vector<HashElem> itemsets)
+   throws IOException
+   {
+      out.writeInt(itemsets.size());
+      for (HashElem itemset : itemsets)
+      {
+         out.writeInt(itemset.getSupp());
+         writeBitSet(out, itemset.getIntent());
+      }
+   }
+
+   /**
+    * @param in Input stream.
+    * @return The next bitset.
+    * @throws IOException
+    */
+   private static BitSet readBitSet(DataInputStream in)
+   throws IOException
+   {
+      long[] words = new long[in.readInt()];
+      for (int i = 0; i < words.length; ++i) {
+         words[i] = in.readLong();
+      }
+      return BitSet.valueOf(words);
+   }
+
+   /**
+    * @param out Output stream.
+    * @param bits A bitset to write.
+    * @throws IOException
+    */
+   private static void writeBitSet(DataOutputStream out, BitSet bits)
+   throws IOException
+   {
+      long[] words = bits.toLongArray();
+      out.writeInt(words.length);
+      for (long word : words) {
+         out.writeLong(word);
+      }
+   }
+
+   /**
+    * Closes a stream, errors are ignored.
+    *
+    * @param stream A stream (can be null).
+    */
+   private static void close(Closeable stream)
+   {
+      if (stream == null) return;
+      // else
+      try {
+         stream.close();
+      }
+      catch (IOException e) { }
+   }
+}
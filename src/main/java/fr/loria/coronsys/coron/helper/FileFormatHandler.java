@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Enumeration;
 import java.util.Iterator;
@@ -31,23 +32,51 @@ public class FileFormatHandler
     * line-parser is called for the 1st time, the length of this line is registered.
     * If another line differs in length, we drop an error message.
     */
-   private static boolean first_call;
+   private boolean first_call;
    
    /**
     * Used to check if all lines have the same length 
     * (same number of attributes) in a .bool file.
     */
-   private static int attr_number;
+   private int attr_number;
    
    /**
     * Used to check how many objects are read in a .bool file.
     */
-   private static int obj_number;
+   private int obj_number;
    
    /**
     * The length of the longest itemset.
     */
-   private static int longestItemset;
+   private int longestItemset;
+   
+   /**
+    * Numbers of the current line, filled by the byte-level line scanners.
+    */
+   private int[] lineItems = new int[64];
+   
+   /**
+    * Number of numbers in lineItems (set by the byte-level line scanners).
+    */
+   private int lineCount;
+   
+   /**
+    * The largest number in lineItems (set by the byte-level line scanners).
+    */
+   private int lineMax;
+   
+   /**
+    * Constructor. The reader of a new context (see Context).
+    */
+   FileFormatHandler() {
+   }
+   
+   /**
+    * @return The reader of the current context.
+    */
+   private static FileFormatHandler state() {
+      return Context.current().reader;
+   }
    
    /**
     * Controller function for database reading. Investigates the input file's format,
@@ -63,7 +92,23 @@ public class FileFormatHandler
       File input_file 	= Database.getDatabaseFile();
       int file_type		= checkFileType(input_file);
       Database.setDatabaseFileType(file_type);        // register it
-      FileFormatHandler.longestItemset = 0;
+      state().longestItemset = 0;
+      
+      if (Global.getBuildIndex() && (file_type == C.FT_RCF))
+      {
+         System.err.println("Error: -index can only be used with .basenum and .bool files.");
+         Error.die(C.ERR_JUST_EXIT);
+      }
+      // a vertical miner reads the index of the dataset instead of the dataset, if it's up-to-date (see -index)
+      if ((Global.getBuildIndex() == false) && (file_type != C.FT_RCF) && isVerticalIngest() &&
+          (Global.getItemsetRepresentation() == C.REPR_BITSET) && VerticalIndex.load(isF2Needed()))
+      {
+         if (Global.followFunctions()) {
+            System.err.print("> Reading the index of the dataset: done. ");
+            System.err.println("Elapsed time: "+Statistics.getRuntime(System.currentTimeMillis() - startTime)+" sec.");
+         }
+         return;
+      }
       
       switch (file_type)
       {
@@ -83,9 +128,17 @@ public class FileFormatHandler
       }
       
       // during file processing we determined the longest possible itemset 
-      Database.setLongestItemset(FileFormatHandler.longestItemset);
+      Database.setLongestItemset(state().longestItemset);
+      
+      // the vertical ingest folds the identical objects while reading, a horizontal database is folded here
+      if (Global.getFold() && isVerticalIngest() && Database.isDBRepresentationHorizontal()) {
+         Database.foldObjects();
+      }
       
       if (Global.followFunctions()) {
+         if (Database.getWeights() != null) {
+            System.err.println("> Identical objects folded: "+Database.getNumberOfObjects()+" objects -> "+Database.getNumberOfTids()+" tids.");
+         }
          System.err.print("> Reading input dataset: done. ");
          System.err.println("Elapsed time: "+Statistics.getRuntime(System.currentTimeMillis() - startTime)+" sec.");
       }
@@ -257,6 +310,11 @@ public class FileFormatHandler
    @SuppressWarnings("unchecked")
    public static void readBasenumFile(String file)
    {
+      if (Global.getItemsetRepresentation() == C.REPR_BITSET) {
+         readBasenumFileMapped(file);
+         return;
+      }
+      // else
       String line;
       int currentLine = 0;					// which line we have read from the file
       int objCnt = 0;						// number of objects in the database (note: currentline != objCnt)
@@ -286,6 +344,221 @@ public class FileFormatHandler
       Database.setDatabase(database, C.DBR_HORIZONTAL);
    }   
    
+   /** 
+    * Reads in a file in basenum format, like readBasenumFile(), but the file is
+    * memory-mapped and the numbers are decoded directly from the bytes. No String
+    * is created for a line, except if the line is not a simple list of numbers
+    * (e.g. it has a sign or an illegal character). Such a line is given to
+    * parseBasenumLine(), thus the errors are reported the same way.
+    * 
+    * Only for the BitSet representation. For the vertical miners the lines go
+    * directly to the vertical representation (see isVerticalIngest()).
+    * 
+    * @param file Name of the input file.
+    */
+   private static void readBasenumFileMapped(String file)
+   {
+      String line;
+      int currentLine;
+      int objCnt = 0;
+      int n;
+      Vector<BitSet> database = new Vector<BitSet>();
+      VerticalIngest ingest = isVerticalIngest() ? new VerticalIngest(isF2Needed()) : null;
+      
+      try {
+         MappedLineReader in = new MappedLineReader(file);
+         while (in.nextLine())
+         {
+            currentLine = in.getLineNumber();
+            n = scanBasenumLine(in);
+            if (n == 0) continue;                      // empty line or remark
+            // else
+            if (n < 0)
+            {
+               // not a simple line, it's parsed as a String
+               line = in.getLine().trim();
+               if (line.startsWith("#") || (line.length()==0)) continue;
+               ++objCnt;
+               addObject(database, ingest, (BitSet) parseBasenumLine(line, currentLine));
+               continue;
+            }
+            // else
+            ++objCnt;
+            addLineItems(database, ingest);
+            if (n > state().longestItemset)
+               state().longestItemset = n;
+         }
+         database.trimToSize();
+         in.close();
+      }
+      catch (FileNotFoundException fnfe) { Error.die(C.ERR_FILE_NOT_FOUND); }
+      catch (java.io.IOException ioe)    { Error.die(C.ERR_IO); }
+
+      Database.setNumberOfObjects(objCnt);
+      if (ingest != null) ingest.register();
+      else Database.setDatabase(database, C.DBR_HORIZONTAL);
+   }
+   
+   /**
+    * The vertical miners (Eclat, dEclat, Talky, Talky-G, Talky-G v2, dTalky-G) convert
+    * the database to vertical representation and count the 2-itemsets before the
+    * search. For them, the file is read directly in vertical representation, and the
+    * 2-itemsets are counted during the reading. The horizontal representation is
+    * not built at all.
+    * 
+    * If the database is converted to another format, it's read horizontally. If its
+    * index is built (-index), it's read vertically, with the 2-itemsets.
+    * 
+    * @return True, if the database can be read in vertical representation.
+    */
+   private static boolean isVerticalIngest()
+   {
+      if (Database.getConvertFileType() != C.FT_NOTHING) return false;
+      // else
+      if (Global.getBuildIndex()) return true;
+      // else
+      switch (Global.getAlgorithm())
+      {
+         case C.ALG_ECLAT_1:
+         case C.ALG_DECLAT:
+         case C.ALG_TALKY:
+         case C.ALG_TALKY_G:
+         case C.ALG_TALKY_G2:
+         case C.ALG_DTALKY_G:
+            return true;
+         default:
+            return false;
+      }
+   }
+   
+   /**
+    * @return True, if the chosen vertical miner uses the F_2 matrix.
+    */
+   private static boolean isF2Needed()
+   {
+      if (Global.getBuildIndex()) return true;      // the index has the F_2 matrix too
+      // else
+      switch (Global.getAlgorithm())
+      {
+         case C.ALG_ECLAT_1:
+         case C.ALG_DECLAT:
+         case C.ALG_TALKY:
+            return true;
+         default:
+            // Talky-G and its variants use it only if it's enabled (-usef2)
+            return Global.getUseF2();
+      }
+   }
+   
+   /**
+    * Adds the object in lineItems to the database.
+    * 
+    * @param database The horizontal database (used if ingest is null).
+    * @param ingest The vertical database being built, or null.
+    */
+   private static void addLineItems(Vector<BitSet> database, VerticalIngest ingest)
+   {
+      if (ingest != null) ingest.add(state().lineItems, state().lineCount);
+      else database.add(lineItemsToBitSet());
+   }
+   
+   /**
+    * Adds an object to the database.
+    * 
+    * @param database The horizontal database (used if ingest is null).
+    * @param ingest The vertical database being built, or null.
+    * @param set The object.
+    */
+   private static void addObject(Vector<BitSet> database, VerticalIngest ingest, BitSet set)
+   {
+      if (ingest == null) {
+         database.add(set);
+         return;
+      }
+      // else
+      FileFormatHandler state = state();
+      int n = 0;
+      for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i+1))
+      {
+         if (n == state.lineItems.length) {
+            state.lineItems = Arrays.copyOf(state.lineItems, 2 * n);
+         }
+         state.lineItems[n++] = i;
+      }
+      ingest.add(state.lineItems, n);
+   }
+   
+   /**
+    * Decodes the numbers of the current line of a .basenum file into lineItems.
+    * 
+    * @param in The file, positioned on a line.
+    * @return The number of numbers in the line; 0 if the line is empty or it's a remark;
+    * -1 if the line must be parsed as a String.
+    */
+   private static int scanBasenumLine(MappedLineReader in)
+   {
+      FileFormatHandler state = state();
+      int i = in.start(), end = in.end();
+      int n = 0;
+      long value;
+      byte b;
+      
+      state.lineCount = 0;
+      state.lineMax   = -1;
+      while ((i < end) && isBlank(in.get(i))) ++i;
+      if (i == end) return 0;
+      if (in.get(i) == '#') return 0;
+      // else
+      while (i < end)
+      {
+         b = in.get(i);
+         if ((b < '0') || (b > '9')) return -1;
+         // else: a number
+         value = 0;
+         do
+         {
+            value = 10 * value + (b - '0');
+            if (value > Integer.MAX_VALUE) return -1;
+            if (++i == end) break;
+            b = in.get(i);
+         } while ((b >= '0') && (b <= '9'));
+         
+         if (n == state.lineItems.length) {
+            state.lineItems = Arrays.copyOf(state.lineItems, 2 * n);
+         }
+         state.lineItems[n++] = (int) value;
+         if (value > state.lineMax) state.lineMax = (int) value;
+         
+         if (i == end) break;
+         if (isBlank(b) == false) return -1;
+         // else
+         while ((i < end) && isBlank(in.get(i))) ++i;
+      }
+      state.lineCount = n;
+      return n;
+   }
+   
+   /**
+    * @param b A byte of a line.
+    * @return True, if it's a white-space character inside a line (matched by "\\s").
+    */
+   private static boolean isBlank(byte b) {
+      return (b == ' ') || (b == '\t') || (b == '\f') || (b == 0x0B);
+   }
+   
+   /**
+    * @return A BitSet containing the numbers in lineItems.
+    */
+   private static BitSet lineItemsToBitSet()
+   {
+      FileFormatHandler state = state();
+      BitSet bitset = new BitSet(state.lineMax + 1);
+      for (int i = 0; i < state.lineCount; ++i) {
+         bitset.set(state.lineItems[i]);
+      }
+      return bitset;
+   }
+   
    /**
     * Adds a line of the dataset to the vertical representation.
     * 
@@ -366,8 +639,8 @@ public class FileFormatHandler
          Error.dieBasenumNfe(currentLine, items[i]);
       }
       // the cardinality of the bitset is equal to items.length
-      if (items.length > FileFormatHandler.longestItemset)
-         FileFormatHandler.longestItemset = items.length;
+      if (items.length > state().longestItemset)
+         state().longestItemset = items.length;
 
       if      (Global.getItemsetRepresentation() == C.REPR_BITSET)  return bitset;
       else if (Global.getItemsetRepresentation() == C.REPR_TREESET) return treeset;
@@ -390,15 +663,21 @@ public class FileFormatHandler
    @SuppressWarnings("unchecked")
    public static void readBoolFile(String file, BitSet extra)
    {
-      FileFormatHandler.first_call 	= true;
-      FileFormatHandler.attr_number	= 0;
-      FileFormatHandler.obj_number	= 0;
+      state().first_call 	= true;
+      state().attr_number	= 0;
+      state().obj_number	= 0;
       //
       String line;
       int currentLine 	= 0;					// which line we have read from the file
       Vector database 	= new Vector();
       // boolean pos0		= extra.get(C.X_POS0); // Not used anymore
       int objCnt 			= 0;
+      
+      if (Global.getItemsetRepresentation() == C.REPR_BITSET) {
+         readBoolFileMapped(file);
+         return;
+      }
+      // else
 
       try {
          BufferedReader in = new BufferedReader(new FileReader(file));
@@ -420,6 +699,104 @@ public class FileFormatHandler
       Database.setNumberOfObjects(objCnt);
       Database.setDatabase(database, C.DBR_HORIZONTAL);
    }
+   
+   /**
+    * Reads in a file in bool format, like readBoolFile(), but the file is
+    * memory-mapped and the zeros and ones are read directly from the bytes.
+    * A line that is not simple (e.g. it has an illegal character or a different
+    * length) is given to parseBoolLine(), thus the errors are reported the same way.
+    * 
+    * Only for the BitSet representation. For the vertical miners the lines go
+    * directly to the vertical representation (see isVerticalIngest()).
+    * 
+    * @param file Name of the input file.
+    */
+   private static void readBoolFileMapped(String file)
+   {
+      String line;
+      int currentLine;
+      int objCnt = 0;
+      int length;
+      Vector<BitSet> database = new Vector<BitSet>();
+      VerticalIngest ingest = isVerticalIngest() ? new VerticalIngest(isF2Needed()) : null;
+
+      try {
+         MappedLineReader in = new MappedLineReader(file);
+         while (in.nextLine())
+         {
+            currentLine = in.getLineNumber();
+            length = scanBoolLine(in);
+            if (length == 0) continue;                 // empty line or remark
+            // else
+            if ((length > 0) && (state().first_call == false) && (length != state().attr_number)) {
+               length = -1;                            // parseBoolLine() reports it
+            }
+            if (length < 0)
+            {
+               line = in.getLine().trim();
+               if (line.startsWith("#") || (line.length()==0)) continue;
+               ++objCnt;
+               addObject(database, ingest, (BitSet) parseBoolLine(line, currentLine));
+               continue;
+            }
+            // else
+            if (state().first_call) {
+               state().attr_number = length;
+               state().first_call  = false;
+            }
+            ++objCnt;
+            addLineItems(database, ingest);
+            if (length > state().longestItemset)
+               state().longestItemset = length;
+         }
+         database.trimToSize();
+         in.close();
+      }
+      catch (FileNotFoundException fnfe) { Error.die(C.ERR_FILE_NOT_FOUND); }
+      catch (java.io.IOException ioe)    { Error.die(C.ERR_IO); }
+
+      Database.setNumberOfObjects(objCnt);
+      if (ingest != null) ingest.register();
+      else Database.setDatabase(database, C.DBR_HORIZONTAL);
+   }
+   
+   /**
+    * Reads the current line of a .bool file. The positions of the ones (starting
+    * from 1) are put in lineItems.
+    * 
+    * @param in The file, positioned on a line.
+    * @return The number of boolean values in the line; 0 if the line is empty or 
+    * it's a remark; -1 if the line must be parsed as a String.
+    */
+   private static int scanBoolLine(MappedLineReader in)
+   {
+      FileFormatHandler state = state();
+      int i = in.start(), end = in.end();
+      int length = 0, ones = 0;
+      byte b;
+      
+      while ((i < end) && isBlank(in.get(i))) ++i;
+      if (i == end) return 0;
+      if (in.get(i) == '#') return 0;
+      // else
+      for (; i < end; ++i)
+      {
+         b = in.get(i);
+         if (b == '1')
+         {
+            ++length;
+            if (ones == state.lineItems.length) {
+               state.lineItems = Arrays.copyOf(state.lineItems, 2 * ones);
+            }
+            state.lineItems[ones++] = length;
+         }
+         else if (b == '0') ++length;
+         else if (isBlank(b) == false) return -1;
+      }
+      state.lineCount = ones;
+      state.lineMax   = length;
+      return length;
+   }
 
    /** 
     * Prints the input file in .bool format (zeros and ones).
@@ -542,13 +919,13 @@ public class FileFormatHandler
       char c;
       
       // start: length check
-      if (FileFormatHandler.first_call) {
-         FileFormatHandler.attr_number = length;
-         FileFormatHandler.first_call 	= false;
+      if (state().first_call) {
+         state().attr_number = length;
+         state().first_call 	= false;
       }
       else /* if not the first call (not the first line */ 
-         if (length != FileFormatHandler.attr_number) 
-            Error.dieBoolUnequalLineLength(currentLine, FileFormatHandler.attr_number, length);
+         if (length != state().attr_number) 
+            Error.dieBoolUnequalLineLength(currentLine, state().attr_number, length);
       // end: length check
 
       if (Global.getItemsetRepresentation() == C.REPR_BITSET)
@@ -583,8 +960,8 @@ public class FileFormatHandler
       }
             
       // the cardinality of the bitset is equal to "length"
-      if (length > FileFormatHandler.longestItemset)
-         FileFormatHandler.longestItemset = length;
+      if (length > state().longestItemset)
+         state().longestItemset = length;
 
       if      (Global.getItemsetRepresentation() == C.REPR_BITSET)  return bitset;
       else if (Global.getItemsetRepresentation() == C.REPR_TREESET) return treeset;
@@ -611,13 +988,13 @@ public class FileFormatHandler
       char c;
       
       // start: length check
-      if (FileFormatHandler.first_call) {
-         FileFormatHandler.attr_number = length;
-         FileFormatHandler.first_call  = false;
+      if (state().first_call) {
+         state().attr_number = length;
+         state().first_call  = false;
       }
       else /* if not the first call (not the first line */ 
-         if (length != FileFormatHandler.attr_number) 
-            Error.dieBoolUnequalLineLength(currentLine, FileFormatHandler.attr_number, length);
+         if (length != state().attr_number) 
+            Error.dieBoolUnequalLineLength(currentLine, state().attr_number, length);
       // end: length check
 
       if (Global.getItemsetRepresentation() == C.REPR_BITSET)
@@ -649,8 +1026,8 @@ public class FileFormatHandler
       }
             
       // the cardinality of the bitset is equal to "length"
-      if (length > FileFormatHandler.longestItemset)
-         FileFormatHandler.longestItemset = length;
+      if (length > state().longestItemset)
+         state().longestItemset = length;
 
       if      (Global.getItemsetRepresentation() == C.REPR_BITSET)  return bitset;
       else if (Global.getItemsetRepresentation() == C.REPR_TREESET) return treeset;
@@ -672,9 +1049,9 @@ public class FileFormatHandler
    @SuppressWarnings("unchecked")
    public static void readRcfFile(String file, BitSet extra)
    {
-      FileFormatHandler.first_call 	= true;
-      FileFormatHandler.attr_number	= 0;
-      FileFormatHandler.obj_number	= 0;
+      state().first_call 	= true;
+      state().attr_number	= 0;
+      state().obj_number	= 0;
       //
       String line;
       int currentLine 	= 0;					// which line we have read from the file
@@ -694,7 +1071,7 @@ public class FileFormatHandler
             if (line.equals("[END Relational Context]")) break;
             if (line.startsWith("#") || (line.length()==0)) continue;	// skip empty lines and remarks
             //
-            ++FileFormatHandler.obj_number;
+            ++state().obj_number;
             ++objCnt;
             database.add(parseBoolLine(line, currentLine));
             //database.add(parseBoolLine(line, currentLine, pos0));
@@ -716,9 +1093,9 @@ public class FileFormatHandler
        * object names list and attribute list names (which are just before the
        * boolean table in the .rcf file).
        */
-      int found_obj 			= FileFormatHandler.obj_number,
+      int found_obj 			= state().obj_number,
       	 should_be_obj		= Database.getObjNumber(),
-      	 found_attr			= FileFormatHandler.attr_number,
+      	 found_attr			= state().attr_number,
       	 should_be_attr	= Database.getAttrNumber();
       
       if (found_obj != should_be_obj) 		Error.dieRcfTable(C.RCF_OBJ_DIFF, file, found_obj, should_be_obj);
@@ -12,52 +12,61 @@ import java.util.BitSet;
 public class Global
 {  
    /**
-    * Empty private constructor. The class cannot be instantiated.
+    * Constructor. The options of a new context (see Context).
     */
-   private Global() { }
+   Global() {
+      this.init();
+   }
+   
+   /**
+    * @return The options of the current context.
+    */
+   private static Global state() {
+      return Context.current().global;
+   }
    
    /**
     * Verbosity levels.
     */
-   private static BitSet verbosity;
+   private BitSet verbosity;
    
    /**
     * Extra options (like ordering, Apriori mode).
     */
-   private static BitSet extra;
+   private BitSet extra;
    
    /**
     * Options concerning the rule generation.
     * It is here because of AssRuleX.
     */
-   private static BitSet rules;
+   private BitSet rules;
    
    /**
     * Which algorithm was chosen for the mining process.
     */
-   private static int algorithm;
+   private int algorithm;
    
    /**
     * What kind of rules are to be extracted.
     * It's here because of AssRuleX.
     */
-   private static int rule;
+   private int rule;
    
    /**
     * If it's true, then the user wants extra information about the execution
     * of the program: which function is called, what's happening.
     */
-   private static boolean followFunctions; 
+   private boolean followFunctions; 
    
    /**
     * Similar to "followunctions". Monitoring memory usage.
     */
-   private static boolean memInfo;
+   private boolean memInfo;
    
    /**
     * Are itemsets represented as BitSets (default) or TreeSets?
     */
-   private static int itemset_representation;
+   private int itemset_representation;
    
    /**
     * Don't calculate frequent 2-itemsets.
@@ -71,7 +80,93 @@ public class Global
     * Default behaviour changed. By default, the F2 matrix is DISABLED.
     * If you want to use, enable it explicitly with the switch -usef2.
     */
-   private static boolean useF2 = false;
+   private boolean useF2 = false;
+   
+   /**
+    * Does each IT-node choose its own representation, tidset or diffset,
+    * whichever is smaller (-adaptive)? Used by dTalky-G and dEclat.
+    * Default: false, i.e. tidsets at level 1 and diffsets below.
+    */
+   private boolean adaptive;
+   
+   /**
+    * Number of threads used by the mining algorithm (-threads:N).
+    * Default: 1, i.e. single-threaded search.
+    */
+   private int threads;
+   
+   /**
+    * How to store tidsets (-tidset:bitset|roaring).
+    * Default: C.TIDSET_BITSET.
+    */
+   private int tidset_representation;
+   
+   /**
+    * How to recode the attributes before the mining (-recode:given|asc|desc).
+    * Default: C.RECODE_NONE.
+    */
+   private int recoding;
+   
+   /**
+    * Are identical objects folded into one weighted object (-fold)?
+    * Default: false.
+    */
+   private boolean fold;
+   
+   /**
+    * Are the FGs written with their closures, grouped into equivalence classes (-closures)?
+    * Default: false.
+    */
+   private boolean closures;
+   
+   /**
+    * Number of FGs to find with the highest support (-topk:K).
+    * Default: 0, i.e. all the frequent generators are found.
+    */
+   private int topK;
+   
+   /**
+    * State file of a previous run, the input contains the new objects only (-incr:file).
+    * Default: null.
+    */
+   private String incrementalFile;
+   
+   /**
+    * The state of the run is saved in this file for a later incremental run (-save:file).
+    * Default: null.
+    */
+   private String saveFile;
+   
+   /**
+    * Is the index of the dataset built (-index)? Then the program stops after writing it.
+    * Default: false.
+    */
+   private boolean buildIndex;
+   
+   /**
+    * Checkpoints of the search are written in this file (-checkpoint:file).
+    * Default: null.
+    */
+   private String checkpointFile;
+   
+   /**
+    * Min. time between two checkpoints, in seconds (-checkpoint-every:sec).
+    * Default: 60.
+    */
+   private int checkpointInterval;
+   
+   /**
+    * The search gives up speed for memory when the tenured pool is more
+    * than this percent full (-memguard:percent). 0: off (-memguard:off).
+    * Default: 90.
+    */
+   private int memGuard;
+   
+   /**
+    * The metrics of the run are written in this file in JSON (-metrics:file).
+    * Default: null.
+    */
+   private String metricsFile;
    
    /**
     * If the user choose to redirect the result or not.
@@ -95,26 +190,38 @@ public class Global
    public final static BufferedWriter bufferedOutWriter = 
       new BufferedWriter(new OutputStreamWriter(System.out), 4096);
    
-   /*
-    * "constructor"
-    * 
-    *  reset() must do the same thing as this one
-    */ 
-   static {
-      reset();
+   /**
+    * Re-initialise the state of this class.
+    */
+   public static void reset() {
+      state().init();
    }
    
    /**
-    * Re-initialise the state of this class.
+    * Sets the default options.
     */
-   public static void reset()
+   private void init()
    {
-      Global.verbosity              = new BitSet();
-      Global.extra                  = new BitSet();
-      Global.rules                  = new BitSet();
-      Global.followFunctions        = false;
-      Global.rule                   = C.UNDEFINED;
-      Global.itemset_representation = C.REPR_BITSET;
+      this.verbosity              = new BitSet();
+      this.extra                  = new BitSet();
+      this.rules                  = new BitSet();
+      this.followFunctions        = false;
+      this.rule                   = C.UNDEFINED;
+      this.itemset_representation = C.REPR_BITSET;
+      this.threads                = 1;
+      this.tidset_representation  = C.TIDSET_BITSET;
+      this.adaptive               = false;
+      this.recoding               = C.RECODE_NONE;
+      this.fold                   = false;
+      this.closures               = false;
+      this.topK                   = 0;
+      this.incrementalFile        = null;
+      this.saveFile               = null;
+      this.buildIndex             = false;
+      this.checkpointFile         = null;
+      this.checkpointInterval     = 60;
+      this.memGuard               = 90;
+      this.metricsFile            = null;
    }
    
    // ***********************************************************************
@@ -126,7 +233,7 @@ public class Global
     * @return Returns the verbosity.
     */
    public static BitSet getVerbosity() {
-      return verbosity;
+      return state().verbosity;
    }
    
    /**
@@ -135,7 +242,7 @@ public class Global
     * @param verbosity The verbosity to set.
     */
    public static void setVerbosity(BitSet verbosity) {
-      Global.verbosity = verbosity;
+      state().verbosity = verbosity;
    }
    
    /**
@@ -144,7 +251,7 @@ public class Global
     * @return Returns the extra.
     */
    public static BitSet getExtra() {
-      return extra;
+      return state().extra;
    }
    
    /**
@@ -153,7 +260,7 @@ public class Global
     * @param extra The extra to set.
     */
    public static void setExtra(BitSet extra) {
-      Global.extra = extra;
+      state().extra = extra;
    }
    
    /**
@@ -162,7 +269,7 @@ public class Global
     * @return Returns the rules.
     */
    public static BitSet getRules() {
-      return rules;
+      return state().rules;
    }
    
    /**
@@ -171,7 +278,7 @@ public class Global
     * @param rules The rules to set.
     */
    public static void setMethods(BitSet rules) {
-      Global.rules = rules;
+      state().rules = rules;
    }
 
    /**
@@ -180,14 +287,14 @@ public class Global
     * @param bit A bit which is to set '1' in extra.
     */
    public static void setExtraValue(int bit) {
-      Global.extra.set(bit);
+      state().extra.set(bit);
    }
    
    /**
     * @return Returns the algorithm.
     */
    public static int getAlgorithm() {
-      return algorithm;
+      return state().algorithm;
    }
    
    /**
@@ -195,7 +302,7 @@ public class Global
     */
    public static String getAlgorithmStr() 
    {
-      switch (Global.algorithm)
+      switch (state().algorithm)
       {
          case C.ALG_APRIORI:           return "Apriori";
          case C.ALG_APRIORI_CLOSE:     return "Apriori-Close";
@@ -389,7 +496,7 @@ public class Global
     * @param algorithm The algorithm to set.
     */
    public static void setAlgorithm(int algorithm) {
-      Global.algorithm = algorithm;
+      state().algorithm = algorithm;
    }
 
    /**
@@ -401,10 +508,10 @@ public class Global
    public static void postModify()
    {
       if (Global.getVerbosity().get(C.V_FUNCTION))
-         Global.followFunctions = true;
+         state().followFunctions = true;
       //
       if (Global.getVerbosity().get(C.V_MEMORY))
-         Global.memInfo = true;
+         state().memInfo = true;
    }
    
    /**
@@ -413,7 +520,7 @@ public class Global
     * @return Return true, if "followFunctions" is on.
     */
    public static boolean followFunctions() {
-      return Global.followFunctions;
+      return state().followFunctions;
    }
    
    /**
@@ -422,14 +529,14 @@ public class Global
     * @return Return true, if "memInfo" is on.
     */
    public static boolean memInfo() {
-      return Global.memInfo;
+      return state().memInfo;
    }
    
    /**
     * @return Returns the rule.
     */
    public static int getRule() {
-      return Global.rule;
+      return state().rule;
    }
    
 
@@ -437,14 +544,14 @@ public class Global
     * @param rule The rule to set.
     */
    public static void setRule(int rule) {
-      Global.rule = rule;
+      state().rule = rule;
    }
 
    /**
     * @return Returns the itemset_representation.
     */
    public static int getItemsetRepresentation() {
-      return Global.itemset_representation;
+      return state().itemset_representation;
    }
    
 
@@ -452,7 +559,7 @@ public class Global
     * @param itemset_representation The itemset_representation to set.
     */
    public static void setItemsetRepresentation(int itemset_representation) {
-      Global.itemset_representation = itemset_representation;
+      state().itemset_representation = itemset_representation;
    }
 
    /**
@@ -472,11 +579,207 @@ public class Global
    //}
    
    public static boolean getUseF2() {
-      return Global.useF2;
+      return state().useF2;
    }
    
    public static void setUseF2() {
-      Global.useF2 = true;
+      state().useF2 = true;
+   }
+   
+   /**
+    * @return True, if each IT-node chooses between tidset and diffset.
+    */
+   public static boolean getAdaptive() {
+      return state().adaptive;
+   }
+   
+   /**
+    * Each IT-node will choose between tidset and diffset.
+    */
+   public static void setAdaptive() {
+      state().adaptive = true;
+   }
+   
+   /**
+    * @return Number of threads used by the mining algorithm.
+    */
+   public static int getThreads() {
+      return state().threads;
+   }
+   
+   /**
+    * @param threads Number of threads used by the mining algorithm.
+    */
+   public static void setThreads(int threads) {
+      state().threads = threads;
+   }
+   
+   /**
+    * @return How tidsets are stored (C.TIDSET_BITSET or C.TIDSET_ROARING).
+    */
+   public static int getTidsetRepresentation() {
+      return state().tidset_representation;
+   }
+   
+   /**
+    * @param tidset_representation How tidsets are stored (C.TIDSET_BITSET or C.TIDSET_ROARING).
+    */
+   public static void setTidsetRepresentation(int tidset_representation) {
+      state().tidset_representation = tidset_representation;
+   }
+   
+   /**
+    * @return How the attributes are recoded (C.RECODE_NONE, C.RECODE_GIVEN, C.RECODE_ASC or C.RECODE_DESC).
+    */
+   public static int getRecoding() {
+      return state().recoding;
+   }
+   
+   /**
+    * @param recoding How the attributes are recoded (C.RECODE_GIVEN, C.RECODE_ASC or C.RECODE_DESC).
+    */
+   public static void setRecoding(int recoding) {
+      state().recoding = recoding;
+   }
+   
+   /**
+    * @return True, if identical objects are folded into one weighted object.
+    */
+   public static boolean getFold() {
+      return state().fold;
+   }
+   
+   /**
+    * Identical objects will be folded into one weighted object.
+    */
+   public static void setFold() {
+      state().fold = true;
+   }
+   
+   /**
+    * @return True, if the FGs are written with their closures, grouped into equivalence classes.
+    */
+   public static boolean getClosures() {
+      return state().closures;
+   }
+   
+   /**
+    * The FGs will be written with their closures, grouped into equivalence classes.
+    */
+   public static void setClosures() {
+      state().closures = true;
+   }
+   
+   /**
+    * @return Number of FGs to find with the highest support (0: all the FGs).
+    */
+   public static int getTopK() {
+      return state().topK;
+   }
+   
+   /**
+    * @param topK Number of FGs to find with the highest support.
+    */
+   public static void setTopK(int topK) {
+      state().topK = topK;
+   }
+   
+   /**
+    * @return State file of a previous run (null if the run is not incremental).
+    */
+   public static String getIncrementalFile() {
+      return state().incrementalFile;
+   }
+   
+   /**
+    * @param incrementalFile State file of a previous run.
+    */
+   public static void setIncrementalFile(String incrementalFile) {
+      state().incrementalFile = incrementalFile;
+   }
+   
+   /**
+    * @return The state of the run is saved in this file (null if it's not saved).
+    */
+   public static String getSaveFile() {
+      return state().saveFile;
+   }
+   
+   /**
+    * @param saveFile The state of the run is saved in this file.
+    */
+   public static void setSaveFile(String saveFile) {
+      state().saveFile = saveFile;
+   }
+   
+   /**
+    * @return True, if the index of the dataset is built.
+    */
+   public static boolean getBuildIndex() {
+      return state().buildIndex;
+   }
+   
+   /**
+    * The index of the dataset will be built (then the program stops).
+    */
+   public static void setBuildIndex() {
+      state().buildIndex = true;
+   }
+   
+   /**
+    * @return Checkpoints of the search are written in this file (null if there are no checkpoints).
+    */
+   public static String getCheckpointFile() {
+      return state().checkpointFile;
+   }
+   
+   /**
+    * @param checkpointFile Checkpoints of the search are written in this file.
+    */
+   public static void setCheckpointFile(String checkpointFile) {
+      state().checkpointFile = checkpointFile;
+   }
+   
+   /**
+    * @return Min. time between two checkpoints (in seconds).
+    */
+   public static int getCheckpointInterval() {
+      return state().checkpointInterval;
+   }
+   
+   /**
+    * @param checkpointInterval Min. time between two checkpoints (in seconds).
+    */
+   public static void setCheckpointInterval(int checkpointInterval) {
+      state().checkpointInterval = checkpointInterval;
+   }
+   
+   /**
+    * @return Threshold of the memory guard, in percent of the tenured pool (0: off).
+    */
+   public static int getMemGuard() {
+      return state().memGuard;
+   }
+   
+   /**
+    * @param memGuard Threshold of the memory guard, in percent of the tenured pool (0: off).
+    */
+   public static void setMemGuard(int memGuard) {
+      state().memGuard = memGuard;
+   }
+   
+   /**
+    * @return The metrics of the run are written in this file (null if they are not collected).
+    */
+   public static String getMetricsFile() {
+      return state().metricsFile;
+   }
+   
+   /**
+    * @param metricsFile The metrics of the run are written in this file.
+    */
+   public static void setMetricsFile(String metricsFile) {
+      state().metricsFile = metricsFile;
    }
    
    /**
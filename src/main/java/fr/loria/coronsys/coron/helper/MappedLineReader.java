@@ -0,0 +1,234 @@
+package fr.loria.coronsys.coron.helper;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Reads the lines of a file through a memory-mapped FileChannel. The bytes
+ * of the current line can be read directly from the mapped buffer, nothing
+ * is copied and no String is created.
+ *
+ * Lines are terminated by '\n', '\r' or "\r\n", like in BufferedReader.readLine().
+ * The file is mapped in windows (a buffer cannot be larger than 2 GB). A window
+ * always starts at the beginning of a line.
+ *
+ * Usage:
+ *
+ * MappedLineReader in = new MappedLineReader(file);
+ * while (in.nextLine()) {
+ *    for (int i = in.start(); i < in.end(); ++i) ... in.get(i) ...
+ * }
+ * in.close();
+ */
+public class MappedLineReader
+{
+   /**
+    * Default size of a window.
+    */
+   private final static int WINDOW_SIZE = 1 << 28;
+
+   /**
+    * The input stream of the file.
+    */
+   private FileInputStream stream;
+
+   /**
+    * The channel of the file.
+    */
+   private FileChannel channel;
+
+   /**
+    * Size of the file.
+    */
+   private long fileSize;
+
+   /**
+    * Size of a window.
+    */
+   private int windowSize;
+
+   /**
+    * The current window.
+    */
+   private MappedByteBuffer window;
+
+   /**
+    * Position of the current window in the file.
+    */
+   private long windowPos;
+
+   /**
+    * Start of the current line in the window.
+    */
+   private int start;
+
+   /**
+    * End of the current line in the window (without the line terminator).
+    */
+   private int end;
+
+   /**
+    * Start of the next line in the window.
+    */
+   private int next;
+
+   /**
+    * Number of the current line (starting from 1).
+    */
+   private int lineNumber;
+
+   /**
+    * Constructor.
+    *
+    * @param file Name of the file.
+    * @throws IOException If the file cannot be opened or mapped.
+    */
+   public MappedLineReader(String file) throws IOException {
+      this(file, WINDOW_SIZE);
+   }
+
+   /**
+    * Constructor.
+    *
+    * @param file Name of the file.
+    * @param windowSize Size of a window (it grows if a line is longer).
+    * @throws IOException If the file cannot be opened or mapped.
+    */
+   MappedLineReader(String file, int windowSize) throws IOException
+   {
+      this.stream     = new FileInputStream(file);
+      this.channel    = this.stream.getChannel();
+      this.fileSize   = this.channel.size();
+      this.windowSize = windowSize;
+      this.lineNumber = 0;
+      this.map(0);
+   }
+
+   /**
+    * Maps a window.
+    *
+    * @param pos Position of the window in the file.
+    * @throws IOException If the file cannot be mapped.
+    */
+   private void map(long pos) throws IOException
+   {
+      long size = Math.min(this.windowSize, this.fileSize - pos);
+      this.window    = this.channel.map(FileChannel.MapMode.READ_ONLY, pos, size);
+      this.windowPos = pos;
+      this.next      = 0;
+   }
+
+   /**
+    * @return True, if the current window ends at the end of the file.
+    */
+   private boolean isLastWindow() {
+      return (this.windowPos + this.window.limit() == this.fileSize);
+   }
+
+   /**
+    * Steps to the next line.
+    *
+    * @return False, if there are no more lines.
+    * @throws IOException If the file cannot be mapped.
+    */
+   public boolean nextLine() throws IOException
+   {
+      while (true)
+      {
+         int limit = this.window.limit();
+         if ((this.next == limit) && this.isLastWindow()) {
+            return false;
+         }
+         // else: look for the end of the line
+         int i = this.next;
+         byte b = 0;
+         while (i < limit)
+         {
+            b = this.window.get(i);
+            if ((b == '\n') || (b == '\r')) break;
+            ++i;
+         }
+         // a line is complete if it has a terminator (and in the case of '\r', we see the next byte too),
+         // or if it's the last line of the file
+         boolean complete = ((i < limit) && ((b == '\n') || (i + 1 < limit))) || this.isLastWindow();
+         if (complete)
+         {
+            this.start = this.next;
+            this.end   = i;
+            if (i < limit)
+            {
+               ++i;
+               if ((b == '\r') && (i < limit) && (this.window.get(i) == '\n')) ++i;
+            }
+            this.next = i;
+            ++this.lineNumber;
+            return true;
+         }
+         // else: the line continues in the next window
+         if (this.next == 0) {
+            // the line is longer than a window
+            this.windowSize = (int) Math.min(Integer.MAX_VALUE, 2L * this.windowSize);
+         }
+         this.map(this.windowPos + this.next);
+      }
+   }
+
+   /**
+    * @return Index of the first byte of the current line.
+    */
+   public int start() {
+      return this.start;
+   }
+
+   /**
+    * @return Index after the last byte of the current line (without the line terminator).
+    */
+   public int end() {
+      return this.end;
+   }
+
+   /**
+    * @param i An index between start() and end().
+    * @return The byte at the given index.
+    */
+   public byte get(int i) {
+      return this.window.get(i);
+   }
+
+   /**
+    * @return Number of the current line (starting from 1).
+    */
+   public int getLineNumber() {
+      return this.lineNumber;
+   }
+
+   /**
+    * The current line as a String (decoded with the default charset, like FileReader does).
+    * Used if the line needs special treatment, e.g. in case of an error.
+    *
+    * @return The current line.
+    */
+   public String getLine()
+   {
+      byte[] bytes = new byte[this.end - this.start];
+      for (int i = 0; i < bytes.length; ++i) {
+         bytes[i] = this.window.get(this.start + i);
+      }
+      return new String(bytes, Charset.defaultCharset());
+   }
+
+   /**
+    * Closes the file.
+    *
+    * @throws IOException If closing fails.
+    */
+   public void close() throws IOException
+   {
+      this.window = null;
+      this.channel.close();
+      this.stream.close();
+   }
+}
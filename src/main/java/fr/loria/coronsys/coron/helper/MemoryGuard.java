@@ -0,0 +1,218 @@
+package fr.loria.coronsys.coron.helper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Memory-pressure guard of a sequential FG search (switch -memguard).
+ *
+ * A MemoryWarningSystem notifies the guard when the usage of the tenured
+ * pool exceeds the given percentage of its max. size. The notification
+ * arrives on a JMX thread, thus it only sets a flag; the search polls the
+ * guard at a safe point (when an FG is saved) and gives up some speed for
+ * memory. Each notification is answered by the next step:
+ *
+ *    1. the buffered output is handed over to the writer (FLUSH_OUTPUT);
+ *    2. the intents of the FG store are moved to a memory-mapped temporary
+ *       file, and from then on the store keeps moving them (SPILL_FGS);
+ *    3. the F_2 matrix is dropped, the supports of 2-itemsets are
+ *       computed from the tidsets (DROP_F2);
+ *    4. each new node stores a tidset or a diffset, whichever is smaller,
+ *       like with -adaptive (SMALLER_EXTENTS).
+ *
+ * The usage threshold of the JVM is global. If several jobs run with a guard
+ * (see Context), the threshold is the smallest percentage of their guards, and
+ * each guard compares the usage with its own percentage when it's notified.
+ *
+ * If a step has nothing to do in a search (e.g. the F_2 matrix is not used),
+ * the search skips it and takes the next one. The result is the same, only
+ * the run is slower. Each step is logged on the standard error.
+ */
+public class MemoryGuard
+implements MemoryWarningSystem.Listener
+{
+   /**
+    * No step to take.
+    */
+   public final static int NONE = 0;
+
+   /**
+    * Step 1: flush the buffered output.
+    */
+   public final static int FLUSH_OUTPUT = 1;
+
+   /**
+    * Step 2: spill the FG store to disk.
+    */
+   public final static int SPILL_FGS = 2;
+
+   /**
+    * Step 3: drop the F_2 matrix.
+    */
+   public final static int DROP_F2 = 3;
+
+   /**
+    * Step 4: new nodes store the smaller of their tidset and diffset.
+    */
+   public final static int SMALLER_EXTENTS = 4;
+
+   /**
+    * The warning system. There is only one, the usage threshold is global.
+    */
+   private static MemoryWarningSystem system;
+
+   /**
+    * The guards that were started and not stopped yet (guarded by MemoryGuard.class).
+    */
+   private final static List<MemoryGuard> guards = new ArrayList<MemoryGuard>();
+
+   /**
+    * The usage threshold of this guard (fraction of the max. size of the tenured pool).
+    */
+   private final double percentage;
+
+   /**
+    * The last step that was taken.
+    */
+   private int step;
+
+   /**
+    * Set by a notification, cleared when the next step is taken.
+    */
+   private volatile boolean pressure;
+
+   /**
+    * Used memory of the tenured pool at the last notification.
+    */
+   private volatile long used;
+
+   /**
+    * Max. memory of the tenured pool at the last notification.
+    */
+   private volatile long max;
+
+   /**
+    * Constructor.
+    *
+    * @param percentage The usage threshold (fraction of the max. size of the tenured pool).
+    */
+   private MemoryGuard(double percentage)
+   {
+      this.percentage = percentage;
+      this.step       = NONE;
+      this.pressure   = false;
+   }
+
+   /**
+    * Starts a guard with the threshold of -memguard.
+    *
+    * @return The guard, or null if the guard is switched off (-memguard:off) or
+    * the JVM cannot watch the tenured pool.
+    */
+   public static MemoryGuard start()
+   {
+      if (Global.getMemGuard() == 0) return null;
+      // else
+      MemoryGuard guard = new MemoryGuard(Global.getMemGuard() / 100.0);
+      try
+      {
+         synchronized (MemoryGuard.class)
+         {
+            if (system == null) system = new MemoryWarningSystem();
+            guards.add(guard);
+            try {
+               updateThreshold();
+            }
+            catch (RuntimeException e)
+            {
+               guards.remove(guard);
+               throw e;
+            }
+            system.addListener(guard);
+         }
+      }
+      catch (Throwable e)
+      {
+         // e.g. no heap pool supports usage thresholds, or its max. size is undefined
+         if (Global.followFunctions()) System.err.println("> The memory guard is not available in this JVM.");
+         return null;
+      }
+      return guard;
+   }
+
+   /**
+    * Stops the guard (the search is finished).
+    */
+   public void stop()
+   {
+      synchronized (MemoryGuard.class)
+      {
+         system.removeListener(this);
+         guards.remove(this);
+         if (guards.isEmpty() == false) updateThreshold();
+      }
+   }
+
+   /**
+    * Sets the usage threshold of the JVM to the smallest percentage of the
+    * running guards. Called with the lock of MemoryGuard.class.
+    */
+   private static void updateThreshold()
+   {
+      double min = 1.0;
+      for (MemoryGuard guard : guards) {
+         min = Math.min(min, guard.percentage);
+      }
+      MemoryWarningSystem.setPercentageUsageThreshold(min);
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.helper.MemoryWarningSystem.Listener#memoryUsageLow(long, long)
+    */
+   public void memoryUsageLow(long usedMemory, long maxMemory)
+   {
+      // the threshold can be lower than the percentage of this guard (another job's)
+      if (usedMemory < this.percentage * maxMemory) return;
+      // else
+      this.used     = usedMemory;
+      this.max      = maxMemory;
+      this.pressure = true;
+   }
+
+   /**
+    * Called by the search at a safe point.
+    *
+    * @return The next step to take, or NONE if there was no notification since
+    * the last call (or all the steps were taken).
+    */
+   public int nextStep()
+   {
+      if (this.pressure == false) return NONE;
+      // else
+      this.pressure = false;
+      return this.skipStep();
+   }
+
+   /**
+    * Called by the search if the last step had nothing to do.
+    *
+    * @return The step after the last one, or NONE if all the steps were taken.
+    */
+   public int skipStep()
+   {
+      if (this.step == SMALLER_EXTENTS) return NONE;
+      // else
+      return ++this.step;
+   }
+
+   /**
+    * Logs a step that was taken.
+    *
+    * @param what Description of the step.
+    */
+   public void log(String what)
+   {
+      System.err.println("> Memory pressure (used "+Convert.byteToPrettyString(this.used)+" of "
+                         +Convert.byteToPrettyString(this.max)+" bytes): "+what+".");
+   }
+}
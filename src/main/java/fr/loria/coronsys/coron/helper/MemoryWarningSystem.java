@@ -3,6 +3,7 @@ package fr.loria.coronsys.coron.helper;
 import javax.management.*;
 import java.lang.management.*;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * This memory warning system will call the listener when we exceed the
@@ -10,12 +11,20 @@ import java.util.*;
  * of this object created, since the usage threshold can only be set to one
  * number.
  * 
+ * The listeners are called when the usage crosses the threshold, and after
+ * each garbage collection that leaves the usage above it (if the pool
+ * supports collection usage thresholds), i.e. as long as the memory is low.
+ * 
  * From: 2004-07-20 The Java Specialists' Newsletter [Issue 092] -
  * OutOfMemoryError Warning System Author: Dr. Heinz M. Kabutz
  */
 public class MemoryWarningSystem
 {
-   private final Collection<Listener> listeners = new ArrayList<Listener>();
+   /**
+    * The listeners are notified on a JMX thread, while other threads add and
+    * remove listeners (several jobs can run in a JVM), thus it's a copy-on-write list.
+    */
+   private final Collection<Listener> listeners = new CopyOnWriteArrayList<Listener>();
 
    /**
     * @author szathmar
@@ -41,7 +50,9 @@ public class MemoryWarningSystem
          public void handleNotification(Notification n, Object hb)
          {
             if (n.getType().equals(
-                  MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED))
+                  MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED) ||
+                n.getType().equals(
+                  MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED))
             {
                long maxMemory = tenuredGenPool.getUsage().getMax();
                long usedMemory = tenuredGenPool.getUsage().getUsed();
@@ -87,6 +98,9 @@ public class MemoryWarningSystem
       long maxMemory = tenuredGenPool.getUsage().getMax();
       long warningThreshold = (long) (maxMemory * percentage);
       tenuredGenPool.setUsageThreshold(warningThreshold);
+      if (tenuredGenPool.isCollectionUsageThresholdSupported()) {
+         tenuredGenPool.setCollectionUsageThreshold(warningThreshold);
+      }
    }
 
    /**
@@ -0,0 +1,529 @@
+package fr.loria.coronsys.coron.helper;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters of the miners (switch -metrics): candidates generated and pruned
+ * per level, patterns per level, lookups in the FG store, nodes of the IT-tree
+ * and bytes written to the output.
+ *
+ * The counters are switched on by start(). Then they are exposed as a JMX
+ * MBean (fr.loria.coronsys.coron:type=Metrics), and at the end of the run
+ * writeReport() writes them in a JSON file together with the phases of
+ * PhaseTimer. If the counters are off, the miners only test a flag.
+ * The counters are atomic, thus they can be updated by the threads of a
+ * parallel search.
+ *
+ * Like PhaseTimer, the state is static; it is cleared by Reset.reset().
+ */
+public class Metrics
+implements MetricsMBean
+{
+   /**
+    * Candidates (combined pairs of nodes).
+    */
+   public final static int CANDIDATES = 0;
+
+   /**
+    * Candidates pruned by the F_2 matrix.
+    */
+   public final static int PRUNED_F2 = 1;
+
+   /**
+    * Candidates pruned by the min. support.
+    */
+   public final static int PRUNED_SUPPORT = 2;
+
+   /**
+    * Candidates pruned by the generator test (a subset with the same support).
+    */
+   public final static int PRUNED_GENERATOR = 3;
+
+   /**
+    * Patterns saved by the miner. In a parallel search and with -topk some of
+    * them are dropped later.
+    */
+   public final static int PATTERNS = 4;
+
+   /**
+    * Names of the counters in the report.
+    */
+   private final static String[] NAMES = { "candidates", "prunedByF2", "prunedBySupport", "prunedByGeneratorTest", "patterns" };
+
+   /**
+    * Number of levels that are counted separately. Deeper levels are counted at the last one.
+    */
+   private final static int LEVELS = 128;
+
+   /**
+    * Name of the MBean.
+    */
+   private final static String MBEAN_NAME = "fr.loria.coronsys.coron:type=Metrics";
+
+   /**
+    * Are the counters on?
+    */
+   private static boolean on = false;
+
+   /**
+    * counters[c]: position i is the counter c at level i.
+    */
+   private static AtomicLongArray[] counters = newCounters();
+
+   /**
+    * Lookups in the FG store.
+    */
+   private static AtomicLong storeLookups = new AtomicLong();
+
+   /**
+    * Slots visited by the lookups in the FG store.
+    */
+   private static AtomicLong storeProbes = new AtomicLong();
+
+   /**
+    * Longest probe sequence in the FG store.
+    */
+   private static AtomicLong storeMaxProbe = new AtomicLong();
+
+   /**
+    * Bucket scans in the FG store.
+    */
+   private static AtomicLong storeScans = new AtomicLong();
+
+   /**
+    * Itemsets visited by the bucket scans in the FG store.
+    */
+   private static AtomicLong storeScanned = new AtomicLong();
+
+   /**
+    * Longest bucket scan in the FG store.
+    */
+   private static AtomicLong storeMaxScan = new AtomicLong();
+
+   /**
+    * Nodes in the IT-tree.
+    */
+   private static AtomicLong nodes = new AtomicLong();
+
+   /**
+    * Max. number of nodes in the IT-tree.
+    */
+   private static AtomicLong peakNodes = new AtomicLong();
+
+   /**
+    * Bytes written to the output.
+    */
+   private static AtomicLong outputBytes = new AtomicLong();
+
+   /**
+    * Private constructor. The only instance is the MBean.
+    */
+   private Metrics() {
+   }
+
+   /**
+    * @return New (zero) counters.
+    */
+   private static AtomicLongArray[] newCounters()
+   {
+      AtomicLongArray[] arrays = new AtomicLongArray[NAMES.length];
+      for (int c = 0; c < arrays.length; ++c) {
+         arrays[c] = new AtomicLongArray(LEVELS);
+      }
+      return arrays;
+   }
+
+   /**
+    * Switches the counters on and registers the MBean.
+    */
+   public static void start()
+   {
+      on = true;
+      try
+      {
+         MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+         ObjectName name = new ObjectName(MBEAN_NAME);
+         // in a loop of runs the MBean is registered only once
+         if (server.isRegistered(name) == false) {
+            server.registerMBean(new Metrics(), name);
+         }
+      }
+      catch (Exception e)
+      {
+         // the counters work without JMX too
+         if (Global.followFunctions()) System.err.println("> The metrics cannot be registered in JMX: "+e);
+      }
+   }
+
+   /**
+    * @return True, if the counters are on.
+    */
+   public static boolean isOn() {
+      return on;
+   }
+
+   /**
+    * Increments a counter.
+    *
+    * @param counter The counter (e.g. CANDIDATES).
+    * @param level Level of the itemset (its size).
+    */
+   public static void count(int counter, int level)
+   {
+      if (on == false) return;
+      // else
+      counters[counter].incrementAndGet(Math.min(level, LEVELS - 1));
+   }
+
+   /**
+    * Registers a lookup in the FG store.
+    *
+    * @param probes Number of slots visited.
+    */
+   public static void storeProbe(int probes)
+   {
+      if (on == false) return;
+      // else
+      storeLookups.incrementAndGet();
+      storeProbes.addAndGet(probes);
+      raise(storeMaxProbe, probes);
+   }
+
+   /**
+    * Registers a bucket scan in the FG store.
+    *
+    * @param scanned Number of itemsets visited.
+    */
+   public static void storeScan(int scanned)
+   {
+      if (on == false) return;
+      // else
+      storeScans.incrementAndGet();
+      storeScanned.addAndGet(scanned);
+      raise(storeMaxScan, scanned);
+   }
+
+   /**
+    * Registers nodes that were added to or deleted from the IT-tree.
+    *
+    * @param delta Number of the added nodes (negative if they were deleted).
+    */
+   public static void nodes(int delta)
+   {
+      if (on == false) return;
+      // else
+      raise(peakNodes, nodes.addAndGet(delta));
+   }
+
+   /**
+    * Registers bytes written to the output.
+    *
+    * @param bytes Number of bytes.
+    */
+   public static void output(long bytes)
+   {
+      if (on == false) return;
+      // else
+      outputBytes.addAndGet(bytes);
+   }
+
+   /**
+    * @param max A maximum.
+    * @param value A value. The maximum is raised to it if it's larger.
+    */
+   private static void raise(AtomicLong max, long value)
+   {
+      long curr;
+      while ((curr = max.get()) < value)
+      {
+         if (max.compareAndSet(curr, value)) return;
+      }
+   }
+
+   /**
+    * @param counter A counter (e.g. CANDIDATES).
+    * @return Its sum over the levels.
+    */
+   private static long total(int counter)
+   {
+      long sum = 0;
+      for (int i = 0; i < LEVELS; ++i) {
+         sum += counters[counter].get(i);
+      }
+      return sum;
+   }
+
+   /**
+    * @param counter A counter (e.g. CANDIDATES).
+    * @return Its value at each level, up to the deepest non-zero level.
+    */
+   private static long[] perLevel(int counter)
+   {
+      int size = 0;
+      for (int i = 0; i < LEVELS; ++i) {
+         if (counters[counter].get(i) != 0) size = i + 1;
+      }
+      long[] values = new long[size];
+      for (int i = 0; i < size; ++i) {
+         values[i] = counters[counter].get(i);
+      }
+      return values;
+   }
+
+   /**
+    * @return The metrics (and the phases of PhaseTimer) in JSON.
+    */
+   public static String toJson()
+   {
+      StringBuilder sb = new StringBuilder();
+      sb.append("{\n");
+      sb.append("  \"algorithm\": ").append(quote(Global.getAlgorithmStr())).append(",\n");
+      sb.append("  \"dataset\": ").append(quote(Database.getDatabaseFileStr())).append(",\n");
+      sb.append("  \"objects\": ").append(Database.getNumberOfObjects()).append(",\n");
+      sb.append("  \"minSupp\": ").append(Database.getMinSupp()).append(",\n");
+
+      sb.append("  \"phases\": {");
+      boolean first = true;
+      for (Map.Entry<String, Long> phase : PhaseTimer.getTimes().entrySet())
+      {
+         sb.append(first ? "\n" : ",\n");
+         first = false;
+         sb.append("    ").append(quote(phase.getKey())).append(": ")
+           .append(String.format(Locale.US, "%.3f", phase.getValue() / 1e9));
+      }
+      sb.append(first ? "},\n" : "\n  },\n");
+
+      for (int c = 0; c < NAMES.length; ++c) {
+         sb.append("  \"").append(NAMES[c]).append("\": ").append(total(c)).append(",\n");
+      }
+
+      int depth = 0;
+      for (int c = 0; c < NAMES.length; ++c) {
+         depth = Math.max(depth, perLevel(c).length);
+      }
+      sb.append("  \"levels\": [");
+      for (int level = 0; level < depth; ++level)
+      {
+         sb.append((level == 0) ? "\n" : ",\n");
+         sb.append("    { \"level\": ").append(level);
+         for (int c = 0; c < NAMES.length; ++c) {
+            sb.append(", \"").append(NAMES[c]).append("\": ").append(counters[c].get(level));
+         }
+         sb.append(" }");
+      }
+      sb.append((depth == 0) ? "],\n" : "\n  ],\n");
+
+      sb.append("  \"fgStore\": { \"lookups\": ").append(storeLookups.get())
+        .append(", \"probes\": ").append(storeProbes.get())
+        .append(", \"maxProbe\": ").append(storeMaxProbe.get())
+        .append(", \"scans\": ").append(storeScans.get())
+        .append(", \"scanned\": ").append(storeScanned.get())
+        .append(", \"maxScan\": ").append(storeMaxScan.get()).append(" },\n");
+      sb.append("  \"itTree\": { \"nodesAlive\": ").append(nodes.get())
+        .append(", \"peakNodesAlive\": ").append(peakNodes.get()).append(" },\n");
+      sb.append("  \"outputBytes\": ").append(outputBytes.get()).append("\n");
+      sb.append("}\n");
+      return sb.toString();
+   }
+
+   /**
+    * @param s A string (can be null).
+    * @return The string as a JSON value.
+    */
+   private static String quote(String s)
+   {
+      if (s == null) return "null";
+      // else
+      StringBuilder sb = new StringBuilder("\"");
+      char c;
+      for (int i = 0; i < s.length(); ++i)
+      {
+         c = s.charAt(i);
+         if ((c == '"') || (c == '\\')) sb.append('\\').append(c);
+         else if (c < 0x20)             sb.append(String.format("\\u%04x", (int) c));
+         else                           sb.append(c);
+      }
+      return sb.append('"').toString();
+   }
+
+   /**
+    * Writes the report (see toJson()). Exits with an error message if the file
+    * cannot be written.
+    *
+    * @param path Name of the file.
+    */
+   public static void writeReport(String path)
+   {
+      Writer out = null;
+      try
+      {
+         out = new OutputStreamWriter(new FileOutputStream(path), "UTF-8");
+         out.write(toJson());
+         out.close();
+         out = null;
+      }
+      catch (IOException e)
+      {
+         System.err.println("Error: cannot write the metrics "+path+": "+e.getMessage());
+         Error.die(C.ERR_JUST_EXIT);
+      }
+      finally
+      {
+         if (out != null)
+         {
+            try {
+               out.close();
+            }
+            catch (IOException e) { }
+         }
+      }
+   }
+
+   /**
+    * Switches the counters off and clears them. The MBean stays registered.
+    */
+   public static void reset()
+   {
+      on = false;
+      counters = newCounters();
+      storeLookups.set(0);
+      storeProbes.set(0);
+      storeMaxProbe.set(0);
+      storeScans.set(0);
+      storeScanned.set(0);
+      storeMaxScan.set(0);
+      nodes.set(0);
+      peakNodes.set(0);
+      outputBytes.set(0);
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.helper.MetricsMBean#getCandidates()
+    */
+   public long getCandidates() {
+      return total(CANDIDATES);
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.helper.MetricsMBean#getPrunedByF2()
+    */
+   public long getPrunedByF2() {
+      return total(PRUNED_F2);
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.helper.MetricsMBean#getPrunedBySupport()
+    */
+   public long getPrunedBySupport() {
+      return total(PRUNED_SUPPORT);
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.helper.MetricsMBean#getPrunedByGeneratorTest()
+    */
+   public long getPrunedByGeneratorTest() {
+      return total(PRUNED_GENERATOR);
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.helper.MetricsMBean#getPatterns()
+    */
+   public long getPatterns() {
+      return total(PATTERNS);
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.helper.MetricsMBean#getCandidatesPerLevel()
+    */
+   public long[] getCandidatesPerLevel() {
+      return perLevel(CANDIDATES);
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.helper.MetricsMBean#getPatternsPerLevel()
+    */
+   public long[] getPatternsPerLevel() {
+      return perLevel(PATTERNS);
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.helper.MetricsMBean#getStoreLookups()
+    */
+   public long getStoreLookups() {
+      return storeLookups.get();
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.helper.MetricsMBean#getStoreProbes()
+    */
+   public long getStoreProbes() {
+      return storeProbes.get();
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.helper.MetricsMBean#getStoreMaxProbe()
+    */
+   public long getStoreMaxProbe() {
+      return storeMaxProbe.get();
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.helper.MetricsMBean#getStoreScans()
+    */
+   public long getStoreScans() {
+      return storeScans.get();
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.helper.MetricsMBean#getStoreScanned()
+    */
+   public long getStoreScanned() {
+      return storeScanned.get();
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.helper.MetricsMBean#getStoreMaxScan()
+    */
+   public long getStoreMaxScan() {
+      return storeMaxScan.get();
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.helper.MetricsMBean#getNodesAlive()
+    */
+   public long getNodesAlive() {
+      return nodes.get();
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.helper.MetricsMBean#getPeakNodesAlive()
+    */
+   public long getPeakNodesAlive() {
+      return peakNodes.get();
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.helper.MetricsMBean#getOutputBytes()
+    */
+   public long getOutputBytes() {
+      return outputBytes.get();
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.helper.MetricsMBean#getReport()
+    */
+   public String getReport() {
+      return toJson();
+   }
+}
@@ -0,0 +1,94 @@
+package fr.loria.coronsys.coron.helper;
+
+/**
+ * Management interface of the metrics of a run (see Metrics). The values
+ * are live, they can be watched with a JMX console (e.g. jconsole) during
+ * the run.
+ */
+public interface MetricsMBean
+{
+   /**
+    * @return Number of candidates that were generated.
+    */
+   public long getCandidates();
+
+   /**
+    * @return Number of candidates pruned by the F_2 matrix.
+    */
+   public long getPrunedByF2();
+
+   /**
+    * @return Number of candidates pruned by the min. support.
+    */
+   public long getPrunedBySupport();
+
+   /**
+    * @return Number of candidates pruned by the generator test.
+    */
+   public long getPrunedByGeneratorTest();
+
+   /**
+    * @return Number of patterns that were saved.
+    */
+   public long getPatterns();
+
+   /**
+    * @return Position i: number of candidates at level i.
+    */
+   public long[] getCandidatesPerLevel();
+
+   /**
+    * @return Position i: number of patterns at level i.
+    */
+   public long[] getPatternsPerLevel();
+
+   /**
+    * @return Number of lookups in the FG store.
+    */
+   public long getStoreLookups();
+
+   /**
+    * @return Number of slots visited by the lookups in the FG store.
+    */
+   public long getStoreProbes();
+
+   /**
+    * @return Longest probe sequence in the FG store.
+    */
+   public long getStoreMaxProbe();
+
+   /**
+    * @return Number of bucket scans in the FG store.
+    */
+   public long getStoreScans();
+
+   /**
+    * @return Number of itemsets visited by the bucket scans in the FG store.
+    */
+   public long getStoreScanned();
+
+   /**
+    * @return Longest bucket scan in the FG store.
+    */
+   public long getStoreMaxScan();
+
+   /**
+    * @return Number of nodes in the IT-tree.
+    */
+   public long getNodesAlive();
+
+   /**
+    * @return Max. number of nodes in the IT-tree.
+    */
+   public long getPeakNodesAlive();
+
+   /**
+    * @return Number of bytes written to the output.
+    */
+   public long getOutputBytes();
+
+   /**
+    * @return The metrics in JSON.
+    */
+   public String getReport();
+}
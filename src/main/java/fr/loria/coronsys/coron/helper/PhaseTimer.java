@@ -0,0 +1,110 @@
+package fr.loria.coronsys.coron.helper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Measures the wall-clock time of the phases of a run (reading the
+ * dataset, counting F_2, vertical conversion, search).
+ *
+ * A phase lasts until the next phase begins or until end() is called.
+ * If the same phase is run several times, the times are added up.
+ * Like Database and Global, the state belongs to the context of the
+ * current thread (see Context); it is cleared by Reset.reset().
+ */
+public class PhaseTimer
+{
+   /**
+    * Reading the input file.
+    */
+   public static final String READ = "read";
+
+   /**
+    * Removing the infrequent attributes and renumbering the others (-recode).
+    */
+   public static final String RECODE = "recode";
+
+   /**
+    * Counting the support of the 2-itemsets.
+    */
+   public static final String F2 = "f2";
+
+   /**
+    * Converting the dataset from horizontal to vertical layout.
+    */
+   public static final String VERTICAL = "vertical";
+
+   /**
+    * Building the IT-tree and searching for the itemsets (writing the result included).
+    */
+   public static final String SEARCH = "search";
+
+   /**
+    * Elapsed time of the finished phases in nanosec., in the order they were started.
+    */
+   private Map<String, Long> times = new LinkedHashMap<String, Long>();
+
+   /**
+    * The running phase (null if none).
+    */
+   private String current = null;
+
+   /**
+    * When the running phase began (System.nanoTime()).
+    */
+   private long since;
+
+   /**
+    * Constructor. The phases of a new context (see Context).
+    */
+   PhaseTimer() {
+   }
+
+   /**
+    * @return The phases of the current context.
+    */
+   private static PhaseTimer state() {
+      return Context.current().phaseTimer;
+   }
+
+   /**
+    * Ends the running phase (if any) and begins a new one.
+    *
+    * @param phase Name of the phase.
+    */
+   public static synchronized void begin(String phase)
+   {
+      end();
+      state().current = phase;
+      state().since   = System.nanoTime();
+   }
+
+   /**
+    * Ends the running phase. Does nothing if no phase is running.
+    */
+   public static synchronized void end()
+   {
+      if (state().current == null) return;
+      // else
+      long elapsed = System.nanoTime() - state().since;
+      Long prev = state().times.get(state().current);
+      state().times.put(state().current, (prev == null) ? elapsed : prev + elapsed);
+      state().current = null;
+   }
+
+   /**
+    * @return A copy of the elapsed times (in nanosec.) of the finished phases.
+    */
+   public static synchronized Map<String, Long> getTimes() {
+      return new LinkedHashMap<String, Long>(state().times);
+   }
+
+   /**
+    * Forgets all the phases.
+    */
+   public static synchronized void reset()
+   {
+      state().times.clear();
+      state().current = null;
+   }
+}
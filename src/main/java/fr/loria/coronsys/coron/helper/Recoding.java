@@ -0,0 +1,247 @@
+package fr.loria.coronsys.coron.helper;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Vector;
+
+/**
+ * Recoding of the attributes (-recode:given|asc|desc), done after the dataset
+ * was read and before the mining.
+ *
+ * The attributes below the min. support are removed, and the frequent ones are
+ * renumbered 1, 2, ..., k in the chosen order: as given in the input, or by
+ * ascending/descending support. Thus the F_2 matrix, the intents and the other
+ * structures of the miners are sized by the number of frequent attributes, not
+ * by the largest attribute of the input.
+ *
+ * The patterns are written with the original attributes (see decode()).
+ * Like Database, the state belongs to the context of the current thread
+ * (see Context); it is cleared by Reset.reset().
+ */
+public class Recoding
+{
+   /**
+    * toOriginal[i] is the original attribute of the recoded attribute i
+    * (position 0 is not used). Null if the attributes are not recoded.
+    */
+   private int[] toOriginal = null;
+
+   /**
+    * Constructor. The recoding of a new context (see Context).
+    */
+   Recoding() {
+   }
+
+   /**
+    * @return The recoding of the current context.
+    */
+   private static Recoding state() {
+      return Context.current().recoding;
+   }
+
+   /**
+    * Recodes the attributes of the database (horizontal or vertical) and
+    * registers the recoded database. If no attribute is frequent, the
+    * database is left as it is.
+    *
+    * @param order C.RECODE_GIVEN, C.RECODE_ASC or C.RECODE_DESC.
+    */
+   public static void recode(int order)
+   {
+      if (Global.followFunctions()) System.err.println("> Recoding the attributes...");
+      long startTime = System.currentTimeMillis();
+
+      final int[] supp = getSupports();
+      int minSupp = Database.getMinSupp();
+      int k = 0;
+      for (int attr = 1; attr < supp.length; ++attr) {
+         if (supp[attr] >= minSupp) ++k;
+      }
+      if (k == 0) return;
+      // else
+
+      // the frequent attributes, in the original order
+      Integer[] frequent = new Integer[k];
+      for (int attr = 1, i = 0; attr < supp.length; ++attr) {
+         if (supp[attr] >= minSupp) frequent[i++] = attr;
+      }
+      if (order != C.RECODE_GIVEN)
+      {
+         final int sign = (order == C.RECODE_ASC) ? 1 : -1;
+         // stable: attributes with the same support keep their original order
+         Arrays.sort(frequent, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+               return sign * (supp[a] - supp[b]);
+            }
+         });
+      }
+
+      int[] orig = new int[k + 1];
+      int[] toNew = new int[supp.length];    // 0: the attribute is removed
+      long allAttr = 0;
+      for (int i = 1; i <= k; ++i)
+      {
+         orig[i] = frequent[i - 1];
+         toNew[orig[i]] = i;
+         allAttr += supp[orig[i]];
+      }
+      if (Database.isDBRepresentationVertical()) {
+         recodeVertical(orig, allAttr);
+      }
+      else {
+         recodeHorizontal(toNew, k, allAttr);
+      }
+      state().toOriginal = orig;
+
+      if (Global.followFunctions()) {
+         System.err.print("> Recoding the attributes: done ("+(supp.length - 1)+" -> "+k+"). ");
+         System.err.println("Elapsed time: "+Statistics.getRuntime(System.currentTimeMillis() - startTime)+" sec.");
+      }
+   }
+
+   /**
+    * @return Support of each attribute (position 0 is not used).
+    */
+   private static int[] getSupports()
+   {
+      Vector<BitSet> db = Database.getDatabase();
+      int[] supp;
+
+      if (Database.isDBRepresentationVertical())
+      {
+         supp = new int[db.size()];
+         for (int attr = 1; attr < supp.length; ++attr) {
+            supp[attr] = Database.getSupport(db.get(attr));
+         }
+      }
+      else
+      {
+         supp = new int[Database.getTotalNumberOfAttr() + 1];
+         int[] weights = Database.getWeights();
+         int w = 1, tid = 0;
+         for (BitSet set : db)
+         {
+            if (set == null) continue;
+            // else
+            ++tid;
+            if (weights != null) w = weights[tid];
+            for (int attr = set.nextSetBit(1); attr >= 0; attr = set.nextSetBit(attr+1)) {
+               supp[attr] += w;
+            }
+         }
+      }
+      return supp;
+   }
+
+   /**
+    * Rewrites each object with the new attributes. Empty objects are kept,
+    * the tids don't change.
+    *
+    * @param toNew The new attribute of each original attribute (0 if removed).
+    * @param k Number of the new attributes.
+    * @param allAttr Sum of the sizes of the recoded objects.
+    */
+   private static void recodeHorizontal(int[] toNew, int k, long allAttr)
+   {
+      Vector<BitSet> db = Database.getDatabase();
+      Vector<BitSet> recoded = new Vector<BitSet>(db.size());
+      BitSet set, row;
+
+      for (int i = 0; i < db.size(); ++i)
+      {
+         set = db.get(i);
+         if (set == null) {
+            recoded.add(null);
+            continue;
+         }
+         // else
+         row = new BitSet();
+         for (int attr = set.nextSetBit(1); attr >= 0; attr = set.nextSetBit(attr+1)) {
+            if (toNew[attr] > 0) row.set(toNew[attr]);
+         }
+         recoded.add(row);
+         db.set(i, null);     // the original object is not needed anymore
+      }
+      Database.setRecodedDatabase(recoded, C.DBR_HORIZONTAL, k, allAttr, null);
+   }
+
+   /**
+    * Reorders the tidsets. If the F_2 matrix was counted while reading, it's
+    * recoded too.
+    *
+    * @param orig The original attribute of each new attribute.
+    * @param allAttr Sum of the sizes of the recoded objects.
+    */
+   private static void recodeVertical(int[] orig, long allAttr)
+   {
+      Vector<BitSet> db = Database.getDatabase();
+      int k = orig.length - 1;
+      Vector<BitSet> recoded = new Vector<BitSet>(k + 1);
+
+      recoded.add(new BitSet());
+      for (int i = 1; i <= k; ++i) {
+         recoded.add(db.get(orig[i]));
+      }
+
+      int[][] f2 = Database.getF2Matrix();
+      if (f2 != null)
+      {
+         // layout of CharmExtra.getF2Matrix(): matrix[a][max-b] is the support of {a, b} (a < b)
+         int max = Database.getTotalNumberOfAttr();
+         int[][] matrix = new int[k][];
+         for (int i = 0; i < k; ++i) matrix[i] = new int[k-i];
+         int a, b;
+         for (int i = 1; i <= k; ++i)
+         {
+            for (int j = i + 1; j <= k; ++j)
+            {
+               a = Math.min(orig[i], orig[j]);
+               b = Math.max(orig[i], orig[j]);
+               matrix[i][k-j] = f2[a][max-b];
+            }
+         }
+         f2 = matrix;
+      }
+      Database.setRecodedDatabase(recoded, C.DBR_VERTICAL, k, allAttr, f2);
+   }
+
+   /**
+    * @return True, if the attributes are recoded.
+    */
+   public static boolean isRecoded() {
+      return (state().toOriginal != null);
+   }
+
+   /**
+    * @param attr A recoded attribute.
+    * @return The original attribute.
+    */
+   public static int toOriginal(int attr) {
+      return (state().toOriginal == null) ? attr : state().toOriginal[attr];
+   }
+
+   /**
+    * @param intent An itemset of recoded attributes.
+    * @return The itemset with the original attributes (the same object if
+    * the attributes are not recoded).
+    */
+   public static BitSet decode(BitSet intent)
+   {
+      int[] orig = state().toOriginal;
+      if (orig == null) return intent;
+      // else
+      BitSet result = new BitSet();
+      for (int attr = intent.nextSetBit(0); attr >= 0; attr = intent.nextSetBit(attr+1)) {
+         result.set(orig[attr]);
+      }
+      return result;
+   }
+
+   /**
+    * Forgets the recoding.
+    */
+   public static void reset() {
+      state().toOriginal = null;
+   }
+}
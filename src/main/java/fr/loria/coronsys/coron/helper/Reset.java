@@ -7,7 +7,9 @@ package fr.loria.coronsys.coron.helper;
  * Reason: in Coron we use some static classes that hold the current
  * state of the system and everybody can access it. During the execution,
  * the state changes, but since they are static, they must be reset if
- * we want to perform a new execution!
+ * we want to perform a new execution! The state belongs to the context of
+ * the current thread (see Context); a job that gets a new context doesn't
+ * need a reset.
  * 
  * @author Laszlo Szathmary (<a href="Szathmary.L@gmail.com">Szathmary.L@gmail.com</a>)
  */
@@ -25,5 +27,8 @@ public class Reset
    {
       Database.reset();
       Global.reset();
+      PhaseTimer.reset();
+      Recoding.reset();
+      Metrics.reset();
    }
 }
@@ -0,0 +1,31 @@
+package fr.loria.coronsys.coron.helper;
+
+import java.util.BitSet;
+
+/**
+ * Receives the patterns (itemsets with their supports) found by a miner.
+ * The miner gives a pattern to the sink and continues; how and when the
+ * pattern is written out is the business of the sink.
+ */
+public interface ResultSink
+{
+   /**
+    * Adds a pattern.
+    *
+    * @param intent The itemset. It must not be modified later.
+    * @param supp Its support.
+    */
+   public void add(BitSet intent, int supp);
+
+   /**
+    * Hands over the patterns that were added so far for writing, thus the
+    * sink doesn't keep them (e.g. when the memory is low).
+    */
+   public void flush();
+
+   /**
+    * Writes out everything that was added and releases the resources.
+    * After this, other output (e.g. a summary) can be printed.
+    */
+   public void close();
+}
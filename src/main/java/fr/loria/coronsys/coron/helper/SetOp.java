@@ -203,16 +203,19 @@ public class SetOp
    /**
     * @param itemset An arbitrary itemset.
     * @return List of its one-size smaller subsets.
+    * The itemset is not modified (not even temporarily), thus it can
+    * be shared between threads (e.g. it can be a key in a hash map).
     */
    public static Vector<BitSet> getOneSizeSmallerSubsetsOf(BitSet itemset)
    {
       Vector<BitSet> v = new Vector<BitSet>();
+      BitSet ss;    // subset
 
-      for (int i = itemset.nextSetBit(0); i >= 0; i = itemset.nextSetBit(i+1)) 
+      for (int i = itemset.nextSetBit(0); i >= 0; i = itemset.nextSetBit(i+1))
       {
-         itemset.clear(i);
-         v.add((BitSet) itemset.clone());
-         itemset.set(i);
+         ss = (BitSet) itemset.clone();
+         ss.clear(i);
+         v.add(ss);
       }
       return v;
    }
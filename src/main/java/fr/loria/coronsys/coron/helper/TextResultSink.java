@@ -0,0 +1,430 @@
+package fr.loria.coronsys.coron.helper;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Vector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes the patterns as text, one per line, in the same format as ITnode.toString()
+ * (e.g. "{1, 3, 4} (12)") or ITnode.toStringName() with attribute names (switch -names).
+ * If the attributes were recoded (see Recoding), the original attributes are written.
+ *
+ * The miner only puts the patterns in a batch. Full batches go through a bounded
+ * queue to a writer thread that formats them into a large buffer and writes the
+ * buffer to an NIO channel. If the writer is slower than the miner, the miner waits
+ * when the queue is full, thus the memory usage is bounded.
+ *
+ * Attribute names are encoded only once, the writer copies their bytes.
+ *
+ * An equivalence class (see ClosureSink) is written like a row of Zart, e.g.
+ * "{1, 3, 4} (12) +; [{1, 3}, {4}]": the closure, the support and the FGs.
+ */
+public class TextResultSink
+implements ResultSink
+{
+   /**
+    * Number of patterns in a batch.
+    */
+   private final static int BATCH_SIZE = 1024;
+
+   /**
+    * Max. number of full batches in the queue.
+    */
+   private final static int QUEUE_SIZE = 16;
+
+   /**
+    * Size of the output buffer.
+    */
+   private final static int BUFFER_SIZE = 1 << 20;
+
+   /**
+    * Patterns waiting to be written.
+    */
+   private static class Batch
+   {
+      BitSet[] intents = new BitSet[BATCH_SIZE];
+      int[] supps = new int[BATCH_SIZE];
+      Vector<?>[] gens = null;     // the FGs of the classes (only if there are classes)
+      int size = 0;
+   }
+
+   /**
+    * Between the support and the FGs of an equivalence class.
+    */
+   private final static byte[] CLASS_SEPARATOR = { ' ', '+', ';', ' ', '[' };
+
+   /**
+    * Marks the end of the patterns in the queue.
+    */
+   private final static Batch END = new Batch();
+
+   /**
+    * Full batches for the writer thread.
+    */
+   private final BlockingQueue<Batch> queue = new ArrayBlockingQueue<Batch>(QUEUE_SIZE);
+
+   /**
+    * The batch that is being filled by the miner.
+    */
+   private Batch batch = new Batch();
+
+   /**
+    * Formats and writes the batches.
+    */
+   private final Thread writer;
+
+   /**
+    * Output channel.
+    */
+   private final WritableByteChannel channel;
+
+   /**
+    * System.out, if the channel writes to it (else null).
+    */
+   private PrintStream out = null;
+
+   /**
+    * Output buffer (used by the writer thread only).
+    */
+   private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+   /**
+    * Print attribute names instead of numbers?
+    */
+   private final boolean names;
+
+   /**
+    * Encoded attribute names (used by the writer thread only).
+    */
+   private byte[][] nameBytes = new byte[0][];
+
+   /**
+    * Charset of the names, the same as the charset of System.out.
+    */
+   private final Charset charset;
+
+   /**
+    * Temporary digits of a number.
+    */
+   private final byte[] digits = new byte[11];
+
+   /**
+    * End of line, the same as in System.out.println().
+    */
+   private final byte[] newline = System.getProperty("line.separator").getBytes();
+
+   /**
+    * Set if writing failed. Like System.out, we don't stop the mining because of it.
+    */
+   private volatile boolean error = false;
+
+   /**
+    * Exception of the writer thread, it's thrown again in close().
+    */
+   private volatile RuntimeException failure = null;
+
+   /**
+    * Constructor. The patterns are written to System.out, i.e. to the output
+    * file if the output was redirected (switch -of).
+    *
+    * @param names Print attribute names instead of numbers?
+    */
+   public TextResultSink(boolean names)
+   {
+      this(Channels.newChannel(System.out), names);
+      this.out = System.out;
+   }
+
+   /**
+    * Constructor.
+    *
+    * @param channel The patterns are written here. It's not closed at the end.
+    * @param names Print attribute names instead of numbers?
+    */
+   public TextResultSink(WritableByteChannel channel, boolean names)
+   {
+      // what was printed before must come first
+      System.out.flush();
+      this.channel = channel;
+      this.names = names;
+      String enc = System.getProperty("stdout.encoding");
+      this.charset = ((enc != null) && Charset.isSupported(enc)) ? Charset.forName(enc) : Charset.defaultCharset();
+
+      this.writer = new Thread("result-writer") {
+         public void run() {
+            TextResultSink.this.writeBatches();
+         }
+      };
+      this.writer.setDaemon(true);
+      this.writer.start();
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.helper.ResultSink#add(java.util.BitSet, int)
+    */
+   public void add(BitSet intent, int supp)
+   {
+      Batch b = this.batch;
+      b.intents[b.size] = intent;
+      b.supps[b.size] = supp;
+      if (++b.size == BATCH_SIZE)
+      {
+         this.put(b);
+         this.batch = new Batch();
+      }
+   }
+
+   /**
+    * Adds an equivalence class.
+    *
+    * @param closure The closure.
+    * @param supp Its support.
+    * @param gens The FGs of the class.
+    */
+   public void add(BitSet closure, int supp, Vector<BitSet> gens)
+   {
+      Batch b = this.batch;
+      if (b.gens == null) b.gens = new Vector<?>[BATCH_SIZE];
+      b.gens[b.size] = gens;
+      this.add(closure, supp);
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.helper.ResultSink#flush()
+    */
+   public void flush()
+   {
+      if (this.batch.size == 0) return;
+      // else
+      this.put(this.batch);
+      this.batch = new Batch();
+   }
+
+   /** (non-Javadoc)
+    * @see fr.loria.coronsys.coron.helper.ResultSink#close()
+    */
+   public void close()
+   {
+      if (this.batch.size > 0) this.put(this.batch);
+      this.batch = null;
+      this.put(END);
+      boolean interrupted = false;
+      while (true)
+      {
+         try {
+            this.writer.join();
+            break;
+         }
+         catch (InterruptedException e) {
+            interrupted = true;
+         }
+      }
+      if (interrupted) Thread.currentThread().interrupt();
+      if (this.failure != null) throw this.failure;
+   }
+
+   /**
+    * Puts a batch in the queue. Waits if the queue is full.
+    *
+    * @param b A batch.
+    */
+   private void put(Batch b)
+   {
+      boolean interrupted = false;
+      while (true)
+      {
+         try {
+            this.queue.put(b);
+            break;
+         }
+         catch (InterruptedException e) {
+            interrupted = true;
+         }
+      }
+      if (interrupted) Thread.currentThread().interrupt();
+   }
+
+   /**
+    * Main loop of the writer thread.
+    */
+   private void writeBatches()
+   {
+      Batch b;
+      try
+      {
+         while ((b = this.queue.take()) != END)
+         {
+            // after a failure the batches are only taken, the miner must not wait forever
+            if (this.failure != null) continue;
+            // else
+            try
+            {
+               for (int i = 0; i < b.size; ++i) {
+                  this.format(b.intents[i], b.supps[i], (b.gens != null) ? b.gens[i] : null);
+               }
+            }
+            catch (RuntimeException e) {
+               this.failure = e;
+            }
+         }
+      }
+      catch (InterruptedException e) {
+         // stop
+      }
+      this.writeBuffer();
+      if (this.out != null) this.out.flush();
+   }
+
+   /**
+    * Formats a pattern into the buffer.
+    *
+    * @param intent The itemset.
+    * @param supp Its support.
+    * @param gens The FGs, if the itemset is the closure of an equivalence class (else null).
+    */
+   private void format(BitSet intent, int supp, Vector<?> gens)
+   {
+      this.formatSet(intent);
+      this.put((byte) ' ');
+      this.put((byte) '(');
+      this.putInt(supp);
+      this.put((byte) ')');
+      if (gens != null)
+      {
+         this.put(CLASS_SEPARATOR);
+         for (int i = 0; i < gens.size(); ++i)
+         {
+            if (i > 0) {
+               this.put((byte) ',');
+               this.put((byte) ' ');
+            }
+            this.formatSet((BitSet) gens.get(i));
+         }
+         this.put((byte) ']');
+      }
+      this.put(this.newline);
+   }
+
+   /**
+    * Formats an itemset into the buffer, e.g. "{1, 3, 4}".
+    *
+    * @param intent The itemset.
+    */
+   private void formatSet(BitSet intent)
+   {
+      intent = Recoding.decode(intent);
+      this.put((byte) '{');
+      boolean first = true;
+      for (int attr = intent.nextSetBit(0); attr >= 0; attr = intent.nextSetBit(attr+1))
+      {
+         if (first == false) {
+            this.put((byte) ',');
+            this.put((byte) ' ');
+         }
+         first = false;
+         if (this.names) this.put(this.nameOf(attr));
+         else            this.putInt(attr);
+      }
+      this.put((byte) '}');
+   }
+
+   /**
+    * @param attr An attribute.
+    * @return The encoded name of the attribute.
+    */
+   private byte[] nameOf(int attr)
+   {
+      if (attr >= this.nameBytes.length) {
+         this.nameBytes = Arrays.copyOf(this.nameBytes, Math.max(attr + 1, 2 * this.nameBytes.length));
+      }
+      byte[] name = this.nameBytes[attr];
+      if (name == null) {
+         name = this.nameBytes[attr] = Database.getAttr(attr).getBytes(this.charset);
+      }
+      return name;
+   }
+
+   /**
+    * @param b A byte to write.
+    */
+   private void put(byte b)
+   {
+      if (this.buffer.hasRemaining() == false) this.writeBuffer();
+      this.buffer.put(b);
+   }
+
+   /**
+    * @param bytes Bytes to write.
+    */
+   private void put(byte[] bytes)
+   {
+      if (this.buffer.remaining() < bytes.length) this.writeBuffer();
+      if (bytes.length > this.buffer.capacity())
+      {
+         // too long to fit in the buffer
+         this.write(ByteBuffer.wrap(bytes));
+         return;
+      }
+      this.buffer.put(bytes);
+   }
+
+   /**
+    * @param n A non-negative number to write in decimal.
+    */
+   private void putInt(int n)
+   {
+      int k = this.digits.length;
+      do {
+         this.digits[--k] = (byte) ('0' + (n % 10));
+         n /= 10;
+      } while (n > 0);
+      if (this.buffer.remaining() < this.digits.length - k) this.writeBuffer();
+      this.buffer.put(this.digits, k, this.digits.length - k);
+   }
+
+   /**
+    * Writes the buffer to the channel.
+    */
+   private void writeBuffer()
+   {
+      this.buffer.flip();
+      this.write(this.buffer);
+      this.buffer.clear();
+   }
+
+   /**
+    * Writes bytes to the channel. After an error the bytes are dropped.
+    *
+    * @param bb The bytes to write.
+    */
+   private void write(ByteBuffer bb)
+   {
+      if (this.error) return;
+      // else
+      Metrics.output(bb.remaining());
+      try
+      {
+         while (bb.hasRemaining()) {
+            this.channel.write(bb);
+         }
+      }
+      catch (IOException e) {
+         this.error = true;
+      }
+   }
+
+   /**
+    * @return True, if writing the output failed (like PrintStream.checkError()).
+    */
+   public boolean checkError() {
+      return this.error || ((this.out != null) && this.out.checkError());
+   }
+}
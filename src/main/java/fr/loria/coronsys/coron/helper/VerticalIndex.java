@@ -0,0 +1,342 @@
+package fr.loria.coronsys.coron.helper;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.Vector;
+
+/**
+ * Index of a dataset (switch -index): the vertical representation of the
+ * dataset, the supports of the attributes, the F_2 matrix and the statistics
+ * of the Database class, in a binary file next to the dataset (its name is the
+ * name of the dataset + ".idx").
+ *
+ * The vertical miners (see FileFormatHandler.isVerticalIngest()) read the index
+ * instead of the dataset if it's up-to-date, i.e. the size and the modification
+ * time of the dataset didn't change since the index was written. The index is
+ * memory-mapped (read-only), thus several runs can share its pages. The tidsets
+ * of the infrequent attributes are not read (they are left empty), except if
+ * the extents are saved for an incremental run (-incr, -save).
+ *
+ * File format (big-endian): magic number, version, the size and the modification
+ * time of the dataset, the file type, number of objects, longest itemset, largest
+ * attribute, number of non-empty attributes, sum of the sizes of the objects,
+ * position of the F_2 matrix (0 if it's not stored); then for each attribute
+ * (0 .. largest attribute): its support, the number of the 64-bit words of its
+ * tidset, the words; then the rows of the F_2 matrix (see CharmExtra.getF2Matrix()).
+ */
+public class VerticalIndex
+{
+   /**
+    * First bytes of an index file ("TKIX").
+    */
+   private final static int MAGIC = 0x544B4958;
+
+   /**
+    * Version of the file format.
+    */
+   private final static int VERSION = 1;
+
+   /**
+    * Size of the header in bytes.
+    */
+   private final static int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4 + 4 + 4 + 4 + 8 + 8;
+
+   /**
+    * Default size of a window (the index is mapped in windows, a buffer cannot be
+    * larger than 2 GB).
+    */
+   private final static int WINDOW_SIZE = 1 << 28;
+
+   /**
+    * The channel of the index.
+    */
+   private FileChannel channel;
+
+   /**
+    * Size of the index.
+    */
+   private long fileSize;
+
+   /**
+    * The current window.
+    */
+   private MappedByteBuffer window;
+
+   /**
+    * Position of the current window in the index.
+    */
+   private long windowPos;
+
+   /**
+    * Empty private constructor. Use load() and write().
+    */
+   private VerticalIndex() {
+   }
+
+   /**
+    * @param file Name of a dataset.
+    * @return Name of the index of the dataset.
+    */
+   public static String getIndexFile(String file) {
+      return file + ".idx";
+   }
+
+   /**
+    * Writes the index of the dataset that was read (in vertical representation,
+    * with the F_2 matrix). The index is written in a temporary file first, then
+    * it's renamed, thus a run never sees a half-written index.
+    * Exits with an error message if the index cannot be written.
+    */
+   public static void write()
+   {
+      File dataset = Database.getDatabaseFile();
+      String path = getIndexFile(Database.getDatabaseFileStr());
+      if (Global.followFunctions()) System.err.println("> Writing the index "+path+"...");
+      long startTime = System.currentTimeMillis();
+
+      Vector<BitSet> db = Database.getDatabase();
+      int[][] f2 = Database.getF2Matrix();
+      int largestAttr = db.size() - 1;
+      long[][] words = new long[db.size()][];
+      long allAttr = 0;
+      long f2Pos = HEADER_SIZE;
+
+      for (int attr = 0; attr < db.size(); ++attr)
+      {
+         words[attr] = db.get(attr).toLongArray();
+         allAttr += db.get(attr).cardinality();
+         f2Pos += 4 + 4 + 8L * words[attr].length;
+      }
+      if (f2 == null) f2Pos = 0;
+
+      File tmp = new File(path + ".tmp");
+      DataOutputStream out = null;
+      try
+      {
+         out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16));
+         out.writeInt(MAGIC);
+         out.writeInt(VERSION);
+         out.writeLong(dataset.length());
+         out.writeLong(dataset.lastModified());
+         out.writeInt(Database.getDatabaseFileType());
+         out.writeInt(Database.getNumberOfObjects());
+         out.writeInt(Database.getLongestItemset());
+         out.writeInt(largestAttr);
+         out.writeInt(Database.getTotalNbOfNonEmptyAttr());
+         out.writeLong(allAttr);
+         out.writeLong(f2Pos);
+
+         for (int attr = 0; attr < words.length; ++attr)
+         {
+            out.writeInt(db.get(attr).cardinality());
+            out.writeInt(words[attr].length);
+            for (long word : words[attr]) {
+               out.writeLong(word);
+            }
+            words[attr] = null;
+         }
+         if (f2 != null)
+         {
+            for (int[] row : f2) {
+               for (int supp : row) out.writeInt(supp);
+            }
+         }
+         out.close();
+         out = null;
+         File target = new File(path);
+         if (tmp.renameTo(target) == false)
+         {
+            // on some systems the target of a rename must not exist
+            target.delete();
+            if (tmp.renameTo(target) == false) throw new IOException("cannot rename "+tmp);
+         }
+      }
+      catch (IOException e)
+      {
+         System.err.println("Error: cannot write the index "+path+": "+e.getMessage());
+         Error.die(C.ERR_JUST_EXIT);
+      }
+      finally
+      {
+         if (out != null)
+         {
+            try {
+               out.close();
+            }
+            catch (IOException e) { }
+            tmp.delete();
+         }
+      }
+
+      if (Global.followFunctions()) {
+         System.err.print("> Writing the index: done. ");
+         System.err.println("Elapsed time: "+Statistics.getRuntime(System.currentTimeMillis() - startTime)+" sec.");
+      }
+   }
+
+   /**
+    * Reads the index of the dataset, if there is an up-to-date one, and registers
+    * the vertical database, the F_2 matrix (if the miner needs it) and the
+    * statistics in the Database class. The file type must be set before.
+    *
+    * @param needF2 Is the F_2 matrix needed?
+    * @return True, if the index was read. False, if there is no up-to-date index
+    * (then the dataset must be read).
+    */
+   static boolean load(boolean needF2)
+   {
+      if (Global.getFold()) return false;   // the index has the objects unfolded
+      // else
+      File dataset = Database.getDatabaseFile();
+      File file = new File(getIndexFile(Database.getDatabaseFileStr()));
+      if (file.isFile() == false) return false;
+      // else
+      VerticalIndex index = new VerticalIndex();
+      RandomAccessFile raf = null;
+      try
+      {
+         raf = new RandomAccessFile(file, "r");
+         index.channel  = raf.getChannel();
+         index.fileSize = index.channel.size();
+         if (index.fileSize < HEADER_SIZE) return false;
+         // else
+         index.map(0, HEADER_SIZE);
+         MappedByteBuffer w = index.window;
+         if ((w.getInt(0) != MAGIC) || (w.getInt(4) != VERSION) ||
+             (w.getLong(8) != dataset.length()) || (w.getLong(16) != dataset.lastModified()) ||
+             (w.getInt(24) != Database.getDatabaseFileType()))
+         {
+            if (Global.followFunctions()) System.err.println("> The index "+file+" is out of date, it's not used.");
+            return false;
+         }
+         // else
+         int numberOfObjects = w.getInt(28);
+         int longestItemset  = w.getInt(32);
+         int largestAttr     = w.getInt(36);
+         int nonEmptyAttr    = w.getInt(40);
+         long allAttr        = w.getLong(44);
+         long f2Pos          = w.getLong(52);
+
+         int[][] f2 = (needF2 && (f2Pos > 0)) ? index.readF2Matrix(f2Pos, largestAttr) : null;
+
+         // the tidsets are read after the registration: the min. support is needed
+         Vector<BitSet> db = new Vector<BitSet>(largestAttr + 1);
+         for (int attr = 0; attr <= largestAttr; ++attr) {
+            db.add(null);
+         }
+         Database.setNumberOfObjects(numberOfObjects);
+         Database.setLongestItemset(longestItemset);
+         Database.setVerticalDatabase(db, largestAttr, nonEmptyAttr, allAttr, f2);
+
+         boolean all = (Global.getIncrementalFile() != null) || (Global.getSaveFile() != null);
+         int minSupp = Database.getMinSupp();
+         long pos = HEADER_SIZE;
+         int supp, size;
+         for (int attr = 0; attr <= largestAttr; ++attr)
+         {
+            index.map(pos, 8);
+            supp = index.window.getInt((int) (pos - index.windowPos));
+            size = index.window.getInt((int) (pos - index.windowPos) + 4);
+            pos += 8;
+            if (all || (supp >= minSupp)) {
+               db.set(attr, index.readBitSet(pos, size));
+            }
+            else {
+               db.set(attr, new BitSet());
+            }
+            pos += 8L * size;
+         }
+      }
+      catch (IOException e)
+      {
+         System.err.println("Error: cannot read the index "+file+": "+e.getMessage());
+         Error.die(C.ERR_JUST_EXIT);
+      }
+      finally
+      {
+         index.window = null;
+         if (raf != null)
+         {
+            try {
+               raf.close();
+            }
+            catch (IOException e) { }
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Maps a window that contains the given range, if the current window doesn't.
+    *
+    * @param pos Position in the index.
+    * @param length Length of the range.
+    * @throws IOException
+    */
+   private void map(long pos, long length)
+   throws IOException
+   {
+      if ((this.window != null) && (pos >= this.windowPos) && (pos + length <= this.windowPos + this.window.limit())) {
+         return;
+      }
+      // else
+      if (pos + length > this.fileSize) {
+         throw new IOException("the index is truncated");
+      }
+      long size = Math.min(Math.max(WINDOW_SIZE, length), this.fileSize - pos);
+      this.window    = this.channel.map(FileChannel.MapMode.READ_ONLY, pos, size);
+      this.windowPos = pos;
+   }
+
+   /**
+    * @param pos Position of the words of a tidset in the index.
+    * @param size Number of the words.
+    * @return The tidset.
+    * @throws IOException
+    */
+   private BitSet readBitSet(long pos, int size)
+   throws IOException
+   {
+      this.map(pos, 8L * size);
+      long[] words = new long[size];
+      int offset = (int) (pos - this.windowPos);
+      for (int i = 0; i < size; ++i) {
+         words[i] = this.window.getLong(offset + 8 * i);
+      }
+      return BitSet.valueOf(words);
+   }
+
+   /**
+    * @param pos Position of the F_2 matrix in the index.
+    * @param max The largest attribute.
+    * @return The F_2 matrix (see CharmExtra.getF2Matrix()).
+    * @throws IOException
+    */
+   private int[][] readF2Matrix(long pos, int max)
+   throws IOException
+   {
+      int[][] matrix = new int[Math.max(max, 0)][];
+      int[] row;
+      int offset;
+
+      for (int a = 0; a < matrix.length; ++a)
+      {
+         row = new int[max - a];
+         this.map(pos, 4L * row.length);
+         offset = (int) (pos - this.windowPos);
+         for (int j = 0; j < row.length; ++j) {
+            row[j] = this.window.getInt(offset + 4 * j);
+         }
+         matrix[a] = row;
+         pos += 4L * row.length;
+      }
+      return matrix;
+   }
+}
@@ -0,0 +1,279 @@
+package fr.loria.coronsys.coron.helper;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Vector;
+
+/**
+ * Builds the vertical representation of the dataset while the input file is
+ * read, line by line. The horizontal representation is never stored.
+ *
+ * In the same pass it counts the supports of the 2-itemsets (the F_2 matrix
+ * of the vertical miners, see CharmExtra.getF2Matrix()) and the statistics
+ * of the attributes that Database.setAttrInfos() would compute from the
+ * horizontal representation.
+ *
+ * If identical objects are folded (switch -fold), an object that was already
+ * added gets no new tid, the weight of its first occurrence is increased.
+ */
+class VerticalIngest
+{
+   /**
+    * The vertical database: at position i, the tidset of attribute i (tids start from 1).
+    */
+   private Vector<BitSet> database;
+
+   /**
+    * Supports of the 2-itemsets: pairs[a][b-a-1] is the support of {a, b} (a < b).
+    * The rows grow as larger attributes appear. Null if F_2 is not needed.
+    */
+   private int[][] pairs;
+
+   /**
+    * Number of tids given so far. It's the number of objects (lines) added so far,
+    * except if identical objects are folded.
+    */
+   private int objCnt;
+
+   /**
+    * The tid of each object added so far, if identical objects are folded. Null otherwise.
+    */
+   private HashMap<Items, Integer> seen;
+
+   /**
+    * Weight of each tid, if identical objects are folded.
+    */
+   private int[] weights;
+
+   /**
+    * Number of attributes whose tidset is not empty.
+    */
+   private int nonEmptyAttr;
+
+   /**
+    * Sum of the sizes of the objects.
+    */
+   private long allAttr;
+
+   /**
+    * Constructor.
+    *
+    * @param countPairs Count the supports of the 2-itemsets too?
+    */
+   VerticalIngest(boolean countPairs)
+   {
+      this.database = new Vector<BitSet>();
+      this.pairs    = countPairs ? new int[0][] : null;
+      this.objCnt   = 0;
+      if (Global.getFold())
+      {
+         this.seen    = new HashMap<Items, Integer>();
+         this.weights = new int[1024];
+      }
+   }
+
+   /**
+    * The attributes of an object, as a key in a hash map.
+    */
+   private static class Items
+   {
+      private final int[] items;
+      private final int hash;
+
+      Items(int[] items)
+      {
+         this.items = items;
+         this.hash  = Arrays.hashCode(items);
+      }
+
+      public int hashCode() {
+         return this.hash;
+      }
+
+      public boolean equals(Object o) {
+         return (o instanceof Items) && Arrays.equals(this.items, ((Items) o).items);
+      }
+   }
+
+   /**
+    * Adds an object.
+    *
+    * @param items Attributes of the object (in any order, duplicates are allowed).
+    * It's reordered.
+    * @param n Number of attributes in items.
+    */
+   void add(int[] items, int n)
+   {
+      n = sortDistinct(items, n);
+      this.allAttr += n;
+      if ((this.seen != null) && this.fold(items, n)) return;
+      // else
+      int tid = ++this.objCnt;
+      int attr;
+      BitSet tidset;
+
+      if ((n > 0) && (items[n-1] >= this.database.size())) {
+         this.ensureAttr(items[n-1]);
+      }
+      for (int i = 0; i < n; ++i)
+      {
+         attr = items[i];
+         tidset = this.database.get(attr);
+         if (tidset.isEmpty()) ++this.nonEmptyAttr;
+         tidset.set(tid);
+      }
+
+      if ((this.pairs != null) && (n > 1)) {
+         this.countPairs(items, n);
+      }
+   }
+
+   /**
+    * Folds an object into its first occurrence, or registers the tid of its
+    * first occurrence.
+    *
+    * @param items Attributes of the object, sorted, without duplicates.
+    * @param n Number of attributes in items.
+    * @return True, if the object was added before (it's folded); false, if it gets a new tid.
+    */
+   private boolean fold(int[] items, int n)
+   {
+      Items key = new Items(Arrays.copyOf(items, n));
+      Integer tid = this.seen.get(key);
+      if (tid != null)
+      {
+         ++this.weights[tid];
+         // the 2-itemsets of the object are counted again
+         if ((this.pairs != null) && (n > 1)) {
+            this.countPairs(items, n);
+         }
+         return true;
+      }
+      // else
+      int next = this.objCnt + 1;
+      this.seen.put(key, next);
+      if (next == this.weights.length) {
+         this.weights = Arrays.copyOf(this.weights, 2 * next);
+      }
+      this.weights[next] = 1;
+      return false;
+   }
+
+   /**
+    * Counts the 2-itemsets of an object.
+    *
+    * @param items Attributes of the object, sorted, without duplicates.
+    * @param n Number of attributes in items.
+    */
+   private void countPairs(int[] items, int n)
+   {
+      int max = items[n-1];
+      int a;
+      int[] row;
+
+      if (max > this.pairs.length) {
+         this.pairs = Arrays.copyOf(this.pairs, Math.max(max, 2 * this.pairs.length));
+      }
+      for (int i = 0; i < n - 1; ++i)
+      {
+         a = items[i];
+         row = this.pairs[a];
+         if ((row == null) || (row.length < max - a))
+         {
+            row = (row == null) ? new int[max - a] : Arrays.copyOf(row, Math.max(max - a, 2 * row.length));
+            this.pairs[a] = row;
+         }
+         for (int j = i + 1; j < n; ++j) {
+            ++row[items[j] - a - 1];
+         }
+      }
+   }
+
+   /**
+    * Adds empty tidsets up to the given attribute.
+    *
+    * @param attr An attribute.
+    */
+   private void ensureAttr(int attr)
+   {
+      for (int i = this.database.size(); i <= attr; ++i) {
+         this.database.add(new BitSet());
+      }
+   }
+
+   /**
+    * Sorts the attributes and removes the duplicates.
+    *
+    * @param items Attributes.
+    * @param n Number of attributes in items.
+    * @return Number of different attributes, they are at the beginning of items.
+    */
+   private static int sortDistinct(int[] items, int n)
+   {
+      int i;
+      for (i = 1; i < n; ++i) {
+         if (items[i-1] >= items[i]) break;
+      }
+      if (i >= n) return n;      // already sorted (the usual case)
+      // else
+      Arrays.sort(items, 0, n);
+      int k = 1;
+      for (i = 1; i < n; ++i) {
+         if (items[i] != items[k-1]) items[k++] = items[i];
+      }
+      return k;
+   }
+
+   /**
+    * Converts the counted pairs to the layout of CharmExtra.getF2Matrix():
+    * matrix[a][max-b] is the support of {a, b}, where max is the largest attribute.
+    * The rows of the counters are released one by one.
+    *
+    * @param max The largest attribute.
+    * @return The F_2 matrix.
+    */
+   private int[][] toF2Matrix(int max)
+   {
+      int[][] matrix = new int[Math.max(max, 0)][];
+      int[] row, counts;
+      int a, j;
+
+      for (a = 0; a < matrix.length; ++a)
+      {
+         row = new int[max - a];
+         counts = (a < this.pairs.length) ? this.pairs[a] : null;
+         if (counts != null)
+         {
+            // counts[b-a-1] goes to row[max-b]
+            for (j = Math.min(counts.length, max - a) - 1; j >= 0; --j) {
+               if (counts[j] != 0) row[max - a - 1 - j] = counts[j];
+            }
+            this.pairs[a] = null;
+         }
+         matrix[a] = row;
+      }
+      this.pairs = null;
+      return matrix;
+   }
+
+   /**
+    * Registers the vertical database, its statistics and the F_2 matrix (if it was
+    * counted) in the static Database class. The number of objects must be set before.
+    */
+   void register()
+   {
+      int largestAttr = this.database.size() - 1;
+      int[][] f2Matrix = (this.pairs != null) ? this.toF2Matrix(largestAttr) : null;
+
+      this.database.trimToSize();
+      if (this.seen != null)
+      {
+         this.seen = null;
+         Database.setWeights(Arrays.copyOf(this.weights, this.objCnt + 1));
+         this.weights = null;
+      }
+      Database.setVerticalDatabase(this.database, largestAttr, this.nonEmptyAttr, this.allAttr, f2Matrix);
+      this.database = null;
+   }
+}
@@ -0,0 +1,122 @@
+package fr.loria.coronsys.coron;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipInputStream;
+
+import junit.framework.Assert;
+
+/**
+ * Runs the command line program (Main) in a new JVM, like a user does: Main
+ * exits through System.exit() and keeps its state in static fields, so it
+ * cannot be called twice in the JVM of the tests.
+ */
+public class MainRunner
+{
+   /**
+    * The mushrooms dataset, extracted from datasets/mushrooms.zip.
+    */
+   private static File mushrooms = null;
+
+   private MainRunner() { }
+
+   /**
+    * Runs Main. The test fails if the exit code is not 0.
+    *
+    * @param args The command line arguments.
+    * @return What Main wrote to the standard output.
+    */
+   public static String run(String... args) throws IOException, InterruptedException
+   {
+      List<String> command = new ArrayList<String>();
+      command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+      command.add("-cp");
+      command.add(System.getProperty("java.class.path"));
+      command.add(Main.class.getName());
+      Collections.addAll(command, args);
+
+      File err = File.createTempFile("coron", ".err");
+      try
+      {
+         Process process = new ProcessBuilder(command).redirectError(err).start();
+         process.getOutputStream().close();
+         String out = read(process.getInputStream());
+         int exit = process.waitFor();
+         if (exit != 0) {
+            Assert.fail("exit code " + exit + " of " + command + ": " + new String(Files.readAllBytes(err.toPath())));
+         }
+         return out;
+      }
+      finally {
+         err.delete();
+      }
+   }
+
+   /**
+    * @param output Output of Main.
+    * @return The patterns (the lines that start with '{'), sorted.
+    */
+   public static List<String> patterns(String output)
+   {
+      List<String> patterns = new ArrayList<String>();
+      for (String line : output.split("\r?\n")) {
+         if (line.startsWith("{")) patterns.add(line);
+      }
+      Collections.sort(patterns);
+      return patterns;
+   }
+
+   /**
+    * @return The mushrooms dataset (8,416 objects, 119 attributes) in .basenum format.
+    */
+   public static synchronized File mushrooms() throws IOException
+   {
+      if (mushrooms != null) return mushrooms;
+      // else
+      File file = File.createTempFile("mushrooms", ".basenum");
+      file.deleteOnExit();
+      ZipInputStream zip = new ZipInputStream(Files.newInputStream(new File("datasets", "mushrooms.zip").toPath()));
+      try
+      {
+         zip.getNextEntry();
+         OutputStream out = new FileOutputStream(file);
+         try {
+            copy(zip, out);
+         }
+         finally {
+            out.close();
+         }
+      }
+      finally {
+         zip.close();
+      }
+      return mushrooms = file;
+   }
+
+   /**
+    * @param in A stream, it's read to its end.
+    * @return Its content as text.
+    */
+   private static String read(InputStream in) throws IOException
+   {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      copy(in, bytes);
+      return new String(bytes.toByteArray(), Charset.defaultCharset());
+   }
+
+   private static void copy(InputStream in, OutputStream out) throws IOException
+   {
+      byte[] buf = new byte[1 << 16];
+      int n;
+      while ((n = in.read(buf)) > 0) out.write(buf, 0, n);
+   }
+}
@@ -0,0 +1,63 @@
+package fr.loria.coronsys.coron.algorithm;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import fr.loria.coronsys.coron.MainRunner;
+
+/**
+ * Round trip of the incremental mining: the objects of mushrooms are mined in
+ * three parts, the first one with -save, the others with -incr (and -save).
+ * The FGs must be the FGs of a full run.
+ */
+public class IncrementalTalkyGTest
+extends TestCase
+{
+   private final List<File> files = new ArrayList<File>();
+
+   protected void tearDown()
+   {
+      for (File file : this.files) file.delete();
+   }
+
+   private File newFile(String suffix) throws Exception
+   {
+      File file = File.createTempFile("incr", suffix);
+      file.delete();     // the state files must not exist
+      this.files.add(file);
+      return file;
+   }
+
+   /**
+    * @return A dataset with the lines [from, to) of the given lines.
+    */
+   private File part(List<String> lines, int from, int to) throws Exception
+   {
+      File file = this.newFile(".basenum");
+      Files.write(file.toPath(), lines.subList(from, to), Charset.defaultCharset());
+      return file;
+   }
+
+   public void testRoundTrip() throws Exception
+   {
+      File mushrooms = MainRunner.mushrooms();
+      List<String> lines = Files.readAllLines(mushrooms.toPath(), Charset.defaultCharset());
+      String minSupp = "2000";     // absolute, the same in each run
+      List<String> expected = MainRunner.patterns(MainRunner.run(mushrooms.getPath(), minSupp, "-alg:talkyg"));
+      assertTrue(expected.size() > 100);
+
+      for (String alg : new String[] { "-alg:talkyg", "-alg:talkyg2", "-alg:dtalkyg" })
+      {
+         File state1 = this.newFile(".state"), state2 = this.newFile(".state");
+         MainRunner.run(this.part(lines, 0, 5000).getPath(), minSupp, alg, "-save:" + state1.getPath());
+         MainRunner.run(this.part(lines, 5000, 7000).getPath(), minSupp, alg, "-incr:" + state1.getPath(), "-save:" + state2.getPath());
+         String out = MainRunner.run(this.part(lines, 7000, lines.size()).getPath(), minSupp, alg, "-incr:" + state2.getPath());
+         assertEquals(alg, expected, MainRunner.patterns(out));
+      }
+   }
+}
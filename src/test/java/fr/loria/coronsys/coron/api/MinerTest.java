@@ -0,0 +1,162 @@
+package fr.loria.coronsys.coron.api;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+
+/**
+ * The FG miners against each other: Talky-G, Talky-G v2 and dTalky-G, on one
+ * and on several threads, must find the same FGs on a random dataset.
+ */
+public class MinerTest
+extends TestCase
+{
+   private final List<int[]> objects = new ArrayList<int[]>();
+
+   protected void setUp()
+   {
+      Random random = new Random(13);
+      for (int i = 0; i < 200; ++i)
+      {
+         List<Integer> attrs = new ArrayList<Integer>();
+         for (int attr = 1; attr <= 20; ++attr) {
+            if (random.nextInt(20) < 21 - attr) attrs.add(attr);     // the first attributes are frequent
+         }
+         int[] object = new int[attrs.size()];
+         for (int k = 0; k < object.length; ++k) object[k] = attrs.get(k);
+         this.objects.add(object);
+      }
+   }
+
+   /**
+    * @return The FGs found by an algorithm, sorted.
+    */
+   private List<String> mine(String alg, int threads) {
+      return mine(this.newMiner(alg, threads, 10));
+   }
+
+   private Miner newMiner(String alg, int threads, int minSupp)
+   {
+      Miner miner = new Miner(this.objects);
+      miner.setAlgorithm(alg);
+      miner.setThreads(threads);
+      miner.setMinSupp(minSupp);
+      return miner;
+   }
+
+   /**
+    * @return The FGs found by a miner, sorted.
+    */
+   private static List<String> mine(Miner miner)
+   {
+      final List<String> fgs = new ArrayList<String>();
+      long count = miner.mine(new PatternListener() {
+         public void pattern(int[] intent, int supp, int[] extent) {
+            fgs.add(new Pattern(intent, supp, extent).toString());
+         }
+      });
+      assertEquals(count, fgs.size());
+      Collections.sort(fgs);
+      return fgs;
+   }
+
+   public void testSameFgs()
+   {
+      List<String> expected = this.mine("talkyg", 1);
+      assertTrue(expected.size() > 100);
+      assertEquals(expected, this.mine("talkyg", 3));
+      assertEquals(expected, this.mine("talkyg2", 1));
+      assertEquals(expected, this.mine("talkyg2", 3));
+      assertEquals(expected, this.mine("dtalkyg", 1));
+      assertEquals(expected, this.mine("dtalkyg", 3));
+   }
+
+   public void testCancel()
+   {
+      Miner miner = new Miner(this.objects);
+      miner.setMinSupp(1);
+      miner.cancel();
+      try
+      {
+         miner.mine(new PatternListener() {
+            public void pattern(int[] intent, int supp, int[] extent) { }
+         });
+         fail("the run was cancelled");
+      }
+      catch (java.util.concurrent.CancellationException e) { }
+   }
+
+   /**
+    * Jobs with different options run at the same time, each in its own
+    * context: they must find the same FGs as alone.
+    */
+   public void testParallelJobs() throws Exception
+   {
+      File file = File.createTempFile("objects", ".basenum");
+      try
+      {
+         List<String> lines = new ArrayList<String>();
+         for (int[] object : this.objects)
+         {
+            StringBuilder sb = new StringBuilder();
+            for (int attr : object) sb.append(attr).append(' ');
+            lines.add(sb.toString().trim());
+         }
+         Files.write(file.toPath(), lines, Charset.defaultCharset());
+         Dataset dataset = new Dataset(file.getPath());
+
+         final Miner[] miners = {
+            this.newMiner("talkyg", 1, 10),
+            this.newMiner("dtalkyg", 2, 20),
+            new Miner(dataset),
+            new Miner(dataset),
+         };
+         miners[2].setAlgorithm("talkyg2");
+         miners[2].setMinSupp(15);
+         miners[3].setAlgorithm("talkyg");
+         miners[3].setThreads(2);
+         miners[3].setMinSupp(30);
+
+         final List<List<String>> expected = new ArrayList<List<String>>();
+         for (Miner miner : miners) expected.add(mine(miner));
+         assertEquals(this.mine("talkyg", 1), expected.get(0));
+
+         final CountDownLatch start = new CountDownLatch(1);
+         final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+         Thread[] threads = new Thread[miners.length];
+         for (int i = 0; i < miners.length; ++i)
+         {
+            final int job = i;
+            threads[i] = new Thread() {
+               public void run()
+               {
+                  try
+                  {
+                     start.await();
+                     for (int k = 0; k < 3; ++k) {
+                        assertEquals("job " + job, expected.get(job), mine(miners[job]));
+                     }
+                  }
+                  catch (Throwable e) {
+                     errors.add(e);
+                  }
+               }
+            };
+            threads[i].start();
+         }
+         start.countDown();
+         for (Thread thread : threads) thread.join();
+         if (errors.isEmpty() == false) throw new AssertionError(errors.get(0));
+      }
+      finally {
+         file.delete();
+      }
+   }
+}
@@ -0,0 +1,104 @@
+package fr.loria.coronsys.coron.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * The iterator gives the patterns of the miner; if it's closed early, the
+ * search is cancelled and its thread ends.
+ */
+public class PatternIteratorTest
+extends TestCase
+{
+   /**
+    * A miner that counts the calls of cancel().
+    */
+   private static class CountingMiner
+   extends Miner
+   {
+      volatile int cancels = 0;
+
+      CountingMiner(List<int[]> objects) {
+         super(objects);
+      }
+
+      public void cancel()
+      {
+         ++this.cancels;
+         super.cancel();
+      }
+   }
+
+   /**
+    * @return A random dataset; with min. support 1 it has a lot of FGs.
+    */
+   private static List<int[]> objects(int count, int attrs)
+   {
+      Random random = new Random(3);
+      List<int[]> objects = new ArrayList<int[]>();
+      for (int i = 0; i < count; ++i)
+      {
+         List<Integer> items = new ArrayList<Integer>();
+         for (int attr = 1; attr <= attrs; ++attr) {
+            if (random.nextBoolean()) items.add(attr);
+         }
+         int[] object = new int[items.size()];
+         for (int k = 0; k < object.length; ++k) object[k] = items.get(k);
+         objects.add(object);
+      }
+      return objects;
+   }
+
+   public void testAllPatterns()
+   {
+      List<int[]> objects = objects(100, 12);
+      Miner miner = new Miner(objects);
+      miner.setMinSupp(5);
+      final List<String> expected = new ArrayList<String>();
+      miner.mine(new PatternListener() {
+         public void pattern(int[] intent, int supp, int[] extent) {
+            expected.add(new Pattern(intent, supp, extent).toString());
+         }
+      });
+
+      List<String> patterns = new ArrayList<String>();
+      PatternIterator it = miner.iterator();
+      while (it.hasNext()) patterns.add(it.next().toString());
+      it.close();
+      assertEquals(expected, patterns);
+   }
+
+   public void testCloseEarly() throws InterruptedException
+   {
+      // on several threads the search gives its first patterns late, it must be cancelled
+      CountingMiner miner = new CountingMiner(objects(2000, 40));
+      miner.setMinSupp(1);
+      miner.setThreads(2);
+      PatternIterator it = miner.iterator();
+      Thread.sleep(200);
+      it.close();
+      assertEquals(1, miner.cancels);
+      assertFalse(it.hasNext());
+
+      it.getThread().join(30000);
+      assertFalse("the search thread ended", it.getThread().isAlive());
+   }
+
+   public void testCloseAfterSomePatterns() throws InterruptedException
+   {
+      Miner miner = new Miner(objects(2000, 40));
+      miner.setMinSupp(1);
+      PatternIterator it = miner.iterator();
+      for (int i = 0; i < 10; ++i) {
+         assertNotNull(it.next());
+      }
+      it.close();
+      assertFalse(it.hasNext());
+
+      it.getThread().join(30000);
+      assertFalse("the search thread ended", it.getThread().isAlive());
+   }
+}
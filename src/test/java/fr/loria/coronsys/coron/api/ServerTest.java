@@ -0,0 +1,177 @@
+package fr.loria.coronsys.coron.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import fr.loria.coronsys.coron.MainRunner;
+
+/**
+ * Requests to a server on mushrooms: the output of /mine, the caps of the
+ * limit, the timeout and the threads, and /load and /unload.
+ */
+public class ServerTest
+extends TestCase
+{
+   /**
+    * Timeout of the server in ms.
+    */
+   private final static long TIMEOUT = 5000;
+
+   private final static long MAX_LIMIT = 1000;
+
+   private Server server;
+
+   private String data;
+
+   /**
+    * Code and body of a response.
+    */
+   private static class Response
+   {
+      int code;
+
+      String body;
+   }
+
+   protected void setUp() throws Exception
+   {
+      this.server = new Server(0, 2, TIMEOUT, MAX_LIMIT, null);
+      this.server.start();
+      this.data = MainRunner.mushrooms().getPath();
+      this.server.load(this.data);
+   }
+
+   protected void tearDown() {
+      this.server.stop();
+   }
+
+   private Response request(String method, String path) throws IOException {
+      return request(this.server, method, path, null);
+   }
+
+   private static Response request(Server server, String method, String path) throws IOException {
+      return request(server, method, path, null);
+   }
+
+   /**
+    * @param form Parameters in the body (can be null).
+    */
+   private static Response request(Server server, String method, String path, String form) throws IOException
+   {
+      URL url = new URL("http://localhost:" + server.getPort() + path);
+      HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+      connection.setRequestMethod(method);
+      if (form != null)
+      {
+         connection.setDoOutput(true);
+         connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+         OutputStream out = connection.getOutputStream();
+         out.write(form.getBytes("UTF-8"));
+         out.close();
+      }
+      Response response = new Response();
+      response.code = connection.getResponseCode();
+      InputStream in = (response.code < 400) ? connection.getInputStream() : connection.getErrorStream();
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buf = new byte[4096];
+      int n;
+      while ((n = in.read(buf)) > 0) bytes.write(buf, 0, n);
+      in.close();
+      response.body = bytes.toString("UTF-8");
+      return response;
+   }
+
+   private Response mine(String params) throws IOException {
+      return this.request("GET", "/mine?data=" + URLEncoder.encode(this.data, "UTF-8") + "&" + params);
+   }
+
+   public void testMine() throws Exception
+   {
+      List<String> expected = MainRunner.patterns(MainRunner.run(this.data, "60%", "-alg:talkyg"));
+      Response response = this.mine("minsupp=60%25&alg=talkyg");
+      assertEquals(200, response.code);
+      assertEquals(expected, MainRunner.patterns(response.body));
+      assertTrue(response.body.endsWith("# Patterns: " + expected.size() + "\n"));
+   }
+
+   public void testLimit() throws Exception
+   {
+      Response response = this.mine("minsupp=10%25&limit=10");
+      assertEquals(200, response.code);
+      assertEquals(10, MainRunner.patterns(response.body).size());
+      assertTrue(response.body.contains("# Stopped: the limit (10 patterns)"));
+
+      // without a limit, at most the maximum of the server
+      response = this.mine("minsupp=1");
+      assertEquals(MAX_LIMIT, MainRunner.patterns(response.body).size());
+      assertTrue(response.body.contains("# Stopped:"));
+
+      assertEquals(400, this.mine("minsupp=1&limit=" + (MAX_LIMIT + 1)).code);
+   }
+
+   public void testTimeout() throws Exception
+   {
+      // no limit, a short timeout: the search of all the FGs of mushrooms is stopped by the timeout
+      Server server = new Server(0, 1, 300, 0, null);
+      server.start();
+      try
+      {
+         server.load(this.data);
+         String mine = "/mine?data=" + URLEncoder.encode(this.data, "UTF-8") + "&minsupp=1&alg=talkyg&threads=1";
+
+         // a longer timeout than the timeout of the server is not allowed
+         Response response = request(server, "GET", mine + "&timeout=100000");
+         assertEquals(200, response.code);
+         assertTrue(response.body, response.body.contains("# Stopped: the timeout (300 ms)"));
+
+         response = request(server, "GET", mine + "&timeout=50");
+         assertTrue(response.body, response.body.contains("# Stopped: the timeout (50 ms)"));
+
+         response = request(server, "GET", mine);
+         assertTrue(response.body, response.body.contains("# Stopped: the timeout (300 ms)"));
+
+         assertEquals(400, request(server, "GET", mine + "&timeout=-5").code);
+      }
+      finally {
+         server.stop();
+      }
+   }
+
+   public void testThreads() throws Exception
+   {
+      int max = Runtime.getRuntime().availableProcessors();
+      assertEquals(400, this.mine("minsupp=60%25&threads=0").code);
+      assertEquals(400, this.mine("minsupp=60%25&threads=" + (max + 1)).code);
+      assertEquals(400, this.mine("minsupp=60%25&threads=x").code);
+      assertEquals(200, this.mine("minsupp=60%25&threads=" + max).code);
+   }
+
+   public void testLoadUnload() throws Exception
+   {
+      String data = "?data=" + URLEncoder.encode(this.data, "UTF-8");
+      assertEquals(405, this.request("GET", "/load" + data).code);
+      assertEquals(405, this.request("GET", "/unload" + data).code);
+
+      Response response = this.request("POST", "/load" + data);
+      assertEquals(200, response.code);
+      assertTrue(response.body.contains("\t8416\t"));
+      response = request(this.server, "POST", "/load", data.substring(1));     // form parameters
+      assertEquals(200, response.code);
+      assertTrue(response.body.contains("\t8416\t"));
+      assertTrue(this.request("GET", "/datasets").body.contains("\t8416\t"));
+
+      assertEquals("ok\n", this.request("POST", "/unload" + data).body);
+      // it was given by load(), now it cannot be requested any more
+      assertEquals(403, this.mine("minsupp=60%25").code);
+      assertEquals(403, this.request("POST", "/load" + data).code);
+      assertEquals("", this.request("GET", "/datasets").body);
+   }
+}
@@ -0,0 +1,105 @@
+package fr.loria.coronsys.coron.datastructure.charm;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import fr.loria.coronsys.coron.MainRunner;
+import fr.loria.coronsys.coron.helper.C;
+
+/**
+ * The joins of AdaptiveExtent for the four combinations of tidsets and
+ * diffsets, against the intersection of the tidsets; and the adaptive miners
+ * (-adaptive) against the same miners without it.
+ */
+public class AdaptiveExtentTest
+extends TestCase
+{
+   private final static int OBJECTS = 300;
+
+   private final Random random = new Random(29);
+
+   private final ITtree tree = new ITtree(C.ALG_DTALKY_G);
+
+   /**
+    * @return A random subset of the given tids, with the given density (in %).
+    */
+   private BitSet subset(BitSet tids, int density)
+   {
+      BitSet subset = new BitSet();
+      for (int tid = tids.nextSetBit(0); tid >= 0; tid = tids.nextSetBit(tid+1)) {
+         if (this.random.nextInt(100) < density) subset.set(tid);
+      }
+      return subset;
+   }
+
+   /**
+    * @return A node of a parent with the tidset tp, with the tidset tx, represented
+    * by its tidset or by its diffset.
+    */
+   private ITnode node(BitSet tp, BitSet tx, boolean diffset)
+   {
+      ITnode node = new ITnode(this.tree);
+      BitSet extent = (BitSet) tx.clone();
+      if (diffset)
+      {
+         extent = (BitSet) tp.clone();
+         extent.andNot(tx);
+      }
+      node.setExtent(extent);
+      node.setSupp(tx.cardinality());
+      node.setDiffset(diffset);
+      return node;
+   }
+
+   public void testJoin()
+   {
+      BitSet all = new BitSet();
+      all.set(1, OBJECTS + 1);
+      int[] densities = { 10, 50, 90 };
+      for (int k = 0; k < 500; ++k)
+      {
+         BitSet tp = this.subset(all, 80);
+         BitSet tx = this.subset(tp, densities[this.random.nextInt(3)]);
+         BitSet ty = this.subset(tp, densities[this.random.nextInt(3)]);
+         BitSet txy = (BitSet) tx.clone();
+         txy.and(ty);
+         int supp = txy.cardinality();
+
+         for (int c = 0; c < 4; ++c)
+         {
+            ITnode x = this.node(tp, tx, (c & 1) != 0);
+            ITnode y = this.node(tp, ty, (c & 2) != 0);
+            assertNull(AdaptiveExtent.join(this.tree, x, y, supp + 1));
+
+            ITnode child = AdaptiveExtent.join(this.tree, x, y, Math.min(supp, 1 + this.random.nextInt(5)));
+            if (supp == 0) continue;
+            // else
+            assertNotNull(child);
+            assertEquals(supp, child.getSupp());
+            BitSet expected = txy;
+            if (child.isDiffset())
+            {
+               expected = (BitSet) tx.clone();
+               expected.andNot(txy);
+            }
+            assertEquals("case " + c, expected, child.getExtent().toBitSet());
+         }
+      }
+   }
+
+   public void testSameFgs() throws Exception
+   {
+      String dataset = MainRunner.mushrooms().getPath();
+      for (String alg : new String[] { "-alg:dtalkyg", "-alg:declat" })
+      {
+         for (String minSupp : new String[] { "40%", "15%" })
+         {
+            assertEquals(alg + " " + minSupp,
+                         MainRunner.patterns(MainRunner.run(dataset, minSupp, alg)),
+                         MainRunner.patterns(MainRunner.run(dataset, minSupp, alg, "-adaptive")));
+         }
+      }
+   }
+}
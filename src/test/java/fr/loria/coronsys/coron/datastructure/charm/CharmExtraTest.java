@@ -0,0 +1,104 @@
+package fr.loria.coronsys.coron.datastructure.charm;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+
+import fr.loria.coronsys.coron.helper.C;
+import fr.loria.coronsys.coron.helper.Context;
+import fr.loria.coronsys.coron.helper.Database;
+
+/**
+ * The F_2 matrix and the vertical database computed on several threads must be
+ * the same as on one thread.
+ */
+public class CharmExtraTest
+extends TestCase
+{
+   private final static int OBJECTS = 1000;
+
+   private final static int ATTRS = 30;
+
+   private final Vector<BitSet> horizontal = new Vector<BitSet>();
+
+   protected void setUp()
+   {
+      Random random = new Random(5);
+      for (int i = 0; i < OBJECTS; ++i)
+      {
+         BitSet object = new BitSet();
+         for (int attr = 1; attr <= ATTRS; ++attr) {
+            if (random.nextInt(ATTRS) >= attr / 2) object.set(attr);
+         }
+         this.horizontal.add(object);
+      }
+   }
+
+   protected void tearDown() {
+      Context.unbind();
+   }
+
+   /**
+    * @return A CharmExtra on a copy of the database, in a new context.
+    */
+   private CharmExtra newCharmExtra(int partitions)
+   {
+      Context.bind(new Context());
+      Vector<BitSet> database = new Vector<BitSet>();
+      for (BitSet object : this.horizontal) database.add((BitSet) object.clone());
+      Database.setNumberOfObjects(OBJECTS);
+      Database.setDatabase(database, C.DBR_HORIZONTAL);
+      CharmExtra charmExtra = new CharmExtra(database, 1);
+      charmExtra.partitions = partitions;
+      return charmExtra;
+   }
+
+   public void testF2Matrix()
+   {
+      int[][] expected = this.newCharmExtra(1).getF2Matrix();
+      int max = Database.getTotalNumberOfAttr();
+      for (int a = 1; a <= ATTRS; ++a)
+      {
+         for (int b = a + 1; b <= ATTRS; ++b)
+         {
+            int count = 0;
+            for (BitSet object : this.horizontal) {
+               if (object.get(a) && object.get(b)) ++count;
+            }
+            assertEquals(count, expected[a][max-b]);
+         }
+      }
+
+      for (int parts = 2; parts <= 5; ++parts)
+      {
+         int[][] matrix = this.newCharmExtra(parts).getF2Matrix();
+         assertEquals(expected.length, matrix.length);
+         for (int i = 0; i < matrix.length; ++i) {
+            assertTrue(Arrays.equals(expected[i], matrix[i]));
+         }
+      }
+   }
+
+   public void testVerticalConversion()
+   {
+      Vector<BitSet> expected = new Vector<BitSet>();
+      for (int attr = 0; attr <= ATTRS; ++attr) expected.add(new BitSet());
+      for (int i = 0; i < OBJECTS; ++i)
+      {
+         BitSet object = this.horizontal.get(i);
+         for (int attr = object.nextSetBit(0); attr >= 0; attr = object.nextSetBit(attr+1)) {
+            expected.get(attr).set(i + 1);
+         }
+      }
+
+      for (int parts = 1; parts <= 5; ++parts)
+      {
+         Vector<BitSet> vertical = this.newCharmExtra(parts).convertDBHorizontal2Vertical();
+         assertEquals("threads " + parts, expected, vertical);
+         assertTrue(Database.isDBRepresentationVertical());
+      }
+   }
+}
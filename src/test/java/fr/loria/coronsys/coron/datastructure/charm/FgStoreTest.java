@@ -0,0 +1,109 @@
+package fr.loria.coronsys.coron.datastructure.charm;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * FgStore against MyHash: the same itemsets are added to both, and the
+ * lookups must give the same answers, also after the store was spilled.
+ */
+public class FgStoreTest
+extends TestCase
+{
+   private final static int N = 5000;
+
+   /**
+    * The FGs: random itemsets with random extents (few objects, thus many
+    * FGs have the same hash value and support).
+    */
+   private final List<ITnode> nodes = new ArrayList<ITnode>();
+
+   protected void setUp()
+   {
+      Random random = new Random(3);
+      for (int i = 0; i < N; ++i)
+      {
+         BitSet intent = new BitSet();
+         for (int k = 0; k < 3; ++k) intent.set(random.nextInt(200));
+         BitSet extent = new BitSet();
+         for (int k = random.nextInt(4); k >= 0; --k) extent.set(1 + random.nextInt(12));
+         ITnode node = new ITnode(intent, extent.cardinality());
+         node.setExtent(extent);
+         this.nodes.add(node);
+      }
+   }
+
+   private static int spillFiles()
+   {
+      File[] files = new File(System.getProperty("java.io.tmpdir")).listFiles(new FilenameFilter() {
+         public boolean accept(File dir, String name) {
+            return name.startsWith("fgstore") && name.endsWith(".bin");
+         }
+      });
+      return (files == null) ? 0 : files.length;
+   }
+
+   /**
+    * Checks every itemset (and a superset of it) in both tables.
+    */
+   private void assertSameAnswers(FgTable expected, FgTable actual)
+   {
+      for (ITnode node : this.nodes)
+      {
+         BitSet intent = node.getIntent();
+         BitSet superset = (BitSet) intent.clone();
+         superset.set(300);
+         BitSet subset = (BitSet) intent.clone();
+         subset.clear(intent.nextSetBit(0));
+         int supp = node.getSupp();
+         int h = node.getHash();
+
+         assertTrue(actual.containsSupersetOrSubsetOf(h, superset, supp, FgTable.SUBSET));
+         assertEquals(expected.containsSupersetOrSubsetOf(h, superset, supp, FgTable.SUBSET),
+                      actual.containsSupersetOrSubsetOf(h, superset, supp, FgTable.SUBSET));
+         assertEquals(expected.containsSupersetOrSubsetOf(h, subset, supp, FgTable.SUPERSET),
+                      actual.containsSupersetOrSubsetOf(h, subset, supp, FgTable.SUPERSET));
+         assertEquals(expected.containsSupersetOrSubsetOf(h, superset, supp + 1, FgTable.SUBSET),
+                      actual.containsSupersetOrSubsetOf(h, superset, supp + 1, FgTable.SUBSET));
+      }
+   }
+
+   public void testLookup()
+   {
+      MyHash hash = new MyHash();
+      FgStore store = new FgStore();
+      for (ITnode node : this.nodes)
+      {
+         hash.add(node);
+         store.add(node);
+      }
+      this.assertSameAnswers(hash, store);
+      store.close();
+   }
+
+   public void testSpill()
+   throws IOException
+   {
+      int files = spillFiles();
+      MyHash hash = new MyHash();
+      FgStore store = new FgStore();
+      for (int i = 0; i < N; ++i)
+      {
+         hash.add(this.nodes.get(i));
+         store.add(this.nodes.get(i));
+         if ((i == N / 3) || (i == 2 * N / 3)) assertTrue(store.spill() > 0);
+      }
+      assertEquals(files + 1, spillFiles());
+      this.assertSameAnswers(hash, store);
+
+      store.close();
+      assertEquals(files, spillFiles());
+   }
+}
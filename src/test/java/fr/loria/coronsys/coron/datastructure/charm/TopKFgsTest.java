@@ -0,0 +1,106 @@
+package fr.loria.coronsys.coron.datastructure.charm;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import fr.loria.coronsys.coron.MainRunner;
+import fr.loria.coronsys.coron.helper.ResultSink;
+
+/**
+ * TopKFgs against sorting all the FGs; and the output of -topk:K against the
+ * FGs of a full run whose support is at least the K-th best one.
+ */
+public class TopKFgsTest
+extends TestCase
+{
+   /**
+    * Collects the written FGs.
+    */
+   private static class ListSink
+   implements ResultSink
+   {
+      final List<Integer> supports = new ArrayList<Integer>();
+
+      final List<BitSet> intents = new ArrayList<BitSet>();
+
+      public void add(BitSet intent, int supp)
+      {
+         this.intents.add(intent);
+         this.supports.add(supp);
+      }
+
+      public void flush() { }
+
+      public void close() { }
+   }
+
+   public void testBestSupports()
+   {
+      Random random = new Random(43);
+      for (int k : new int[] { 1, 5, 20 })
+      {
+         TopKFgs topK = new TopKFgs(k);
+         List<Integer> all = new ArrayList<Integer>();
+         int threshold = 0;
+         for (int i = 0; i < 300; ++i)
+         {
+            int supp = 1 + random.nextInt(40);     // a lot of ties
+            BitSet intent = new BitSet();
+            intent.set(i);
+            topK.add(intent, supp);
+            all.add(supp);
+
+            assertTrue("the threshold never decreases", topK.getThreshold() >= threshold);
+            threshold = topK.getThreshold();
+            if (i + 1 < k) assertEquals(0, threshold);
+         }
+
+         Collections.sort(all, Collections.reverseOrder());
+         int kth = all.get(k - 1);
+         assertEquals(kth, topK.getThreshold());
+         List<Integer> expected = new ArrayList<Integer>();
+         for (int supp : all) {
+            if (supp >= kth) expected.add(supp);
+         }
+
+         ListSink sink = new ListSink();
+         assertEquals(expected.size(), topK.writeTo(sink));
+         assertEquals(expected.size(), topK.size());
+         assertEquals(expected, sink.supports);     // by descending support
+      }
+   }
+
+   /**
+    * @param pattern A line of the output, e.g. "{36, 94} (8192)".
+    * @return The support of the pattern.
+    */
+   private static int supportOf(String pattern) {
+      return Integer.parseInt(pattern.substring(pattern.lastIndexOf('(') + 1, pattern.lastIndexOf(')')));
+   }
+
+   public void testSameAsFullRun() throws Exception
+   {
+      String dataset = MainRunner.mushrooms().getPath();
+      List<String> all = MainRunner.patterns(MainRunner.run(dataset, "20%", "-alg:talkyg"));
+      List<Integer> supports = new ArrayList<Integer>();
+      for (String pattern : all) supports.add(supportOf(pattern));
+      Collections.sort(supports, Collections.reverseOrder());
+
+      for (int k : new int[] { 1, 10, 50 })
+      {
+         int kth = supports.get(k - 1);
+         List<String> expected = new ArrayList<String>();
+         for (String pattern : all) {
+            if (supportOf(pattern) >= kth) expected.add(pattern);
+         }
+         for (String alg : new String[] { "-alg:talkyg", "-alg:talkyg2", "-alg:dtalkyg" }) {
+            assertEquals(alg + " top-" + k, expected, MainRunner.patterns(MainRunner.run(dataset, "1", alg, "-topk:" + k)));
+         }
+      }
+   }
+}
@@ -0,0 +1,77 @@
+package fr.loria.coronsys.coron.datastructure.charm;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * ZobristFgMap against a HashMap of the same itemsets, with more itemsets
+ * than the initial capacity (thus the map grows).
+ */
+public class ZobristFgMapTest
+extends TestCase
+{
+   private final static int ATTRS = 60;
+
+   private final Map<BitSet, Integer> expected = new HashMap<BitSet, Integer>();
+
+   private final ZobristFgMap map = new ZobristFgMap(ATTRS);
+
+   protected void setUp()
+   {
+      Random random = new Random(7);
+      while (this.expected.size() < 20000)
+      {
+         BitSet intent = new BitSet();
+         for (int k = 1 + random.nextInt(4); k > 0; --k) intent.set(random.nextInt(ATTRS));
+         if (this.expected.containsKey(intent)) continue;
+         // else
+         int supp = 1 + random.nextInt(1000);
+         this.expected.put(intent, supp);
+         this.map.put(intent, supp);
+      }
+   }
+
+   public void testGet()
+   {
+      assertEquals(this.expected.size(), this.map.size());
+      for (Map.Entry<BitSet, Integer> e : this.expected.entrySet()) {
+         assertEquals(e.getValue().intValue(), this.map.get(e.getKey()));
+      }
+      BitSet absent = new BitSet();
+      absent.set(ATTRS + 5);
+      assertEquals(ZobristFgMap.NOT_FOUND, this.map.get(absent));
+   }
+
+   public void testGetSubset()
+   {
+      for (BitSet intent : this.expected.keySet())
+      {
+         BitSet superset = (BitSet) intent.clone();
+         superset.set(ATTRS - 1);
+         long key = this.map.keyOf(superset);
+         for (int attr = superset.nextSetBit(0); attr >= 0; attr = superset.nextSetBit(attr + 1))
+         {
+            BitSet subset = (BitSet) superset.clone();
+            subset.clear(attr);
+            Integer supp = this.expected.get(subset);
+            assertEquals((supp != null) ? supp.intValue() : ZobristFgMap.NOT_FOUND, this.map.getSubset(superset, key, attr));
+         }
+      }
+   }
+
+   public void testKey()
+   {
+      BitSet a = new BitSet();
+      a.set(3);
+      a.set(17);
+      BitSet b = (BitSet) a.clone();
+      b.set(42);
+      BitSet c = new BitSet();
+      c.set(42);
+      assertEquals(this.map.keyOf(b), this.map.keyOf(a) ^ this.map.keyOf(c));
+   }
+}
@@ -0,0 +1,94 @@
+package fr.loria.coronsys.coron.datastructure.tidset;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * The fused kernel of BitSetTidset (the operation, the support and the sum of
+ * the tids in one pass, with a support bound) against the same operations on
+ * BitSets. The tidsets have different lengths, thus the bound is checked in
+ * several blocks and the shorter tidset ends before the longer one.
+ */
+public class BitSetTidsetTest
+extends TestCase
+{
+   private final Random random = new Random(17);
+
+   /**
+    * @return A random set of tids in [1, length), with the given density (in %).
+    */
+   private BitSet randomTids(int length, int density)
+   {
+      BitSet bits = new BitSet();
+      for (int tid = 1; tid < length; ++tid) {
+         if (this.random.nextInt(100) < density) bits.set(tid);
+      }
+      return bits;
+   }
+
+   private static long sum(BitSet bits)
+   {
+      long sum = 0;
+      for (int tid = bits.nextSetBit(0); tid >= 0; tid = bits.nextSetBit(tid+1)) sum += tid;
+      return sum;
+   }
+
+   private static void assertSame(BitSet expected, Tidset tidset)
+   {
+      assertEquals(expected, tidset.toBitSet());
+      assertEquals(expected.cardinality(), tidset.cardinality());
+      assertEquals(sum(expected), tidset.sumOfTids());
+      assertEquals(expected.isEmpty(), tidset.isEmpty());
+   }
+
+   public void testConstructor()
+   {
+      BitSet bits = this.randomTids(5000, 30);
+      assertSame(bits, new BitSetTidset(bits));
+      assertSame(new BitSet(), new BitSetTidset(new BitSet()));
+   }
+
+   public void testBoundedOperations()
+   {
+      int[] lengths = { 10, 64, 65, 2000, 5000, 20000 };
+      int[] densities = { 1, 20, 50, 95 };
+      for (int k = 0; k < 200; ++k)
+      {
+         BitSet a = this.randomTids(lengths[this.random.nextInt(lengths.length)], densities[this.random.nextInt(densities.length)]);
+         BitSet b = this.randomTids(lengths[this.random.nextInt(lengths.length)], densities[this.random.nextInt(densities.length)]);
+         Tidset ta = new BitSetTidset(a), tb = new BitSetTidset(b);
+
+         BitSet and = (BitSet) a.clone();
+         and.and(b);
+         int card = and.cardinality();
+         assertSame(and, ta.and(tb));
+         assertSame(and, ta.and(tb, card));     // exactly min. support: kept
+         assertSame(and, ta.and(tb, 0));
+         assertNull(ta.and(tb, card + 1));
+         assertEquals(card, ta.andCardinality(tb, card));
+         assertEquals(-1, ta.andCardinality(tb, card + 1));
+
+         BitSet diff = (BitSet) a.clone();
+         diff.andNot(b);
+         int diffCard = diff.cardinality();
+         assertSame(diff, ta.andNot(tb));
+         assertSame(diff, ta.andNot(tb, diffCard));     // exactly the bound: kept
+         if (diffCard > 0) assertNull(ta.andNot(tb, diffCard - 1));
+         assertNull(ta.andNot(tb, -1));
+      }
+   }
+
+   public void testMixedWithRoaring()
+   {
+      BitSet a = this.randomTids(70000, 10);
+      BitSet b = this.randomTids(70000, 60);
+      Tidset ta = new BitSetTidset(a), tb = RoaringTidset.valueOf(b);
+
+      BitSet and = (BitSet) a.clone();
+      and.and(b);
+      assertSame(and, ta.and(tb, and.cardinality()));
+      assertNull(ta.and(tb, and.cardinality() + 1));
+   }
+}
@@ -0,0 +1,122 @@
+package fr.loria.coronsys.coron.datastructure.tidset;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * The operations of RoaringTidset against the same operations on BitSets. The
+ * tidsets mix sparse, dense and run-like chunks, thus all the kinds of
+ * containers meet each other.
+ */
+public class RoaringTidsetTest
+extends TestCase
+{
+   private final Random random = new Random(42);
+
+   /**
+    * @return A random set of tids in [1, 5 * 65536): each chunk of 65536 tids is
+    * empty, sparse, dense or a few long runs.
+    */
+   private BitSet randomTids()
+   {
+      BitSet bits = new BitSet();
+      for (int chunk = 0; chunk < 5; ++chunk)
+      {
+         int base = chunk << 16;
+         switch (this.random.nextInt(4))
+         {
+            case 0: break;
+            case 1:
+               for (int i = 0; i < 500; ++i) bits.set(base + this.random.nextInt(1 << 16));
+               break;
+            case 2:
+               for (int i = 0; i < 40000; ++i) bits.set(base + this.random.nextInt(1 << 16));
+               break;
+            default:
+               for (int i = 0; i < 5; ++i)
+               {
+                  int from = base + this.random.nextInt(1 << 16);
+                  bits.set(from, Math.min(base + (1 << 16), from + this.random.nextInt(10000)));
+               }
+         }
+      }
+      bits.clear(0);     // tid 0 is not used
+      return bits;
+   }
+
+   private static BitSet and(BitSet a, BitSet b)
+   {
+      BitSet r = (BitSet) a.clone();
+      r.and(b);
+      return r;
+   }
+
+   private static BitSet andNot(BitSet a, BitSet b)
+   {
+      BitSet r = (BitSet) a.clone();
+      r.andNot(b);
+      return r;
+   }
+
+   public void testValueOf()
+   {
+      for (int i = 0; i < 50; ++i)
+      {
+         BitSet bits = this.randomTids();
+         RoaringTidset t = RoaringTidset.valueOf(bits);
+         assertEquals(bits, t.toBitSet());
+         assertEquals(bits.cardinality(), t.cardinality());
+         assertEquals(bits.isEmpty(), t.isEmpty());
+      }
+   }
+
+   public void testOperations()
+   {
+      for (int i = 0; i < 100; ++i)
+      {
+         BitSet a = this.randomTids();
+         BitSet b = this.randomTids();
+         Tidset ta = RoaringTidset.valueOf(a);
+         Tidset tb = RoaringTidset.valueOf(b);
+
+         assertEquals(and(a, b), ta.and(tb).toBitSet());
+         assertEquals(andNot(a, b), ta.andNot(tb).toBitSet());
+
+         int card = and(a, b).cardinality();
+         assertEquals(card, ta.andCardinality(tb, card));
+         assertEquals(-1, ta.andCardinality(tb, card + 1));
+         assertNotNull(ta.and(tb, card));
+         assertNull(ta.and(tb, card + 1));
+
+         int diff = andNot(a, b).cardinality();
+         assertEquals(andNot(a, b), ta.andNot(tb, diff).toBitSet());
+         if (diff > 0) assertNull(ta.andNot(tb, diff - 1));
+      }
+   }
+
+   public void testIteration()
+   {
+      BitSet bits = this.randomTids();
+      Tidset t = RoaringTidset.valueOf(bits);
+      long sum = 0;
+      for (int tid = bits.nextSetBit(0); tid >= 0; tid = bits.nextSetBit(tid + 1))
+      {
+         assertEquals(tid, t.nextTid(tid));
+         sum += tid;
+      }
+      assertEquals(sum, t.sumOfTids());
+      assertEquals(-1, t.nextTid(bits.length()));
+   }
+
+   public void testEmpty()
+   {
+      Tidset empty = RoaringTidset.empty();
+      Tidset t = RoaringTidset.valueOf(this.randomTids());
+      assertTrue(empty.isEmpty());
+      assertTrue(t.and(empty).isEmpty());
+      assertEquals(t.toBitSet(), t.andNot(empty).toBitSet());
+      assertEquals(RoaringTidset.valueOf(new BitSet()), empty);
+   }
+}
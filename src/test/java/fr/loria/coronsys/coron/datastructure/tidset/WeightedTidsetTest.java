@@ -0,0 +1,121 @@
+package fr.loria.coronsys.coron.datastructure.tidset;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import fr.loria.coronsys.coron.MainRunner;
+
+/**
+ * The operations of WeightedTidset against the same operations on BitSets,
+ * with the sum of the weights as cardinality; and the same FGs with and
+ * without -fold on a dataset with a lot of identical objects.
+ */
+public class WeightedTidsetTest
+extends TestCase
+{
+   private final static int TIDS = 3000;
+
+   private final static int MAX_WEIGHT = 7;
+
+   private final Random random = new Random(37);
+
+   private final int[] weights = new int[TIDS];
+
+   protected void setUp()
+   {
+      for (int tid = 1; tid < TIDS; ++tid) this.weights[tid] = 1 + this.random.nextInt(MAX_WEIGHT);
+   }
+
+   private BitSet randomTids(int density)
+   {
+      BitSet bits = new BitSet();
+      for (int tid = 1; tid < TIDS; ++tid) {
+         if (this.random.nextInt(100) < density) bits.set(tid);
+      }
+      return bits;
+   }
+
+   private int weightOf(BitSet bits)
+   {
+      int sum = 0;
+      for (int tid = bits.nextSetBit(0); tid >= 0; tid = bits.nextSetBit(tid+1)) sum += this.weights[tid];
+      return sum;
+   }
+
+   private WeightedTidset weighted(BitSet bits) {
+      return new WeightedTidset(new BitSetTidset(bits), this.weights, MAX_WEIGHT);
+   }
+
+   private void assertSame(BitSet expected, Tidset tidset)
+   {
+      assertEquals(expected, tidset.toBitSet());
+      assertEquals(this.weightOf(expected), tidset.cardinality());
+      assertEquals(expected.isEmpty(), tidset.isEmpty());
+   }
+
+   public void testOperations()
+   {
+      int[] densities = { 1, 20, 50, 95 };
+      for (int k = 0; k < 100; ++k)
+      {
+         BitSet a = this.randomTids(densities[this.random.nextInt(densities.length)]);
+         BitSet b = this.randomTids(densities[this.random.nextInt(densities.length)]);
+         Tidset ta = this.weighted(a), tb = this.weighted(b);
+         this.assertSame(a, ta);
+
+         BitSet and = (BitSet) a.clone();
+         and.and(b);
+         int card = this.weightOf(and);
+         this.assertSame(and, ta.and(tb));
+         this.assertSame(and, ta.and(tb, card));     // exactly min. support: kept
+         this.assertSame(and, ta.and(new BitSetTidset(b), card));
+         assertNull(ta.and(tb, card + 1));
+         assertEquals(card, ta.andCardinality(tb, card));
+         assertEquals(-1, ta.andCardinality(tb, card + 1));
+
+         BitSet diff = (BitSet) a.clone();
+         diff.andNot(b);
+         int diffCard = this.weightOf(diff);
+         this.assertSame(diff, ta.andNot(tb));
+         this.assertSame(diff, ta.andNot(tb, diffCard));     // exactly the bound: kept
+         if (diffCard > 0) assertNull(ta.andNot(tb, diffCard - 1));
+      }
+   }
+
+   public void testSameFgs() throws Exception
+   {
+      // 2000 objects drawn from 150 distinct ones
+      Random random = new Random(41);
+      String[] distinct = new String[150];
+      for (int i = 0; i < distinct.length; ++i)
+      {
+         StringBuilder sb = new StringBuilder();
+         for (int attr = 1; attr <= 30; ++attr) {
+            if (random.nextInt(3) == 0) sb.append(attr).append(' ');
+         }
+         distinct[i] = sb.toString().trim();
+      }
+      File file = File.createTempFile("fold", ".basenum");
+      try
+      {
+         PrintWriter out = new PrintWriter(file);
+         for (int i = 0; i < 2000; ++i) out.println(distinct[random.nextInt(distinct.length)]);
+         out.close();
+
+         for (String alg : new String[] { "-alg:talkyg", "-alg:dtalkyg" })
+         {
+            List<String> expected = MainRunner.patterns(MainRunner.run(file.getPath(), "5%", alg));
+            assertFalse(expected.isEmpty());
+            assertEquals(alg, expected, MainRunner.patterns(MainRunner.run(file.getPath(), "5%", alg, "-fold")));
+         }
+      }
+      finally {
+         file.delete();
+      }
+   }
+}
@@ -0,0 +1,106 @@
+package fr.loria.coronsys.coron.helper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import fr.loria.coronsys.coron.datastructure.charm.FgStore;
+import fr.loria.coronsys.coron.datastructure.charm.FgTable;
+
+/**
+ * A checkpoint is written and read back: the FGs come back in the same order,
+ * with the same answers of the store, and the position and the counters are
+ * the same.
+ */
+public class CheckpointTest
+extends TestCase
+{
+   /**
+    * Collects the FGs written by the checkpoint.
+    */
+   private static class ListSink
+   implements ResultSink
+   {
+      final List<BitSet> intents = new ArrayList<BitSet>();
+
+      final List<Integer> supps = new ArrayList<Integer>();
+
+      public void add(BitSet intent, int supp)
+      {
+         this.intents.add(intent);
+         this.supps.add(supp);
+      }
+
+      public void flush() { }
+
+      public void close() { }
+   }
+
+   private File file;
+
+   protected void setUp()
+   throws IOException
+   {
+      this.file = File.createTempFile("checkpoint", ".bin");
+      this.file.delete();
+   }
+
+   protected void tearDown()
+   {
+      this.file.delete();
+      new File(this.file.getPath() + ".tmp").delete();
+   }
+
+   public void testRoundTrip()
+   {
+      Random random = new Random(5);
+      FgStore store = new FgStore();
+      List<BitSet> intents = new ArrayList<BitSet>();
+      List<Integer> supps = new ArrayList<Integer>();
+      List<Integer> hashes = new ArrayList<Integer>();
+      for (int i = 0; i < 3000; ++i)
+      {
+         BitSet intent = new BitSet();
+         for (int k = 1 + random.nextInt(3); k > 0; --k) intent.set(random.nextInt(500));
+         int supp = 2 + random.nextInt(50);
+         int hash = random.nextInt(C.HASH_SIZE);
+         store.add(hash, intent, supp);
+         intents.add(intent);
+         supps.add(supp);
+         hashes.add(hash);
+      }
+      int[] rootAttrs = { 4, 1, 7, 3 };
+
+      Checkpoint checkpoint = new Checkpoint(this.file.getPath(), 0);
+      assertFalse(checkpoint.exists());
+      checkpoint.save(2, rootAttrs, 1, intents.size(), 123L, 456L, store);
+      assertTrue(checkpoint.exists());
+      store.close();
+
+      FgStore restored = new FgStore();
+      ListSink sink = new ListSink();
+      Checkpoint other = new Checkpoint(this.file.getPath(), 0);
+      assertEquals(1, other.restore(2, rootAttrs, restored, sink));
+      assertEquals(intents.size(), other.getFgCnt());
+      assertEquals(123L, other.getSkipCnt());
+      assertEquals(456L, other.getRareCand());
+      assertEquals(intents, sink.intents);
+      assertEquals(supps, sink.supps);
+
+      for (int i = 0; i < intents.size(); ++i)
+      {
+         BitSet superset = (BitSet) intents.get(i).clone();
+         superset.set(1000);
+         assertTrue(restored.containsSupersetOrSubsetOf(hashes.get(i), superset, supps.get(i), FgTable.SUBSET));
+      }
+      restored.close();
+
+      other.delete();
+      assertFalse(other.exists());
+   }
+}
@@ -0,0 +1,130 @@
+package fr.loria.coronsys.coron.helper;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+
+import fr.loria.coronsys.coron.MainRunner;
+
+/**
+ * The equivalence classes of -closures against the closures computed from the
+ * objects of the dataset: each FG of a plain run is in the class of its
+ * closure, with the same support.
+ */
+public class ClosureSinkTest
+extends TestCase
+{
+   private final static Pattern ITEMSET = Pattern.compile("\\{([^}]*)\\}");
+
+   /**
+    * @param s Attributes separated by ", ", e.g. "36, 94".
+    */
+   private static BitSet parse(String s)
+   {
+      BitSet set = new BitSet();
+      for (String attr : s.split(", ")) {
+         if (attr.length() > 0) set.set(Integer.parseInt(attr));
+      }
+      return set;
+   }
+
+   private static String format(BitSet set) {
+      return set.toString().replace("{", "").replace("}", "");
+   }
+
+   /**
+    * @return The objects of the dataset.
+    */
+   private static List<BitSet> objects(String dataset) throws Exception
+   {
+      List<BitSet> objects = new ArrayList<BitSet>();
+      BufferedReader in = new BufferedReader(new FileReader(dataset));
+      try
+      {
+         String line;
+         while ((line = in.readLine()) != null)
+         {
+            BitSet object = new BitSet();
+            for (String attr : line.trim().split("\\s+")) {
+               if (attr.length() > 0) object.set(Integer.parseInt(attr));
+            }
+            objects.add(object);
+         }
+      }
+      finally {
+         in.close();
+      }
+      return objects;
+   }
+
+   /**
+    * @param output Output of -closures.
+    * @return "closure (supp)" -> the FGs of the class.
+    */
+   private static Map<String, TreeSet<String>> classes(String output)
+   {
+      Map<String, TreeSet<String>> classes = new TreeMap<String, TreeSet<String>>();
+      for (String line : MainRunner.patterns(output))
+      {
+         int sep = line.indexOf(" +; [");
+         assertTrue(line, sep > 0);
+         TreeSet<String> fgs = new TreeSet<String>();
+         Matcher m = ITEMSET.matcher(line.substring(sep));
+         while (m.find()) fgs.add(m.group(1));
+         assertNull("one line per class", classes.put(line.substring(0, sep), fgs));
+      }
+      return classes;
+   }
+
+   public void testClasses() throws Exception
+   {
+      String dataset = MainRunner.mushrooms().getPath();
+      List<BitSet> objects = objects(dataset);
+
+      Map<String, TreeSet<String>> expected = new TreeMap<String, TreeSet<String>>();
+      for (String fg : MainRunner.patterns(MainRunner.run(dataset, "25%", "-alg:talkyg")))
+      {
+         Matcher m = ITEMSET.matcher(fg);
+         assertTrue(m.find());
+         BitSet intent = parse(m.group(1));
+         BitSet closure = null;
+         int supp = 0;
+         for (BitSet object : objects)
+         {
+            BitSet both = (BitSet) intent.clone();
+            both.and(object);
+            if (both.equals(intent) == false) continue;
+            // else
+            ++supp;
+            if (closure == null) closure = (BitSet) object.clone();
+            else closure.and(object);
+         }
+         String key = "{" + format(closure) + "} (" + supp + ")";
+         if (expected.containsKey(key) == false) expected.put(key, new TreeSet<String>());
+         expected.get(key).add(m.group(1));
+      }
+      assertTrue(expected.size() > 100);
+
+      String[][] runs = {
+         { "-alg:talkyg" }, { "-alg:talkyg2" }, { "-alg:dtalkyg" }, { "-alg:talkyg", "-threads:2" }, { "-alg:dtalkyg", "-threads:2" }
+      };
+      for (String[] run : runs)
+      {
+         List<String> args = new ArrayList<String>();
+         args.add(dataset);
+         args.add("25%");
+         args.add("-closures");
+         for (String arg : run) args.add(arg);
+         assertEquals(args.toString(), expected, classes(MainRunner.run(args.toArray(new String[args.size()]))));
+      }
+   }
+}
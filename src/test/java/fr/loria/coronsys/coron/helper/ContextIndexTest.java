@@ -0,0 +1,109 @@
+package fr.loria.coronsys.coron.helper;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+
+/**
+ * The queries of ContextIndex against the scans of ContextOp, with an index of
+ * a horizontal and of a vertical database, with and without cache.
+ */
+public class ContextIndexTest
+extends TestCase
+{
+   private final static int OBJECTS = 300;
+
+   private final static int ATTRS = 40;
+
+   private final Random random = new Random(11);
+
+   /**
+    * Horizontal database: the attributes of each object.
+    */
+   private final Vector<BitSet> horizontal = new Vector<BitSet>();
+
+   /**
+    * The same database, vertically: the objects of each attribute (object i of
+    * the horizontal database is object i+1).
+    */
+   private final Vector<BitSet> vertical = new Vector<BitSet>();
+
+   private BitSet[] queries;
+
+   protected void setUp()
+   {
+      this.vertical.setSize(ATTRS);
+      for (int i = 0; i < OBJECTS; ++i)
+      {
+         BitSet object = new BitSet();
+         for (int attr = 0; attr < ATTRS; ++attr)
+         {
+            // the first attributes are frequent, thus the closures are not trivial
+            if (this.random.nextInt(ATTRS) >= attr / 2) continue;
+            // else
+            object.set(attr);
+            if (this.vertical.get(attr) == null) this.vertical.set(attr, new BitSet());
+            this.vertical.get(attr).set(i + 1);
+         }
+         this.horizontal.add(object);
+      }
+
+      this.queries = new BitSet[500];
+      for (int i = 0; i < this.queries.length; ++i)
+      {
+         this.queries[i] = new BitSet();
+         for (int k = this.random.nextInt(4); k > 0; --k) this.queries[i].set(this.random.nextInt(ATTRS));
+      }
+      this.queries[0].clear();     // the empty itemset
+      this.queries[1].set(ATTRS + 10);     // an attribute that is in no object
+   }
+
+   private void assertSameAnswers(ContextIndex index)
+   {
+      BitSet[] closures = index.getClosures(this.queries);
+      int[] supps = index.getSupports(this.queries);
+      for (int i = 0; i < this.queries.length; ++i)
+      {
+         BitSet image = ContextOp.getImage(this.horizontal, this.queries[i]);
+         BitSet closure = ContextOp.getClosure(this.horizontal, this.queries[i]);
+         assertEquals(image, index.getImage(this.queries[i]));
+         assertEquals(image.cardinality(), index.getSupport(this.queries[i]));
+         assertEquals(image.cardinality(), supps[i]);
+         assertEquals(closure, index.getClosure(this.queries[i]));
+         assertEquals(closure, closures[i]);
+      }
+   }
+
+   public void testHorizontal()
+   {
+      this.assertSameAnswers(ContextIndex.horizontal(this.horizontal, null, 0));
+   }
+
+   public void testVertical()
+   {
+      this.assertSameAnswers(ContextIndex.vertical(this.vertical, OBJECTS, null, 0));
+   }
+
+   public void testCache()
+   {
+      ContextIndex index = ContextIndex.horizontal(this.horizontal, null, 64);
+      this.assertSameAnswers(index);
+      this.assertSameAnswers(index);     // from the cache
+   }
+
+   public void testWeights()
+   {
+      int[] weights = new int[OBJECTS + 1];
+      for (int tid = 1; tid <= OBJECTS; ++tid) weights[tid] = 1 + this.random.nextInt(5);
+      ContextIndex index = ContextIndex.horizontal(this.horizontal, weights, 0);
+      for (BitSet itemset : this.queries)
+      {
+         BitSet image = ContextOp.getImage(this.horizontal, itemset);
+         int supp = 0;
+         for (int tid = image.nextSetBit(0); tid >= 0; tid = image.nextSetBit(tid + 1)) supp += weights[tid];
+         assertEquals(supp, index.getSupport(itemset));
+      }
+   }
+}
@@ -0,0 +1,115 @@
+package fr.loria.coronsys.coron.helper;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * The lines of MappedLineReader must be the lines of BufferedReader.readLine(),
+ * with small windows, so that the line terminators fall on the window edges.
+ */
+public class MappedLineReaderTest
+extends TestCase
+{
+   private File file;
+
+   protected void setUp() throws IOException {
+      this.file = File.createTempFile("lines", ".txt");
+   }
+
+   protected void tearDown() {
+      this.file.delete();
+   }
+
+   /**
+    * @return The lines of the file read by MappedLineReader.
+    */
+   private List<String> read(String content, int windowSize) throws IOException
+   {
+      Files.write(this.file.toPath(), content.getBytes("ISO-8859-1"));
+      List<String> lines = new ArrayList<String>();
+      MappedLineReader in = new MappedLineReader(this.file.getPath(), windowSize);
+      while (in.nextLine())
+      {
+         StringBuilder sb = new StringBuilder();
+         for (int i = in.start(); i < in.end(); ++i) sb.append((char) in.get(i));
+         assertEquals(sb.toString(), in.getLine());
+         lines.add(sb.toString());
+         assertEquals(lines.size(), in.getLineNumber());
+      }
+      in.close();
+      return lines;
+   }
+
+   /**
+    * @return The lines given by BufferedReader.
+    */
+   private static List<String> expected(String content) throws IOException
+   {
+      List<String> lines = new ArrayList<String>();
+      BufferedReader in = new BufferedReader(new StringReader(content));
+      String line;
+      while ((line = in.readLine()) != null) lines.add(line);
+      return lines;
+   }
+
+   private void check(String content) throws IOException
+   {
+      List<String> expected = expected(content);
+      for (int windowSize = 1; windowSize <= content.length() + 1; ++windowSize) {
+         assertEquals("window " + windowSize, expected, this.read(content, windowSize));
+      }
+   }
+
+   public void testEmptyFile() throws IOException
+   {
+      assertTrue(this.read("", 4).isEmpty());
+      assertTrue(this.read("", 1 << 20).isEmpty());
+   }
+
+   public void testLineEndings() throws IOException
+   {
+      this.check("1 2 3\n4 5\n");
+      this.check("1 2 3\r\n4 5\r\n\r\n6");
+      this.check("1 2\r3 4\r\r5");
+      this.check("\n\r\n\r");
+   }
+
+   public void testLoneCrAtWindowEdge() throws IOException
+   {
+      // with a window of 4 bytes, the '\r' is the last byte of the first window
+      assertEquals(expected("abc\rde\r\nf"), this.read("abc\rde\r\nf", 4));
+      assertEquals(expected("abc\r\nde"), this.read("abc\r\nde", 4));
+      // and the last byte of the file
+      assertEquals(expected("abc\r"), this.read("abc\r", 4));
+   }
+
+   public void testLongLine() throws IOException
+   {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < 1000; ++i) sb.append(i % 10);
+      String longLine = sb.toString();
+      this.check("1\n" + longLine.substring(0, 50) + "\r\n2");
+      assertEquals(expected("1\n" + longLine + "\n2\n"), this.read("1\n" + longLine + "\n2\n", 8));
+   }
+
+   public void testRandom() throws IOException
+   {
+      Random random = new Random(7);
+      char[] alphabet = { '1', ' ', '\r', '\n', '#' };
+      for (int k = 0; k < 200; ++k)
+      {
+         StringBuilder sb = new StringBuilder();
+         int length = random.nextInt(40);
+         for (int i = 0; i < length; ++i) sb.append(alphabet[random.nextInt(alphabet.length)]);
+         this.check(sb.toString());
+      }
+   }
+}
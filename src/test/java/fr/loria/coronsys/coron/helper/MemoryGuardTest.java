@@ -0,0 +1,72 @@
+package fr.loria.coronsys.coron.helper;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import fr.loria.coronsys.coron.MainRunner;
+
+/**
+ * The steps of the memory guard (-memguard) after each notification, and the
+ * same FGs with the guard at a very low threshold.
+ */
+public class MemoryGuardTest
+extends TestCase
+{
+   protected void setUp() {
+      Context.bind(new Context());
+   }
+
+   protected void tearDown() {
+      Context.unbind();
+   }
+
+   public void testSteps()
+   {
+      Global.setMemGuard(80);
+      MemoryGuard guard = MemoryGuard.start();
+      if (guard == null) return;     // the JVM cannot watch the tenured pool
+      // else
+      try
+      {
+         assertEquals(MemoryGuard.NONE, guard.nextStep());
+
+         // below the percentage of this guard (the threshold of another job): ignored
+         guard.memoryUsageLow(70, 100);
+         assertEquals(MemoryGuard.NONE, guard.nextStep());
+
+         guard.memoryUsageLow(85, 100);
+         assertEquals(MemoryGuard.FLUSH_OUTPUT, guard.nextStep());
+         assertEquals("one step per notification", MemoryGuard.NONE, guard.nextStep());
+
+         guard.memoryUsageLow(90, 100);
+         assertEquals(MemoryGuard.SPILL_FGS, guard.nextStep());
+         // e.g. the search has no F_2 matrix
+         assertEquals(MemoryGuard.DROP_F2, guard.skipStep());
+         assertEquals(MemoryGuard.SMALLER_EXTENTS, guard.skipStep());
+         assertEquals(MemoryGuard.NONE, guard.skipStep());
+
+         guard.memoryUsageLow(95, 100);
+         assertEquals("all the steps were taken", MemoryGuard.NONE, guard.nextStep());
+      }
+      finally {
+         guard.stop();
+      }
+   }
+
+   public void testOff()
+   {
+      Global.setMemGuard(0);
+      assertNull(MemoryGuard.start());
+   }
+
+   public void testSameFgs() throws Exception
+   {
+      String dataset = MainRunner.mushrooms().getPath();
+      for (String alg : new String[] { "-alg:talkyg", "-alg:talkyg2", "-alg:dtalkyg" })
+      {
+         List<String> expected = MainRunner.patterns(MainRunner.run(dataset, "20%", alg, "-memguard:off"));
+         assertEquals(alg, expected, MainRunner.patterns(MainRunner.run(dataset, "20%", alg, "-memguard:1")));
+      }
+   }
+}
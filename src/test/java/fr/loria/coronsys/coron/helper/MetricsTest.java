@@ -0,0 +1,121 @@
+package fr.loria.coronsys.coron.helper;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+
+import fr.loria.coronsys.coron.MainRunner;
+
+/**
+ * The report of -metrics against the output of the same run: the patterns per
+ * level, the bytes of the output, and each candidate is either pruned or saved.
+ */
+public class MetricsTest
+extends TestCase
+{
+   /**
+    * @param json The report.
+    * @param name Name of a number in the report.
+    * @return Its first value.
+    */
+   private static long value(String json, String name)
+   {
+      Matcher m = Pattern.compile("\"" + name + "\": (\\d+)").matcher(json);
+      assertTrue(name, m.find());
+      return Long.parseLong(m.group(1));
+   }
+
+   /**
+    * @param pattern A line of the output, e.g. "{36, 94} (8192)".
+    * @return Size of the itemset.
+    */
+   private static int sizeOf(String pattern)
+   {
+      if (pattern.startsWith("{}")) return 0;
+      // else
+      return pattern.substring(0, pattern.indexOf('}')).split(",").length;
+   }
+
+   public void testCounters()
+   {
+      Metrics.reset();
+      try
+      {
+         Metrics.count(Metrics.CANDIDATES, 2);
+         assertEquals("the counters are off", 0, value(Metrics.toJson(), "candidates"));
+
+         Metrics.start();
+         assertTrue(Metrics.isOn());
+         Metrics.count(Metrics.CANDIDATES, 2);
+         Metrics.count(Metrics.CANDIDATES, 500);     // counted at the last level
+         Metrics.nodes(3);
+         Metrics.nodes(-2);
+         Metrics.storeScan(4);
+         Metrics.storeScan(2);
+         String json = Metrics.toJson();
+         assertEquals(2, value(json, "candidates"));
+         assertEquals(1, value(json, "nodesAlive"));
+         assertEquals(3, value(json, "peakNodesAlive"));
+         assertEquals(2, value(json, "scans"));
+         assertEquals(6, value(json, "scanned"));
+         assertEquals(4, value(json, "maxScan"));
+         assertTrue(json.contains("{ \"level\": 127, \"candidates\": 1,"));
+      }
+      finally {
+         Metrics.reset();
+      }
+      assertFalse(Metrics.isOn());
+   }
+
+   public void testReport() throws Exception
+   {
+      String dataset = MainRunner.mushrooms().getPath();
+      File report = File.createTempFile("metrics", ".json");
+      try
+      {
+         for (String alg : new String[] { "-alg:talkyg", "-alg:talkyg2", "-alg:dtalkyg" })
+         {
+            for (boolean f2 : new boolean[] { false, true })
+            {
+               String what = alg + (f2 ? " -usef2" : "");
+               String metrics = "-metrics:" + report.getPath();
+               String output = f2 ? MainRunner.run(dataset, "20%", alg, "-usef2", metrics) : MainRunner.run(dataset, "20%", alg, metrics);
+               String json = new String(Files.readAllBytes(report.toPath()), "UTF-8");
+               List<String> patterns = MainRunner.patterns(output);
+
+               long bytes = 0;
+               int[] perLevel = new int[128];
+               for (String pattern : patterns)
+               {
+                  bytes += pattern.length() + 1;
+                  ++perLevel[sizeOf(pattern)];
+               }
+               assertEquals(what, patterns.size(), value(json, "patterns"));
+               assertEquals(what, bytes, value(json, "outputBytes"));
+               for (int level = 0; level < perLevel.length; ++level)
+               {
+                  if (perLevel[level] == 0) continue;
+                  // else
+                  Matcher m = Pattern.compile("\\{ \"level\": " + level + ", .*\"patterns\": (\\d+) \\}").matcher(json);
+                  assertTrue(what + " level " + level, m.find());
+                  assertEquals(what + " level " + level, perLevel[level], Long.parseLong(m.group(1)));
+               }
+
+               // each candidate is pruned or saved (the patterns of level 0 and 1 are not candidates)
+               long pruned = value(json, "prunedByF2") + value(json, "prunedBySupport") + value(json, "prunedByGeneratorTest");
+               assertEquals(what, value(json, "candidates"), pruned + patterns.size() - perLevel[0] - perLevel[1]);
+               assertEquals(what, f2, value(json, "prunedByF2") > 0);
+               assertEquals(what, 0, value(json, "nodesAlive"));
+               assertTrue(what, value(json, "peakNodesAlive") > 0);
+            }
+         }
+      }
+      finally {
+         report.delete();
+      }
+   }
+}
@@ -0,0 +1,158 @@
+package fr.loria.coronsys.coron.helper;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+
+import fr.loria.coronsys.coron.MainRunner;
+
+/**
+ * The recoded database (-recode) against the original one: the same objects
+ * with the frequent attributes only, the new attributes in the chosen order,
+ * the recoded F_2 matrix; and the same FGs with and without -recode.
+ */
+public class RecodingTest
+extends TestCase
+{
+   private final static int ATTRS = 40;
+
+   private final static int MIN_SUPP = 30;
+
+   private final List<int[]> objects = new ArrayList<int[]>();
+
+   protected void setUp()
+   {
+      Random random = new Random(31);
+      for (int i = 0; i < 400; ++i)
+      {
+         // attribute a is in about (100 - 3a)% of the objects, some are not frequent
+         List<Integer> items = new ArrayList<Integer>();
+         for (int attr = 1; attr <= ATTRS; ++attr) {
+            if (random.nextInt(100) < 100 - 3 * attr) items.add(attr);
+         }
+         int[] object = new int[items.size()];
+         for (int k = 0; k < object.length; ++k) object[k] = items.get(k);
+         this.objects.add(object);
+      }
+   }
+
+   protected void tearDown() {
+      Context.unbind();
+   }
+
+   private Vector<BitSet> horizontal()
+   {
+      Vector<BitSet> database = new Vector<BitSet>();
+      for (int[] object : this.objects)
+      {
+         BitSet set = new BitSet();
+         for (int attr : object) set.set(attr);
+         database.add(set);
+      }
+      return database;
+   }
+
+   /**
+    * @return The support of each original attribute.
+    */
+   private int[] supports()
+   {
+      int[] supp = new int[ATTRS + 1];
+      for (int[] object : this.objects) {
+         for (int attr : object) ++supp[attr];
+      }
+      return supp;
+   }
+
+   private void checkHorizontal(int order)
+   {
+      Context.bind(new Context());
+      Vector<BitSet> original = this.horizontal();
+      Database.setNumberOfObjects(original.size());
+      Database.setDatabase(this.horizontal(), C.DBR_HORIZONTAL);
+      Database.setMinSupp(MIN_SUPP);
+      Recoding.recode(order);
+      assertTrue(Recoding.isRecoded());
+
+      int[] supp = this.supports();
+      BitSet frequent = new BitSet();
+      for (int attr = 1; attr <= ATTRS; ++attr) {
+         if (supp[attr] >= MIN_SUPP) frequent.set(attr);
+      }
+      int k = frequent.cardinality();
+      assertTrue(k < ATTRS);
+      assertEquals(k, Database.getTotalNumberOfAttr());
+
+      Vector<BitSet> recoded = Database.getDatabase();
+      assertEquals(original.size(), recoded.size());
+      for (int i = 0; i < original.size(); ++i)
+      {
+         BitSet expected = (BitSet) original.get(i).clone();
+         expected.and(frequent);
+         assertTrue(recoded.get(i).length() <= k + 1);
+         assertEquals(expected, Recoding.decode(recoded.get(i)));
+      }
+
+      for (int i = 1; i < k; ++i)
+      {
+         int a = Recoding.toOriginal(i), b = Recoding.toOriginal(i + 1);
+         if (order == C.RECODE_GIVEN) assertTrue(a < b);
+         if (order == C.RECODE_ASC)   assertTrue(supp[a] < supp[b] || (supp[a] == supp[b] && a < b));
+         if (order == C.RECODE_DESC)  assertTrue(supp[a] > supp[b] || (supp[a] == supp[b] && a < b));
+      }
+      Recoding.reset();
+      assertFalse(Recoding.isRecoded());
+   }
+
+   public void testHorizontal()
+   {
+      this.checkHorizontal(C.RECODE_GIVEN);
+      this.checkHorizontal(C.RECODE_ASC);
+      this.checkHorizontal(C.RECODE_DESC);
+   }
+
+   public void testVerticalF2()
+   {
+      Context.bind(new Context());
+      VerticalIngest ingest = new VerticalIngest(true);
+      for (int[] object : this.objects) ingest.add(object.clone(), object.length);
+      Database.setNumberOfObjects(this.objects.size());
+      ingest.register();
+      Database.setMinSupp(MIN_SUPP);
+      Recoding.recode(C.RECODE_DESC);
+
+      Vector<BitSet> vertical = Database.getDatabase();
+      int k = Database.getTotalNumberOfAttr();
+      assertEquals(k + 1, vertical.size());
+      int[] supp = this.supports();
+      for (int i = 1; i <= k; ++i) {
+         assertEquals(supp[Recoding.toOriginal(i)], vertical.get(i).cardinality());
+      }
+      int[][] f2 = Database.getF2Matrix();
+      for (int i = 1; i <= k; ++i)
+      {
+         for (int j = i + 1; j <= k; ++j)
+         {
+            BitSet both = (BitSet) vertical.get(i).clone();
+            both.and(vertical.get(j));
+            assertEquals(both.cardinality(), f2[i][k-j]);
+         }
+      }
+   }
+
+   public void testSameFgs() throws Exception
+   {
+      String dataset = MainRunner.mushrooms().getPath();
+      for (String alg : new String[] { "-alg:talkyg", "-alg:dtalkyg" })
+      {
+         List<String> expected = MainRunner.patterns(MainRunner.run(dataset, "30%", alg));
+         for (String order : new String[] { "given", "asc", "desc" }) {
+            assertEquals(alg + " " + order, expected, MainRunner.patterns(MainRunner.run(dataset, "30%", alg, "-recode:" + order)));
+         }
+      }
+   }
+}
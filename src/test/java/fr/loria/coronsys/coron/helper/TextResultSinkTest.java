@@ -0,0 +1,69 @@
+package fr.loria.coronsys.coron.helper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+
+import fr.loria.coronsys.coron.MainRunner;
+
+/**
+ * The text format of the patterns, and the output file of the switch -of:
+ * it must get every pattern, the standard output none of them.
+ */
+public class TextResultSinkTest
+extends TestCase
+{
+   private static BitSet set(int... attrs)
+   {
+      BitSet set = new BitSet();
+      for (int attr : attrs) set.set(attr);
+      return set;
+   }
+
+   public void testFormat()
+   {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      TextResultSink sink = new TextResultSink(Channels.newChannel(bytes), false);
+      sink.add(set(1, 3, 4), 12);
+      sink.add(new BitSet(), 200);
+      Vector<BitSet> gens = new Vector<BitSet>();
+      gens.add(set(1, 3));
+      gens.add(set(4));
+      sink.add(set(1, 3, 4), 12, gens);
+      sink.close();
+      assertFalse(sink.checkError());
+
+      String nl = System.getProperty("line.separator");
+      assertEquals("{1, 3, 4} (12)" + nl + "{} (200)" + nl + "{1, 3, 4} (12) +; [{1, 3}, {4}]" + nl, bytes.toString());
+   }
+
+   public void testOutputFile() throws Exception
+   {
+      String dataset = MainRunner.mushrooms().getPath();
+      List<String> expected = MainRunner.patterns(MainRunner.run(dataset, "30%", "-alg:talkyg"));
+      assertEquals(544, expected.size());
+
+      for (String threads : new String[] { "-threads:1", "-threads:2" })
+      {
+         File file = File.createTempFile("coron", ".txt");
+         try
+         {
+            String out = MainRunner.run(dataset, "30%", "-alg:talkyg", threads, "-of:" + file.getPath());
+            assertTrue(MainRunner.patterns(out).isEmpty());
+            List<String> lines = Files.readAllLines(file.toPath(), Charset.defaultCharset());
+            assertEquals(557, lines.size());
+            assertEquals(expected, MainRunner.patterns(new String(Files.readAllBytes(file.toPath()))));
+         }
+         finally {
+            file.delete();
+         }
+      }
+   }
+}
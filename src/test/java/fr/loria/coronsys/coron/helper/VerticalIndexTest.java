@@ -0,0 +1,85 @@
+package fr.loria.coronsys.coron.helper;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import fr.loria.coronsys.coron.MainRunner;
+
+/**
+ * Round trip of the index (-index): the vertical miners must find the same
+ * patterns with the index as without it, and an index that is out of date
+ * must not be used.
+ */
+public class VerticalIndexTest
+extends TestCase
+{
+   private File dataset;
+
+   private File index;
+
+   protected void setUp() throws Exception
+   {
+      this.dataset = File.createTempFile("indexed", ".basenum");
+      this.index = new File(VerticalIndex.getIndexFile(this.dataset.getPath()));
+      Files.copy(MainRunner.mushrooms().toPath(), this.dataset.toPath(), StandardCopyOption.REPLACE_EXISTING);
+   }
+
+   protected void tearDown()
+   {
+      this.dataset.delete();
+      this.index.delete();
+   }
+
+   private List<String> mine(File file, String alg) throws Exception {
+      return MainRunner.patterns(MainRunner.run(file.getPath(), "30%", alg));
+   }
+
+   public void testRoundTrip() throws Exception
+   {
+      String[] algs = { "-alg:talkyg", "-alg:talkyg2", "-alg:dtalkyg", "-alg:eclat" };
+      List<List<String>> expected = new ArrayList<List<String>>();
+      for (String alg : algs) expected.add(this.mine(this.dataset, alg));
+
+      MainRunner.run(this.dataset.getPath(), "30%", "-index");
+      assertTrue(this.index.isFile());
+      for (int i = 0; i < algs.length; ++i) {
+         assertEquals(algs[i], expected.get(i), this.mine(this.dataset, algs[i]));
+      }
+
+      // the dataset is blanked, but its size and modification time are kept: only the index has the objects
+      long lastModified = this.dataset.lastModified();
+      byte[] blank = new byte[(int) this.dataset.length()];
+      Arrays.fill(blank, (byte) '\n');
+      blank[0] = '1';
+      Files.write(this.dataset.toPath(), blank);
+      assertTrue(this.dataset.setLastModified(lastModified));
+      assertEquals(expected.get(0), this.mine(this.dataset, algs[0]));
+   }
+
+   public void testOutOfDate() throws Exception
+   {
+      MainRunner.run(this.dataset.getPath(), "30%", "-index");
+      assertTrue(this.index.isFile());
+
+      // an object is appended: the index is not used
+      List<String> lines = Files.readAllLines(this.dataset.toPath(), Charset.defaultCharset());
+      Files.write(this.dataset.toPath(), lines.subList(0, 1), Charset.defaultCharset(), StandardOpenOption.APPEND);
+      File copy = File.createTempFile("copy", ".basenum");
+      try
+      {
+         Files.copy(this.dataset.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+         assertEquals(this.mine(copy, "-alg:talkyg"), this.mine(this.dataset, "-alg:talkyg"));
+      }
+      finally {
+         copy.delete();
+      }
+   }
+}
@@ -0,0 +1,131 @@
+package fr.loria.coronsys.coron.helper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+
+import fr.loria.coronsys.coron.datastructure.charm.CharmExtra;
+
+/**
+ * The vertical database read directly (VerticalIngest) against the horizontal
+ * database converted by CharmExtra: the same tidsets, F_2 matrix and statistics.
+ * With -fold, the identical objects get one tid and a weight.
+ */
+public class VerticalIngestTest
+extends TestCase
+{
+   private final static int ATTRS = 25;
+
+   /**
+    * The objects; an object can have duplicate attributes, in any order.
+    */
+   private final List<int[]> objects = new ArrayList<int[]>();
+
+   protected void setUp()
+   {
+      Random random = new Random(23);
+      for (int i = 0; i < 500; ++i)
+      {
+         int[] object = new int[random.nextInt(12)];
+         for (int k = 0; k < object.length; ++k) object[k] = 1 + random.nextInt(ATTRS);
+         this.objects.add(object);
+      }
+      this.objects.add(new int[] { 3, 1, 2 });
+      this.objects.add(new int[] { 1, 2, 3, 3 });     // the same object again
+   }
+
+   protected void tearDown() {
+      Context.unbind();
+   }
+
+   /**
+    * @return The objects as BitSets.
+    */
+   private Vector<BitSet> horizontal()
+   {
+      Vector<BitSet> database = new Vector<BitSet>();
+      for (int[] object : this.objects)
+      {
+         BitSet set = new BitSet();
+         for (int attr : object) set.set(attr);
+         database.add(set);
+      }
+      return database;
+   }
+
+   /**
+    * Reads the objects with VerticalIngest in a new context.
+    */
+   private void ingest(boolean fold)
+   {
+      Context.bind(new Context());
+      if (fold) Global.setFold();
+      VerticalIngest ingest = new VerticalIngest(true);
+      for (int[] object : this.objects) ingest.add(object.clone(), object.length);
+      Database.setNumberOfObjects(this.objects.size());
+      ingest.register();
+   }
+
+   public void testSameAsHorizontal()
+   {
+      Context.bind(new Context());
+      Vector<BitSet> horizontal = this.horizontal();
+      Database.setNumberOfObjects(horizontal.size());
+      Database.setDatabase(horizontal, C.DBR_HORIZONTAL);
+      int largest = Database.getTotalNumberOfAttr();
+      int nonEmpty = Database.getTotalNbOfNonEmptyAttr();
+      double avg = Database.getNumberOfAttrInAvg();
+      CharmExtra charmExtra = new CharmExtra(horizontal, 1);
+      int[][] f2 = charmExtra.getF2Matrix();
+      Vector<BitSet> vertical = charmExtra.convertDBHorizontal2Vertical();
+
+      this.ingest(false);
+      assertTrue(Database.isDBRepresentationVertical());
+      assertEquals(vertical, Database.getDatabase());
+      assertEquals(largest, Database.getTotalNumberOfAttr());
+      assertEquals(nonEmpty, Database.getTotalNbOfNonEmptyAttr());
+      assertEquals(avg, Database.getNumberOfAttrInAvg(), 1e-9);
+      int[][] counted = Database.getF2Matrix();
+      assertEquals(f2.length, counted.length);
+      for (int i = 0; i < f2.length; ++i) {
+         assertTrue("row " + i, Arrays.equals(f2[i], counted[i]));
+      }
+      assertNull(Database.getWeights());
+   }
+
+   public void testFold()
+   {
+      this.ingest(true);
+      Vector<BitSet> vertical = Database.getDatabase();
+      int[] weights = Database.getWeights();
+      assertNotNull(weights);
+
+      // the distinct objects, in the order of their first occurrence
+      List<BitSet> distinct = new ArrayList<BitSet>();
+      List<Integer> counts = new ArrayList<Integer>();
+      for (BitSet object : this.horizontal())
+      {
+         int k = distinct.indexOf(object);
+         if (k < 0) {
+            distinct.add(object);
+            counts.add(1);
+         }
+         else counts.set(k, counts.get(k) + 1);
+      }
+      assertEquals(distinct.size() + 1, weights.length);
+      for (int tid = 1; tid <= distinct.size(); ++tid)
+      {
+         assertEquals(counts.get(tid - 1).intValue(), weights[tid]);
+         BitSet object = new BitSet();
+         for (int attr = 0; attr < vertical.size(); ++attr) {
+            if (vertical.get(attr).get(tid)) object.set(attr);
+         }
+         assertEquals(distinct.get(tid - 1), object);
+      }
+   }
+}